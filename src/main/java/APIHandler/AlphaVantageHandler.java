@@ -1,18 +1,15 @@
 package APIHandler;
 
-import Default.Main;
+import Default.Status;
+import Processing.CSVBarParser;
+import Processing.PriceBar;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
-import java.net.URL;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * @author Luke K. Rose <psylr5@nottingham.ac.uk>
@@ -27,15 +24,13 @@ public class AlphaVantageHandler {
     private final Proxy proxy = new Proxy(Proxy.Type.SOCKS, new InetSocketAddress("127.0.0.1", 9150));
     private final boolean USE_PROXY = false;
 
+    private final HTTPHandler http = new HTTPHandler("AlphaVantage");
+    private final int MAX_ATTEMPTS = 10;
+    static private final long FULL_HISTORY_TTL = TimeUnit.HOURS.toMillis(12), LATEST_HISTORY_TTL = TimeUnit.MINUTES.toMillis(1);
     private String apiKey;
     private boolean useProxy = false;
-    private boolean allPaused = false;
     private int failedDownloads = 0;
-    private int pausedDownloads = 0;
-    private int currentlyDownloading = 0;
-    private final int MAX_CONCURRENT_DOWNLOADS = 30;
     private int downloadsSinceToggle = 0;
-    private final Semaphore availableThreads = new Semaphore(MAX_CONCURRENT_DOWNLOADS, false);
 
     /**
      * Initialises the AlphaVantage Handler class using the necessary API key
@@ -45,6 +40,22 @@ public class AlphaVantageHandler {
      */
     public void init(String apiKey) {
         this.apiKey = apiKey;
+        http.setRateLimiter(RateLimiter.get("AlphaVantage"));
+        http.setMaxAttempts(3);
+        http.setCachePolicy(AlphaVantageHandler::getCacheTTL);
+    }
+
+    /**
+     * Determines how long a response can be served from the local cache, so that restarts and repeated simulations do not re-download full histories
+     *
+     * @param request The API URL containing the requested values
+     * @return Time to live of the response in milliseconds (0 for quotes, which must always be live)
+     */
+    static private long getCacheTTL(String request) {
+        if (!request.contains("function=TIME_SERIES_")) return 0;
+        if (request.contains("outputsize=full") && !request.contains("function=TIME_SERIES_INTRADAY")) return FULL_HISTORY_TTL;
+
+        return Math.max(LATEST_HISTORY_TTL, HTTPHandler.getClosedMarketTTL()); //Compact and intraday histories change every minute while the market is open
     }
 
     /**
@@ -80,67 +91,6 @@ public class AlphaVantageHandler {
     private synchronized void toggleProxy() {useProxy = !useProxy;
     }
 
-    /**
-     * Decrease the number of paused threads by 1
-     */
-    private synchronized void decrementPause() {
-        pausedDownloads--;
-    }
-
-    /**
-     * Increase the number of paused threads by 1
-     */
-    private synchronized void incrementPause() {
-        pausedDownloads++;
-    }
-
-    /**
-     * Access the number of currently paused threads
-     * @return The number of currently paused download threads
-     */
-    private synchronized int getPausedDownloads() {return pausedDownloads;
-    }
-
-    /**
-     * Decrease the number of downloading threads by 1
-     */
-    private synchronized void decrementCurrentlyDownloading(){ currentlyDownloading--;
-    }
-
-    /**
-     * Increase the number of downloading threads by 1
-     */
-    private synchronized void incrementCurrentlyDownloading(){ currentlyDownloading++;
-    }
-
-    /**
-     * Access the number of currently downloading threads
-     * @return The number of currently downloading threads
-     */
-    private synchronized int getCurrentlyDownloading() {return currentlyDownloading;
-    }
-
-    /**
-     * Sets all threads' 'paused' value to false and reset ths paused thread counter
-     */
-    private synchronized void unpauseAll(){ allPaused = false; pausedDownloads = 0;
-    }
-
-    /**
-     * Sets all threads' 'paused' value to true
-     */
-    private synchronized void pauseAll() {
-        allPaused = true;
-        pausedDownloads = currentlyDownloading;
-    }
-
-    /**
-     * Access whether or not all threads are currently paused
-     * @return True if all threads are in a paused state, false otherwise
-     */
-    private synchronized boolean getAllPaused() {return allPaused;
-    }
-
     /**
      * Access the number of downloads that have failed due to e.g. connection timeouts or API limits
      * @return The number of currently failed downloads
@@ -168,110 +118,101 @@ public class AlphaVantageHandler {
      * @see <a href=https://www.alphavantage.co/documentation/>AlphaVantage API Documentation</a>
      */
     ArrayList<String> submitRequest(String request) throws IOException {
-        int exceeded = 1;
-        ArrayList<String> temp = new ArrayList<>();
-        boolean paused = false, failed = false;
-        int fails = 0;
-        String errMessage = "";
+        ArrayList<String> temp = submitRequest(request, HTTPHandler::readLines, lines -> getError(lines, request));
 
+        return temp == null ? new ArrayList<>() : temp;
+    }
 
-        do {
-            availableThreads.acquireUninterruptibly();
-            incrementCurrentlyDownloading();
+    /**
+     * Submits a price history request to AlphaVantage using the API, parsing the CSV response into price bars as it is streamed
+     * @param request The API URL containing the requested values (with datatype=csv)
+     * @return A list of price bars retrieved from AlphaVantage
+     * @throws IOException Thrown if the connection to or reading of the API request/response fails due to server unavailability or connection refusal
+     * @see <a href=https://www.alphavantage.co/documentation/>AlphaVantage API Documentation</a>
+     */
+    ArrayList<PriceBar> submitBarRequest(String request) throws IOException {
+        CSVBarParser parser = submitRequest(request, body -> new CSVBarParser(CSVBarParser.Format.ALPHAVANTAGE).parse(body), p -> p.getBars().isEmpty() ? getError(p.getRejectedLines(), request) : null);
+
+        return parser == null ? new ArrayList<>() : parser.getBars();
+    }
 
+    /**
+     * Submits a request to AlphaVantage, retrying (and slowing down all other requests) while AlphaVantage reports that it is being called too frequently
+     * @param request The API URL containing the requested values
+     * @param reader Callback that consumes the response body as it streams in
+     * @param getError Determines whether the response holds an error message rather than data, returning a description of the error or null
+     * @param <T> Type of the value produced from the response body
+     * @return The value produced from the response, or null if no valid response was received
+     * @throws IOException Thrown if the connection to or reading of the API request/response fails due to server unavailability or connection refusal
+     */
+    private <T> T submitRequest(String request, HTTPHandler.ResponseReader<T> reader, Function<T, String> getError) throws IOException {
+        T temp = null;
+        String errMessage;
+        int attempts = 0;
+
+        do {
             if(USE_PROXY && getDownloadsSinceToggle() >= 30) {
-                Main.getController().updateCurrentTask("SWITCHING PROXY", false, false);
+                Status.updateCurrentTask("SWITCHING PROXY", false, false);
                 toggleProxy();
                 resetDownloadsSinceToggle();
             }
 
-            int CALL_LIMIT = 2;
-            while (paused) {
-                if(getAllPaused()){
-                    decrementPause();
-                    paused = false;
-
-                    if (getAllPaused() && getPausedDownloads() == 0) unpauseAll();
-                }
-
-                if (getPausedDownloads() >= Math.min(MAX_CONCURRENT_DOWNLOADS, getCurrentlyDownloading()) && !allPaused)
-                    pauseAll();
-                try { TimeUnit.SECONDS.sleep(exceeded ); } catch (Exception e) { e.printStackTrace(); }
-            }
-
-            HttpURLConnection connection = (HttpURLConnection) (getUseProxy() ? new URL(request).openConnection(proxy) : new URL(request).openConnection());
-
-            connection.setRequestMethod("GET");
+            http.setProxy(getUseProxy() ? proxy : Proxy.NO_PROXY);
 
             try {
-                TimeUnit.SECONDS.sleep(CALL_LIMIT);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+                T response = http.request(request, reader);
+                errMessage = getError.apply(response);
+
+                if (errMessage != null) http.evict(request); //Throttling messages are sent with a successful status code, so must not be served from the cache
 
-            try (Reader reader = new InputStreamReader(connection.getInputStream())) {
-                final char[] buf = new char[10240];
-                int read;
-                final StringBuilder sb = new StringBuilder();
-                while ((read = reader.read(buf, 0, buf.length)) > 0) sb.append(buf, 0, read);
-
-                String sTemp = sb.toString();
-
-                if (sTemp.contains("Please consider optimizing your API call frequency.") || sTemp.contains("}") || sTemp.contains("{")) {
-                    errMessage = "Too many calls";
-                    failed = true;
-                } else if (sTemp.contains("Invalid API call")) {
-                    errMessage = "Possible invalid API call: " + request;
-                    failed = true;
-                } else if (sTemp.isEmpty()) {
-                    errMessage = "No data received";
-                    failed = true;
-                } else {
-                    temp.addAll(Arrays.asList(sTemp.split("\r\n")));
-                    if (exceeded != 1) exceeded = 1;
-                }
-            } catch (Exception e) {
+                if (errMessage == null) temp = response;
+            } catch (RateLimiter.LimitExceededException e) {
+                Status.updateCurrentTask(e.getMessage(), true, false);
+                break;
+            } catch (IOException e) {
                 errMessage = e.toString();
-                failed = true;
-            } finally {
-                connection.disconnect();
             }
 
-            if(failed){
-                if(fails == 0)
-                    incrementFailedDownloads();
-                fails++;
-                paused = true;
-                incrementPause();
+            if (errMessage != null) {
+                if (attempts == 0) incrementFailedDownloads();
+                if (errMessage.startsWith("Possible invalid API call")) break;
 
-                exceeded++;
-                failed = false;
-                Main.getController().updateCurrentTask("FAILED " + getFailedDownloads() + " TIMES, RETRYING! STOCK QUOTE CONCURRENT DOWNLOADS - PAUSED: " + getPausedDownloads() + ", QUEUED: " + (getCurrentlyDownloading() - getPausedDownloads()) + "\tTOTAL: " + getCurrentlyDownloading() + " -> " + errMessage, true, false);
+                RateLimiter.get("AlphaVantage").backoff(TimeUnit.SECONDS.toMillis(++attempts)); //AlphaVantage throttles by responding with a message rather than an error code, so slow every caller down
+                Status.updateCurrentTask("FAILED " + getFailedDownloads() + " TIMES, RETRYING! -> " + errMessage, true, false);
             }
-
-            availableThreads.release();
-            decrementCurrentlyDownloading();
-        } while (exceeded > 1 && exceeded < 10);
-
-        if (paused) decrementPause();
-
-        if (getCurrentlyDownloading() == 0 && availableThreads.availablePermits() == MAX_CONCURRENT_DOWNLOADS)
-            resetFailedDownloads();
+        } while (errMessage != null && attempts < MAX_ATTEMPTS);
 
         incrementDownloadsSinceToggle();
 
-        if (temp.size() < 100) {
-            if (exceeded == 10)
-                Main.getController().updateCurrentTask("Error with quote download: Exceeded reattempt limit!", true, false);
+        if (temp == null) {
+            if (attempts == MAX_ATTEMPTS)
+                Status.updateCurrentTask("Error with quote download: Exceeded reattempt limit!", true, false);
             else
-                Main.getController().updateCurrentTask("Error with quote download: No data was received from the server!", true, false);
+                Status.updateCurrentTask("Error with quote download: No data was received from the server!", true, false);
         } else
-            Main.getController().updateCurrentTask("COMPLETED! STOCK QUOTE CONCURRENT DOWNLOADS - PAUSED: " + getPausedDownloads() + ", QUEUED: " + (getCurrentlyDownloading() - getPausedDownloads()) + "\tTOTAL: " + getCurrentlyDownloading(), false, false);
-
+            resetFailedDownloads();
 
         return temp;
     }
 
+    /**
+     * Determines whether an AlphaVantage response contains an error message rather than price data
+     * @param lines The lines of the response
+     * @param request The API URL that the response was returned for
+     * @return A description of the error, or null if the response contains price data
+     */
+    static private String getError(ArrayList<String> lines, String request) {
+        if (lines.isEmpty()) return "No data received";
+
+        for (String line : lines)
+            if (line.contains("Please consider optimizing your API call frequency.") || line.contains("}") || line.contains("{"))
+                return "Too many calls";
+            else if (line.contains("Invalid API call"))
+                return "Possible invalid API call: " + request;
+
+        return null;
+    }
+
     /**
      * Access the currently used API Key
      * @return Currently used AlphaVantage API Key
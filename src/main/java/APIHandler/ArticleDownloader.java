@@ -0,0 +1,125 @@
+package APIHandler;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+class ArticleDownloader {
+    static private final int MAX_CONNECTIONS_PER_HOST = 2;
+    private final LinkedHashMap<String, Host> hosts = new LinkedHashMap<>();
+    private final int maxDownloads;
+    private int running = 0;
+
+    /**
+     * Creates a downloader that limits how many downloads are in flight, both overall and against any single host
+     *
+     * @param maxDownloads Maximum amount of articles to download simultaneously across all hosts
+     */
+    ArticleDownloader(int maxDownloads) {
+        this.maxDownloads = Math.max(1, maxDownloads);
+    }
+
+    /**
+     * Queues a download against the host of the given URL, only allowing {@link #MAX_CONNECTIONS_PER_HOST} downloads to run against the same host at once
+     *
+     * @param url      URL of the resource being downloaded, used to determine the host
+     * @param download Starts the download, returning a future that completes when it has finished
+     * @param <T>      Result type of the download
+     * @return A future that completes with the result of the download, or exceptionally if it failed
+     */
+    <T> CompletableFuture<T> submit(String url, Supplier<CompletableFuture<T>> download) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        synchronized (this) {
+            Host host = hosts.computeIfAbsent(getHost(url), k -> new Host());
+            host.waiting.add(() -> {
+                CompletableFuture<T> started;
+
+                try {
+                    started = download.get();
+                } catch (Throwable e) {
+                    started = new CompletableFuture<>();
+                    started.completeExceptionally(e);
+                }
+
+                started.whenComplete((value, e) -> {
+                    finished(host);
+                    if (e == null) result.complete(value);
+                    else result.completeExceptionally(e);
+                });
+            });
+        }
+
+        dispatch();
+
+        return result;
+    }
+
+    /**
+     * Starts as many waiting downloads as the overall and per-host limits allow
+     */
+    private void dispatch() {
+        ArrayList<Runnable> toStart = new ArrayList<>();
+
+        synchronized (this) {
+            for (Host host : hosts.values()) {
+                while (running < maxDownloads && host.running < MAX_CONNECTIONS_PER_HOST && !host.waiting.isEmpty()) {
+                    toStart.add(host.waiting.poll());
+                    host.running++;
+                    running++;
+                }
+
+                if (running >= maxDownloads) break;
+            }
+        }
+
+        for (Runnable download : toStart) download.run(); //Started outside of the lock, as downloads may complete immediately
+    }
+
+    /**
+     * Releases the slot held by a finished download and starts the next waiting download
+     *
+     * @param host Host the finished download was made against
+     */
+    private void finished(Host host) {
+        synchronized (this) {
+            host.running--;
+            running--;
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Extracts the host name from a URL, so that requests for the same site share a politeness limit
+     *
+     * @param url URL to extract the host from
+     * @return The lower-case host name, or the URL itself if it cannot be parsed
+     */
+    static private String getHost(String url) {
+        try {
+            return new URL(url).getHost().toLowerCase();
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Downloads waiting on, and currently running against, a single host
+     */
+    static private class Host {
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int running = 0;
+    }
+}
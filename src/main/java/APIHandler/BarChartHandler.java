@@ -1,20 +1,19 @@
 package APIHandler;
 
-import Default.Controller;
 import Default.DatabaseHandler;
-import Default.Main;
+import Default.Status;
+import Processing.CSVBarParser;
+import Processing.PriceBar;
 import Processing.StockRecordParser;
-import javafx.scene.control.ProgressBar;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.sql.Date;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Luke K. Rose <psylr5@nottingham.ac.uk>
@@ -23,79 +22,51 @@ import java.util.Arrays;
  */
 
 public class BarChartHandler {
+    static private final long DAILY_HISTORY_TTL = TimeUnit.MINUTES.toMillis(15), INTRADAY_HISTORY_TTL = TimeUnit.MINUTES.toMillis(1);
+    private final HTTPHandler http = new HTTPHandler("BarChart");
     private String apiKey;
     private DatabaseHandler dh;
-    private ProgressBar pb;
-    private static final String IS_NUMERIC = "[-+]?\\d*\\.?\\d+";
+    static private final Status.Channel PROGRESS_CHANNEL = Status.Channel.STOCK_FEED;
 
     /**
      * Initialises the BarChart Handler class using the necessary API key
      *
      * @param apiKey BarChart API key
      * @param bcdh   BarChart DatabaseHandler, necessary for barchart to access the database without causing deadlock with other database accessors
-     * @param bcpb   BarChart ProgressBar, necessary to show progress of BarChart downloads
      * @see <a href="https://www.barchart.com/ondemand/free-market-data-api">Request a free API key</a>
      */
-    public void init(String apiKey, DatabaseHandler bcdh, ProgressBar bcpb){
+    public void init(String apiKey, DatabaseHandler bcdh){
         this.apiKey = apiKey;
         dh = bcdh;
-        pb = bcpb;
+        http.setRateLimiter(RateLimiter.get("BarChart"));
+        http.setCachePolicy(BarChartHandler::getCacheTTL);
     }
 
     /**
-     * Retrieves how many API calls have been made Today, to allow for call limiting
-     * @return The number of API calls made Today
-     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
-     */
-    private int getCurrentCalls() throws SQLException {
-        ArrayList<String> sCalls = dh.executeQuery("SELECT Calls FROM apicalls WHERE Date = CURDATE() AND Name='BarChart';");
-
-        if (!sCalls.isEmpty()) return Integer.parseInt(sCalls.get(0));
-
-        return 0;
-    }
-
-    /**
-     * Determines if any more API calls can be made Today
-     * @param callsToPerform The amount of calls that need to be made (usually 1 if accessing the API serially)
-     * @return True if the API limit has been exceeded for Today, false otherwise
-     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * Determines how long a response can be served from the local cache, so that restarts do not re-download histories that were just imported
+     *
+     * @param request The API URL containing the requested values
+     * @return Time to live of the response in milliseconds (0 for quotes, which must always be live)
      */
-    private boolean isOverLimit(int callsToPerform) throws SQLException {
-        int limit = Integer.parseInt(dh.executeQuery("SELECT DailyLimit FROM apimanagement WHERE Name='BarChart';").get(0));
+    static private long getCacheTTL(String request) {
+        if (!request.contains("getHistory")) return 0;
 
-        return (callsToPerform + getCurrentCalls()) > limit;
+        return Math.max(request.contains("type=minutes") ? INTRADAY_HISTORY_TTL : DAILY_HISTORY_TTL, HTTPHandler.getClosedMarketTTL());
     }
 
     /**
-     * Sends a list of daily/intradaily price data records to the database for a given stock
-     * @param values List of stock price records requested from the API
+     * Sends a list of daily/intradaily price bars to the database for a given stock
+     * @param bars List of stock price bars requested from the API
      * @param stock The stock ticker to save the data for (e.g. AAPL for Apple Inc.)
      * @param intraday True if the data is intraday data, false if it is daily data
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    private void sendToDatabase(ArrayList<String> values, String stock, boolean intraday) throws SQLException {
-        ArrayList<String> reducedResult = new ArrayList<>();
-        for(String value : values){
-            if(value.contains("You have reached the maximum")) return; //TODO: Insert value into API call manager
-            String[] splitString = value.replace("\"","").split(",");
-
-            if(splitString.length < 8) {
-                Main.getController().updateCurrentTask("Erroneous quote: " + value, true, false);
-                return;
-            }
-
-            if(splitString[3].matches(IS_NUMERIC)) {
-                String[] formattedDate = splitString[1].split("T");
-                reducedResult.add(formattedDate[0] + " " + formattedDate[1].split("-")[0] + "," + splitString[3] + "," + splitString[4] + "," + splitString[5] + "," + splitString[6] + "," + splitString[7]);
-            }
-        }
-
+    private void sendToDatabase(ArrayList<PriceBar> bars, String stock, boolean intraday) throws SQLException {
         if(intraday)
-            StockRecordParser.importIntradayMarketData(reducedResult, stock);
+            StockRecordParser.importIntradayMarketData(bars, stock);
         else
-            StockRecordParser.importDailyMarketData(reducedResult, stock);
-        Main.getController().updateCurrentTask("Successfully committed Intraday history for " + stock + " to the database!", false, false);
+            StockRecordParser.importDailyMarketData(bars, stock);
+        Status.updateCurrentTask("Successfully committed Intraday history for " + stock + " to the database!", false, false);
     }
 
     /**
@@ -107,20 +78,20 @@ public class BarChartHandler {
      */
     public void downloadHistory(ArrayList<String> stocks, boolean isIntraday) throws IOException, SQLException {
         double t = stocks.size() - 1, c = 0;
-        if (isOverLimit(0)) return;
+        if (RateLimiter.get("BarChart").isOverLimit(1)) return;
 
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, pb);
+        Status.updateProgress(Status.INDETERMINATE, PROGRESS_CHANNEL);
         for(String stock : stocks) {
             if (isIntraday)
-                Main.getController().updateCurrentTask("Downloading Daily History for " + stock, false, false);
+                Status.updateCurrentTask("Downloading Daily History for " + stock, false, false);
             else
-                Main.getController().updateCurrentTask("Downloading Intraday History for " + stock, false, false);
+                Status.updateCurrentTask("Downloading Intraday History for " + stock, false, false);
 
             sendToDatabase(downloadHistory(stock, isIntraday), stock, isIntraday);
 
-            Controller.updateProgress(++c,t,pb);
+            Status.updateProgress(++c,t, PROGRESS_CHANNEL);
         }
-        Controller.updateProgress(0, pb);
+        Status.updateProgress(0, PROGRESS_CHANNEL);
     }
 
     /**
@@ -172,26 +143,72 @@ public class BarChartHandler {
     }
 
     /**
-     * Downloads the Daily/Intradaily price data history for the given stock
+     * Downloads the Daily/Intradaily price data history for the given stock, since the latest record in the database
      *
      * @param stock      The stock ticker to save the data for (e.g. AAPL for Apple Inc.)
      * @param isIntraday True if the data is intraday data, false if it is daily data
-     * @return A list of stock price data records
+     * @return A list of stock price bars
      * @throws IOException  Throws IOException if the API request fails due to server unavailability or connection refusal
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    ArrayList<String> downloadHistory(String stock, boolean isIntraday) throws IOException, SQLException {
-        String url;
-
-        if (isIntraday) {
-            String dateFrom = dh.executeQuery("SELECT COALESCE(DATE_SUB(MAX(TradeDateTime), INTERVAL 1 MINUTE),'2001-01-01 00:00:00') FROM intradaystockprices WHERE Symbol='" + stock + "'").get(0).replace("-", "").replace(" ", "").replace(":", "");
-            url = "https://marketdata.websol.barchart.com/getHistory.csv?apikey=" + apiKey + "&symbol=" + stock + "&startDate=" + dateFrom + "&endDate=21000101&type=minutes&interval=1&order=asc";
-        } else {
-            String dateFrom = dh.executeQuery("SELECT COALESCE(MAX(TradeDate),'1900-01-01') FROM dailystockprices WHERE Symbol='" + stock + "'").get(0).replace("-", "").replace(" ", "").replace(":", "");
-            url = "https://marketdata.websol.barchart.com/getHistory.csv?apikey=" + apiKey + "&symbol=" + stock + "&startDate=" + dateFrom + "&endDate=21000101&type=daily&order=asc";
+    ArrayList<PriceBar> downloadHistory(String stock, boolean isIntraday) throws IOException, SQLException {
+        LocalDateTime from;
+
+        if (isIntraday)
+            from = Timestamp.valueOf(dh.executeQuery("SELECT COALESCE(DATE_SUB(MAX(TradeDateTime), INTERVAL 1 MINUTE),'2001-01-01 00:00:00') FROM intradaystockprices WHERE Symbol='" + stock + "'").get(0)).toLocalDateTime();
+        else
+            from = Date.valueOf(dh.executeQuery("SELECT COALESCE(MAX(TradeDate),'1900-01-01') FROM dailystockprices WHERE Symbol='" + stock + "'").get(0)).toLocalDate().atStartOfDay();
+
+        return downloadHistory(stock, isIntraday, from, null);
+    }
+
+    /**
+     * Downloads the Daily/Intradaily price data history for the given stock within a date range, used to fill gaps in the stored history
+     *
+     * @param stock      The stock ticker to save the data for (e.g. AAPL for Apple Inc.)
+     * @param isIntraday True if the data is intraday data, false if it is daily data
+     * @param from       Exchange-local date and time of the first bar to download
+     * @param to         Exchange-local date and time of the last bar to download, or null to download up to the latest bar
+     * @return A list of stock price bars
+     */
+    ArrayList<PriceBar> downloadHistory(String stock, boolean isIntraday, LocalDateTime from, LocalDateTime to) {
+        DateTimeFormatter format = DateTimeFormatter.ofPattern(isIntraday ? "yyyyMMddHHmmss" : "yyyyMMdd");
+        String url = "https://marketdata.websol.barchart.com/getHistory.csv?apikey=" + apiKey + "&symbol=" + stock + "&startDate=" + from.format(format) + "&endDate=" + (to == null ? "21000101" : to.format(format));
+
+        if (isIntraday)
+            url += "&type=minutes&interval=1&order=asc";
+        else
+            url += "&type=daily&order=asc";
+
+        return submitBarRequest(url);
+    }
+
+    /**
+     * Submits a price history request to BarChart, parsing the CSV response into price bars as it is streamed
+     * @param request The API URL containing the requested values
+     * @return List of price bars returned from the API request
+     * @see <a href="https://www.barchart.com/ondemand/api/getHistory">BarChart getHistory API Documentation</a>
+     */
+    private ArrayList<PriceBar> submitBarRequest(String request) {
+        try {
+            CSVBarParser parser = http.request(request, body -> new CSVBarParser(CSVBarParser.Format.BARCHART).parse(body));
+
+            for (String line : parser.getRejectedLines())
+                if (line.contains("You have reached the maximum")) {
+                    http.evict(request);
+                    RateLimiter.get("BarChart").exhaust();
+                    Status.updateCurrentTask("BarChart API limit reached", true, false);
+                } else if (!line.startsWith("\"symbol\"") && !line.startsWith("symbol"))
+                    Status.updateCurrentTask("Erroneous quote: " + line, true, false);
+
+            return parser.getBars();
+        } catch (RateLimiter.LimitExceededException e) {
+            Status.updateCurrentTask(e.getMessage(), true, false);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
 
-        return submitRequest(url);
+        return new ArrayList<>();
     }
 
     /**
@@ -203,34 +220,17 @@ public class BarChartHandler {
      * @see <a href="https://www.barchart.com/ondemand/api/getHistory">BarChart getHistory API Documentation</a>
      */
     private ArrayList<String> submitRequest(String request) throws IOException, SQLException {
-        int exceeded = 1;
         ArrayList<String> temp = new ArrayList<>();
 
-        do {
-            URL url = new URL(request);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-            try (InputStream is = connection.getInputStream(); Reader reader = new InputStreamReader(is)) {
-                final char[] buf = new char[10240];
-                int read;
-                final StringBuilder sb = new StringBuilder();
-                while ((read = reader.read(buf, 0, buf.length)) > 0)
-                    sb.append(buf, 0, read);
-
-                String sTemp = sb.toString();
-
-                temp.addAll(Arrays.asList(sTemp.split("\r\n")));
-            } catch (Exception e) {
-                e.printStackTrace();
-                exceeded++;
-            } finally {
-                if (connection != null) connection.disconnect();
-            }
-
-            dh.executeCommand("INSERT INTO apicalls VALUES('BarChart', CURDATE(), 1) ON DUPLICATE KEY UPDATE Calls = Calls +1;");
-        } while (exceeded > 1 && exceeded < 10);
+        try {
+            temp = http.request(request, HTTPHandler::readLines);
+        } catch (RateLimiter.LimitExceededException e) {
+            Status.updateCurrentTask(e.getMessage(), true, false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
 
-        if (temp.size() <= 1) Main.getController().updateCurrentTask("Error with quote download", true, false);
+        if (temp.size() <= 1) Status.updateCurrentTask("Error with quote download", true, false);
 
         return temp;
     }
@@ -0,0 +1,187 @@
+package APIHandler;
+
+import Processing.PriceBar;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+class FetchPipeline {
+    private final ThreadPoolExecutor fetchers;
+    private final BlockingQueue<Job> imports;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Creates a two-stage pipeline, where a bounded pool of workers downloads price histories and a single importer thread writes them to the database in the order they arrive
+     *
+     * @param name          Name of the pipeline, used to name its threads
+     * @param fetchThreads  Maximum amount of downloads in progress at once
+     * @param importBacklog Maximum amount of downloaded histories waiting to be imported before the fetch workers stop downloading (back-pressure)
+     */
+    FetchPipeline(String name, int fetchThreads, int importBacklog) {
+        imports = new ArrayBlockingQueue<>(importBacklog);
+        fetchers = new ThreadPoolExecutor(fetchThreads, fetchThreads, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, name + " Fetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fetchers.allowCoreThreadTimeOut(true);
+
+        Thread importer = new Thread(this::importLoop, name + " Importer");
+        importer.setDaemon(true);
+        importer.start();
+    }
+
+    /**
+     * Queues a download, to be imported once complete
+     *
+     * @param priority  {@link Priority} enum value determining whether the download jumps ahead of queued backfill
+     * @param download  Downloads the price history (returning null or an empty list if nothing was received)
+     * @param importer  Imports the downloaded price history into the database
+     * @return A future that completes with the downloaded bars once they have been imported, or exceptionally if the download or import fails
+     */
+    CompletableFuture<ArrayList<PriceBar>> submit(Priority priority, Callable<ArrayList<PriceBar>> download, Importer importer) {
+        Job job = new Job(priority, sequence.getAndIncrement(), download, importer);
+        fetchers.execute(job);
+        return job.result;
+    }
+
+    /**
+     * Imports downloaded histories one at a time, so that only one thread writes to the database
+     */
+    private void importLoop() {
+        while (true) {
+            Job job;
+
+            try {
+                job = imports.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                job.importer.importBars(job.bars);
+                job.result.complete(job.bars);
+            } catch (Exception e) {
+                job.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Tracks the progress of a group of submitted downloads, counting each one once it has been imported or has failed
+     */
+    static class Progress {
+        private final AtomicInteger completed = new AtomicInteger();
+        private final ArrayList<CompletableFuture<ArrayList<PriceBar>>> futures = new ArrayList<>();
+
+        /**
+         * Adds a download to the group
+         *
+         * @param future   Future returned by {@link #submit(Priority, Callable, Importer)}
+         * @param listener Called with the amount of completed downloads each time a download finishes
+         */
+        void add(CompletableFuture<ArrayList<PriceBar>> future, ProgressListener listener) {
+            futures.add(future);
+            future.whenComplete((bars, e) -> listener.update(completed.incrementAndGet()));
+        }
+
+        /**
+         * Waits for every download in the group to finish
+         *
+         * @throws InterruptedException Throws InterruptedException if the wait is interrupted by another process
+         */
+        void await() throws InterruptedException {
+            for (CompletableFuture<ArrayList<PriceBar>> future : futures)
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                }
+        }
+    }
+
+    /**
+     * Order in which queued downloads are started
+     */
+    enum Priority {LIVE, BACKFILL}
+
+    /**
+     * Writes a downloaded price history to the database
+     */
+    @FunctionalInterface
+    interface Importer {
+        void importBars(ArrayList<PriceBar> bars) throws SQLException;
+    }
+
+    /**
+     * Receives the amount of completed downloads in a {@link Progress} group
+     */
+    @FunctionalInterface
+    interface ProgressListener {
+        void update(int completed);
+    }
+
+    /**
+     * A single download, ordered by priority and then by submission order
+     */
+    private class Job implements Runnable, Comparable<Job> {
+        private final Priority priority;
+        private final long sequence;
+        private final Callable<ArrayList<PriceBar>> download;
+        private final Importer importer;
+        private final CompletableFuture<ArrayList<PriceBar>> result = new CompletableFuture<>();
+        private ArrayList<PriceBar> bars;
+
+        Job(Priority priority, long sequence, Callable<ArrayList<PriceBar>> download, Importer importer) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.download = download;
+            this.importer = importer;
+        }
+
+        @Override
+        public void run() {
+            try {
+                bars = download.call();
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+                return;
+            }
+
+            if (bars == null || bars.isEmpty()) {
+                result.complete(new ArrayList<>());
+                return;
+            }
+
+            try {
+                imports.put(this); //Blocks while the importer is behind, rather than holding every downloaded history in memory
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int compare = priority.compareTo(other.priority);
+
+            return compare != 0 ? compare : Long.compare(sequence, other.sequence);
+        }
+    }
+}
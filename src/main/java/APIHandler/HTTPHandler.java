@@ -0,0 +1,379 @@
+package APIHandler;
+
+import Utility.TradingCalendar;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+class HTTPHandler {
+    static private final int WORKER_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    static private final int MAX_CONNECTIONS_PER_HOST = 10;
+    static private final long BASE_BACKOFF = 500, MAX_BACKOFF = 30000;
+    static private final Duration CLOSE_SETTLING_TIME = Duration.ofMinutes(15);
+    static private final ExecutorService executor = Executors.newFixedThreadPool(WORKER_THREADS, r -> {
+        Thread thread = new Thread(r, "HTTP Handler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(MAX_CONNECTIONS_PER_HOST)); //Idle keep-alive connections kept per host
+    }
+
+    private final String name;
+    private final Map<String, String> requestProperties = new HashMap<>();
+    private volatile Proxy proxy = Proxy.NO_PROXY;
+    private RateLimiter rateLimiter = null;
+    private ToLongFunction<String> cachePolicy = url -> 0;
+    private int connectTimeout = 10000;
+    private int readTimeout = 30000;
+    private int maxAttempts = 5;
+
+    /**
+     * Creates a HTTP handler for a single API, sharing its worker threads and connection pool with all other handlers
+     *
+     * @param name Name of the API the handler is used for, shown in error messages
+     */
+    HTTPHandler(String name) {
+        this.name = name;
+        requestProperties.put("Accept-Encoding", "gzip");
+    }
+
+    /**
+     * Sets the proxy that requests are sent through
+     *
+     * @param proxy Proxy to connect through, or {@link Proxy#NO_PROXY} for a direct connection
+     */
+    void setProxy(Proxy proxy) {
+        this.proxy = proxy;
+    }
+
+    /**
+     * Sets the rate limiter that every request made by this handler (including retries) must acquire a permit from
+     *
+     * @param rateLimiter Rate limiter of the API, or null if the API is not limited
+     */
+    void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Sets how long responses from each endpoint may be served from the local {@link ResponseCache} before the server is asked again
+     *
+     * @param cachePolicy Function from a request URL to the time to live of its response in milliseconds (0 to never cache the response)
+     */
+    void setCachePolicy(ToLongFunction<String> cachePolicy) {
+        this.cachePolicy = cachePolicy;
+    }
+
+    /**
+     * Calculates a time to live that keeps price histories fresh while the market is shut, as they cannot change until the next session
+     *
+     * @return Time in milliseconds since the last session closed (plus a settling period for late prints), or 0 while the market is open
+     */
+    static long getClosedMarketTTL() {
+        Instant now = Instant.now();
+
+        if (TradingCalendar.isOpen(now)) return 0;
+
+        return Math.max(0, Duration.between(TradingCalendar.getLastClose(now).toInstant().plus(CLOSE_SETTLING_TIME), now).toMillis());
+    }
+
+    /**
+     * Deletes the cached response of a request, for when the API returned an error message with a successful status code
+     *
+     * @param url The request URL
+     */
+    void evict(String url) {
+        if (cachePolicy.applyAsLong(url) > 0) ResponseCache.evict(url);
+    }
+
+    /**
+     * Sets a header that is sent with every request made by this handler
+     *
+     * @param key   Header name (e.g. User-Agent)
+     * @param value Header value
+     */
+    void setRequestProperty(String key, String value) {
+        requestProperties.put(key, value);
+    }
+
+    /**
+     * Sets the connection and read timeouts of every request made by this handler
+     *
+     * @param connectTimeout Time in milliseconds to wait for a connection to be established
+     * @param readTimeout    Time in milliseconds to wait for data before the request is abandoned
+     */
+    void setTimeouts(int connectTimeout, int readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Sets how many times a request is attempted before it is considered failed
+     *
+     * @param maxAttempts Maximum number of attempts per request (1 disables retrying)
+     */
+    void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Queues a request on the shared worker threads, rather than blocking the calling thread
+     *
+     * @param url    The URL to request
+     * @param reader Callback that consumes the response body as it streams in
+     * @param <T>    Type of the value produced from the response body
+     * @return A future that completes with the value produced by the reader, or exceptionally if the request fails
+     */
+    <T> CompletableFuture<T> submit(String url, ResponseReader<T> reader) {
+        long ttl = cachePolicy.applyAsLong(url);
+        ResponseCache.Entry cached = ttl > 0 ? ResponseCache.get(url) : null;
+
+        if (cached != null && cached.isFresh(ttl)) //Cache hits do not use any of the API's budget
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return request(url, reader, false);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+
+        CompletableFuture<Void> permit = rateLimiter == null ? CompletableFuture.completedFuture(null) : rateLimiter.acquireAsync(); //Waits for the first permit without holding a worker thread
+
+        return permit.thenApplyAsync(v -> {
+            try {
+                return request(url, reader, true);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Performs a GET request on the calling thread, retrying with jittered exponential backoff if the server is unavailable or throttling requests
+     *
+     * @param url    The URL to request
+     * @param reader Callback that consumes the response body as it streams in
+     * @param <T>    Type of the value produced from the response body
+     * @return The value produced by the reader
+     * @throws IOException Throws IOException if the request fails due to server unavailability or connection refusal on every attempt
+     */
+    <T> T request(String url, ResponseReader<T> reader) throws IOException {
+        return request(url, reader, false);
+    }
+
+    /**
+     * Serves a request from the local cache if its response is still fresh, otherwise performs a GET request on the calling thread, retrying with jittered exponential backoff if the server is unavailable or throttling requests
+     *
+     * @param url        The URL to request
+     * @param reader     Callback that consumes the response body as it streams in
+     * @param permitHeld True if a rate limiter permit has already been acquired for the first attempt
+     * @param <T>        Type of the value produced from the response body
+     * @return The value produced by the reader
+     * @throws IOException Throws IOException if the request fails due to server unavailability or connection refusal on every attempt
+     */
+    private <T> T request(String url, ResponseReader<T> reader, boolean permitHeld) throws IOException {
+        long ttl = cachePolicy.applyAsLong(url);
+        ResponseCache.Entry cached = ttl > 0 ? ResponseCache.get(url) : null;
+
+        if (cached != null && cached.isFresh(ttl)) {
+            try {
+                return cached.read(reader);
+            } catch (IOException e) {
+                cached = null; //The entry was pruned or is unreadable, so fall back to the server
+            }
+        }
+
+        IOException lastException = null;
+
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (attempt > 0) backoff(attempt);
+            if (attempt > 0 || !permitHeld) acquirePermit();
+
+            try {
+                return attempt(url, reader, ttl, cached);
+            } catch (HTTPStatusException e) {
+                if (!e.isRetryable()) throw e;
+                if (e.getStatusCode() == 429 && rateLimiter != null) rateLimiter.backoff(BASE_BACKOFF << attempt);
+                lastException = e;
+            } catch (MalformedURLException | UnknownHostException | InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                lastException = e;
+            }
+        }
+
+        throw new IOException(name + " request failed after " + maxAttempts + " attempts: " + lastException.getMessage(), lastException);
+    }
+
+    /**
+     * Performs a single GET request, keeping the connection open for reuse once the body has been read
+     *
+     * @param url    The URL to request
+     * @param reader Callback that consumes the response body as it streams in
+     * @param ttl    Time to live of the response in the local cache in milliseconds (0 if the response is not cached)
+     * @param cached Stale cached response to revalidate with the server, or null if there is none
+     * @param <T>    Type of the value produced from the response body
+     * @return The value produced by the reader
+     * @throws IOException Throws IOException if the request fails due to server unavailability or connection refusal
+     */
+    private <T> T attempt(String url, ResponseReader<T> reader, long ttl, ResponseCache.Entry cached) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection(proxy);
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        for (Map.Entry<String, String> property : requestProperties.entrySet())
+            connection.setRequestProperty(property.getKey(), property.getValue());
+
+        if (cached != null) {
+            if (cached.getETag() != null) connection.setRequestProperty("If-None-Match", cached.getETag());
+            if (cached.getLastModified() != null) connection.setRequestProperty("If-Modified-Since", cached.getLastModified());
+        }
+
+        int status = connection.getResponseCode();
+
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+            cached.revalidated();
+            return cached.read(reader);
+        }
+
+        if (status >= 400) {
+            InputStream error = connection.getErrorStream();
+            if (error != null) error.close(); //Releases the connection back to the keep-alive pool
+            throw new HTTPStatusException(name, status);
+        }
+
+        try (InputStream body = decode(connection)) {
+            if (ttl > 0)
+                return ResponseCache.store(url, body, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), reader);
+
+            return reader.read(body);
+        }
+    }
+
+    /**
+     * Waits until the rate limiter allows another call to be made to the API
+     *
+     * @throws IOException Throws IOException if the daily limit has been reached or the wait is interrupted by another process
+     */
+    private void acquirePermit() throws IOException {
+        if (rateLimiter == null) return;
+
+        try {
+            rateLimiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Sleeps before retrying a request, using "full jitter" exponential backoff so concurrent retries are spread out
+     *
+     * @param attempt The number of attempts made so far
+     * @throws InterruptedIOException Throws InterruptedIOException if the sleep function is interrupted by another process
+     */
+    private void backoff(int attempt) throws InterruptedIOException {
+        long ceiling = Math.min(MAX_BACKOFF, BASE_BACKOFF << Math.min(attempt, 16));
+
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Opens the response body, decompressing it if the server sent it gzipped
+     *
+     * @param connection Connection to read the response from
+     * @return The (decompressed) response body
+     * @throws IOException Throws IOException if the response cannot be read
+     */
+    static private InputStream decode(HttpURLConnection connection) throws IOException {
+        InputStream body = connection.getInputStream();
+
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) return new GZIPInputStream(body);
+
+        return body;
+    }
+
+    /**
+     * Reads a response body line by line
+     *
+     * @param body Response body to read
+     * @return List of lines in the response, without line terminators
+     * @throws IOException Throws IOException if the response cannot be read
+     */
+    static ArrayList<String> readLines(InputStream body) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+
+        while ((line = reader.readLine()) != null) lines.add(line);
+
+        return lines;
+    }
+
+    /**
+     * Consumes a response body as it is streamed from the server
+     *
+     * @param <T> Type of the value produced from the response body
+     */
+    @FunctionalInterface
+    interface ResponseReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    /**
+     * Thrown when the server responds with an error status code
+     */
+    static class HTTPStatusException extends IOException {
+        static private final long serialVersionUID = 1L;
+
+        private final int statusCode;
+
+        HTTPStatusException(String name, int statusCode) {
+            super(name + " responded with HTTP " + statusCode);
+            this.statusCode = statusCode;
+        }
+
+        int getStatusCode() {
+            return statusCode;
+        }
+
+        boolean isRetryable() {
+            return statusCode == 429 || statusCode >= 500;
+        }
+    }
+}
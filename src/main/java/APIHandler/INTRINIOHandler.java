@@ -1,26 +1,27 @@
 package APIHandler;
 
-import Default.Controller;
 import Default.DatabaseHandler;
-import Default.Main;
-import javafx.scene.control.ProgressBar;
+import Default.Status;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.safety.Whitelist;
 import org.jsoup.select.Elements;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.*;
+import java.io.InputStream;
+import java.net.Authenticator;
+import java.net.PasswordAuthentication;
+import java.net.SocketTimeoutException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -30,13 +31,17 @@ import java.util.concurrent.TimeUnit;
  */
 
 public class INTRINIOHandler {
+    private static final long NEWS_LIST_TTL = TimeUnit.HOURS.toMillis(1);
     private static final String INTRINIO_CSV_CALL = "https://api.intrinio.com/news.csv?page_size=10000&ticker=";
     static private String INTRINIO_USERNAME;
     static private String INTRINIO_PASSWORD;
     static private final int PAGES = 0, ARTICLES = 1 /*Indices for accessing JSON metadata*/;
     static private int DOWNLOAD_THREADS = 1;
+    static private final int ARTICLE_BATCH_SIZE = 100;
+    static private final HTTPHandler http = new HTTPHandler("INTRINIO");
+    static private final HTTPHandler articleHttp = new HTTPHandler("News Article");
     static private DatabaseHandler dh;
-    static private ProgressBar pb;
+    static private final Status.Channel PROGRESS_CHANNEL = Status.Channel.NEWS_FEED;
     static private double progress = 0;
 
     /**
@@ -67,65 +72,42 @@ public class INTRINIOHandler {
      * @throws InterruptedException Throws InterruptedException if the sleep function is interrupted by another process
      */
     private static void getHistoricNews(String stock) throws IOException, SQLException, InterruptedException {
-        if (isOverLimit(0)) return;
+        if (RateLimiter.get("INTRINIO").isOverLimit(1)) return;
 
         int values[] = getCSVMetaData(stock);
         int storedArticles = Integer.parseInt(dh.executeQuery("SELECT COUNT(*) FROM newsarticles WHERE Symbol='" + stock + "';").get(0));
         int missingArticles = values[ARTICLES] - storedArticles;
 
-        Main.getController().updateCurrentTask("MISSING ARTICLES FOR '" + stock + "': " + missingArticles, false, false);
+        Status.updateCurrentTask("MISSING ARTICLES FOR '" + stock + "': " + missingArticles, false, false);
 
         if (missingArticles < 0)
-            Main.getController().updateCurrentTask("NEGATIVE MISSING ARTICLE VALUE - May be due to API inaccessibility", true, false);
+            Status.updateCurrentTask("NEGATIVE MISSING ARTICLE VALUE - May be due to API inaccessibility", true, false);
         if (missingArticles <= 0) return;
 
         int i = 1;
 
         while (i <= values[PAGES] && missingArticles > 0) missingArticles -= getCSVNews(stock, i++, missingArticles);
 
-        if (missingArticles > 0) Main.getController().updateCurrentTask("DID NOT DOWNLOAD ALL ARTICLES", true, false);
+        if (missingArticles > 0) Status.updateCurrentTask("DID NOT DOWNLOAD ALL ARTICLES", true, false);
     }
 
     /**
-     * Initialises the INTRINIOHandler class by setting the necessary DatabaseHandler and ProgressBar
+     * Initialises the INTRINIOHandler class by setting the necessary DatabaseHandler
      *
      * @param nddh News Downloader {@link DatabaseHandler} required to access the database without causing a deadlock
-     * @param pb   {@link ProgressBar} to show the progress of new downloads
      */
-    static public void initialise(DatabaseHandler nddh, ProgressBar pb) throws SQLException {
+    static public void initialise(DatabaseHandler nddh) throws SQLException {
         dh = nddh;
-        INTRINIOHandler.pb = pb;
 
         DOWNLOAD_THREADS = Integer.parseInt(dh.executeQuery("SELECT COALESCE(value, 1) FROM settings WHERE ID ='NEWS_ARTICLE_PARALLEL_DOWNLOAD';").get(0));
 
-        Main.getController().updateCurrentTask("Initialised News API Handler", false, false);
-    }
-
-    /**
-     * Retrieves the current amount of calls used for the INTRINIO API from the database Today
-     *
-     * @return The amount of calls made to the INTRINIO API Today
-     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
-     */
-    private static int getCurrentCalls() throws SQLException {
-        ArrayList<String> sCalls = dh.executeQuery("SELECT Calls FROM apicalls WHERE Date = CURDATE() AND Name='INTRINIO';");
-
-        if (!sCalls.isEmpty()) return Integer.parseInt(sCalls.get(0));
-
-        return 0;
-    }
-
-    /**
-     * Determines if any more API calls can be made Today
-     *
-     * @param callsToPerform The amount of calls that need to be made (usually 1 if accessing the API serially)
-     * @return True if the API limit has been exceeded for Today, false otherwise
-     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
-     */
-    private static boolean isOverLimit(int callsToPerform) throws SQLException {
-        int limit = Integer.parseInt(dh.executeQuery("SELECT DailyLimit FROM apimanagement WHERE Name='INTRINIO';").get(0));
+        http.setRateLimiter(RateLimiter.get("INTRINIO"));
+        http.setCachePolicy(request -> NEWS_LIST_TTL); //Article lists only change when new articles are published, so restarts can reuse them
+        articleHttp.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.11 (KHTML, like Gecko) Chrome/23.0.1271.95 Safari/537.11");
+        articleHttp.setTimeouts(5000, 10000);
+        articleHttp.setMaxAttempts(3);
 
-        return (callsToPerform + getCurrentCalls()) >= limit;
+        Status.updateCurrentTask("Initialised News API Handler", false, false);
     }
 
     /**
@@ -138,37 +120,37 @@ public class INTRINIOHandler {
      * @throws InterruptedException Throws InterruptedException if the sleep function is interrupted by another process
      */
     private static int[] getCSVMetaData(String stock) throws IOException, SQLException, InterruptedException {
-        URL url = new URL(INTRINIO_CSV_CALL + stock);
+        ArrayList<String> csv = submitRequest(INTRINIO_CSV_CALL + stock);
+
+        if (csv == null || csv.isEmpty()) return new int[]{0, 0};
 
-        TimeUnit.MILLISECONDS.sleep(1000); // To prevent blocking
+        String[] splitString = csv.get(0).split(",");
 
-        URLConnection connect = url.openConnection();
-        InputStreamReader isr = null;
+        int pages = Integer.parseInt(splitString[3].split(":")[1].trim());
+        int articles = Integer.parseInt(splitString[0].split(":")[1].trim());
+
+        return new int[]{pages, articles};
+    }
 
+    /**
+     * Submits a request to the INTRINIO API, marking the API limit as reached if the request is refused
+     *
+     * @param request The API URL containing the requested values
+     * @return The lines of the CSV response, or null if the request failed
+     */
+    private static ArrayList<String> submitRequest(String request) {
         try {
-            isr = new InputStreamReader(url.openStream());
+            return http.request(request, HTTPHandler::readLines);
         } catch (IOException e) {
-            HttpURLConnection http = (HttpURLConnection) connect;
-            if (http.getResponseCode() == 429) Main.getController().updateCurrentTask("Too many requests", true, false);
+            if (e instanceof HTTPHandler.HTTPStatusException && ((HTTPHandler.HTTPStatusException) e).getStatusCode() == 429)
+                Status.updateCurrentTask("Too many requests", true, false);
+            else
+                Status.updateCurrentTask(e.getMessage(), true, false);
 
-            ((HttpURLConnection) connect).disconnect();
-
-            dh.executeCommand("INSERT INTO apicalls VALUES ('INTRINIO', CURDATE(), 500) ON DUPLICATE KEY UPDATE Calls = 500;"); //Incase another system uses this program, this database value doesn't get updated, in which case if an error occurs, mark the api as "limit reached"
+            RateLimiter.get("INTRINIO").exhaust(); //Incase another system uses this program, the stored call count doesn't get updated, in which case if an error occurs, mark the api as "limit reached"
         }
 
-        if (isr == null) return new int[]{0, 0};
-
-        BufferedReader br = new BufferedReader(isr);
-        String curr;
-        curr=br.readLine();
-        String[] splitString = curr.split(",");
-
-        dh.executeCommand("INSERT INTO apicalls VALUES('INTRINIO', CURDATE(), 1) ON DUPLICATE KEY UPDATE Calls = Calls +1;");
-
-        int pages = Integer.parseInt(splitString[3].split(":")[1].trim());
-        int articles = Integer.parseInt(splitString[0].split(":")[1].trim());
-
-        return new int[]{pages, articles};
+        return null;
     }
 
     /**
@@ -183,48 +165,26 @@ public class INTRINIOHandler {
      * @throws InterruptedException Throws InterruptedException if the sleep function is interrupted by another process
      */
     private static int getCSVNews(String stock, int page, int missingArticles) throws IOException, SQLException, InterruptedException {
-        Main.getController().updateCurrentTask("Getting headlines for " + stock + " (Page " + page + ")", false, false);
-        URL url = new URL(INTRINIO_CSV_CALL + stock + "&page_number=" + page);
-
-        TimeUnit.MILLISECONDS.sleep(1000);
-        URLConnection connect = url.openConnection();
-        InputStreamReader isr = null;
-
-        try {
-            isr = new InputStreamReader(url.openStream());
-        } catch (IOException e) {
-            HttpURLConnection http = (HttpURLConnection) connect;
-            if (http.getResponseCode() == 429)
-                System.err.println("Too many requests");
+        Status.updateCurrentTask("Getting headlines for " + stock + " (Page " + page + ")", false, false);
+        ArrayList<String> csv = submitRequest(INTRINIO_CSV_CALL + stock + "&page_number=" + page);
 
-            ((HttpURLConnection) connect).disconnect();
-
-            dh.executeCommand("INSERT INTO apicalls VALUES ('INTRINIO', CURDATE(), 500) ON DUPLICATE KEY UPDATE Calls = 500;"); //Incase another system uses this program, this database value doesn't get updated, in which case if an error occurs, mark the api as "limit reached"
-        }
-
-        if (isr == null) {
-            Main.getController().updateCurrentTask("Could not connect URL Stream", false, false);
+        if (csv == null) {
+            Status.updateCurrentTask("Could not connect URL Stream", false, false);
             return -1;
         }
 
-        BufferedReader br = new BufferedReader(isr);
-        String curr;
-
         ArrayList<String> newsArray = new ArrayList<>();
 
-        Main.getController().updateCurrentTask("Downloading & Reading '" + stock + "' PAGE " + page + " news file...", false, false);
-
-        for (int i = 0; i < 2; i++) br.readLine(); //Remove preamble
+        Status.updateCurrentTask("Downloading & Reading '" + stock + "' PAGE " + page + " news file...", false, false);
 
-        while ((curr = br.readLine()) != null) newsArray.add(curr.replace("'", "").replace("`", "").replace("\"", ""));
+        for (int i = 2; i < csv.size(); i++) //Skip preamble
+            newsArray.add(csv.get(i).replace("'", "").replace("`", "").replace("\"", ""));
 
-        br.close();
-
-        Main.getController().updateCurrentTask("Sorting '" + stock + "' PAGE " + page + " news file into chronological order...", false, false);
+        Status.updateCurrentTask("Sorting '" + stock + "' PAGE " + page + " news file into chronological order...", false, false);
 
         //Preprocess news data to remove corrupted entries
         Set<String> newsSet = new LinkedHashSet<>(); //Linked hashset retains insertion order and removes duplicates
-        Main.getController().updateCurrentTask("Cleaning '" + stock + "' PAGE " + page + " news file...", false, false);
+        Status.updateCurrentTask("Cleaning '" + stock + "' PAGE " + page + " news file...", false, false);
 
         for (String news : newsArray) {
             String[] splitString = news.split(",");
@@ -261,7 +221,7 @@ public class INTRINIOHandler {
 
             if (news.split(",").length == 7) {
                 if (!(news.split(",")[4].matches("\\d{4}-\\d{2}-\\d{2}\\s\\d{2}:\\d{2}:\\d{2}\\s.\\d{4}") || news.split(",")[4].matches("\\d{4}-\\d{2}-\\d{2}\\s\\d{2}:\\d{2}:\\d{2}")))
-                    Main.getController().updateCurrentTask("NO DATE FOUND IN: " + news, true, false);
+                    Status.updateCurrentTask("NO DATE FOUND IN: " + news, true, false);
                 newsSet.add(news);
             }
         }
@@ -271,7 +231,7 @@ public class INTRINIOHandler {
         int downloaded = 0;
         int newsSize = newsSet.size();
 
-        Main.getController().updateCurrentTask("'" + stock + "' PAGE " + page + " WITH " + newsSize + " (Missing " + missingArticles + " articles)", false, false);
+        Status.updateCurrentTask("'" + stock + "' PAGE " + page + " WITH " + newsSize + " (Missing " + missingArticles + " articles)", false, false);
 
         dh.setAutoCommit(false);
 
@@ -284,14 +244,14 @@ public class INTRINIOHandler {
             date = date.split(" ")[0] + " " + date.split(" ")[1];
 
             if (!date.matches("\\d{4}-\\d{2}-\\d{2}\\s\\d{2}:\\d{2}:\\d{2}"))
-                Main.getController().updateCurrentTask("NO DATE FOUND IN: " + news, false, false);
+                Status.updateCurrentTask("NO DATE FOUND IN: " + news, false, false);
 
             String data = "'" + stock + "','" + title + "','" + summary + "','" + date + "','" + link + "'";
             String query = "SELECT 1 FROM newsarticles WHERE Symbol='" + stock + "' AND Headline='" + title + "' AND Published='" + date + "' AND URL ='" + link + "';";
             ArrayList<String> result = dh.executeQuery(query);
 
             if (result.isEmpty()) {
-                Main.getController().updateCurrentTask("Discovered News Article for " + stock + ": " + title, false, false);
+                Status.updateCurrentTask("Discovered News Article for " + stock + ": " + title, false, false);
                 String command;
 
                 command = "INSERT INTO newsarticles (Symbol, Headline,Description,Published,URL,Duplicate) VALUES (" + data + ", (SELECT COALESCE((SELECT * FROM (SELECT 1 FROM newsarticles WHERE Symbol='" + stock + "' AND (Headline='" + title + "' OR URL='" + link + "') LIMIT 1) as t),0)));";
@@ -315,107 +275,126 @@ public class INTRINIOHandler {
      * Downloads the content of news articles for all articles that are missing their main body from the database, given the URL retrieved from {@link APIHandler.INTRINIOHandler#getCSVNews(String, int, int)}
      *
      * @throws SQLException         Throws SQLException if there is an error with accessing the MySQL/MariaDB database
-     * @throws InterruptedException Throws InterruptedException if the sleep function is interrupted by another process
+     * @throws InterruptedException Throws InterruptedException if the download is interrupted by another process
      */
     public static void downloadArticles() throws SQLException, InterruptedException {
-        Main.getController().updateCurrentTask("Downloading missing news article content...", false, false);
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, pb);
+        Status.updateCurrentTask("Downloading missing news article content...", false, false);
+        Status.updateProgress(Status.INDETERMINATE, PROGRESS_CHANNEL);
         ArrayList<String> undownloadedArticles = dh.executeQuery("SELECT ID, URL FROM newsarticles WHERE Content IS NULL AND Blacklisted = 0 AND Redirected = 0 AND Duplicate = 0 AND URL != \"\";");
 
         if (undownloadedArticles == null || undownloadedArticles.isEmpty()) {
-            Controller.updateProgress(0, pb);
+            Status.updateProgress(0, PROGRESS_CHANNEL);
             return;
         }
 
-        Semaphore availableThreads = new Semaphore(DOWNLOAD_THREADS, false);
-
-        double t = undownloadedArticles.size() - 1;
-        progress = 0;
+        ArticleDownloader downloader = new ArticleDownloader(DOWNLOAD_THREADS);
+        BlockingQueue<String> results = new LinkedBlockingQueue<>();
 
         for (String article : undownloadedArticles) {
-            availableThreads.acquireUninterruptibly();
-            new Thread(() -> {
-                String[] splitArticle = article.split(",");
-                int id = Integer.parseInt(splitArticle[0]);
-
-                Main.getController().updateCurrentTask("Downloading news article " + splitArticle[0] + ": " + splitArticle[1], false, false);
-
-                String site = null;
-                int nullTimeout = 0;
-
-                while (site == null && nullTimeout++ < 10)
-                    try {
-                        site = downloadArticle(splitArticle[1]);
-                    } catch (FileNotFoundException e) {
-                        Main.getController().updateCurrentTask("Article is no longer available!", true, false);
-                        break;
-                    } catch (MalformedURLException e) {
-                        Main.getController().updateCurrentTask(e.getMessage(), true, false);
-                        if (!Objects.equals(splitArticle[1].substring(0, 3), "http"))
-                            splitArticle[1] = "http://" + splitArticle[1];
-                    } catch (ConnectException e) {
-                        Main.getController().updateCurrentTask("Connection error (Timed Out)", true, false);
-                    } catch (Exception e) {
-                        Main.getController().updateCurrentTask(e.getMessage(), true, false);
-                    }
+            String[] splitArticle = article.split(",");
+            int id = Integer.parseInt(splitArticle[0]);
 
-                try {
-                    if (site != null)
-                        if (Objects.equals(site, "redirect"))
-                            dh.executeCommand("UPDATE newsarticles SET Redirected = 1 WHERE ID = " + id + ";");
-                        else
-                            dh.executeCommand("UPDATE newsarticles SET Content='" + site + "' WHERE ID = " + id + ";");
-                    else
-                        dh.executeCommand("UPDATE newsarticles SET Blacklisted = 1 WHERE ID = " + id + ";"); //Blacklist if the document could not be retrieved
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    try {
-                        dh.executeCommand("UPDATE newsarticles SET Blacklisted = 1 WHERE ID = " + id + ";"); //Blacklist if the Content causes SQL error (i.e. truncation)
-                    } catch (SQLException e1) {
-                        e1.printStackTrace();
-                    }
-                }
+            downloader.submit(splitArticle[1], () -> downloadArticle(id, splitArticle[1]))
+                    .whenComplete((site, e) -> results.add(getArticleCommand(id, e == null ? site : null)));
+        }
+
+        double t = undownloadedArticles.size() - 1;
+        ArrayList<String> batch = new ArrayList<>();
 
-                Controller.updateProgress(++progress, t, pb);
-                availableThreads.release();
-            }).start();
+        for (int i = 0; i < undownloadedArticles.size(); i++) {
+            batch.add(results.take()); //Only this thread writes to the database, so the shared handler is never used concurrently
+            Status.updateProgress(i, t, PROGRESS_CHANNEL);
+
+            if (batch.size() >= ARTICLE_BATCH_SIZE || results.isEmpty()) {
+                sendArticleBatch(batch);
+                batch.clear();
+            }
         }
 
-        while (availableThreads.availablePermits() != DOWNLOAD_THREADS) TimeUnit.SECONDS.sleep(1);
+        Status.updateProgress(0, PROGRESS_CHANNEL);
+    }
+
+    /**
+     * Downloads the content of a single news article, reporting why the article could not be downloaded if it fails
+     *
+     * @param id  ID of the news article in the database
+     * @param url URL of the news article to download
+     * @return A future that completes with the news article content, "redirect" if the article redirects elsewhere, or null if the article could not be retrieved
+     */
+    private static CompletableFuture<String> downloadArticle(int id, String url) {
+        Status.updateCurrentTask("Downloading news article " + id + ": " + url, false, false);
+
+        String site = url.startsWith("http") ? url : "http://" + url;
+
+        return articleHttp.submit(site, body -> parseArticle(body, site)).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+
+            if (cause instanceof HTTPHandler.HTTPStatusException && ((HTTPHandler.HTTPStatusException) cause).getStatusCode() == 404)
+                Status.updateCurrentTask("Article is no longer available!", true, false);
+            else if (cause instanceof SocketTimeoutException)
+                Status.updateCurrentTask("Connection error (Timed Out)", true, false);
+            else
+                Status.updateCurrentTask(cause.getMessage(), true, false);
 
-        Controller.updateProgress(0, pb);
+            return null;
+        });
     }
 
     /**
-     * Scrapes the main content of a news article, given its URL
-     * @param url The URL of the news article to download
-     * @return The news article content
-     * @throws IOException Throws IOException if the request fails due to server unavailability or connection refusal
+     * Creates the SQL command that stores the result of downloading a news article
+     *
+     * @param id   ID of the news article in the database
+     * @param site The downloaded news article content, "redirect" if the article redirected or null if it could not be downloaded
+     * @return SQL command to update the news article record with
      */
-    private static String downloadArticle(String url) throws IOException {
-        URL site = new URL(url);
-        HttpURLConnection.setFollowRedirects(true);
-        HttpURLConnection conn = (HttpURLConnection) site.openConnection(); //Written by https://stackoverflow.com/questions/15057329/how-to-get-redirected-url-and-content-using-httpurlconnection
-        conn.setInstanceFollowRedirects(true);
-        conn.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.11 (KHTML, like Gecko) Chrome/23.0.1271.95 Safari/537.11");
-        conn.setConnectTimeout(5000);
-        conn.setReadTimeout(10000);
+    private static String getArticleCommand(int id, String site) {
+        if (site == null)
+            return "UPDATE newsarticles SET Blacklisted = 1 WHERE ID = " + id + ";"; //Blacklist if the document could not be retrieved
+        if (Objects.equals(site, "redirect"))
+            return "UPDATE newsarticles SET Redirected = 1 WHERE ID = " + id + ";";
 
-        conn.connect();
-        BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
+        return "UPDATE newsarticles SET Content='" + site + "' WHERE ID = " + id + ";";
+    }
 
-        String input;
-        StringBuilder html = new StringBuilder();
+    /**
+     * Sends a batch of news article updates to the database, falling back to individual commands if the batch fails so that a single bad article can be blacklisted
+     *
+     * @param batch List of SQL commands created by {@link #getArticleCommand(int, String)}
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    private static void sendArticleBatch(ArrayList<String> batch) throws SQLException {
+        dh.setAutoCommit(false);
 
-        while ((input = br.readLine()) != null) html.append(input);
+        try {
+            for (String command : batch) dh.addBatchCommand(command);
+            dh.executeBatch();
+            dh.setAutoCommit(true);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            dh.setAutoCommit(true);
 
-        conn.disconnect();
-        br.close();
+            for (String command : batch)
+                try {
+                    dh.executeCommand(command);
+                } catch (SQLException e1) {
+                    String id = command.substring(command.lastIndexOf('=') + 1, command.length() - 1).trim();
+                    dh.executeCommand("UPDATE newsarticles SET Blacklisted = 1 WHERE ID = " + id + ";"); //Blacklist if the Content causes SQL error (i.e. truncation)
+                }
+        }
+    }
 
+    /**
+     * Scrapes the main content of a news article as it is downloaded
+     * @param body The HTML response body of the news article
+     * @param url The URL of the news article, used to resolve relative links
+     * @return The news article content
+     * @throws IOException Throws IOException if the response cannot be read
+     */
+    private static String parseArticle(InputStream body, String url) throws IOException {
         StringBuilder strippedHTML = new StringBuilder();
 
         try {
-            Document doc = Jsoup.parse(html.toString());
+            Document doc = Jsoup.parse(body, null, url);
             Elements p = doc.getElementsByTag("p");
 
             int i = 0;
@@ -424,7 +403,9 @@ public class INTRINIOHandler {
                 if (i++ < p.size()) strippedHTML.append(" ");
             }
 
-            if (Objects.equals(html.toString().toLowerCase(), "redirect")) return "redirect";
+            if (Objects.equals(doc.text().toLowerCase(), "redirect")) return "redirect";
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -448,7 +429,7 @@ public class INTRINIOHandler {
         progress = 0;
         for (String symbol : stockList) {
             getHistoricNews(symbol);
-            Controller.updateProgress(++progress, t, pb);
+            Status.updateProgress(++progress, t, PROGRESS_CHANNEL);
             dh.sendSQLFileToDatabase(true);
         }
     }
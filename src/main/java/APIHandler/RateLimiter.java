@@ -0,0 +1,342 @@
+package APIHandler;
+
+import Default.DatabaseHandler;
+import Default.Status;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class RateLimiter {
+    static private final int FLUSH_CALLS = 25;
+    static private final int FLUSH_INTERVAL = 30;
+    static private final Map<String, RateLimiter> limiters = new HashMap<>();
+    static private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Rate Limiter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //Counters are written on their own thread, so that a slow database cannot delay the permits completed by the scheduler
+    static private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Rate Limiter Flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    static private DatabaseHandler dh;
+
+    private final String name;
+    private TokenBucket secondBucket, minuteBucket;
+    private int dailyLimit;
+    private int callsToday;
+    private int unflushedCalls = 0;
+    private long blockedUntil = System.nanoTime();
+    private LocalDate today = LocalDate.now();
+
+    /**
+     * Creates an unlimited rate limiter for a single API
+     *
+     * @param name Name of the API, as stored in the apimanagement table
+     */
+    private RateLimiter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Sets the budgets of this API
+     *
+     * @param dailyLimit  Maximum amount of calls per day (0 for unlimited)
+     * @param delay       Minimum time between calls in milliseconds (0 for unlimited)
+     * @param minuteLimit Maximum amount of calls per minute (0 for unlimited)
+     * @param callsToday  Amount of calls already made Today
+     */
+    private synchronized void setLimits(int dailyLimit, int delay, int minuteLimit, int callsToday) {
+        this.dailyLimit = dailyLimit;
+        this.callsToday = Math.max(this.callsToday, callsToday);
+        secondBucket = delay > 0 ? new TokenBucket(1, 1000.0 / delay) : null;
+        minuteBucket = minuteLimit > 0 ? new TokenBucket(minuteLimit, minuteLimit / 60.0) : null;
+    }
+
+    /**
+     * Initialises a rate limiter for every API in the apimanagement table, restoring the amount of calls that have already been made Today
+     *
+     * @param amdh API Manager {@link DatabaseHandler} used to load the limits and persist the daily call counters
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    static public void initialise(DatabaseHandler amdh) throws SQLException {
+        dh = amdh;
+
+        HashMap<String, Integer> calls = new HashMap<>();
+        for (String record : dh.executeQuery("SELECT Name, Calls FROM apicalls WHERE Date = CURDATE();")) {
+            String[] splitRecord = record.split(",");
+            calls.put(splitRecord[0], Integer.parseInt(splitRecord[1]));
+        }
+
+        synchronized (limiters) {
+            for (String record : dh.executeQuery("SELECT * FROM apimanagement;")) {
+                String[] splitRecord = record.split(",");
+                int minuteLimit = splitRecord.length > 3 ? parseLimit(splitRecord[3]) : 0; //Databases created before per-minute limits were introduced have no MinuteLimit column
+
+                limiters.computeIfAbsent(splitRecord[0], RateLimiter::new).setLimits(parseLimit(splitRecord[1]), parseLimit(splitRecord[2]), minuteLimit, calls.getOrDefault(splitRecord[0], 0));
+            }
+        }
+
+        flusher.scheduleWithFixedDelay(RateLimiter::flushAll, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.SECONDS);
+
+        Status.updateCurrentTask("Initialised API Rate Limiter", false, false);
+    }
+
+    /**
+     * Parses a limit column from the apimanagement table
+     *
+     * @param value Value of the column
+     * @return The limit, or 0 if no limit is set
+     */
+    static private int parseLimit(String value) {
+        if (value == null || value.equals("null")) return 0;
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * Retrieves the rate limiter for the given API
+     *
+     * @param name Name of the API, as stored in the apimanagement table
+     * @return The rate limiter for the API (an unlimited rate limiter if the API is not managed)
+     */
+    static public RateLimiter get(String name) {
+        synchronized (limiters) {
+            return limiters.computeIfAbsent(name, RateLimiter::new);
+        }
+    }
+
+    /**
+     * Persists every unsaved daily call counter to the database
+     */
+    static public void flushAll() {
+        ArrayList<RateLimiter> toFlush;
+
+        synchronized (limiters) {
+            toFlush = new ArrayList<>(limiters.values());
+        }
+
+        for (RateLimiter limiter : toFlush) limiter.flush();
+    }
+
+    /**
+     * Reserves the next available call for this API, blocking until the per-second and per-minute budgets allow it to be made
+     *
+     * @throws LimitExceededException Throws LimitExceededException if the daily budget for this API has been used
+     * @throws InterruptedException   Throws InterruptedException if the sleep function is interrupted by another process
+     */
+    public void acquire() throws LimitExceededException, InterruptedException {
+        long wait = reserve();
+
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    /**
+     * Reserves the next available call for this API without blocking the calling thread
+     *
+     * @return A future that completes when the call can be made, or exceptionally with a {@link LimitExceededException} if the daily budget has been used
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+
+        try {
+            long wait = reserve();
+
+            if (wait > 0) scheduler.schedule(() -> permit.complete(null), wait, TimeUnit.NANOSECONDS);
+            else permit.complete(null);
+        } catch (LimitExceededException e) {
+            permit.completeExceptionally(e);
+        }
+
+        return permit;
+    }
+
+    /**
+     * Takes a token from each budget and counts the call against the daily limit
+     *
+     * @return The time in nanoseconds until the reserved call may be made
+     * @throws LimitExceededException Throws LimitExceededException if the daily budget for this API has been used
+     */
+    private long reserve() throws LimitExceededException {
+        long wait = 0;
+        boolean flush;
+
+        synchronized (this) {
+            rollOver();
+
+            if (dailyLimit > 0 && callsToday >= dailyLimit) throw new LimitExceededException(name);
+
+            long now = System.nanoTime();
+            if (secondBucket != null) wait = secondBucket.reserve(now);
+            if (minuteBucket != null) wait = Math.max(wait, minuteBucket.reserve(now));
+            wait = Math.max(wait, blockedUntil - now);
+
+            callsToday++;
+            flush = ++unflushedCalls >= FLUSH_CALLS;
+        }
+
+        if (flush) flusher.execute(this::flush);
+
+        return wait;
+    }
+
+    /**
+     * Delays all future calls to this API, used when the API responds that it is being called too frequently
+     *
+     * @param milliseconds Time to wait before the next call can be made
+     */
+    public synchronized void backoff(long milliseconds) {
+        blockedUntil = Math.max(blockedUntil, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milliseconds));
+    }
+
+    /**
+     * Marks the daily budget as used, for when the API refuses calls before the limit stored in the database is reached (e.g. if another system is using the same account)
+     */
+    public void exhaust() {
+        synchronized (this) {
+            rollOver();
+            unflushedCalls += Math.max(0, dailyLimit - callsToday);
+            callsToday = Math.max(callsToday, dailyLimit);
+        }
+
+        flush();
+    }
+
+    /**
+     * Determines if any more API calls can be made Today
+     *
+     * @param callsToPerform The amount of calls that need to be made (usually 1 if accessing the API serially)
+     * @return True if making the given amount of calls would exceed the daily limit, false otherwise
+     */
+    public synchronized boolean isOverLimit(int callsToPerform) {
+        rollOver();
+
+        return dailyLimit > 0 && callsToday + callsToPerform > dailyLimit;
+    }
+
+    /**
+     * Retrieves how many API calls have been made Today, to allow for call limiting
+     *
+     * @return The number of API calls made Today
+     */
+    public synchronized int getCurrentCalls() {
+        rollOver();
+
+        return callsToday;
+    }
+
+    /**
+     * Resets the daily counter when the date changes, saving the previous day's calls first (on the flusher thread, as this is called while the limiter is locked)
+     */
+    private synchronized void rollOver() {
+        LocalDate date = LocalDate.now();
+
+        if (date.equals(today)) return;
+
+        if (unflushedCalls > 0 && dh != null) {
+            LocalDate day = today;
+            int calls = unflushedCalls;
+            flusher.execute(() -> write(day, calls));
+        }
+
+        unflushedCalls = 0;
+        today = date;
+        callsToday = 0;
+    }
+
+    /**
+     * Adds the calls made since the last flush to the apicalls table, without holding the limiter's lock during the database write
+     */
+    private void flush() {
+        LocalDate day;
+        int calls;
+
+        synchronized (this) {
+            if (unflushedCalls == 0 || dh == null) return;
+
+            day = today;
+            calls = unflushedCalls;
+            unflushedCalls = 0;
+        }
+
+        write(day, calls);
+    }
+
+    /**
+     * Adds calls to a day's counter in the apicalls table. If the write fails, the calls are kept to be written by a later flush
+     *
+     * @param day   Day the calls were made
+     * @param calls Amount of calls to add
+     */
+    private void write(LocalDate day, int calls) {
+        try {
+            dh.executeCommand("INSERT INTO apicalls VALUES('" + name + "', '" + day + "', " + calls + ") ON DUPLICATE KEY UPDATE Calls = Calls + " + calls + ";");
+        } catch (SQLException e) {
+            e.printStackTrace();
+
+            synchronized (this) {
+                if (day.equals(today)) {
+                    unflushedCalls += calls;
+                    return;
+                }
+            }
+
+            flusher.schedule(() -> write(day, calls), FLUSH_INTERVAL, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Budget of calls that refills at a constant rate, allowing short bursts up to its capacity
+     */
+    static private class TokenBucket {
+        private final double capacity, tokensPerNano;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        TokenBucket(double capacity, double tokensPerSecond) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+            tokens = capacity;
+        }
+
+        /**
+         * Takes a token, letting the balance go negative so that callers queue behind each other
+         *
+         * @param now Current value of {@link System#nanoTime()}
+         * @return Time in nanoseconds until the token becomes available
+         */
+        long reserve(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            tokens -= 1;
+
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+        }
+    }
+
+    /**
+     * Thrown when the daily budget of an API has been used
+     */
+    static public class LimitExceededException extends IOException {
+        static private final long serialVersionUID = 1L;
+
+        LimitExceededException(String name) {
+            super("Daily API limit reached for " + name);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package APIHandler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+class ResponseCache {
+    static private final File CACHE_DIRECTORY = new File(System.getProperty("user.dir") + "/res/cache");
+    static private final long MAX_AGE = TimeUnit.DAYS.toMillis(7);
+    static private final Pattern CREDENTIALS = Pattern.compile("(?i)([?&])(apikey|api_key|key|token|password)=[^&]*");
+
+    static {
+        if (!CACHE_DIRECTORY.exists() && !CACHE_DIRECTORY.mkdirs())
+            System.err.println("Could not create response cache directory '" + CACHE_DIRECTORY.getAbsolutePath() + "'");
+
+        prune();
+    }
+
+    /**
+     * Removes the credentials from a request URL, so that responses are shared between API keys and keys are never written to disk
+     *
+     * @param url The request URL
+     * @return The request URL without any credential parameters
+     */
+    static String sanitise(String url) {
+        return CREDENTIALS.matcher(url).replaceAll("$1").replace("?&", "?").replace("&&", "&");
+    }
+
+    /**
+     * Derives the cache key of a request, as the SHA-256 hash of its URL without credentials
+     *
+     * @param url The request URL
+     * @return Hexadecimal cache key
+     */
+    static private String getKey(String url) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(sanitise(url).getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder();
+
+            for (byte b : hash) key.append(String.format("%02x", b));
+
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Looks up the cached response of a request
+     *
+     * @param url The request URL
+     * @return The cached response, or null if the request has never been cached
+     */
+    static Entry get(String url) {
+        String key = getKey(url);
+        File body = new File(CACHE_DIRECTORY, key + ".body"), meta = new File(CACHE_DIRECTORY, key + ".meta");
+
+        if (!body.exists() || !meta.exists()) return null;
+
+        Properties properties = new Properties();
+
+        try (InputStream in = new FileInputStream(meta)) {
+            properties.load(in);
+            return new Entry(key, Long.parseLong(properties.getProperty("Stored", "0")), properties.getProperty("ETag"), properties.getProperty("Last-Modified"));
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the cached response of a request (e.g. if the API returned an error message with a successful status code)
+     *
+     * @param url The request URL
+     */
+    static void evict(String url) {
+        String key = getKey(url);
+
+        new File(CACHE_DIRECTORY, key + ".body").delete();
+        new File(CACHE_DIRECTORY, key + ".meta").delete();
+    }
+
+    /**
+     * Reads a response while writing it to the cache, only committing it to the cache once the reader has consumed it successfully
+     *
+     * @param url          The request URL
+     * @param body         Response body from the server
+     * @param eTag         ETag header of the response (may be null)
+     * @param lastModified Last-Modified header of the response (may be null)
+     * @param reader       Callback that consumes the response body
+     * @param <T>          Type of the value produced from the response body
+     * @return The value produced by the reader
+     * @throws IOException Throws IOException if the response cannot be read
+     */
+    static <T> T store(String url, InputStream body, String eTag, String lastModified, HTTPHandler.ResponseReader<T> reader) throws IOException {
+        String key = getKey(url);
+        File temp = File.createTempFile(key, ".tmp", CACHE_DIRECTORY);
+        T value;
+
+        try (OutputStream out = new FileOutputStream(temp); TeeInputStream tee = new TeeInputStream(body, out)) {
+            value = reader.read(tee);
+            tee.drain(); //Caches the full response, even if the reader stopped early
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("URL", sanitise(url));
+        properties.setProperty("Stored", String.valueOf(System.currentTimeMillis()));
+        if (eTag != null) properties.setProperty("ETag", eTag);
+        if (lastModified != null) properties.setProperty("Last-Modified", lastModified);
+
+        File metaTemp = File.createTempFile(key, ".tmp", CACHE_DIRECTORY);
+        try (OutputStream out = new FileOutputStream(metaTemp)) {
+            properties.store(out, null);
+        }
+
+        Files.move(temp.toPath(), new File(CACHE_DIRECTORY, key + ".body").toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(metaTemp.toPath(), new File(CACHE_DIRECTORY, key + ".meta").toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return value;
+    }
+
+    /**
+     * Deletes cached responses that have not been refreshed for {@link #MAX_AGE}, along with any partially written files
+     */
+    static private void prune() {
+        File[] files = CACHE_DIRECTORY.listFiles();
+        if (files == null) return;
+
+        long cutoff = System.currentTimeMillis() - MAX_AGE;
+
+        for (File file : files)
+            if (file.lastModified() < cutoff || (file.getName().endsWith(".tmp") && file.lastModified() < System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)))
+                file.delete();
+    }
+
+    /**
+     * A response held in the cache
+     */
+    static class Entry {
+        private final String key;
+        private final long stored;
+        private final String eTag, lastModified;
+
+        private Entry(String key, long stored, String eTag, String lastModified) {
+            this.key = key;
+            this.stored = stored;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Determines whether the response can be used without contacting the server
+         *
+         * @param ttl Time to live of the response in milliseconds
+         * @return True if the response was stored (or revalidated) within the time to live
+         */
+        boolean isFresh(long ttl) {
+            return System.currentTimeMillis() - stored < ttl;
+        }
+
+        String getETag() {
+            return eTag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Marks the response as fresh again, after the server confirmed that it has not changed
+         *
+         * @throws IOException Throws IOException if the cache metadata cannot be written
+         */
+        void revalidated() throws IOException {
+            File meta = new File(CACHE_DIRECTORY, key + ".meta");
+            Properties properties = new Properties();
+
+            try (InputStream in = new FileInputStream(meta)) {
+                properties.load(in);
+            }
+
+            properties.setProperty("Stored", String.valueOf(System.currentTimeMillis()));
+
+            try (OutputStream out = new FileOutputStream(meta)) {
+                properties.store(out, null);
+            }
+        }
+
+        /**
+         * Streams the cached response body to a reader
+         *
+         * @param reader Callback that consumes the response body
+         * @param <T>    Type of the value produced from the response body
+         * @return The value produced by the reader
+         * @throws IOException Throws IOException if the cached response has been removed or cannot be read
+         */
+        <T> T read(HTTPHandler.ResponseReader<T> reader) throws IOException {
+            try (InputStream in = new FileInputStream(new File(CACHE_DIRECTORY, key + ".body"))) {
+                return reader.read(in);
+            }
+        }
+    }
+
+    /**
+     * Copies everything read from a stream into a second stream
+     */
+    static private class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+
+        TeeInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) copy.write(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) copy.write(b, off, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            byte[] buffer = new byte[8192];
+            int read;
+
+            while (skipped < n && (read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) > 0) skipped += read;
+
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        void drain() throws IOException {
+            byte[] buffer = new byte[8192];
+
+            while (read(buffer, 0, buffer.length) > 0) ;
+        }
+    }
+}
@@ -1,16 +1,19 @@
 package APIHandler;
 
-import Default.Controller;
 import Default.DatabaseHandler;
-import Default.Main;
+import Default.Status;
+import Processing.PriceBar;
 import Processing.StockRecordParser;
-import Records.LiveStockRecord;
-import javafx.scene.control.ProgressBar;
 
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Luke K. Rose <psylr5@nottingham.ac.uk>
@@ -22,8 +25,10 @@ public class StockQuoteDownloader {
     static private DatabaseHandler databaseHandler = null;
     static private AlphaVantageHandler alphaVantageHandler = null;
     static private BarChartHandler barChartHandler = null;
-    static private ProgressBar stockProgressBar;
-    static private int c = 0;
+    static private final Status.Channel PROGRESS_CHANNEL = Status.Channel.STOCK_FEED;
+    static private final int FETCH_THREADS = 8, IMPORT_BACKLOG = 16;
+    static private final FetchPipeline pipeline = new FetchPipeline("Stock Quote Downloader", FETCH_THREADS, IMPORT_BACKLOG);
+    static private SyncPlanner syncPlanner;
     static private STOCK_API useAPI;
     static private boolean priceUpdating = false;
 
@@ -33,15 +38,14 @@ public class StockQuoteDownloader {
      * @param dh       Stock Quote Downloader Database Handler
      * @param avh      {@link AlphaVantageHandler} (with API key initialised)
      * @param bch      {@link BarChartHandler} (with API key initialised)
-     * @param pb       {@link ProgressBar} to show stock download progress
      * @param stockApi {@link STOCK_API} enum value to determine which API to use (AlphaVantage or BarChart)
      */
-    static public void initialise(DatabaseHandler dh, AlphaVantageHandler avh, BarChartHandler bch, ProgressBar pb, STOCK_API stockApi) {
+    static public void initialise(DatabaseHandler dh, AlphaVantageHandler avh, BarChartHandler bch, STOCK_API stockApi) {
         databaseHandler = dh;
         alphaVantageHandler = avh;
         barChartHandler = bch;
-        stockProgressBar = pb;
         useAPI = stockApi;
+        syncPlanner = new SyncPlanner(dh);
 
         System.out.println("Initialised Stock Quote Downloader");
     }
@@ -90,10 +94,10 @@ public class StockQuoteDownloader {
      * @param stock      Stock ticker to download data for (e.g. AAL, AAPL, BIIB etc.)
      * @param interval   {@link Interval} enum value to determine if the data to be downloaded is Daily or Intraday data
      * @param outputSize {@link OutputSize} enum value to determine if the data should be downloaded in full or compacted (latest 100 values)
-     * @return A list of stock price data records for the given stock
+     * @return A list of stock price bars for the given stock
      * @throws IOException Throws IOException if the request fails due to server unavailability or connection refusal
      */
-    private static ArrayList<String> downloadStockData(String stock, Interval interval, OutputSize outputSize) throws IOException {
+    private static ArrayList<PriceBar> downloadStockData(String stock, Interval interval, OutputSize outputSize) throws IOException {
         if (databaseHandler == null || alphaVantageHandler == null) return null;
 
         String url = "https://www.alphavantage.co/query?",
@@ -103,244 +107,238 @@ public class StockQuoteDownloader {
                 apiKey = "&apikey=" + alphaVantageHandler.getApiKey(),
                 time = (interval == Interval.INTRADAY) ? "&interval=1min" : "";
 
-        return alphaVantageHandler.submitRequest(url + dataType + symbol + time + size + apiKey + "&datatype=csv");
+        return alphaVantageHandler.submitBarRequest(url + dataType + symbol + time + size + apiKey + "&datatype=csv");
     }
 
-    /**
-     * Determines whether or not a download should be performed in full or compacted, based on the latest data in the database
-     *
-     * @param stock    Stock ticker to check the latest date of (e.g. AAPL for Apple Inc.)
-     * @param interval {@link Interval} Enum value to check either Daily or Intraday data
-     * @return True if the data should be downloaded in full or False if only the latest 100 records are required
-     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
-     */
-    private static boolean isOutOfDate(String stock, Interval interval) throws SQLException {
-        switch (interval) {
-            case DAILY:
-                return Integer.parseInt(databaseHandler.executeQuery("SELECT COUNT(*) FROM dailystockprices WHERE Symbol = '" + stock + "' AND TradeDate >= SUBDATE(CURDATE(), 100)").get(0)) == 0;
-            case INTRADAY:
-                return Integer.parseInt(databaseHandler.executeQuery("SELECT COUNT(*) FROM intradaystockprices WHERE Symbol = '" + stock + "' AND TradeDateTime >= DATE_SUB(CURRENT_TIMESTAMP,INTERVAL 100 MINUTE)").get(0)) == 0;
-        }
-        return true;
-    }
-
-
     /**
      * Downloads the entirety of an index's price history (for use in comparing an index's component stock prices with the index price)
      *
      * @param index Index ticker to download the history for (e.g. ^NDX for NASDAQ100)
-     * @return A list of historic price records for an index
+     * @return A list of historic daily price bars for an index
      * @throws IOException Throws IOException if the request fails due to server unavailability or connection refusal
      */
-    static public ArrayList<String> downloadIndexHistory(String index) throws IOException {
+    static public ArrayList<PriceBar> downloadIndexHistory(String index) throws IOException {
         return downloadStockData(index, Interval.DAILY, OutputSize.FULL);
     }
 
     /**
-     * Downloads the stock Daily and/or Intradaily price history for a given list of stock tickers
+     * Fills the gaps in the stock Daily and/or Intradaily price history for a given list of stock tickers, requesting only the missing ranges from the cheapest provider
      * @param stocks List of stock tickers to download the price history for (e.g. AAL, AAPL, BIIB etc.)
      * @param downloadDaily True if daily price data is to be downloaded, false otherwise
      * @param downloadIntraday True if intraday price data is to be downloaded, false otherwise
-     * @param forceCompact True if the download should ALWAYS download the latest 100 records, rather than download full history
+     * @param forceCompact True if the download should ALWAYS download the latest 100 records, rather than planning which ranges are missing
      * @throws InterruptedException Throws InterruptedException if the sleep function is interrupted by another process
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    static public void downloadStockHistory(ArrayList<String> stocks, Boolean downloadDaily, Boolean downloadIntraday, Boolean forceCompact) throws InterruptedException {
-        int t = stocks.size() - 1;
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, stockProgressBar);
-
+    static public void downloadStockHistory(ArrayList<String> stocks, Boolean downloadDaily, Boolean downloadIntraday, Boolean forceCompact) throws InterruptedException, SQLException {
         if (!downloadDaily && !downloadIntraday) return;
 
-        if(downloadDaily){
-            ArrayList<Thread> threads = new ArrayList<>();
-            for (String symbol : stocks) {
-                Thread downloadThread = new Thread(() -> {
-                    try {
-                        ArrayList<String> temp;
-                        if (isOutOfDate(symbol, Interval.DAILY) && !forceCompact)
-                            temp = downloadStockData(symbol, Interval.DAILY, OutputSize.FULL);
-                        else
-                            temp = downloadStockData(symbol, Interval.DAILY, OutputSize.COMPACT);
-
-                        System.out.println("Downloaded quote history of " + symbol);
-
-                        if (temp != null && !temp.isEmpty())
-                            StockRecordParser.importDailyMarketData(temp, symbol);
-
-                        System.out.println("Successully committed " + symbol + " history to the database!");
-                    } catch (Exception e) {
-                        e.printStackTrace(); }
-
-                    Controller.updateProgress(c++, t, stockProgressBar);
-                });
-                threads.add(downloadThread);
-                downloadThread.start();
-            }
-            for (Thread thread : threads) thread.join();
+        Status.updateProgress(Status.INDETERMINATE, PROGRESS_CHANNEL);
+
+        ArrayList<Interval> intervals = new ArrayList<>();
+        if (downloadDaily) intervals.add(Interval.DAILY);
+        if (downloadIntraday) intervals.add(Interval.INTRADAY);
+
+        int t = stocks.size() * intervals.size();
+        FetchPipeline.Progress progress = new FetchPipeline.Progress();
+
+        for (String symbol : stocks)
+            for (Interval interval : intervals)
+                progress.add(syncStockHistory(symbol, interval, forceCompact, new AtomicBoolean()), c -> Status.updateProgress(c, t, PROGRESS_CHANNEL));
+
+        progress.await();
+
+        Status.updateProgress(0, t, PROGRESS_CHANNEL);
+    }
+
+    /**
+     * Fills the gaps in the Daily and/or Intradaily price history of a single stock without waiting for the download, so that dependent processing can start as soon as that stock has been imported
+     * @param symbol Stock ticker to download the price history for (e.g. AAPL for Apple Inc.)
+     * @param downloadDaily True if daily price data is to be downloaded, false otherwise
+     * @param downloadIntraday True if intraday price data is to be downloaded, false otherwise
+     * @return A future that completes once the history has been imported, with True if any stored prices changed
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    static public CompletableFuture<Boolean> downloadStockHistory(String symbol, boolean downloadDaily, boolean downloadIntraday) throws SQLException {
+        AtomicBoolean changed = new AtomicBoolean();
+        CompletableFuture<ArrayList<PriceBar>> daily = downloadDaily ? syncStockHistory(symbol, Interval.DAILY, false, changed) : CompletableFuture.completedFuture(null);
+        CompletableFuture<ArrayList<PriceBar>> intraday = downloadIntraday ? syncStockHistory(symbol, Interval.INTRADAY, false, changed) : CompletableFuture.completedFuture(null);
+
+        return CompletableFuture.allOf(daily, intraday).thenApply(v -> changed.get());
+    }
+
+    /**
+     * Queues the download of the gaps in a single stock's Daily or Intradaily price history
+     * @param symbol Stock ticker to download the price history for
+     * @param interval {@link Interval} enum value of the price history to fill
+     * @param forceCompact True if the download should ALWAYS download the latest 100 records, rather than planning which ranges are missing
+     * @param changed Set to True once the import has changed any stored prices
+     * @return A future that completes with the downloaded bars once they have been imported
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    private static CompletableFuture<ArrayList<PriceBar>> syncStockHistory(String symbol, Interval interval, boolean forceCompact, AtomicBoolean changed) throws SQLException {
+        if (forceCompact)
+            return pipeline.submit(FetchPipeline.Priority.BACKFILL, () -> downloadStockData(symbol, interval, OutputSize.COMPACT), bars -> {
+                if (interval == Interval.DAILY ? StockRecordParser.importDailyMarketData(bars, symbol) : StockRecordParser.importIntradayMarketData(bars, symbol))
+                    changed.set(true);
+            });
+
+        SyncPlanner.Plan plan = syncPlanner.plan(symbol, interval, barChartHandler != null && !RateLimiter.get("BarChart").isOverLimit(1));
+
+        if (plan.isComplete()) {
+            syncPlanner.commit(plan);
+            return CompletableFuture.completedFuture(new ArrayList<>());
         }
 
-        Controller.updateProgress(c = 0, t, stockProgressBar);
-        if(downloadIntraday){
-            ArrayList<Thread> threads = new ArrayList<>();
-            for (String symbol : stocks) {
-                Thread downloadThread = new Thread(() -> {
-                    try {
-                        ArrayList<String> temp;
-                        System.out.println("Downloading intraday history of " + symbol + "...");
-                        if (isOutOfDate(symbol, Interval.INTRADAY) && !forceCompact)
-                            temp = downloadStockData(symbol, Interval.INTRADAY, OutputSize.FULL);
-                        else
-                            temp = downloadStockData(symbol, Interval.INTRADAY, OutputSize.COMPACT);
-                        System.out.println("Downloaded intraday history of " + symbol);
-
-                        new Thread(() -> {
-                            try {
-                                StockRecordParser.importIntradayMarketData(temp, symbol);
-                                System.out.println("Successully committed " + symbol + " intraday history to the database!");
-                            } catch (SQLException e) {
-                                e.printStackTrace();
-                            }
-                        }).start();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-
-                    Controller.updateProgress(++c, t, stockProgressBar);
-                });
-                threads.add(downloadThread);
-                downloadThread.start();
-            }
-
-            for (Thread thread : threads) thread.join();
-
-            Controller.updateProgress(0, t, stockProgressBar);
+        return pipeline.submit(FetchPipeline.Priority.BACKFILL, () -> downloadMissingData(plan), bars -> {
+            if (StockRecordParser.importMissingData(plan.filter(bars), symbol, interval == Interval.INTRADAY))
+                changed.set(true);
+            syncPlanner.commit(plan);
+            Status.updateCurrentTask("Successfully committed " + symbol + " " + interval.name().toLowerCase() + " history to the database!", false, false);
+        });
+    }
+
+    /**
+     * Downloads the price bars needed to fill the gaps in a stock's history, using the provider chosen by the {@link SyncPlanner}
+     * @param plan Sync plan describing the gaps
+     * @return A list of stock price bars covering (at least) the gaps
+     * @throws IOException Throws IOException if the request fails due to server unavailability or connection refusal
+     */
+    private static ArrayList<PriceBar> downloadMissingData(SyncPlanner.Plan plan) throws IOException {
+        switch (plan.getProvider()) {
+            case ALPHAVANTAGE_COMPACT:
+                return downloadStockData(plan.getSymbol(), plan.getInterval(), OutputSize.COMPACT);
+            case BARCHART_RANGE:
+                return barChartHandler.downloadHistory(plan.getSymbol(), plan.getInterval() == Interval.INTRADAY, plan.getFrom(), plan.getTo());
+            case ALPHAVANTAGE_FULL:
+                return downloadStockData(plan.getSymbol(), plan.getInterval(), OutputSize.FULL);
+            default:
+                return new ArrayList<>();
         }
     }
 
     /**
-     * Downloads the latest quote for a list of stocks and updates the GUI to reflect these updates
+     * Downloads the latest quote for a list of stocks, publishing each stock whose price was stored
      * @param stocks List of stock tickers to download the latest price quote for (e.g. AAL, AAPL, BIIB etc.)
-     * @param records List of {@link LiveStockRecord} objects to have their GUI updated
      * @throws IOException Throws IOException if the request fails due to server unavailability or connection refusal
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    static public void updateBatchStockData(ArrayList<String> stocks, ArrayList<LiveStockRecord> records) throws SQLException, IOException {
+    static public void updateBatchStockData(ArrayList<String> stocks) throws SQLException, IOException {
         ArrayList<String> temp = (useAPI == STOCK_API.AlphaVantage) ? downloadBatchStockData(stocks) : barChartHandler.downloadQuotes(stocks);
 
         int i = 0;
 
-        for (LiveStockRecord curr : records) {
+        for (String symbol : stocks) {
             String record = Objects.requireNonNull(temp).get(i++);
             String[] splitString = record.split(",");
             record = record.replace(splitString[0] + ",", "");
 
-            if (splitString[0].equals(curr.getSymbol())) {
-                StockRecordParser.importCurrentQuote(record, curr.getSymbol());
-                Main.getController().updateCurrentTask("Downloaded " + curr.getSymbol() + " current price:" + record, false, false);
-                curr.updateRecord(databaseHandler);
-                curr.updateChart(databaseHandler, false);
+            if (splitString[0].equals(symbol)) {
+                StockRecordParser.importCurrentQuote(record, symbol);
+                Status.updateCurrentTask("Downloaded " + symbol + " current price:" + record, false, false);
+                Status.pricesUpdated(symbol);
             } else
-                Main.getController().updateCurrentTask("Batch download mismatch", true, true);
+                Status.updateCurrentTask("Batch download mismatch", true, true);
         }
     }
 
     /**
-     * Downloads the latest Intraday data for a list of {@link LiveStockRecord} objects and updates their GUI graphs
-     * @param records List of {@link LiveStockRecord} objects, representing the data held on a given stock ticker
+     * Downloads the latest Intraday data for a list of stocks, publishing each stock's download status and stored prices
+     * @param stocks List of stock tickers to download the latest Intraday data for (e.g. AAL, AAPL, BIIB etc.)
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      * @throws InterruptedException Throws InterruptedException if the sleep function is interrupted by another process
      */
-    static public void updateIntradayStockData(ArrayList<LiveStockRecord> records) throws SQLException, InterruptedException {
+    static public void updateIntradayStockData(ArrayList<String> stocks) throws SQLException, InterruptedException {
         if (priceUpdating) return;
 
         databaseHandler.executeCommand("DELETE FROM intradaystockprices WHERE Temporary = 1");
         priceUpdating = true;
         databaseHandler.setAutoCommit(false);
-        ArrayList<Thread> threads = new ArrayList<>();
-        for (LiveStockRecord curr : records) {
-            Thread downloadThread = new Thread(() -> {
-                curr.setUpdating(true);
-                ArrayList<String> temp = null;
-
-                try {
-                    switch (useAPI) {
-                        case BarChart:
-                            temp = barChartHandler.downloadHistory(curr.getSymbol(), true);
-                            break;
-                        case AlphaVantage:
-                            temp = downloadStockData(curr.getSymbol(), Interval.INTRADAY, OutputSize.COMPACT);
-                            break;
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace(); }
-
-                if (temp != null && temp.size() > 1) {
-                    try {
-                        StockRecordParser.importIntradayMarketData(temp, curr.getSymbol());
-                    } catch (SQLException e) {
-                        e.printStackTrace(); }
-
-                    Main.getController().updateCurrentTask("Downloaded " + curr.getSymbol() + " 1 minute update: " + temp.get(1), false, false);
-                }
-                curr.setUpdating(false);
+        FetchPipeline.Progress progress = new FetchPipeline.Progress();
+
+        for (String symbol : stocks) {
+            Status.stockUpdating(symbol, true);
+
+            Callable<ArrayList<PriceBar>> download = (useAPI == STOCK_API.BarChart)
+                    ? () -> barChartHandler.downloadHistory(symbol, true)
+                    : () -> downloadStockData(symbol, Interval.INTRADAY, OutputSize.COMPACT);
+
+            CompletableFuture<ArrayList<PriceBar>> update = pipeline.submit(FetchPipeline.Priority.LIVE, download, bars -> {
+                StockRecordParser.importIntradayMarketData(bars, symbol);
+                Status.updateCurrentTask("Downloaded " + symbol + " 1 minute update: " + getLatestBar(bars), false, false);
             });
 
-            threads.add(downloadThread);
-            downloadThread.start();
+            progress.add(update, c -> {});
+            update.whenComplete((bars, e) -> Status.stockUpdating(symbol, false));
         }
 
-        for (Thread thread : threads) thread.join();
+        progress.await();
 
         databaseHandler.executeBatch();
         databaseHandler.setAutoCommit(true);
 
-        for (LiveStockRecord curr : records) {
-            curr.updateRecord(databaseHandler);
-            curr.updateChart(databaseHandler, false);
-        }
+        for (String symbol : stocks) Status.pricesUpdated(symbol);
 
         priceUpdating = false;
     }
 
     /**
-     * Downloads the latest Daily data for a list of {@link LiveStockRecord} objects and updates their GUI to notify of download status
-     * @param records List of {@link LiveStockRecord} objects, representing the data held on a given stock ticker
+     * Downloads the latest Daily data for a list of stocks, publishing each stock's download status
+     * @param stocks List of stock tickers to download the latest Daily data for (e.g. AAL, AAPL, BIIB etc.)
      * @throws InterruptedException Throws InterruptedException if the sleep function is interrupted by another process
      */
-    static public void updateDailyStockData(ArrayList<LiveStockRecord> records) throws InterruptedException {
+    static public void updateDailyStockData(ArrayList<String> stocks) throws InterruptedException {
         if (priceUpdating) return;
         priceUpdating = true;
-        ArrayList<Thread> threads = new ArrayList<>();
-        for (LiveStockRecord curr : records) {
-            Thread downloadThread = new Thread(() -> {
-                curr.setUpdating(true);
-                ArrayList<String> temp = null;
-
-                try {
-                    temp = downloadStockData(curr.getSymbol(), Interval.DAILY, OutputSize.COMPACT);
-                } catch (Exception e) {
-                    e.printStackTrace(); }
-
-                if (temp != null && temp.size() > 1) {
-                    try {
-                        StockRecordParser.importDailyMarketData(temp, curr.getSymbol());
-                    } catch (SQLException e) {
-                        e.printStackTrace(); }
-
-                    Main.getController().updateCurrentTask("Downloaded " + curr.getSymbol() + " current daily close price: " + temp.get(1), false, false);
-                }
-
-                curr.setUpdating(false);
-            });
+        FetchPipeline.Progress progress = new FetchPipeline.Progress();
 
-            threads.add(downloadThread);
-            downloadThread.start();
-        }
+        for (String symbol : stocks)
+            progress.add(submitDailyUpdate(symbol, new AtomicBoolean()), c -> {});
 
-        for (Thread thread : threads) thread.join();
+        progress.await();
 
         priceUpdating = false;
     }
 
+    /**
+     * Downloads the latest Daily data for a single stock without waiting for the download, so that dependent processing can start as soon as that stock has been imported
+     * @param symbol Stock ticker to download the latest Daily data for (e.g. AAL, AAPL, BIIB etc.)
+     * @return A future that completes once the latest data has been imported, with True if the stored daily prices changed
+     */
+    static public CompletableFuture<Boolean> updateDailyStockData(String symbol) {
+        AtomicBoolean changed = new AtomicBoolean();
+
+        return submitDailyUpdate(symbol, changed).thenApply(bars -> changed.get());
+    }
+
+    /**
+     * Queues the download of the latest Daily data for a single stock, ahead of any queued backfill
+     * @param symbol Stock ticker to download the latest Daily data for
+     * @param changed Set to True once the import has changed any stored prices
+     * @return A future that completes with the downloaded bars once they have been imported
+     */
+    private static CompletableFuture<ArrayList<PriceBar>> submitDailyUpdate(String symbol, AtomicBoolean changed) {
+        Status.stockUpdating(symbol, true);
+
+        CompletableFuture<ArrayList<PriceBar>> update = pipeline.submit(FetchPipeline.Priority.LIVE, () -> downloadStockData(symbol, Interval.DAILY, OutputSize.COMPACT), bars -> {
+            if (StockRecordParser.importDailyMarketData(bars, symbol)) changed.set(true);
+            Status.updateCurrentTask("Downloaded " + symbol + " current daily close price: " + getLatestBar(bars).getClose(), false, false);
+        });
+
+        update.whenComplete((bars, e) -> Status.stockUpdating(symbol, false));
+
+        return update;
+    }
+
+    /**
+     * Finds the most recent bar in a list of price bars (AlphaVantage lists bars newest first, BarChart oldest first)
+     * @param bars List of price bars
+     * @return The price bar with the latest timestamp
+     */
+    private static PriceBar getLatestBar(ArrayList<PriceBar> bars) {
+        return Collections.max(bars, Comparator.comparingLong(PriceBar::getEpoch));
+    }
+
     public enum STOCK_API {AlphaVantage, BarChart}
 
     public enum OutputSize {COMPACT, FULL}
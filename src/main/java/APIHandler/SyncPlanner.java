@@ -0,0 +1,279 @@
+package APIHandler;
+
+import Default.DatabaseHandler;
+import Processing.PriceBar;
+import Utility.TradingCalendar;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+class SyncPlanner {
+    static private final int COMPACT_DAYS = 100, COMPACT_MINUTES = 100;
+    static private final int INTRADAY_HORIZON = 5; //Trading days of minute data kept by the providers
+    private final DatabaseHandler dh;
+
+    /**
+     * Creates a planner that compares the stored price history against the trading days that should be covered
+     *
+     * @param dh Stock Quote Downloader {@link DatabaseHandler}, used to read the stored coverage and save sync watermarks
+     */
+    SyncPlanner(DatabaseHandler dh) {
+        this.dh = dh;
+    }
+
+    /**
+     * Works out which parts of a stock's price history are missing and the cheapest request that fills them
+     *
+     * @param symbol            Stock ticker to plan the sync for (e.g. AAPL for Apple Inc.)
+     * @param interval          {@link StockQuoteDownloader.Interval} enum value to plan either the Daily or Intraday history
+     * @param barChartAvailable True if BarChart can be used for ranged requests (has an API key and calls remaining Today)
+     * @return The sync plan, which requests nothing if the history is already complete
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    Plan plan(String symbol, StockQuoteDownloader.Interval interval, boolean barChartAvailable) throws SQLException {
+        return interval == StockQuoteDownloader.Interval.DAILY ? planDaily(symbol, barChartAvailable) : planIntraday(symbol, barChartAvailable);
+    }
+
+    /**
+     * Finds the trading days after the daily watermark (or since the first stored day, if the stock has never been synced) that have no price bar
+     *
+     * @param symbol            Stock ticker to plan the sync for
+     * @param barChartAvailable True if BarChart can be used for ranged requests
+     * @return The daily sync plan
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    private Plan planDaily(String symbol, boolean barChartAvailable) throws SQLException {
+        LocalDate lastExpected = TradingCalendar.getLastSessionDate(), lastCompleted = TradingCalendar.getLastCompletedSessionDate();
+        LocalDateTime watermark = getWatermark(symbol, StockQuoteDownloader.Interval.DAILY);
+
+        ArrayList<String> stored = dh.executeQuery("SELECT TradeDate FROM dailystockprices WHERE Symbol='" + symbol + "'" + (watermark != null ? " AND TradeDate > '" + watermark.toLocalDate() + "'" : "") + " ORDER BY TradeDate;");
+        Plan plan = new Plan(symbol, StockQuoteDownloader.Interval.DAILY, lastCompleted.atStartOfDay());
+
+        if (watermark == null && stored.isEmpty()) { //No history at all, so everything is missing
+            plan.missing.add(new Range(LocalDate.of(1900, 1, 1).atStartOfDay(), lastExpected.atStartOfDay()));
+            plan.provider = Provider.ALPHAVANTAGE_FULL;
+            return plan;
+        }
+
+        ArrayList<LocalDate> present = new ArrayList<>();
+        for (String date : stored) present.add(Date.valueOf(date).toLocalDate());
+
+        LocalDate day = watermark != null ? TradingCalendar.nextTradingDay(watermark.toLocalDate()) : present.get(0);
+        LocalDate gapStart = null, gapEnd = null;
+        int i = 0, expectedDays = 0;
+
+        for (; !day.isAfter(lastExpected); day = TradingCalendar.nextTradingDay(day)) {
+            while (i < present.size() && present.get(i).isBefore(day)) i++;
+
+            if (i < present.size() && present.get(i).equals(day)) {
+                if (gapStart != null) plan.missing.add(new Range(gapStart.atStartOfDay(), gapEnd.atStartOfDay()));
+                gapStart = null;
+            } else {
+                if (gapStart == null) gapStart = day;
+                gapEnd = day;
+            }
+
+            if (!plan.missing.isEmpty() || gapStart != null) expectedDays++; //Trading days from the first gap onwards, to decide whether a compact download reaches it
+        }
+
+        if (gapStart != null) plan.missing.add(new Range(gapStart.atStartOfDay(), gapEnd.atStartOfDay()));
+
+        if (plan.missing.isEmpty()) plan.provider = Provider.NONE;
+        else if (expectedDays <= COMPACT_DAYS) plan.provider = Provider.ALPHAVANTAGE_COMPACT;
+        else if (barChartAvailable) plan.provider = Provider.BARCHART_RANGE;
+        else plan.provider = Provider.ALPHAVANTAGE_FULL;
+
+        return plan;
+    }
+
+    /**
+     * Finds the trading sessions within the providers' intraday horizon (and after the intraday watermark) that have no minute bars, or that stop before the session ended
+     *
+     * @param symbol            Stock ticker to plan the sync for
+     * @param barChartAvailable True if BarChart can be used for ranged requests
+     * @return The intraday sync plan
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    private Plan planIntraday(String symbol, boolean barChartAvailable) throws SQLException {
+        LocalDateTime now = TradingCalendar.now().truncatedTo(ChronoUnit.MINUTES);
+        LocalDate lastExpected = TradingCalendar.getLastSessionDate(), lastCompleted = TradingCalendar.getLastCompletedSessionDate();
+
+        LocalDate horizon = lastExpected;
+        for (int d = 1; d < INTRADAY_HORIZON; d++) horizon = TradingCalendar.previousTradingDay(horizon);
+
+        LocalDateTime scanFrom = horizon.atTime(TradingCalendar.MARKET_OPEN);
+        LocalDateTime watermark = getWatermark(symbol, StockQuoteDownloader.Interval.INTRADAY);
+        if (watermark != null && watermark.isAfter(scanFrom)) scanFrom = watermark.plusMinutes(1);
+
+        HashMap<LocalDate, LocalDateTime> lastStored = new HashMap<>();
+        for (String record : dh.executeQuery("SELECT DATE(TradeDateTime), MAX(TradeDateTime) FROM intradaystockprices WHERE Symbol='" + symbol + "' AND Temporary = 0 AND TradeDateTime >= '" + Timestamp.valueOf(scanFrom) + "' GROUP BY DATE(TradeDateTime);")) {
+            String[] splitRecord = record.split(",");
+            lastStored.put(Date.valueOf(splitRecord[0]).toLocalDate(), Timestamp.valueOf(splitRecord[1]).toLocalDateTime());
+        }
+
+        Plan plan = new Plan(symbol, StockQuoteDownloader.Interval.INTRADAY, lastCompleted.atTime(TradingCalendar.getClose(lastCompleted)));
+
+        for (LocalDate day = scanFrom.toLocalDate(); !day.isAfter(lastExpected); day = TradingCalendar.nextTradingDay(day)) {
+            if (!TradingCalendar.isTradingDay(day)) continue;
+
+            LocalDateTime sessionStart = day.atTime(TradingCalendar.MARKET_OPEN), sessionEnd = day.atTime(TradingCalendar.getClose(day));
+            if (sessionStart.isBefore(scanFrom)) sessionStart = scanFrom;
+            if (sessionEnd.isAfter(now)) sessionEnd = now;
+            if (sessionStart.isAfter(sessionEnd)) continue;
+
+            LocalDateTime stored = lastStored.get(day);
+
+            //Minutes without trades are never sent by the providers, so only whole missing sessions and missing session ends are treated as gaps
+            if (stored == null) plan.missing.add(new Range(sessionStart, sessionEnd));
+            else if (stored.isBefore(sessionEnd)) plan.missing.add(new Range(stored.plusMinutes(1), sessionEnd));
+        }
+
+        if (plan.missing.isEmpty())
+            plan.provider = Provider.NONE;
+        else {
+            Range first = plan.missing.get(0);
+
+            if (plan.missing.size() == 1 && ChronoUnit.MINUTES.between(first.from, first.to) < COMPACT_MINUTES)
+                plan.provider = Provider.ALPHAVANTAGE_COMPACT;
+            else if (barChartAvailable)
+                plan.provider = Provider.BARCHART_RANGE;
+            else
+                plan.provider = Provider.ALPHAVANTAGE_FULL;
+        }
+
+        return plan;
+    }
+
+    /**
+     * Records that a stock's history has been synced, so that later plans do not scan (or re-request gaps the providers could not fill) before this point
+     *
+     * @param plan The plan that has been downloaded and imported
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    void commit(Plan plan) throws SQLException {
+        dh.executeCommand("INSERT INTO syncwatermarks (Symbol, Resolution, SyncedTo) VALUES ('" + plan.symbol + "', '" + plan.interval.name() + "', '" + Timestamp.valueOf(plan.syncedTo) + "') ON DUPLICATE KEY UPDATE SyncedTo = GREATEST(SyncedTo, VALUES(SyncedTo));");
+    }
+
+    /**
+     * Retrieves the point up to which a stock's history has already been synced
+     *
+     * @param symbol   Stock ticker (e.g. AAPL for Apple Inc.)
+     * @param interval {@link StockQuoteDownloader.Interval} enum value of the history
+     * @return The sync watermark, or null if the history has never been synced
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    private LocalDateTime getWatermark(String symbol, StockQuoteDownloader.Interval interval) throws SQLException {
+        ArrayList<String> result = dh.executeQuery("SELECT SyncedTo FROM syncwatermarks WHERE Symbol='" + symbol + "' AND Resolution='" + interval.name() + "';");
+
+        return result.isEmpty() ? null : Timestamp.valueOf(result.get(0)).toLocalDateTime();
+    }
+
+    /**
+     * Source and size of the request used to fill a plan's gaps
+     */
+    enum Provider {NONE, ALPHAVANTAGE_COMPACT, BARCHART_RANGE, ALPHAVANTAGE_FULL}
+
+    /**
+     * A span of missing exchange-local timestamps (inclusive)
+     */
+    static class Range {
+        private final LocalDateTime from, to;
+
+        Range(LocalDateTime from, LocalDateTime to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        boolean contains(long epoch) {
+            return epoch >= from.toEpochSecond(ZoneOffset.UTC) && epoch <= to.toEpochSecond(ZoneOffset.UTC);
+        }
+    }
+
+    /**
+     * The gaps in a single stock's history, and the request chosen to fill them
+     */
+    static class Plan {
+        private final String symbol;
+        private final StockQuoteDownloader.Interval interval;
+        private final LocalDateTime syncedTo;
+        private final ArrayList<Range> missing = new ArrayList<>();
+        private Provider provider = Provider.NONE;
+
+        private Plan(String symbol, StockQuoteDownloader.Interval interval, LocalDateTime syncedTo) {
+            this.symbol = symbol;
+            this.interval = interval;
+            this.syncedTo = syncedTo;
+        }
+
+        String getSymbol() {
+            return symbol;
+        }
+
+        StockQuoteDownloader.Interval getInterval() {
+            return interval;
+        }
+
+        Provider getProvider() {
+            return provider;
+        }
+
+        /**
+         * Access the first missing timestamp, used as the start of ranged requests
+         *
+         * @return Start of the earliest gap
+         */
+        LocalDateTime getFrom() {
+            return missing.get(0).from;
+        }
+
+        /**
+         * Access the last missing timestamp, used as the end of ranged requests
+         *
+         * @return End of the latest gap
+         */
+        LocalDateTime getTo() {
+            return missing.get(missing.size() - 1).to;
+        }
+
+        boolean isComplete() {
+            return provider == Provider.NONE;
+        }
+
+        /**
+         * Removes the bars that are already stored, so that only the gaps are imported
+         *
+         * @param bars Price bars returned by the provider
+         * @return The price bars that fall within a gap
+         */
+        ArrayList<PriceBar> filter(ArrayList<PriceBar> bars) {
+            ArrayList<PriceBar> filtered = new ArrayList<>();
+
+            for (PriceBar bar : bars)
+                for (Range range : missing)
+                    if (range.contains(bar.getEpoch())) {
+                        filtered.add(bar);
+                        break;
+                    }
+
+            return filtered;
+        }
+
+        @Override
+        public String toString() {
+            return symbol + " " + interval.name().toLowerCase() + ": " + missing.size() + " gap(s) from " + (missing.isEmpty() ? "-" : getFrom()) + " via " + provider;
+        }
+    }
+}
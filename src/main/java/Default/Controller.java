@@ -2,17 +2,19 @@ package Default;
 
 import APIHandler.*;
 import Portfolio.PortfolioManager;
+import Prediction.HyperparameterSearch;
 import Prediction.StockPredictor;
 import Prediction.TradingSimulator;
+import Prediction.TrainingData;
 import Processing.NaturalLanguageProcessor;
-import Processing.StockRecordParser;
 import Processing.TechnicalAnalyser;
 import Records.*;
+import Utility.DecimatedSeries;
+import Utility.DownsamplingUtils;
 import Utility.SmoothingUtils;
 import Utility.TradingUtils;
 import Utility.TrainingFileUtils;
 import javafx.application.Platform;
-import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.scene.Node;
 import javafx.scene.chart.*;
@@ -23,16 +25,10 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
-import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
 import javafx.util.Pair;
 
-import java.io.File;
 import java.io.IOException;
-import java.net.CookieHandler;
-import java.net.CookieManager;
-import java.net.CookiePolicy;
-import java.sql.Date;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.text.DateFormat;
@@ -41,6 +37,7 @@ import java.text.SimpleDateFormat;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import static Utility.ChartUtils.*;
@@ -52,32 +49,24 @@ import static Utility.ChartUtils.*;
  */
 
 public class Controller {
-    static final private double smoothRate = 0.1;
+    static final private double smoothRate = Engine.SMOOTH_RATE;
     static private boolean DISABLE_SYSTEM_UPDATE;
-    static private DatabaseHandler dh = new DatabaseHandler();
-    static private DatabaseHandler sqdh = new DatabaseHandler();
-    static private DatabaseHandler nlpdh = new DatabaseHandler();
-    static private DatabaseHandler tadh = new DatabaseHandler();
-    static private DatabaseHandler nddh = new DatabaseHandler();
-    static private DatabaseHandler pmdh = new DatabaseHandler();
-    static private DatabaseHandler spdh = new DatabaseHandler();
-    static private BarChartHandler bch = new BarChartHandler();
-    static private AlphaVantageHandler avh = new AlphaVantageHandler();
-    static private double lossCutoff, profitCutoff;
-    static private Thread mainThread;
+    static private final DatabaseHandler dh = Engine.dh;
+    static private final DatabaseHandler sqdh = Engine.sqdh;
     static private boolean quit = false;
-    static private int dayArray[] = new int[]{1, 30, 200};
+    static private int dayArray[] = Engine.DAY_ARRAY;
     static private ArrayList<String> stocks = new ArrayList<>();
     static private ArrayList<LiveStockRecord> records = new ArrayList<>();
+    static private ConcurrentHashMap<String, LiveStockRecord> liveRecords = new ConcurrentHashMap<>();
     static private TreeMap<String, PredictionBox> predictions = new TreeMap<>();
     static private TreeMap<String, SimulatorPredictionBox> simulatorPredictions = new TreeMap<>();
     static private ArrayList<StockClock> clocks = new ArrayList<>();
-    static private HashMap<String, XYChart.Series<Number, Number>> simulatedHistory = new HashMap<>();
-    static private XYChart.Series<Number, Number> simulatedBalance = new XYChart.Series<>();
-    static private XYChart.Series<Number, Number> simulatedIndexPerformance = new XYChart.Series<>();
-    static private XYChart.Series<Number, Number> simulatedRandomPerformance = new XYChart.Series<>();
-    static private XYChart.Series<Number, Number> simulatedPortfolioInitialPerformance = new XYChart.Series<>();
-    static private XYChart.Series<Number, Number> simulatedEqualAllocationPerformance = new XYChart.Series<>();
+    static private HashMap<String, DecimatedSeries> simulatedHistory = new HashMap<>();
+    static private DecimatedSeries simulatedBalance = new DecimatedSeries("Automated Trader (With Portfolio Rebalancing)", DownsamplingUtils.Method.LTTB);
+    static private DecimatedSeries simulatedIndexPerformance = new DecimatedSeries("NASDAQ 100 Index (^NDX)", DownsamplingUtils.Method.LTTB);
+    static private DecimatedSeries simulatedRandomPerformance = new DecimatedSeries("Random Trader", DownsamplingUtils.Method.LTTB);
+    static private DecimatedSeries simulatedPortfolioInitialPerformance = new DecimatedSeries("Automated Trader", DownsamplingUtils.Method.LTTB);
+    static private DecimatedSeries simulatedEqualAllocationPerformance = new DecimatedSeries("Automated Trader (Equal Allocation)", DownsamplingUtils.Method.LTTB);
     static private HashMap<String, NumberAxis> simulatorAxes = new HashMap<>();
 
     @FXML
@@ -229,34 +218,101 @@ public class Controller {
     @FXML
     TextArea newsArticleArea;
     @FXML MenuItem exportAllTrainingFilesButton;
+    @FXML MenuItem tunePredictionModelsButton;
     @FXML MenuItem smoothPriceDataButton;
     @FXML MenuItem resetPriceDataButton;
     @FXML
     ListView<String> newsArticleList;
 
-    private boolean automated = false;
+    /**
+     * Mirrors the status of the {@link Engine} in the GUI
+     */
+    private final Status.Listener statusListener = new Status.Listener() {
+        @Override
+        public void taskUpdated(String task, boolean error, boolean important) {
+            UIUpdateBus.post(currentTaskLabel, () -> currentTaskLabel.setText(task));
+            if (important)
+                UIUpdateBus.log(task);
+        }
+
+        @Override
+        public void progressUpdated(Status.Channel channel, double progress) {
+            updateProgress(progress, getProgressBar(channel));
+        }
+
+        @Override
+        public void stockUpdating(String symbol, boolean updating) {
+            LiveStockRecord record = liveRecords.get(symbol);
+            if (record != null) record.setUpdating(updating);
+        }
+
+        @Override
+        public void pricesUpdated(String symbol) {
+            LiveStockRecord record = liveRecords.get(symbol);
+            if (record == null) return;
+
+            record.updateRecord(sqdh);
+            record.updateChart(sqdh, false);
+        }
+
+        @Override
+        public void predictionsUpdated(Map<String, HashMap<Integer, Boolean>> predictions) {
+            updatePredictions(predictions);
+        }
+
+        @Override
+        public void cutoffsUpdated(double lossCutoff, double profitCutoff) {
+            UIUpdateBus.post(cutoffLabel, () -> cutoffLabel.setText(String.valueOf(lossCutoff)));
+            UIUpdateBus.post(targetLabel, () -> targetLabel.setText(String.valueOf(profitCutoff)));
+        }
+
+        @Override
+        public void portfolioUpdated() {
+            refreshGUI();
+        }
+
+        @Override
+        public void modelsUpdated() {
+            try {
+                final String modelInformation = StockPredictor.getModelInformation(stocks);
+                UIUpdateBus.post(predictionModelInformationBox, () -> predictionModelInformationBox.setText(modelInformation));
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        public void cycleFinished(String name) {
+            refreshGUI();
+        }
+    };
 
     static void shutdown() throws SQLException {
         quit = true;
 
-        if (mainThread.isAlive()) mainThread.interrupt();
-
-        dh.close();
-        nddh.close();
-        nlpdh.close();
-        tadh.close();
-        sqdh.close();
-        pmdh.close();
-        spdh.close();
+        Engine.shutdown();
     }
 
-    static public void updateProgress(double current, double total, ProgressBar pb) {
-        updateProgress(current / total, pb);
+    private ProgressBar getProgressBar(Status.Channel channel) {
+        switch (channel) {
+            case STOCK_FEED:
+                return stockFeedProgress;
+            case NEWS_FEED:
+                return newsFeedProgress;
+            case NLP:
+                return nlpProgress;
+            case TECHNICAL_ANALYSIS:
+                return technicalAnalyserProgress;
+            default:
+                return stockForecastProgress;
+        }
     }
 
-    static public void updateProgress(double value, ProgressBar pb) {
-        Platform.runLater(() -> pb.setVisible(!(value == 0 || value == 1)));
-        Platform.runLater(() -> pb.setProgress(value));
+    static private void updateProgress(double value, ProgressBar pb) {
+        UIUpdateBus.post(pb, () -> {
+            pb.setVisible(!(value == 0 || value == 1));
+            pb.setProgress(value);
+        });
     }
 
     @FXML
@@ -266,38 +322,28 @@ public class Controller {
             try {
                 boolean singleStock = dh.executeQuery("SELECT value FROM settings WHERE ID='PREDICTION_MODE';").get(0).equals("SINGLE");
                 if (singleStock) {
-                    TradingSimulator.generateSingleStockTrainingFiles(stocks, 200, false);
-                    TradingSimulator.trainSingleStocks(stocks);
+                    TradingSimulator.generateSingleStockTrainingFiles(stocks, 200);
+                    TradingSimulator.trainSingleStocks(stocks, 200);
                 } else {
-                    TradingSimulator.generateMultistockTrainingFiles(stocks, 200, false);
-                    TradingSimulator.trainMultiStock(stocks);
+                    TradingSimulator.generateMultistockTrainingFiles(stocks, 200);
+                    TradingSimulator.trainMultiStock(stocks, 200);
                 }
             } catch (Exception e) {
-                Main.getController().updateCurrentTask("Could not train simulation model: " + e.getMessage(), true, true);
+                Status.updateCurrentTask("Could not train simulation model: " + e.getMessage(), true, true);
             } finally {
                 Platform.runLater(() -> trainSimulationModelButton.setDisable(false));
             }
         }).start();
     }
 
-    public void updateCurrentTask(String task, boolean error, boolean printToInfoBox){
-        if(error)
-            System.err.println(task);
-        else
-            System.out.println(task);
-        Platform.runLater(()->currentTaskLabel.setText(task));
-        if(printToInfoBox)
-            printToInfoBox(task);
-    }
-
     public void clearSimulation() {
-        Platform.runLater(() -> simulatedBalance.getData().clear());
-        Platform.runLater(() -> simulatedPortfolioInitialPerformance.getData().clear());
-        Platform.runLater(() -> simulatedEqualAllocationPerformance.getData().clear());
-        Platform.runLater(() -> simulatedIndexPerformance.getData().clear());
-        Platform.runLater(() -> simulatedRandomPerformance.getData().clear());
-        for (String stock : simulatedHistory.keySet())
-            Platform.runLater(() -> simulatedHistory.get(stock).getData().clear());
+        simulatedBalance.clear();
+        simulatedPortfolioInitialPerformance.clear();
+        simulatedEqualAllocationPerformance.clear();
+        simulatedIndexPerformance.clear();
+        simulatedRandomPerformance.clear();
+        for (DecimatedSeries history : simulatedHistory.values())
+            history.clear();
     }
 
     @FXML
@@ -343,11 +389,11 @@ public class Controller {
             int count = 0;
 
             try {
-                HashMap<String, ArrayDeque<XYChart.Data<Number, Number>>> values = new HashMap<>();
+                HashMap<String, ArrayList<double[]>> values = new HashMap<>();
 
-                for (String column : Objects.requireNonNull(dbSchema)) values.put(column, new ArrayDeque<>());
-                values.put("Sentiment", new ArrayDeque<>());
-                for(int i = 0; i < sentimentData.length; i++) values.get("Sentiment").add(new XYChart.Data<>(i, sentimentData[i]));
+                for (String column : Objects.requireNonNull(dbSchema)) values.put(column, new ArrayList<>());
+                values.put("Sentiment", new ArrayList<>());
+                for(int i = 0; i < sentimentData.length; i++) values.get("Sentiment").add(new double[]{i, sentimentData[i]});
 
                 Map<String, String> historicValues = new HashMap<>();
                 Map<String, String> indicatorValues = new HashMap<>();
@@ -394,11 +440,11 @@ public class Controller {
 
                     for (String value : historicValues.keySet())
                         if (!splitRecord[dbSchema.indexOf(value)].equals("null"))
-                            values.get(value).add(createChartPoint(count, Double.parseDouble(splitRecord[dbSchema.indexOf(value)])));
+                            values.get(value).add(new double[]{count, Double.parseDouble(splitRecord[dbSchema.indexOf(value)])});
 
                     for (String indicator : visualisationCheckboxes.keySet())
                         if (visualisationCheckboxes.get(indicator).isSelected() && !splitRecord[idx = dbSchema.indexOf(indicator)].equals("null"))
-                            values.get(indicator).add(createChartPoint(count, Double.parseDouble(splitRecord[idx])));
+                            values.get(indicator).add(new double[]{count, Double.parseDouble(splitRecord[idx])});
 
                     count++;
                 }
@@ -408,23 +454,23 @@ public class Controller {
                 ArrayList<XYChart.Series<Number, Number>> stoOscData = new ArrayList<>();
 
                 for (String value : historicValues.keySet())
-                    historicData.add(new XYChart.Series<>(historicValues.get(value), FXCollections.observableArrayList(values.get(value))));
+                    historicData.add(createDecimatedSeries(historicValues.get(value), values.get(value), DownsamplingUtils.Method.LTTB));
                 for (String value : indicatorValues.keySet())
-                    historicData.add(new XYChart.Series<>(indicatorValues.get(value), FXCollections.observableArrayList(values.get(value))));
-
-                macdData.add(new XYChart.Series<>("Moving Average Convergence/Divergence", FXCollections.observableArrayList(values.get("MACD"))));
-                macdData.add(new XYChart.Series<>("Moving Average Convergence/Divergence Signal Line", FXCollections.observableArrayList(values.get("MACDSig"))));
-                macdData.add(new XYChart.Series<>("Moving Average Convergence/Divergence Histogram", FXCollections.observableArrayList(values.get("MACDHist"))));
-                XYChart.Series<Number, Number> volumes = new XYChart.Series<>("Trade Volume", FXCollections.observableArrayList(values.get("TradeVolume")));
-                XYChart.Series<Number, Number> rsi = new XYChart.Series<>("Relative Strength Indicator", FXCollections.observableArrayList(values.get("RSI")));
-                XYChart.Series<Number, Number> adx10 = new XYChart.Series<>("Average Directional Index (10-Day)", FXCollections.observableArrayList(values.get("ADX10")));
-                XYChart.Series<Number, Number> cci = new XYChart.Series<>("Commodity Channel Index", FXCollections.observableArrayList(values.get("CCI")));
-                XYChart.Series<Number, Number> ad = new XYChart.Series<>("Accumulation Distribution", FXCollections.observableArrayList(values.get("AD")));
-                XYChart.Series<Number, Number> obv = new XYChart.Series<>("On-Balance Volume", FXCollections.observableArrayList(values.get("OBV")));
-                stoOscData.add(new XYChart.Series<>("Stochastic Oscillator Slow %K", FXCollections.observableArrayList(values.get("StoOscSlowK"))));
-                stoOscData.add(new XYChart.Series<>("Stochastic Oscillator Slow %D", FXCollections.observableArrayList(values.get("StoOscSlowD"))));
-                XYChart.Series<Number, Number> willR = new XYChart.Series<>("Williams %R", FXCollections.observableArrayList(values.get("WillR")));
-                XYChart.Series<Number, Number> sentiment = new XYChart.Series<>("News Article Sentiment", FXCollections.observableArrayList(values.get("Sentiment")));
+                    historicData.add(createDecimatedSeries(indicatorValues.get(value), values.get(value), DownsamplingUtils.Method.LTTB));
+
+                macdData.add(createDecimatedSeries("Moving Average Convergence/Divergence", values.get("MACD"), DownsamplingUtils.Method.LTTB));
+                macdData.add(createDecimatedSeries("Moving Average Convergence/Divergence Signal Line", values.get("MACDSig"), DownsamplingUtils.Method.LTTB));
+                macdData.add(createDecimatedSeries("Moving Average Convergence/Divergence Histogram", values.get("MACDHist"), DownsamplingUtils.Method.LTTB));
+                XYChart.Series<Number, Number> volumes = createDecimatedSeries("Trade Volume", values.get("TradeVolume"), DownsamplingUtils.Method.MIN_MAX);
+                XYChart.Series<Number, Number> rsi = createDecimatedSeries("Relative Strength Indicator", values.get("RSI"), DownsamplingUtils.Method.LTTB);
+                XYChart.Series<Number, Number> adx10 = createDecimatedSeries("Average Directional Index (10-Day)", values.get("ADX10"), DownsamplingUtils.Method.LTTB);
+                XYChart.Series<Number, Number> cci = createDecimatedSeries("Commodity Channel Index", values.get("CCI"), DownsamplingUtils.Method.LTTB);
+                XYChart.Series<Number, Number> ad = createDecimatedSeries("Accumulation Distribution", values.get("AD"), DownsamplingUtils.Method.LTTB);
+                XYChart.Series<Number, Number> obv = createDecimatedSeries("On-Balance Volume", values.get("OBV"), DownsamplingUtils.Method.LTTB);
+                stoOscData.add(createDecimatedSeries("Stochastic Oscillator Slow %K", values.get("StoOscSlowK"), DownsamplingUtils.Method.LTTB));
+                stoOscData.add(createDecimatedSeries("Stochastic Oscillator Slow %D", values.get("StoOscSlowD"), DownsamplingUtils.Method.LTTB));
+                XYChart.Series<Number, Number> willR = createDecimatedSeries("Williams %R", values.get("WillR"), DownsamplingUtils.Method.LTTB);
+                XYChart.Series<Number, Number> sentiment = createDecimatedSeries("News Article Sentiment", values.get("Sentiment"), DownsamplingUtils.Method.LTTB);
 
                 Platform.runLater(() -> historicPriceChart.getData().addAll(historicData));
                 Platform.runLater(() -> historicVolumeChart.getData().add(volumes));
@@ -458,6 +504,28 @@ public class Controller {
         }).start();
     }
 
+    /**
+     * Creates a chart series that only draws as many points as its chart has pixels
+     *
+     * @param name   Name of the series, shown in the chart legend
+     * @param points Points of the series, as {x, y} pairs in ascending order of x
+     * @param method {@link DownsamplingUtils.Method} enum value of the downsampling algorithm
+     * @return Series to add to a chart
+     */
+    private XYChart.Series<Number, Number> createDecimatedSeries(String name, ArrayList<double[]> points, DownsamplingUtils.Method method) {
+        double[] x = new double[points.size()], y = new double[points.size()];
+
+        for (int i = 0; i < points.size(); i++) {
+            x[i] = points.get(i)[0];
+            y[i] = points.get(i)[1];
+        }
+
+        DecimatedSeries series = new DecimatedSeries(name, method);
+        series.setAll(x, y);
+
+        return series.getSeries();
+    }
+
     @FXML
     private void enableAmountField() {
         stockAmountField.setDisable(false);
@@ -467,7 +535,7 @@ public class Controller {
         new Thread(()-> {
             Platform.runLater(()->exportAllTrainingFilesButton.setDisable(true));
             try {
-                TrainingFileUtils.exportAllFiles(stocks, stockForecastProgress, dayArray);
+                TrainingFileUtils.exportAllFiles(stocks, Status.Channel.STOCK_FORECAST, dayArray);
             } catch (Exception e) {
                 e.printStackTrace();
             } finally {
@@ -476,99 +544,60 @@ public class Controller {
         }).start();
     }
 
+    @FXML private void tunePredictionModels(){
+        new Thread(()-> {
+            Platform.runLater(()->tunePredictionModelsButton.setDisable(true));
+            try {
+                boolean multiStock = dh.executeQuery("SELECT Value FROM Settings WHERE ID='PREDICTION_MODE';").get(0).equals("MULTI");
+                HyperparameterSearch.search(stocks, dayArray, multiStock);
+            } catch (Exception e) {
+                Status.updateCurrentTask("Could not tune prediction models: " + e.getMessage(), true, true);
+            } finally {
+                Platform.runLater(()->tunePredictionModelsButton.setDisable(false));
+            }
+        }).start();
+    }
+
     @FXML
     private void trainMLModel() {
         new Thread(() -> {
             Platform.runLater(() -> trainMLModelButton.setDisable(true));
 
             try {
-                updateCurrentTask("Generating ML Training File...", false, false);
-                updateProgress(ProgressBar.INDETERMINATE_PROGRESS, stockForecastProgress);
+                Status.updateCurrentTask("Generating ML Training Data...", false, false);
+                Status.updateProgress(Status.INDETERMINATE, Status.Channel.STOCK_FORECAST);
 
                 String predictionMode = dh.executeQuery("SELECT Value FROM Settings WHERE ID='PREDICTION_MODE';").get(0);
                 if (predictionMode.equals("SINGLE")) {
-                    for (String stock : stocks) {
-                        File newDir = new File(System.getProperty("user.dir") + "/res/TrainingFiles/" + stock + "/");
-                        if (!newDir.exists())
-                            if (!newDir.mkdirs())
-                                updateCurrentTask("Error: Could not create '" + newDir.getAbsolutePath() + "'", true, true);
-
-                        TrainingFileUtils.exportClassificationCSV(stock, System.getProperty("user.dir") + "/res/TrainingFiles/" + stock + "/SmoothedNASDAQTraining.csv", dayArray, smoothRate, true, true, false, false);
-                        TrainingFileUtils.exportLibSVMFile(System.getProperty("user.dir") + "/res/TrainingFiles/" + stock + "/SmoothedNASDAQTraining.csv", System.getProperty("user.dir") + "/res/TrainingFiles/" + stock + "/SmoothedNASDAQTraining.libsvm");
-                    }
-
-                    for (String stock : stocks)
-                        StockPredictor.trainRandomForest(System.getProperty("user.dir") + "/res/TrainingFiles/" + stock + "/SmoothedNASDAQTraining.libsvm", stock, false);
-                    for (String stock : stocks) StockPredictor.loadLatestRandomForest(stock);
-                } else if (predictionMode.equals("MULTI")) {
-                    File newDir = new File(System.getProperty("user.dir") + "/res/TrainingFiles/MultiStock/");
-                    if (!newDir.exists())
-                        if (!newDir.mkdirs())
-                            updateCurrentTask("Error: Could not create '" + newDir.getAbsolutePath() + "'", true, true);
-
-                    TrainingFileUtils.exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/MultiStock/SmoothedNASDAQTraining.csv", dayArray, stockForecastProgress, smoothRate, true, true, false, false);
-                    TrainingFileUtils.exportLibSVMFile(System.getProperty("user.dir") + "/res/TrainingFiles/MultiStock/SmoothedNASDAQTraining.csv", System.getProperty("user.dir") + "/res/TrainingFiles/MultiStock/SmoothedNASDAQTraining.libsvm");
-                    StockPredictor.trainRandomForest(System.getProperty("user.dir") + "/res/TrainingFiles/MultiStock/SmoothedNASDAQTraining.libsvm", stocks.size(), false);
-                }
+                    StockPredictor.trainRandomForests(stocks, dayArray, smoothRate, 0, false);
+                    StockPredictor.loadLatestRandomForest(stocks);
+                } else if (predictionMode.equals("MULTI"))
+                    StockPredictor.trainRandomForest(TrainingData.build(stocks, stocks, dayArray, true, smoothRate, 0, Status.Channel.STOCK_FORECAST), stocks.size(), false);
             } catch (Exception e) {
                 e.printStackTrace();
             }
 
-            updateProgress(0, stockForecastProgress);
-            Platform.runLater(() -> {
-                try {
-                    predictionModelInformationBox.setText(StockPredictor.getModelInformation(stocks));
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
-            });
+            Status.updateProgress(0, Status.Channel.STOCK_FORECAST);
+            Status.modelsUpdated();
             Platform.runLater(() -> trainMLModelButton.setDisable(false));
         }).start();
     }
 
     @FXML
     private void setLossCutoff() throws SQLException {
-        setLossCutoff(Double.valueOf(lossCutoffField.getText()));
+        Engine.setLossCutoff(Double.valueOf(lossCutoffField.getText()));
+        lossCutoffPercentageLabel.setText("0.0%");
         lossCutoffField.clear();
     }
 
     @FXML
     private void setProfitCutoff() throws SQLException {
-        setProfitCutoff(Double.valueOf(profitTargetField.getText()));
-        profitTargetField.clear();
-    }
-
-    private void setLossCutoff(double amount) throws SQLException {
-        lossCutoff = (int) (amount * 100) / 100.0;
-        Platform.runLater(() -> cutoffLabel.setText(String.valueOf(lossCutoff)));
-        lossCutoffPercentageLabel.setText("0.0%");
-        dh.executeCommand("INSERT INTO settings VALUES ('LOSS_CUTOFF', '" + lossCutoff + "') ON DUPLICATE KEY UPDATE Value = VALUES(Value);");
-    }
-
-    private void setProfitCutoff(double amount) throws SQLException {
-        profitCutoff = (int) (amount * 100) / 100.0;
-        Platform.runLater(() -> targetLabel.setText(String.valueOf(profitCutoff)));
+        Engine.setProfitCutoff(Double.valueOf(profitTargetField.getText()));
         profitTargetPercentageLabel.setText("0.0%");
-        dh.executeCommand("INSERT INTO settings VALUES ('PROFIT_CUTOFF', '" + profitCutoff + "') ON DUPLICATE KEY UPDATE Value = VALUES(Value);");
-    }
-
-    private void calculateLossCutoff(double percentage) throws SQLException {
-        float balance = Float.parseFloat(dh.executeQuery("SELECT SUM(Amount) FROM banktransactions").get(0));
-        lossCutoff = (balance + TradingUtils.getStockWorth()) * (1 - percentage);
-
-        setLossCutoff(lossCutoff);
-    }
-
-    private void calculateTargetCutoff(double percentage) throws SQLException {
-        float balance = Float.parseFloat(dh.executeQuery("SELECT SUM(Amount) FROM banktransactions").get(0));
-        profitCutoff = (balance + TradingUtils.getStockWorth()) * (1 + percentage);
-
-        setProfitCutoff(profitCutoff);
+        profitTargetField.clear();
     }
 
     private void initialiseConnections() throws IOException, SQLException {
-        updateCurrentTask("Initialising Connections...", false, false);
-
         //Based on code from http://code.makery.ch/blog/javafx-dialogs-official/
         Dialog<Pair<String, String>> dialogue = new Dialog<>();
         dialogue.setTitle("SQL Server Login");
@@ -606,54 +635,10 @@ public class Controller {
 
         Optional<Pair<String, String>> result = dialogue.showAndWait();
 
-        result.ifPresent(userPass -> {
-            //End of 3rd Party Code
-            try {
-                DatabaseHandler.initialiseDatabase(userPass.getKey(), userPass.getValue());
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        });
-
-        dh.init("Agent", "0Y5q0m28pSB9jj2O");
-        nlpdh.init("NaturalLanguageProcessor", "p1pONM8zhI6GgCfy");
-        tadh.init("TechnicalAnalyser", "n6qvdUkFOoFCxPq5");
-        nddh.init("NewsDownloader", "wu0Ni6YF3yLTVp2A");
-        sqdh.init("StockQuoteDownloader", "j2wbvx19Gg1Be22J");
-        pmdh.init("PortfolioManager", "mAjwa22NdsrRihi4");
-        spdh.init("StockPredictor", "wfN1XLoW810diEhR");
-
-        ArrayList<String> alphavantageKey = dh.executeQuery("SELECT value FROM settings WHERE ID='ALPHAVANTAGE_API_KEY';");
-        ArrayList<String> intrinioUser = dh.executeQuery("SELECT value FROM settings WHERE ID='INTRINIO_API_USER';");
-        ArrayList<String> intrinioKey = dh.executeQuery("SELECT value FROM settings WHERE ID='INTRINIO_API_KEY';");
-        ArrayList<String> barchartKey = dh.executeQuery("SELECT value FROM settings WHERE ID='BARCHART_API_KEY';");
-
-        boolean keyMissing = false;
-        if (alphavantageKey.isEmpty() || alphavantageKey.get(0).toUpperCase().equals("NULL")) {
-            updateCurrentTask("No AlphaVantage API Key found! Please go to https://www.alphavantage.co/ to retrieve one and save key in database with ID 'ALPHAVANTAGE_API_KEY'.", true, true);
-            keyMissing = true;
-        }
-
-        if (barchartKey.isEmpty() || barchartKey.get(0).toUpperCase().equals("NULL")) {
-            updateCurrentTask("No Barchart API Key found! Please go to https://www.barchart.com/ondemand/free-market-data-api to retrieve one and save key in database with ID 'BARCHART_API_KEY'.", true, true);
-            keyMissing = true;
-        }
-
-        if (intrinioUser.isEmpty() || intrinioUser.get(0).toUpperCase().equals("NULL")) {
-            updateCurrentTask("No INTRINIO User ID found! Please go to https://intrinio.com/signup to retrieve one and save User ID in database with ID 'INTRINIO_API_USER' and API Key with ID 'INTRINIO_API_KEY'.", true, true);
-            keyMissing = true;
-        }
-
-        if (intrinioKey.isEmpty() || intrinioKey.get(0).toUpperCase().equals("NULL")) {
-            updateCurrentTask("No INTRINIO API Key found! Please go to https://intrinio.com/signup to retrieve one and save User ID in database with ID 'INTRINIO_API_USER' and API Key with ID 'INTRINIO_API_KEY'.", true, true);
-            keyMissing = true;
-        }
+        Pair<String, String> userPass = result.orElse(null);
+        //End of 3rd Party Code
 
-        if (keyMissing) System.exit(-1);
-
-        avh.init(alphavantageKey.get(0));
-        bch.init(barchartKey.get(0), sqdh, stockFeedProgress);
-        INTRINIOHandler.authenticate(intrinioUser.get(0), intrinioKey.get(0));
+        Engine.connect(userPass != null ? userPass.getKey() : null, userPass != null ? userPass.getValue() : null);
     }
 
     @FXML private void smoothPriceData(){
@@ -694,7 +679,7 @@ public class Controller {
         autonomousToolbox.setDisable(fullyAutonomous);
         manualToolbox.setDisable(fullyAutonomous || semiAutonomous);
 
-        automated = fullyAutonomous || semiAutonomous;
+        Engine.setAutomated(fullyAutonomous || semiAutonomous);
     }
 
     private void updateProfitLossChart() throws SQLException, ParseException {
@@ -721,23 +706,20 @@ public class Controller {
             }
         }
 
-        XYChart.Series<Number, Number> profitLossData = new XYChart.Series<>();
+        ArrayList<double[]> points = new ArrayList<>(timeAndPrice.size());
 
         int i = 0;
         double currProfitLoss = 0;
 
         for (Long time : timeAndPrice.keySet()) {
-            XYChart.Data<Number, Number> point = createChartPoint(i, timeAndPrice.get(time));
-            Rectangle rect = new Rectangle(0, 0);
-            rect.setVisible(false);
-            point.setNode(rect);
-
-            profitLossData.getData().add(i++, point);
+            points.add(new double[]{i++, timeAndPrice.get(time)});
 
             if (i == timeAndPrice.size())
                 currProfitLoss = timeAndPrice.get(time);
         }
 
+        XYChart.Series<Number, Number> profitLossData = createDecimatedSeries(null, points, DownsamplingUtils.Method.LTTB);
+
         final double finalProfitLoss = currProfitLoss;
 
         Platform.runLater(() ->
@@ -763,79 +745,13 @@ public class Controller {
             new Thread(() -> {
                 Platform.runLater(() -> rebalanceButton.setDisable(true));
                 try {
-                    rebalancePortfolio();
+                    Engine.rebalancePortfolio();
                 } catch (Exception e) { e.printStackTrace(); }
                 Platform.runLater(() -> rebalanceButton.setDisable(false));
             }).start();
     }
 
 
-    private void rebalancePortfolio() throws SQLException, ParseException {
-        //TradingUtils.sellAllStock(automated);
-
-        PortfolioManager.OptimisationMethod om = null;
-        PortfolioManager.EvaluationMethod em = null;
-
-        switch(optimisationMethodDropdown.getSelectionModel().getSelectedItem()){
-            case "Simulated Annealing":
-                om = PortfolioManager.OptimisationMethod.SIMULATED_ANNEALING;
-                break;
-            case "Genetic Algorithm":
-                om = PortfolioManager.OptimisationMethod.GENETIC_ALGORITHM;
-                break;
-        }
-
-        switch(evaluationMethodDropdown.getSelectionModel().getSelectedItem()){
-            case "Maximise Return":
-                em = PortfolioManager.EvaluationMethod.MAXIMISE_RETURN;
-                break;
-            case "Balance Return vs. Risk":
-                em = PortfolioManager.EvaluationMethod.MAXIMISE_RETURN_MINIMISE_RISK;
-                break;
-        }
-
-        TreeMap<String, TreeMap<Date, Double>> prices = new TreeMap<>();
-
-        for(String stock : stocks)
-            prices.put(stock, PortfolioManager.getPrices(stock, 200));
-
-        double totalAllocation = Double.valueOf(dh.executeQuery("SELECT COALESCE(SUM(Allocation), 0) FROM portfolio;").get(0));
-        Map<String, Double> currentPortfolio = new TreeMap<>();
-        for (String stock : stocks) currentPortfolio.put(stock, 0.0);
-        for (String record : dh.executeQuery("SELECT Symbol, COALESCE(Allocation, 0) FROM portfolio;")) {
-            String[] splitString = record.split(",");
-            currentPortfolio.put(splitString[0], Double.valueOf(splitString[1]) / totalAllocation);
-        }
-
-        Map<String, Double> portfolio = PortfolioManager.optimisePortfolio(om, em, 1, prices, currentPortfolio, true);
-        double cutoff = portfolio.get("RETURN");
-
-        calculateLossCutoff(cutoff);
-        calculateTargetCutoff(cutoff);
-
-        portfolio.remove("RETURN");
-
-        StringBuilder command = new StringBuilder("INSERT INTO portfolio (Symbol, Allocation, Held, LastUpdated) VALUES \r\n");
-
-        int count = 1;
-        double availableFunds = Double.parseDouble(dh.executeQuery("SELECT SUM(Amount) FROM banktransactions;").get(0));
-
-        for (String stock : portfolio.keySet()) {
-            double allocation = availableFunds * portfolio.get(stock);
-
-            String lastUpdated = dh.executeQuery("SELECT MAX(TradeDateTime) FROM intradaystockprices WHERE Symbol='" + stock + "';").get(0);
-
-            command.append("('").append(stock).append("', ").append(allocation).append(", 0, '").append(lastUpdated).append("')");
-            if (count++ < portfolio.size())
-                command.append(", \r\n");
-            else
-                command.append(" ON DUPLICATE KEY UPDATE Allocation = VALUES(Allocation);");
-        }
-
-        dh.executeCommand(command.toString());
-        updateGUI();
-    }
-
     private void initialiseListeners() {
         newsArticleList.getSelectionModel().selectedItemProperty().addListener((observableValue, s, t1) -> {
             if (newsArticleList.getSelectionModel().getSelectedItems().size() > 1)
@@ -872,6 +788,32 @@ public class Controller {
             }
         });
 
+        optimisationMethodDropdown.valueProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue == null) return;
+
+            switch (newValue) {
+                case "Simulated Annealing":
+                    Engine.setOptimisationMethod(PortfolioManager.OptimisationMethod.SIMULATED_ANNEALING);
+                    break;
+                case "Genetic Algorithm":
+                    Engine.setOptimisationMethod(PortfolioManager.OptimisationMethod.GENETIC_ALGORITHM);
+                    break;
+            }
+        });
+
+        evaluationMethodDropdown.valueProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue == null) return;
+
+            switch (newValue) {
+                case "Maximise Return":
+                    Engine.setEvaluationMethod(PortfolioManager.EvaluationMethod.MAXIMISE_RETURN);
+                    break;
+                case "Balance Return vs. Risk":
+                    Engine.setEvaluationMethod(PortfolioManager.EvaluationMethod.MAXIMISE_RETURN_MINIMISE_RISK);
+                    break;
+            }
+        });
+
         lossCutoffField.textProperty().addListener((observable, oldValue, newValue) -> {
             if (!newValue.matches("\\d*\\.?\\d*"))
                 lossCutoffField.setText(newValue.replaceAll("[^\\d.]", ""));
@@ -930,14 +872,16 @@ public class Controller {
         });
     }
 
-    private void updatePredictions(HashMap<String, HashMap<Integer, Boolean>> predictionValues) {
-        for (String stock : stocks) {
+    private void updatePredictions(Map<String, HashMap<Integer, Boolean>> predictionValues) {
+        for (String stock : predictionValues.keySet()) {
+            PredictionBox pb = predictions.get(stock);
+            if (pb == null) continue; //Predictions published before the prediction boxes have been created
+
             boolean[] currentPredictions = new boolean[dayArray.length];
             int i = 0;
             for (int day : dayArray)
                 currentPredictions[i++] = predictionValues.get(stock).get(day);
-            PredictionBox pb = predictions.get(stock);
-            Platform.runLater(()->pb.updateValues(currentPredictions));
+            UIUpdateBus.post(pb, () -> pb.updateValues(currentPredictions));
         }
     }
 
@@ -976,20 +920,14 @@ public class Controller {
     }
 
     private void initialiseSimulatorCharts(){
-        Platform.runLater(() -> simulatorProfitLoss.getData().add(simulatedPortfolioInitialPerformance));
-        Platform.runLater(() -> simulatorProfitLoss.getData().add(simulatedBalance));
-        Platform.runLater(() -> simulatorProfitLoss.getData().add(simulatedEqualAllocationPerformance));
-        Platform.runLater(() -> simulatorProfitLoss.getData().add(simulatedRandomPerformance));
-        Platform.runLater(() -> simulatorProfitLoss.getData().add(simulatedIndexPerformance));
-
-        simulatedPortfolioInitialPerformance.setName("Automated Trader");
-        simulatedEqualAllocationPerformance.setName("Automated Trader (Equal Allocation)");
-        simulatedBalance.setName("Automated Trader (With Portfolio Rebalancing)");
-        simulatedIndexPerformance.setName("NASDAQ 100 Index (^NDX)");
-        simulatedRandomPerformance.setName("Random Trader");
+        Platform.runLater(() -> simulatorProfitLoss.getData().add(simulatedPortfolioInitialPerformance.getSeries()));
+        Platform.runLater(() -> simulatorProfitLoss.getData().add(simulatedBalance.getSeries()));
+        Platform.runLater(() -> simulatorProfitLoss.getData().add(simulatedEqualAllocationPerformance.getSeries()));
+        Platform.runLater(() -> simulatorProfitLoss.getData().add(simulatedRandomPerformance.getSeries()));
+        Platform.runLater(() -> simulatorProfitLoss.getData().add(simulatedIndexPerformance.getSeries()));
 
         for(String stock :stocks){
-            simulatedHistory.put(stock, new XYChart.Series<>());
+            simulatedHistory.put(stock, new DecimatedSeries(stock, DownsamplingUtils.Method.LTTB));
             final NumberAxis xAxis = new NumberAxis();
             final NumberAxis yAxis = new NumberAxis();
             yAxis.setTickUnit(1);
@@ -1005,33 +943,33 @@ public class Controller {
             simulatorAxes.put(stock, yAxis);
             priceChart.setTitle(stock);
             yAxis.setAutoRanging(false);
-            priceChart.getData().add(simulatedHistory.get(stock));
+            priceChart.getData().add(simulatedHistory.get(stock).getSeries());
             Platform.runLater(()-> priceHistoryChartBox.getChildren().add(priceChart));
         }
     }
 
     public void addSimulatorRandomPerformance(int index, double balance){
-        Platform.runLater(() -> simulatedRandomPerformance.getData().add(createChartPoint(index, balance)));
+        simulatedRandomPerformance.add(index, balance);
     }
 
     public void addSimulatorIndexPerformance(int index, double balance){
-        Platform.runLater(() -> simulatedIndexPerformance.getData().add(createChartPoint(index, balance)));
+        simulatedIndexPerformance.add(index, balance);
     }
 
     public void addSimulatorPortfolioInitialBalance(int index, double balance) {
-        Platform.runLater(() -> simulatedPortfolioInitialPerformance.getData().add(createChartPoint(index, balance)));
+        simulatedPortfolioInitialPerformance.add(index, balance);
     }
 
     public void addSimulatorEqualAllocationBalance(int index, double balance) {
-        Platform.runLater(() -> simulatedEqualAllocationPerformance.getData().add(createChartPoint(index, balance)));
+        simulatedEqualAllocationPerformance.add(index, balance);
     }
 
     public void addSimulatorBalance(int index, double balance){
-        Platform.runLater(() -> simulatedBalance.getData().add(createChartPoint(index, balance)));
+        simulatedBalance.add(index, balance);
     }
 
     public void addHistoricPrice(String stock, int index, double price){
-        Platform.runLater(() -> simulatedHistory.get(stock).getData().add(createChartPoint(index, price)));
+        simulatedHistory.get(stock).add(index, price);
     }
 
     @FXML
@@ -1065,38 +1003,30 @@ public class Controller {
 
     public void realignSimulatorCharts(){
         ArrayList<Double> performance = new ArrayList<>();
-        Platform.runLater(()-> {
-            for (XYChart.Data indexData : simulatedIndexPerformance.getData())
-                if (indexData != null)
-                    performance.add((double) indexData.getYValue());
-            for (XYChart.Data balanceData : simulatedPortfolioInitialPerformance.getData())
-                if (balanceData != null)
-                    performance.add((double) balanceData.getYValue());
-            for (XYChart.Data balanceData : simulatedEqualAllocationPerformance.getData())
-                if (balanceData != null)
-                    performance.add((double) balanceData.getYValue());
-            for (XYChart.Data balanceData : simulatedBalance.getData())
-                if (balanceData != null)
-                    performance.add((double) balanceData.getYValue());
-            for (XYChart.Data randomData : simulatedRandomPerformance.getData())
-                if (randomData != null)
-                    performance.add((double) randomData.getYValue());
-
-            setBounds(simulatorPerformanceAxis, performance);
-            formatLineChart(simulatorProfitLoss.getData());
-        });
+
+        for (DecimatedSeries series : new DecimatedSeries[]{simulatedIndexPerformance, simulatedPortfolioInitialPerformance, simulatedEqualAllocationPerformance, simulatedBalance, simulatedRandomPerformance})
+            if (!series.isEmpty()) {
+                performance.add(series.getMinY());
+                performance.add(series.getMaxY());
+            }
+
+        if (!performance.isEmpty())
+            UIUpdateBus.post(simulatorPerformanceAxis, () -> {
+                setBounds(simulatorPerformanceAxis, performance);
+                formatLineChart(simulatorProfitLoss.getData());
+            });
 
         for(String stock : stocks){
-            ArrayList<Double> prices = new ArrayList<>();
-            Platform.runLater(()-> {
-                formatLineChart(simulatedHistory.get(stock));
-                for (XYChart.Data data : simulatedHistory.get(stock).getData())
-                    if (data != null)
-                        prices.add((double) data.getYValue());
+            DecimatedSeries history = simulatedHistory.get(stock);
 
-                if (prices.isEmpty())
-                    System.err.println("Price Chart Error");
+            if (history.isEmpty()) {
+                System.err.println("Price Chart Error");
+                continue;
+            }
 
+            ArrayList<Double> prices = new ArrayList<>(Arrays.asList(history.getMinY(), history.getMaxY()));
+            UIUpdateBus.post(simulatorAxes.get(stock), () -> {
+                formatLineChart(history.getSeries());
                 setBounds(simulatorAxes.get(stock), prices);
             });
         }
@@ -1105,88 +1035,21 @@ public class Controller {
     @FXML
     public void initialize() throws Exception {
         DISABLE_SYSTEM_UPDATE = Arrays.asList(Main.getArguments()).contains("-DSU");
-        CookieHandler.setDefault(new CookieManager(null, CookiePolicy.ACCEPT_ALL));
-
-        File res = new File("res");
-        if(!res.exists())
-            if (!res.mkdirs())
-                updateCurrentTask("Error: Could not create '" + res.getAbsolutePath() + "'", true, true);
-
-        System.out.println(res.getPath() + " " + res.getAbsolutePath() + " " + System.getProperty("user.dir"));
-
-        mainThread = new Thread(() -> {
-            while (!quit) {
-                LocalTime time = LocalTime.now();
-
-                //DOWNLOAD INTRADAY DATA FOR VISUALISATION PURPOSES
-                if (time.getSecond() == 0) {
-                    try {
-                        if (time.getHour() < 21 && time.getHour() >= 14) {
-                            StockQuoteDownloader.updateIntradayStockData(records);
-                            StockQuoteDownloader.updateDailyStockData(records);
-                            double totalWorth = TradingUtils.getTotalWorth();
-                            if (totalWorth <= lossCutoff || totalWorth >= profitCutoff) rebalancePortfolio();
-                            SmoothingUtils.smoothStocks(stocks, smoothRate);
-                            TechnicalAnalyser.calculateTechnicalIndicators(stocks, true, false);
-                            TechnicalAnalyser.calculatePercentChanges(stocks);
-                            if (StockPredictor.isModelLoaded())
-                                updatePredictions(StockPredictor.predictStocks(stocks, dayArray, stockForecastProgress));
-                        }
-                        if (time.getMinute() == 0)
-                            try {
-                                NewsDownloader.updateNews(stocks);
-                                INTRINIOHandler.downloadArticles();
-                                NaturalLanguageProcessor.enumerateSentencesFromArticles();
-                                NaturalLanguageProcessor.enumerateNGramsFromArticles(2);
-                                NaturalLanguageProcessor.processArticlesForSentiment(2);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        if (automated && StockPredictor.isModelLoaded())
-                            TradingUtils.autoTrade(stocks, dayArray);
-                        if (automated || (time.getHour() < 21 && time.getHour() >= 14) || time.getMinute() == 0) {
-                            checkServices();
-                            updateGUI();
-                        }
-                    } catch (Exception e) { e.printStackTrace(); }
-                }
-            }
-        });
+        UIUpdateBus.setLogSink(infoBox::appendText);
+        Status.addListener(statusListener);
 
         initialiseConnections();
         initialiseListeners();
 
-        StockQuoteDownloader.initialise(sqdh, avh, bch, stockFeedProgress, StockQuoteDownloader.STOCK_API.AlphaVantage);
-        StockRecordParser.initialise(sqdh);
-        NaturalLanguageProcessor.initialise(nlpdh, nlpProgress);
-        SmoothingUtils.initialise(tadh, technicalAnalyserProgress);
-        TechnicalAnalyser.initialise(tadh, technicalAnalyserProgress);
-        INTRINIOHandler.initialise(nddh, newsFeedProgress);
-        PortfolioManager.initialise(pmdh); //TODO: Get a progessbar for this
-        StockPredictor.initialise(spdh, stockForecastProgress);
-        TrainingFileUtils.setDatabaseHandler(dh);
-        TradingUtils.setDatabaseHandler(dh);
+        Engine.initialise();
         TradingSimulator.initialise(dh);
+        stocks = Engine.getStocks();
 
-        initialiseStocks();
         if (!Arrays.asList(Main.getArguments()).contains("-DLM")) {
             new Thread(() -> {
                 try {
-                    switch (dh.executeQuery("SELECT value FROM settings WHERE ID = 'PREDICTION_MODE';").get(0)) {
-                        case "SINGLE":
-                            StockPredictor.loadLatestRandomForest(stocks);
-                            break;
-                        case "MULTI":
-                            StockPredictor.loadLatestRandomForest();
-                            break;
-                        default:
-                            updateCurrentTask("Invalid setting for value 'PREDICTION_MODE'!", true, true);
-                            break;
-                    }
-
-                    final String modelInfromation = StockPredictor.getModelInformation(stocks);
-                    Platform.runLater(() -> predictionModelInformationBox.setText(modelInfromation));
-                } catch (SQLException e) {
+                    Engine.loadModels();
+                } catch (SQLException | InterruptedException e) {
                     e.printStackTrace();
                 }
             }).start();
@@ -1220,7 +1083,7 @@ public class Controller {
     }
 
     private void startClocks() {
-        updateCurrentTask("Starting Clocks", false, false);
+        Status.updateCurrentTask("Starting Clocks", false, false);
         new Thread(() -> {
             while (!quit) {
                 try {TimeUnit.MILLISECONDS.sleep(1000);} catch (InterruptedException e) {e.printStackTrace();}
@@ -1234,12 +1097,8 @@ public class Controller {
         Platform.runLater(() -> currentBalanceLabel.setText(String.valueOf(balance)));
     }
 
-    private void printToInfoBox(String string) {
-        Platform.runLater(() -> infoBox.appendText(string + "\r\n"));
-    }
-
     private void initialiseDisplay() throws SQLException {
-        updateCurrentTask("Initialising Display", false, false);
+        Status.updateCurrentTask("Initialising Display", false, false);
         ArrayList<String> stockInfo = dh.executeQuery("SELECT Symbol, Name FROM stocks;");
 
         Map<String, String> stockNames = new HashMap<>();
@@ -1250,70 +1109,15 @@ public class Controller {
         }
 
         for (String curr : stocks) records.add(new LiveStockRecord(curr, stockNames.get(curr), dh));
+        for (LiveStockRecord rec : records) liveRecords.put(rec.getSymbol(), rec);
         for (LiveStockRecord rec : records) Platform.runLater(() -> stockList.getChildren().add(rec.getNode()));
     }
 
     private void updateSystem() throws SQLException, InterruptedException, ParseException {
-        Thread stockThread = new Thread(() -> {
-            try {
-                StockRecordParser.processYahooHistories(stocks, stockFeedProgress);
-                dh.executeCommand("DELETE FROM intradaystockprices WHERE Temporary = 1;");
-                bch.downloadHistory(stocks, false);
-                bch.downloadHistory(stocks, true);
-                StockQuoteDownloader.downloadStockHistory(stocks, true, true, false);
-            } catch (Exception e) { e.printStackTrace(); }
-        });
-
-        Thread taThread = new Thread(() -> {
-            try {
-                TechnicalAnalyser.calculatePercentChanges(stocks);
-                SmoothingUtils.smoothStocks(stocks, smoothRate);
-                TechnicalAnalyser.calculateTechnicalIndicators(stocks, true, false);
-            } catch (Exception e) { e.printStackTrace(); }
-        });
-
-        Thread newsThread = new Thread(() -> {
-            try {
-                nddh.setWriteToFile(true);
-                NewsDownloader.updateNews(stocks);
-                nddh.setWriteToFile(false);
-                nddh.sendSQLFileToDatabase(false);
-
-                INTRINIOHandler.downloadArticles(); //Has to be done individually to check for duplicate values
-            } catch (Exception e) { e.printStackTrace(); }
-
-            try {
-                NaturalLanguageProcessor.enumerateSentencesFromArticles();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        });
-
-        Thread nlpThread = new Thread(() -> {
-            try {
-                NaturalLanguageProcessor.enumerateNGramsFromArticles(2);
-                NaturalLanguageProcessor.processArticlesForSentiment(2);
-            } catch (SQLException e) { e.printStackTrace(); }
-        });
-
         updateGUI();
-
-        setProfitCutoff(Double.parseDouble(dh.executeQuery("SELECT Value FROM settings WHERE ID = 'PROFIT_CUTOFF';").get(0)));
-        setLossCutoff(Double.parseDouble(dh.executeQuery("SELECT Value FROM settings WHERE ID = 'LOSS_CUTOFF';").get(0)));
         checkServices();
 
-        if(!DISABLE_SYSTEM_UPDATE) {
-            newsThread.start();
-            stockThread.start();
-
-            stockThread.join();
-            taThread.start();
-            newsThread.join();
-
-            nlpThread.start();
-            nlpThread.join();
-            taThread.join();
-        }
+        if(!DISABLE_SYSTEM_UPDATE) Engine.startupSync();
 
         new Thread(()-> {
             for (LiveStockRecord curr : records) {
@@ -1324,12 +1128,8 @@ public class Controller {
 
         if (StockPredictor.isModelLoaded())
             new Thread(() -> {
-                HashMap<String, HashMap<Integer, Boolean>> predictionArray = null;
-                try {
-                    predictionArray = StockPredictor.predictStocks(stocks, dayArray, stockForecastProgress);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+                HashMap<String, HashMap<Integer, Boolean>> predictionArray = Engine.predictStocks();
+                if (predictionArray == null) return;
 
                 Label spacer = new Label();
                 spacer.setMinSize(80, 20);
@@ -1368,18 +1168,18 @@ public class Controller {
 
         updateGUI();
 
-        if (!Arrays.asList(Main.getArguments()).contains("-DMT")) mainThread.start();
+        if (!Arrays.asList(Main.getArguments()).contains("-DMT")) Engine.startScheduler();
     }
 
     private void initialiseClocks() {
-        updateCurrentTask("Initialising Clocks", false, false);
+        Status.updateCurrentTask("Initialising Clocks", false, false);
 
         Map<LocalTime, LocalTime> jpBreak = new HashMap<>(), hkBreak = new HashMap<>();
 
         jpBreak.put(LocalTime.of(11, 30), LocalTime.of(12, 30));
         hkBreak.put(LocalTime.of(12, 0), LocalTime.of(13, 0));
 
-        clocks.add(new StockClock("NASDAQ", LocalTime.of(9, 30), null, LocalTime.of(16, 0), ZoneId.of("America/New_York")));
+        clocks.add(new StockClock("NASDAQ"));
         clocks.add(new StockClock("London SE", LocalTime.of(8, 0), null, LocalTime.of(16, 30), ZoneId.of("Europe/London")));
         clocks.add(new StockClock("Euronext", LocalTime.of(9, 0), null, LocalTime.of(17, 30), ZoneId.of("CET")));
         clocks.add(new StockClock("Japan Exchange Group", LocalTime.of(9, 0), jpBreak, LocalTime.of(15, 0), ZoneId.of("Asia/Tokyo")));
@@ -1397,15 +1197,7 @@ public class Controller {
     }
 
     private void checkServices() throws SQLException {
-        int newsCalls = 0;
-        int callLimit = Integer.parseInt(dh.executeQuery("SELECT COALESCE(DailyLimit,0) FROM apimanagement WHERE Name='INTRINIO';").get(0));
-
-        ArrayList<String> calls = dh.executeQuery("SELECT Calls FROM apicalls WHERE Name='INTRINIO' AND Date=CURDATE()");
-
-        if (!calls.isEmpty())
-            newsCalls = Integer.parseInt(calls.get(0));
-
-        if (newsCalls < callLimit) {
+        if (!RateLimiter.get("INTRINIO").isOverLimit(1)) {
             newsFeedAvailability.setFill(Color.GREEN);
             newsFeedAvailability.setStroke(Color.GREEN);
         } else {
@@ -1426,10 +1218,13 @@ public class Controller {
         }
     }
 
-    @FXML
-    private void initialiseStocks() throws SQLException {
-        updateCurrentTask("Initialising stocks", false, false);
-        stocks = dh.executeQuery("SELECT Symbol FROM stocks");
+    private void refreshGUI() {
+        try {
+            checkServices();
+            updateGUI();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
     }
 
     public void updateGUI() throws SQLException, ParseException {
@@ -31,7 +31,7 @@ public class DatabaseHandler {
         if (initialised) return;
         Connection conn = DriverManager.getConnection("jdbc:mysql://localhost?useUnicode=true&useJDBCCompliantTimezoneShift=true&useLegacyDatetimeCode=false&serverTimezone=UTC", adminUser, adminPass);
 
-        Main.getController().updateCurrentTask("Initialising Database...", false, false);
+        Status.updateCurrentTask("Initialising Database...", false, false);
 
         Statement statement = conn.createStatement();
         conn.setAutoCommit(false);
@@ -41,7 +41,7 @@ public class DatabaseHandler {
         statement.addBatch("USE automated_trader");
 
         //Primary tables
-        statement.addBatch("CREATE TABLE IF NOT EXISTS apimanagement (Name VARCHAR(20) NOT NULL PRIMARY KEY, DailyLimit INT DEFAULT 0, Delay INT UNSIGNED DEFAULT 0);");
+        statement.addBatch("CREATE TABLE IF NOT EXISTS apimanagement (Name VARCHAR(20) NOT NULL PRIMARY KEY, DailyLimit INT DEFAULT 0, Delay INT UNSIGNED DEFAULT 0, MinuteLimit INT UNSIGNED DEFAULT 0);");
         statement.addBatch("CREATE TABLE IF NOT EXISTS stocks (Symbol VARCHAR(7) UNIQUE NOT NULL PRIMARY KEY, Name TEXT NOT NULL, Collection VARCHAR(20));");
         statement.addBatch("CREATE TABLE IF NOT EXISTS ngrams (Hash VARCHAR(32) NOT NULL PRIMARY KEY, Gram TEXT NOT NULL, N INT UNSIGNED NOT NULL, Increase INT UNSIGNED DEFAULT 0, Decrease INT UNSIGNED DEFAULT 0, Occurrences INT UNSIGNED DEFAULT 0 NOT NULL, Documents INT UNSIGNED DEFAULT 1 NOT NULL, Blacklisted BIT DEFAULT 0);");
         statement.addBatch("CREATE TABLE IF NOT EXISTS banktransactions (ID INT UNSIGNED AUTO_INCREMENT NOT NULL PRIMARY KEY, TradeDateTime DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP, Type VARCHAR(10), Amount DOUBLE SIGNED NOT NULL);");
@@ -51,6 +51,7 @@ public class DatabaseHandler {
         statement.addBatch("CREATE TABLE IF NOT EXISTS apicalls (Name varchar(20) NOT NULL, Date DATE NOT NULL, Calls INT UNSIGNED DEFAULT 0, PRIMARY KEY (Name, Date), FOREIGN KEY (Name) REFERENCES apimanagement (Name) ON UPDATE CASCADE);");
         statement.addBatch("CREATE TABLE IF NOT EXISTS dailystockprices (Symbol VARCHAR(7) NOT NULL, TradeDate DATE NOT NULL, OpenPrice DOUBLE UNSIGNED NOT NULL, HighPrice DOUBLE UNSIGNED NOT NULL, LowPrice DOUBLE UNSIGNED NOT NULL, ClosePrice DOUBLE UNSIGNED NOT NULL, TradeVolume BIGINT(20) UNSIGNED NOT NULL, PercentChange DOUBLE SIGNED, SmoothedClosePrice DOUBLE UNSIGNED, SMA5 DOUBLE UNSIGNED, SMA10 DOUBLE UNSIGNED, SMA20 DOUBLE UNSIGNED, SMA200 DOUBLE UNSIGNED, EMA5 DOUBLE UNSIGNED, EMA10 DOUBLE UNSIGNED, EMA20 DOUBLE UNSIGNED, EMA200 DOUBLE UNSIGNED, MACD DOUBLE SIGNED, MACDSig DOUBLE SIGNED, MACDHist DOUBLE SIGNED, RSI DOUBLE SIGNED, ADX10 DOUBLE SIGNED, CCI DOUBLE SIGNED, AD DOUBLE SIGNED, OBV DOUBLE SIGNED, StoOscSlowK DOUBLE SIGNED, StoOscSlowD DOUBLE SIGNED, WillR DOUBLE SIGNED, PRIMARY KEY (Symbol,TradeDate), FOREIGN KEY (Symbol) REFERENCES stocks(Symbol) ON UPDATE CASCADE ON DELETE CASCADE, INDEX IDX_TradeDate(TradeDate), INDEX IDX_Symbol(Symbol));");
         statement.addBatch("CREATE TABLE IF NOT EXISTS intradaystockprices (Symbol VARCHAR(7) NOT NULL, TradeDateTime DATETIME NOT NULL, OpenPrice DOUBLE UNSIGNED NOT NULL, HighPrice DOUBLE UNSIGNED NOT NULL, LowPrice DOUBLE UNSIGNED NOT NULL, ClosePrice DOUBLE UNSIGNED NOT NULL, TradeVolume BIGINT(20) UNSIGNED NOT NULL, Temporary BIT DEFAULT 0, PRIMARY KEY (Symbol,TradeDateTime), FOREIGN KEY (Symbol) REFERENCES stocks(Symbol) ON UPDATE CASCADE ON DELETE CASCADE, INDEX IDX_Symbol(Symbol));");
+        statement.addBatch("CREATE TABLE IF NOT EXISTS syncwatermarks (Symbol VARCHAR(7) NOT NULL, Resolution VARCHAR(8) NOT NULL, SyncedTo DATETIME NOT NULL, LastSynced DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, PRIMARY KEY (Symbol, Resolution), FOREIGN KEY (Symbol) REFERENCES stocks(Symbol) ON UPDATE CASCADE ON DELETE CASCADE);");
         statement.addBatch("CREATE TABLE IF NOT EXISTS portfolio (Symbol VARCHAR(7) NOT NULL PRIMARY KEY, Allocation DOUBLE UNSIGNED NOT NULL, Held INT UNSIGNED NOT NULL DEFAULT 0, Investment DOUBLE SIGNED NOT NULL DEFAULT 0, LastUpdated DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP, FOREIGN KEY (Symbol) REFERENCES stocks(Symbol) ON UPDATE CASCADE ON DELETE CASCADE);");
         statement.addBatch("CREATE TABLE IF NOT EXISTS sentences (Hash VARCHAR(32) NOT NULL PRIMARY KEY, Sentence TEXT NOT NULL, Occurrences INT UNSIGNED DEFAULT 0 NOT NULL, Documents INT UNSIGNED DEFAULT 0 NOT NULL, Blacklisted BIT DEFAULT 0);");
         statement.addBatch("CREATE TABLE IF NOT EXISTS newsarticles (ID INT UNSIGNED AUTO_INCREMENT NOT NULL PRIMARY KEY, Symbol VARCHAR(7) NOT NULL, Headline TEXT NOT NULL, Description TEXT, Content LONGTEXT, Published DATETIME NOT NULL, PublishedDate DATE, URL TEXT, Blacklisted BIT DEFAULT 0 NOT NULL, Redirected BIT DEFAULT 0 NOT NULL, Duplicate BIT DEFAULT 0 NOT NULL, Enumerated BIT DEFAULT 0 NOT NULL, Tokenised BIT DEFAULT 0 NOT NULL, Processed BIT DEFAULT 0 NOT NULL, Mood DOUBLE UNSIGNED DEFAULT 0.5, FOREIGN KEY (Symbol) REFERENCES stocks(Symbol) ON UPDATE CASCADE ON DELETE CASCADE, INDEX IDX_Published(Published), INDEX IDX_PublishedDate(PublishedDate), INDEX IDX_Symbol_PublishedDate(Symbol, PublishedDate), INDEX IDX_Symbol_Published(Symbol, Published));");
@@ -63,7 +64,7 @@ public class DatabaseHandler {
 
         //Insert initial values into relevant databases
         statement.addBatch("INSERT INTO banktransactions(Amount, Type) SELECT 10000, 'DEPOSIT' FROM dual WHERE NOT EXISTS (SELECT 1 FROM banktransactions WHERE Amount = 10000 AND Type='DEPOSIT');");
-        statement.addBatch("INSERT INTO apimanagement VALUES ('INTRINIO',500,0),('AlphaVantage',0,1667),('BarChart', 2100,0) ON DUPLICATE KEY UPDATE DailyLimit=VALUES(DailyLimit), Delay=VALUES(Delay);");
+        statement.addBatch("INSERT INTO apimanagement (Name, DailyLimit, Delay) VALUES ('INTRINIO',500,1000),('AlphaVantage',0,1667),('BarChart', 2100,0) ON DUPLICATE KEY UPDATE DailyLimit=VALUES(DailyLimit), Delay=VALUES(Delay);");
         statement.addBatch("INSERT IGNORE INTO settings VALUES('PROFIT_CUTOFF', '11000'), ('LOSS_CUTOFF','9000'), ('BARCHART_API_KEY', 'NULL'), ('INTRINIO_API_KEY', 'NULL'), ('INTRINIO_API_USER', 'NULL'), ('ALPHAVANTAGE_API_KEY','NULL'), ('PREDICTION_MODE','SINGLE'), ('NEWS_ARTICLE_PARALLEL_DOWNLOAD', '1')");
 
         //Create users
@@ -74,6 +75,7 @@ public class DatabaseHandler {
         statement.addBatch("CREATE USER IF NOT EXISTS 'StockQuoteDownloader'@'localhost' IDENTIFIED BY 'j2wbvx19Gg1Be22J';");
         statement.addBatch("CREATE USER IF NOT EXISTS 'PortfolioManager'@'localhost' IDENTIFIED BY 'mAjwa22NdsrRihi4';");
         statement.addBatch("CREATE USER IF NOT EXISTS 'StockPredictor'@'localhost' IDENTIFIED BY 'wfN1XLoW810diEhR';");
+        statement.addBatch("CREATE USER IF NOT EXISTS 'APIManager'@'localhost' IDENTIFIED BY 'Tq8vLw3RzK5nHc7M';");
 
         //Assign permissions to users
         statement.addBatch("GRANT ALL ON automated_trader.* TO 'Agent'@'localhost';");
@@ -83,6 +85,7 @@ public class DatabaseHandler {
         statement.addBatch("GRANT ALL ON automated_trader.* TO 'StockQuoteDownloader'@'localhost';");
         statement.addBatch("GRANT ALL ON automated_trader.* TO 'PortfolioManager'@'localhost';");
         statement.addBatch("GRANT ALL ON automated_trader.* TO 'StockPredictor'@'localhost';");
+        statement.addBatch("GRANT ALL ON automated_trader.* TO 'APIManager'@'localhost';");
 
         statement.executeBatch();
         conn.setAutoCommit(false);
@@ -116,12 +119,12 @@ public class DatabaseHandler {
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      * @throws IOException  Throws IOException if the file cannot be created or accessed
      */
-    public void sendSQLFileToDatabase(boolean flush) throws SQLException, IOException {
+    public synchronized void sendSQLFileToDatabase(boolean flush) throws SQLException, IOException {
         File file = new File(System.getProperty("user.dir") + "/res/" + user + ".sql");
 
         if (!file.exists()) return;
 
-        Main.getController().updateCurrentTask("Flushing '" + user + "' SQL file to database...", false, false);
+        Status.updateCurrentTask("Flushing '" + user + "' SQL file to database...", false, false);
 
         setAutoCommit(false);
 
@@ -142,7 +145,7 @@ public class DatabaseHandler {
     /**
      * Commits all uncommitted SQL commands
      */
-    public void commit() {
+    public synchronized void commit() {
         if (uncommittedStatements == 0) return;
 
         System.out.println("COMMITTING " + uncommittedStatements + " UNCOMMITTED STATEMENTS...");
@@ -164,7 +167,7 @@ public class DatabaseHandler {
      * @param autoCommit True if commands should be sent straight to the database, False if they should be buffered
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    public void setAutoCommit(boolean autoCommit) throws SQLException {
+    public synchronized void setAutoCommit(boolean autoCommit) throws SQLException {
         connection.setAutoCommit(autoCommit);
     }
 
@@ -174,7 +177,7 @@ public class DatabaseHandler {
      * @param command SQL command to add to the buffer
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    public void addBatchCommand(String command) throws SQLException {
+    public synchronized void addBatchCommand(String command) throws SQLException {
         if (batchStatement == null) batchStatement = connection.createStatement();
 
         batchStatement.addBatch(command);
@@ -187,18 +190,24 @@ public class DatabaseHandler {
     }
 
     /**
-     * Sends all buffered commands to the database as one large command (faster execution than single commands)
+     * Sends all buffered commands to the database as one large command (faster execution than single commands). The buffer is emptied even if the batch fails, so a failed batch is never sent again with the next caller's commands.
+     * Callers that share this handler across threads should hold its lock (synchronized on the handler) from their first {@link #addBatchCommand(String)} until this returns, so that their batch is not sent with another thread's half-built batch
      *
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    public void executeBatch() throws SQLException {
+    public synchronized void executeBatch() throws SQLException {
         if (batchStatement == null) return;
-        Main.getController().updateCurrentTask("Executing batch command...", false, false);
-        batchStatement.executeBatch();
-        connection.commit();
-        batchStatement.clearBatch();
-        uncommittedStatements = 0;
-        Main.getController().updateCurrentTask("Batch command committed successfully!", false, false);
+        Status.updateCurrentTask("Executing batch command...", false, false);
+
+        try {
+            batchStatement.executeBatch();
+            if (!connection.getAutoCommit()) connection.commit(); //Each statement has already been committed if the batch was sent outside of a transaction
+        } finally {
+            batchStatement.clearBatch();
+            uncommittedStatements = 0;
+        }
+
+        Status.updateCurrentTask("Batch command committed successfully!", false, false);
     }
 
     /**
@@ -207,7 +216,7 @@ public class DatabaseHandler {
      * @param command SQL command to execute
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    public void executeCommand(String command) throws SQLException {
+    public synchronized void executeCommand(String command) throws SQLException {
         Statement statement = connection.createStatement();
 
         if (connection.getAutoCommit() && !WRITE_TO_FILE) {
@@ -231,7 +240,7 @@ public class DatabaseHandler {
      * @return A list of records that are returned from the database based on the given query
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    public ArrayList<String> executeQuery(String command) throws SQLException{
+    public synchronized ArrayList<String> executeQuery(String command) throws SQLException{
         Statement query = connection.createStatement();
 
         ArrayList<String> tempArr = new ArrayList<>();
@@ -254,9 +263,9 @@ public class DatabaseHandler {
      * Closes the database connection
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    public void close() throws SQLException {
+    public synchronized void close() throws SQLException {
         connection.close();
-        Main.getController().updateCurrentTask("Closed database connection for '" + user + "'", false, false);
+        Status.updateCurrentTask("Closed database connection for '" + user + "'", false, false);
     }
 
     /**
@@ -284,10 +293,10 @@ public class DatabaseHandler {
         }
 
         if (connection == null)
-            Main.getController().updateCurrentTask("Failed to setDatabaseHandler database connection!", true, true);
+            Status.updateCurrentTask("Failed to setDatabaseHandler database connection!", true, true);
         else {
             executeCommand("USE automated_trader");
-            Main.getController().updateCurrentTask("Initialised database connection for '" + username + "'", false, false);
+            Status.updateCurrentTask("Initialised database connection for '" + username + "'", false, false);
             sendSQLFileToDatabase(true);
             initialiseDiskSQL();
         }
@@ -0,0 +1,528 @@
+package Default;
+
+import APIHandler.*;
+import Portfolio.PortfolioManager;
+import Prediction.FeatureStore;
+import Prediction.SparkContextManager;
+import Prediction.StockPredictor;
+import Processing.DirtyTracker;
+import Processing.NaturalLanguageProcessor;
+import Processing.StockRecordParser;
+import Processing.TechnicalAnalyser;
+import Utility.SmoothingUtils;
+import Utility.TradingCalendar;
+import Utility.TradingUtils;
+import Utility.TrainingFileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.CookieHandler;
+import java.net.CookieManager;
+import java.net.CookiePolicy;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class Engine {
+    static final double SMOOTH_RATE = 0.1;
+    static final int[] DAY_ARRAY = new int[]{1, 30, 200};
+    static final DatabaseHandler dh = new DatabaseHandler();
+    static final DatabaseHandler sqdh = new DatabaseHandler();
+    static final DatabaseHandler nlpdh = new DatabaseHandler();
+    static final DatabaseHandler tadh = new DatabaseHandler();
+    static final DatabaseHandler nddh = new DatabaseHandler();
+    static final DatabaseHandler pmdh = new DatabaseHandler();
+    static final DatabaseHandler spdh = new DatabaseHandler();
+    static final DatabaseHandler amdh = new DatabaseHandler();
+    static private final String DEFAULT_CONFIG = "res/engine.properties";
+    static private final BarChartHandler bch = new BarChartHandler();
+    static private final AlphaVantageHandler avh = new AlphaVantageHandler();
+    static private final Scheduler scheduler = new Scheduler();
+    static private final ExecutorService refreshWorkers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread thread = new Thread(r, "Refresh Worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    static private final CountDownLatch stopped = new CountDownLatch(1);
+    static private ArrayList<String> stocks = new ArrayList<>();
+    static private volatile double lossCutoff, profitCutoff;
+    static private volatile boolean automated = false;
+    static private volatile PortfolioManager.OptimisationMethod optimisationMethod = PortfolioManager.OptimisationMethod.SIMULATED_ANNEALING;
+    static private volatile PortfolioManager.EvaluationMethod evaluationMethod = PortfolioManager.EvaluationMethod.MAXIMISE_RETURN;
+    static private StatusServer statusServer;
+
+    /**
+     * Runs the engine without a GUI, publishing its status to clients of a local event stream until the process is stopped
+     *
+     * @param args Application arguments; "--config=path" selects the engine properties file (res/engine.properties by default), and "-DSU", "-DLM" and "-DMT" disable the startup sync, model loading and scheduler as they do for the GUI
+     * @throws Exception Throws Exception if the engine fails to connect to the database or start its status server
+     */
+    static public void runHeadless(String[] args) throws Exception {
+        List<String> arguments = Arrays.asList(args);
+        Properties config = loadConfig(arguments);
+
+        int port = Integer.parseInt(config.getProperty("status.port", "5050"));
+        if (port > 0) {
+            statusServer = new StatusServer(port);
+            Status.addListener(statusServer);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                shutdown();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, "Engine Shutdown"));
+
+        connect(config.getProperty("database.admin.user"), config.getProperty("database.admin.password", ""));
+        initialise();
+
+        setAutomated(Boolean.parseBoolean(config.getProperty("trader.automated", "false")));
+        setOptimisationMethod(PortfolioManager.OptimisationMethod.valueOf(config.getProperty("portfolio.optimisation", optimisationMethod.name())));
+        setEvaluationMethod(PortfolioManager.EvaluationMethod.valueOf(config.getProperty("portfolio.evaluation", evaluationMethod.name())));
+
+        if (Boolean.parseBoolean(config.getProperty("engine.loadModels", "true")) && !arguments.contains("-DLM"))
+            loadModels();
+
+        if (Boolean.parseBoolean(config.getProperty("engine.systemUpdate", "true")) && !arguments.contains("-DSU"))
+            startupSync();
+
+        predictStocks();
+
+        if (Boolean.parseBoolean(config.getProperty("engine.scheduler", "true")) && !arguments.contains("-DMT"))
+            startScheduler();
+
+        stopped.await();
+    }
+
+    /**
+     * Reads the engine properties file named by the "--config=" argument, falling back to defaults if it does not exist
+     *
+     * @param arguments Application arguments
+     * @return Engine configuration
+     * @throws IOException Throws IOException if the properties file exists but cannot be read
+     */
+    static private Properties loadConfig(List<String> arguments) throws IOException {
+        String path = DEFAULT_CONFIG;
+
+        for (String argument : arguments)
+            if (argument.startsWith("--config="))
+                path = argument.substring("--config=".length());
+
+        Properties config = new Properties();
+        File file = new File(path);
+
+        if (file.exists())
+            try (InputStream in = new FileInputStream(file)) {
+                config.load(in);
+            }
+        else
+            Status.updateCurrentTask("No engine configuration found at '" + file.getAbsolutePath() + "', using defaults", true, true);
+
+        return config;
+    }
+
+    /**
+     * Connects every subsystem to the database and the market data APIs
+     *
+     * @param adminUser SQL Server admin username, used to create the database if it does not exist (null to skip the database creation)
+     * @param adminPass SQL Server admin password
+     * @throws IOException Throws IOException if a database user's SQL file cannot be created
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    static public void connect(String adminUser, String adminPass) throws IOException, SQLException {
+        Status.updateCurrentTask("Initialising Connections...", false, false);
+
+        if (adminUser != null)
+            try {
+                DatabaseHandler.initialiseDatabase(adminUser, adminPass);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+
+        dh.init("Agent", "0Y5q0m28pSB9jj2O");
+        nlpdh.init("NaturalLanguageProcessor", "p1pONM8zhI6GgCfy");
+        tadh.init("TechnicalAnalyser", "n6qvdUkFOoFCxPq5");
+        nddh.init("NewsDownloader", "wu0Ni6YF3yLTVp2A");
+        sqdh.init("StockQuoteDownloader", "j2wbvx19Gg1Be22J");
+        pmdh.init("PortfolioManager", "mAjwa22NdsrRihi4");
+        spdh.init("StockPredictor", "wfN1XLoW810diEhR");
+        amdh.init("APIManager", "Tq8vLw3RzK5nHc7M");
+
+        RateLimiter.initialise(amdh);
+
+        ArrayList<String> alphavantageKey = dh.executeQuery("SELECT value FROM settings WHERE ID='ALPHAVANTAGE_API_KEY';");
+        ArrayList<String> intrinioUser = dh.executeQuery("SELECT value FROM settings WHERE ID='INTRINIO_API_USER';");
+        ArrayList<String> intrinioKey = dh.executeQuery("SELECT value FROM settings WHERE ID='INTRINIO_API_KEY';");
+        ArrayList<String> barchartKey = dh.executeQuery("SELECT value FROM settings WHERE ID='BARCHART_API_KEY';");
+
+        boolean keyMissing = false;
+        if (alphavantageKey.isEmpty() || alphavantageKey.get(0).toUpperCase().equals("NULL")) {
+            Status.updateCurrentTask("No AlphaVantage API Key found! Please go to https://www.alphavantage.co/ to retrieve one and save key in database with ID 'ALPHAVANTAGE_API_KEY'.", true, true);
+            keyMissing = true;
+        }
+
+        if (barchartKey.isEmpty() || barchartKey.get(0).toUpperCase().equals("NULL")) {
+            Status.updateCurrentTask("No Barchart API Key found! Please go to https://www.barchart.com/ondemand/free-market-data-api to retrieve one and save key in database with ID 'BARCHART_API_KEY'.", true, true);
+            keyMissing = true;
+        }
+
+        if (intrinioUser.isEmpty() || intrinioUser.get(0).toUpperCase().equals("NULL")) {
+            Status.updateCurrentTask("No INTRINIO User ID found! Please go to https://intrinio.com/signup to retrieve one and save User ID in database with ID 'INTRINIO_API_USER' and API Key with ID 'INTRINIO_API_KEY'.", true, true);
+            keyMissing = true;
+        }
+
+        if (intrinioKey.isEmpty() || intrinioKey.get(0).toUpperCase().equals("NULL")) {
+            Status.updateCurrentTask("No INTRINIO API Key found! Please go to https://intrinio.com/signup to retrieve one and save User ID in database with ID 'INTRINIO_API_USER' and API Key with ID 'INTRINIO_API_KEY'.", true, true);
+            keyMissing = true;
+        }
+
+        if (keyMissing) System.exit(-1);
+
+        avh.init(alphavantageKey.get(0));
+        bch.init(barchartKey.get(0), sqdh);
+        INTRINIOHandler.authenticate(intrinioUser.get(0), intrinioKey.get(0));
+    }
+
+    /**
+     * Initialises every subsystem, loads the list of stocks and publishes the stored portfolio cutoffs
+     *
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    static public void initialise() throws SQLException {
+        CookieHandler.setDefault(new CookieManager(null, CookiePolicy.ACCEPT_ALL));
+
+        File res = new File("res");
+        if (!res.exists())
+            if (!res.mkdirs())
+                Status.updateCurrentTask("Error: Could not create '" + res.getAbsolutePath() + "'", true, true);
+
+        StockQuoteDownloader.initialise(sqdh, avh, bch, StockQuoteDownloader.STOCK_API.AlphaVantage);
+        StockRecordParser.initialise(sqdh);
+        NaturalLanguageProcessor.initialise(nlpdh);
+        SmoothingUtils.initialise(tadh);
+        TechnicalAnalyser.initialise(tadh);
+        INTRINIOHandler.initialise(nddh);
+        PortfolioManager.initialise(pmdh);
+        StockPredictor.initialise(spdh);
+        FeatureStore.initialise(spdh);
+        TrainingFileUtils.setDatabaseHandler(dh);
+        TradingUtils.setDatabaseHandler(dh);
+
+        Status.updateCurrentTask("Initialising stocks", false, false);
+        stocks = dh.executeQuery("SELECT Symbol FROM stocks");
+
+        profitCutoff = Double.parseDouble(dh.executeQuery("SELECT Value FROM settings WHERE ID = 'PROFIT_CUTOFF';").get(0));
+        lossCutoff = Double.parseDouble(dh.executeQuery("SELECT Value FROM settings WHERE ID = 'LOSS_CUTOFF';").get(0));
+        Status.cutoffsUpdated(lossCutoff, profitCutoff);
+    }
+
+    /**
+     * Loads the latest prediction models for the configured PREDICTION_MODE
+     *
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws InterruptedException Throws InterruptedException if loading is interrupted by another process
+     */
+    static public void loadModels() throws SQLException, InterruptedException {
+        String predictionMode = StockPredictor.refreshPredictionMode();
+        if (predictionMode.equals("SINGLE") || predictionMode.equals("MULTI")) StockPredictor.releaseLiveModels();
+
+        switch (predictionMode) {
+            case "SINGLE":
+                StockPredictor.loadLatestRandomForest(stocks);
+                break;
+            case "MULTI":
+                StockPredictor.loadLatestRandomForest();
+                break;
+            default:
+                Status.updateCurrentTask("Invalid setting for value 'PREDICTION_MODE'!", true, true);
+                return;
+        }
+
+        Status.modelsUpdated();
+    }
+
+    /**
+     * Brings the stored prices, news and sentiment up to date after the engine has been offline, returning once all three have finished
+     *
+     * @throws InterruptedException Throws InterruptedException if the sync is interrupted by another process
+     */
+    static public void startupSync() throws InterruptedException {
+        Thread stockThread = new Thread(() -> {
+            try {
+                StockRecordParser.processYahooHistories(stocks);
+                dh.executeCommand("DELETE FROM intradaystockprices WHERE Temporary = 1;");
+                //Every stock is recalculated, as the previous session may have stopped before its indicators were calculated
+                refreshStocks("Startup Sync", stock -> StockQuoteDownloader.downloadStockHistory(stock, true, true).thenApply(changed -> {
+                    DirtyTracker.markDirty(stock, DirtyTracker.WHOLE_HISTORY);
+                    return true;
+                }), false);
+            } catch (Exception e) { e.printStackTrace(); }
+        });
+
+        Thread newsThread = new Thread(() -> {
+            try {
+                nddh.setWriteToFile(true);
+                NewsDownloader.updateNews(stocks);
+                nddh.setWriteToFile(false);
+                nddh.sendSQLFileToDatabase(false);
+
+                INTRINIOHandler.downloadArticles(); //Has to be done individually to check for duplicate values
+            } catch (Exception e) { e.printStackTrace(); }
+
+            try {
+                NaturalLanguageProcessor.enumerateSentencesFromArticles();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+
+        Thread nlpThread = new Thread(() -> {
+            try {
+                NaturalLanguageProcessor.enumerateNGramsFromArticles(2);
+                NaturalLanguageProcessor.processArticlesForSentiment(2);
+            } catch (SQLException e) { e.printStackTrace(); }
+        });
+
+        newsThread.start();
+        stockThread.start();
+
+        newsThread.join();
+        nlpThread.start();
+
+        nlpThread.join();
+        stockThread.join();
+    }
+
+    /**
+     * Predicts the price direction of every stock, if a model has been loaded, and publishes the predictions
+     *
+     * @return Predictions of each stock for each day in the day array, or null if no model is loaded
+     */
+    static public HashMap<String, HashMap<Integer, Boolean>> predictStocks() {
+        try {
+            if (!StockPredictor.isModelLoaded()) return null;
+
+            HashMap<String, HashMap<Integer, Boolean>> predictions = StockPredictor.predictStocks(stocks, DAY_ARRAY);
+            Status.predictionsUpdated(predictions);
+
+            return predictions;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Starts the minutely market update, hourly news update and end of day sync
+     */
+    static public void startScheduler() {
+        Status.updateCurrentTask("Starting Scheduler", false, false);
+
+        scheduler.schedule("Market Update", Scheduler.Schedule.everyMinute(), Scheduler.MarketHours.WHILE_OPEN, () -> {
+            StockQuoteDownloader.updateIntradayStockData(stocks);
+            HashMap<String, HashMap<Integer, Boolean>> predictions = refreshStocks("Market Update", StockQuoteDownloader::updateDailyStockData, true);
+            if (!predictions.isEmpty()) Status.predictionsUpdated(predictions);
+            double totalWorth = TradingUtils.getTotalWorth();
+            if (totalWorth <= lossCutoff || totalWorth >= profitCutoff) rebalancePortfolio();
+            if (automated && StockPredictor.isModelLoaded())
+                TradingUtils.autoTrade(stocks, DAY_ARRAY);
+            Status.cycleFinished("Market Update");
+        });
+
+        scheduler.schedule("News Update", Scheduler.Schedule.hourly(), Scheduler.MarketHours.ALWAYS, () -> {
+            NewsDownloader.updateNews(stocks);
+            INTRINIOHandler.downloadArticles();
+            NaturalLanguageProcessor.enumerateSentencesFromArticles();
+            NaturalLanguageProcessor.enumerateNGramsFromArticles(2);
+            NaturalLanguageProcessor.processArticlesForSentiment(2);
+            Status.cycleFinished("News Update");
+        });
+
+        //Fills any gaps left by missed minute updates once the session's final bars have been published
+        scheduler.schedule("End of Day Sync", Scheduler.Schedule.dailyAt(LocalTime.of(16, 30), TradingCalendar.EXCHANGE_ZONE), Scheduler.MarketHours.TRADING_DAYS, () -> {
+            refreshStocks("End of Day Sync", stock -> StockQuoteDownloader.downloadStockHistory(stock, true, true), false);
+            Status.cycleFinished("End of Day Sync");
+        });
+
+        scheduler.start();
+    }
+
+    /**
+     * Brings each stock's derived data up to date as soon as its prices have been refreshed, running independent stocks in parallel and skipping stocks whose prices did not change
+     *
+     * @param name    Name of the refresh, shown in status messages
+     * @param prices  Refreshes the stored prices of a stock, completing with True if they changed
+     * @param predict True if the price direction of changed stocks should be predicted once their indicators are up to date
+     * @return Predictions of every stock that was predicted, for each day in the day array
+     * @throws InterruptedException Throws InterruptedException if the refresh is interrupted by another process
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws IOException Throws IOException if a stock's feature table cannot be read
+     */
+    static private HashMap<String, HashMap<Integer, Boolean>> refreshStocks(String name, PipelineGraph.AsyncTask prices, boolean predict) throws InterruptedException, SQLException, IOException {
+        Map<String, LocalDate> toPredict = new ConcurrentHashMap<>();
+
+        PipelineGraph graph = new PipelineGraph(name, refreshWorkers)
+                .asyncStage("Prices", prices)
+                .stage("Percent Changes", TechnicalAnalyser::calculatePercentChangesNow, "Prices")
+                .stage("Smoothing", stock -> SmoothingUtils.smoothStockNow(stock, SMOOTH_RATE), "Prices")
+                .stage("Technical Indicators", stock -> TechnicalAnalyser.calculateTechnicalIndicatorsNow(stock, true, false), "Smoothing");
+
+        //Stocks are only collected here, so that every changed stock is scored by the model in a single batch once the graph has finished
+        if (predict && StockPredictor.isModelLoaded())
+            graph.stage("Predictions", stock -> {
+                LocalDate from = DirtyTracker.take(DirtyTracker.Consumer.PREDICTION, stock);
+                if (from != null) toPredict.put(stock, from);
+                return false;
+            }, "Percent Changes", "Technical Indicators");
+
+        graph.run(stocks).await();
+
+        if (toPredict.isEmpty()) return new HashMap<>();
+
+        try {
+            return StockPredictor.predictBatch(stocks, toPredict.keySet(), DAY_ARRAY);
+        } catch (SQLException | IOException e) {
+            for (Map.Entry<String, LocalDate> stock : toPredict.entrySet())
+                DirtyTracker.markDirty(DirtyTracker.Consumer.PREDICTION, stock.getKey(), stock.getValue());
+            throw e;
+        }
+    }
+
+    /**
+     * Reallocates the available funds across the stocks using the selected optimisation and evaluation methods, and moves the portfolio cutoffs to match the expected return
+     *
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws ParseException Throws ParseException if a stored price date cannot be parsed
+     */
+    static public void rebalancePortfolio() throws SQLException, ParseException {
+        //TradingUtils.sellAllStock(automated);
+
+        TreeMap<String, TreeMap<Date, Double>> prices = new TreeMap<>();
+
+        for (String stock : stocks)
+            prices.put(stock, PortfolioManager.getPrices(stock, 200));
+
+        double totalAllocation = Double.valueOf(dh.executeQuery("SELECT COALESCE(SUM(Allocation), 0) FROM portfolio;").get(0));
+        Map<String, Double> currentPortfolio = new TreeMap<>();
+        for (String stock : stocks) currentPortfolio.put(stock, 0.0);
+        for (String record : dh.executeQuery("SELECT Symbol, COALESCE(Allocation, 0) FROM portfolio;")) {
+            String[] splitString = record.split(",");
+            currentPortfolio.put(splitString[0], Double.valueOf(splitString[1]) / totalAllocation);
+        }
+
+        Map<String, Double> portfolio = PortfolioManager.optimisePortfolio(optimisationMethod, evaluationMethod, 1, prices, currentPortfolio, true);
+        double cutoff = portfolio.get("RETURN");
+
+        double worth = Float.parseFloat(dh.executeQuery("SELECT SUM(Amount) FROM banktransactions").get(0)) + TradingUtils.getStockWorth();
+        setLossCutoff(worth * (1 - cutoff));
+        setProfitCutoff(worth * (1 + cutoff));
+
+        portfolio.remove("RETURN");
+
+        StringBuilder command = new StringBuilder("INSERT INTO portfolio (Symbol, Allocation, Held, LastUpdated) VALUES \r\n");
+
+        int count = 1;
+        double availableFunds = Double.parseDouble(dh.executeQuery("SELECT SUM(Amount) FROM banktransactions;").get(0));
+
+        for (String stock : portfolio.keySet()) {
+            double allocation = availableFunds * portfolio.get(stock);
+
+            String lastUpdated = dh.executeQuery("SELECT MAX(TradeDateTime) FROM intradaystockprices WHERE Symbol='" + stock + "';").get(0);
+
+            command.append("('").append(stock).append("', ").append(allocation).append(", 0, '").append(lastUpdated).append("')");
+            if (count++ < portfolio.size())
+                command.append(", \r\n");
+            else
+                command.append(" ON DUPLICATE KEY UPDATE Allocation = VALUES(Allocation);");
+        }
+
+        dh.executeCommand(command.toString());
+        Status.portfolioUpdated();
+    }
+
+    /**
+     * Stores and publishes the total worth below which the portfolio is rebalanced
+     *
+     * @param amount Total worth
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    static public void setLossCutoff(double amount) throws SQLException {
+        lossCutoff = (int) (amount * 100) / 100.0;
+        dh.executeCommand("INSERT INTO settings VALUES ('LOSS_CUTOFF', '" + lossCutoff + "') ON DUPLICATE KEY UPDATE Value = VALUES(Value);");
+        Status.cutoffsUpdated(lossCutoff, profitCutoff);
+    }
+
+    /**
+     * Stores and publishes the total worth above which the portfolio is rebalanced
+     *
+     * @param amount Total worth
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    static public void setProfitCutoff(double amount) throws SQLException {
+        profitCutoff = (int) (amount * 100) / 100.0;
+        dh.executeCommand("INSERT INTO settings VALUES ('PROFIT_CUTOFF', '" + profitCutoff + "') ON DUPLICATE KEY UPDATE Value = VALUES(Value);");
+        Status.cutoffsUpdated(lossCutoff, profitCutoff);
+    }
+
+    static public void setAutomated(boolean automated) {
+        Engine.automated = automated;
+    }
+
+    static public void setOptimisationMethod(PortfolioManager.OptimisationMethod optimisationMethod) {
+        Engine.optimisationMethod = optimisationMethod;
+    }
+
+    static public void setEvaluationMethod(PortfolioManager.EvaluationMethod evaluationMethod) {
+        Engine.evaluationMethod = evaluationMethod;
+    }
+
+    static public ArrayList<String> getStocks() {
+        return stocks;
+    }
+
+    /**
+     * Stops the scheduler and status server and closes every database connection
+     *
+     * @throws SQLException Throws SQLException if a database connection cannot be closed
+     */
+    static public synchronized void shutdown() throws SQLException {
+        if (stopped.getCount() == 0) return;
+        stopped.countDown();
+
+        scheduler.shutdown();
+        refreshWorkers.shutdownNow();
+
+        if (statusServer != null) {
+            Status.removeListener(statusServer);
+            statusServer.close();
+        }
+
+        dh.close();
+        nddh.close();
+        nlpdh.close();
+        tadh.close();
+        sqdh.close();
+        pmdh.close();
+        spdh.close();
+        RateLimiter.flushAll();
+        amdh.close();
+        SparkContextManager.shutdown();
+    }
+}
@@ -8,6 +8,7 @@ import javafx.scene.image.Image;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * @author Luke K. Rose <psylr5@nottingham.ac.uk>
@@ -20,14 +21,20 @@ public class Main extends Application {
     private static String[] arguments;
 
     /**
-     * Starts the application and initialises Hadoop utils if on a Windows machine
+     * Starts the application and initialises Hadoop utils if on a Windows machine. Passing "--headless" runs the {@link Engine} without the JavaFX GUI
      *
      * @param args Application arguments, passed in via the Command Line or IDE parameters
+     * @throws Exception Throws Exception if the headless engine fails to start
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
         if (System.getProperty("os.name").toLowerCase().contains("win"))
             System.setProperty("hadoop.home.dir", "c:/hadoop");
-        launch(arguments = args);
+        arguments = args;
+
+        if (Arrays.asList(args).contains("--headless"))
+            Engine.runHeadless(args);
+        else
+            launch(args);
     }
 
     /**
@@ -0,0 +1,261 @@
+package Default;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class PipelineGraph {
+    private final String name;
+    private final Executor workers;
+    private final LinkedHashMap<String, Stage> stages = new LinkedHashMap<>();
+
+    /**
+     * Creates an empty graph of per-stock processing stages
+     *
+     * @param name    Name of the graph, shown in status messages
+     * @param workers Executor that runs the stages (independent stocks run in parallel up to its size)
+     */
+    public PipelineGraph(String name, Executor workers) {
+        this.name = name;
+        this.workers = workers;
+    }
+
+    /**
+     * Adds a stage that runs on a worker thread once every one of its inputs has finished for a given stock
+     *
+     * @param name   Name of the stage, used by later stages to declare it as an input
+     * @param task   Work to perform for a stock, returning True if it changed that stock's stored data
+     * @param inputs Names of the stages whose output this stage reads (a stage with no inputs runs for every stock)
+     * @return This graph, so that stages can be chained
+     */
+    public PipelineGraph stage(String name, Task task, String... inputs) {
+        return asyncStage(name, symbol -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.run(symbol);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, workers), inputs);
+    }
+
+    /**
+     * Adds a stage that starts its own asynchronous work (e.g. a download) once every one of its inputs has finished for a given stock
+     *
+     * @param name   Name of the stage, used by later stages to declare it as an input
+     * @param task   Work to start for a stock, completing with True if it changed that stock's stored data
+     * @param inputs Names of the stages whose output this stage reads (a stage with no inputs runs for every stock)
+     * @return This graph, so that stages can be chained
+     */
+    public synchronized PipelineGraph asyncStage(String name, AsyncTask task, String... inputs) {
+        if (stages.containsKey(name))
+            throw new IllegalArgumentException("Stage '" + name + "' has already been added to '" + this.name + "'");
+
+        for (String input : inputs)
+            if (!stages.containsKey(input)) //Inputs must already exist, so the graph cannot contain a cycle and insertion order is a valid run order
+                throw new IllegalArgumentException("Stage '" + name + "' reads from unknown stage '" + input + "'");
+
+        stages.put(name, new Stage(name, task, inputs));
+
+        return this;
+    }
+
+    /**
+     * Starts every stage for every given stock. Each stock moves through the graph independently, so a stage starts for a stock as soon as its inputs have finished for that stock, and is skipped if none of its inputs changed that stock's data
+     *
+     * @param symbols Stocks to process (e.g. AAL, AAPL, BIIB etc.)
+     * @return The run, which can be waited upon and records how many stocks each stage processed
+     */
+    public synchronized Run run(Collection<String> symbols) {
+        Run run = new Run(name, stages.keySet());
+        ArrayList<CompletableFuture<Boolean>> outputs = new ArrayList<>();
+
+        for (String symbol : symbols) {
+            HashMap<String, CompletableFuture<Boolean>> results = new HashMap<>();
+
+            for (Stage stage : stages.values()) {
+                CompletableFuture<Boolean> result;
+
+                if (stage.inputs.length == 0)
+                    result = start(stage, symbol, run);
+                else {
+                    CompletableFuture<?>[] inputs = Arrays.stream(stage.inputs).map(results::get).toArray(CompletableFuture[]::new);
+
+                    result = CompletableFuture.allOf(inputs).handle((v, e) -> null).thenCompose(v -> {
+                        boolean changed = false;
+
+                        for (CompletableFuture<?> input : inputs) {
+                            if (input.isCompletedExceptionally()) { //Never runs on the partial output of a failed stage
+                                run.count(run.skipped, stage.name);
+                                CompletableFuture<Boolean> failed = new CompletableFuture<>();
+                                failed.completeExceptionally(new UpstreamFailure());
+                                return failed;
+                            }
+
+                            changed |= (Boolean) input.join();
+                        }
+
+                        if (!changed) {
+                            run.count(run.skipped, stage.name);
+                            return CompletableFuture.completedFuture(false);
+                        }
+
+                        return start(stage, symbol, run);
+                    });
+                }
+
+                results.put(stage.name, result);
+                outputs.add(result);
+            }
+        }
+
+        run.done = CompletableFuture.allOf(outputs.toArray(new CompletableFuture<?>[0])).handle((v, e) -> null);
+
+        return run;
+    }
+
+    /**
+     * Starts a stage for a stock, recording whether it succeeded
+     *
+     * @param stage  Stage to start
+     * @param symbol Stock to process
+     * @param run    Run to record the result in
+     * @return A future that completes with True if the stage changed the stock's stored data
+     */
+    private CompletableFuture<Boolean> start(Stage stage, String symbol, Run run) {
+        CompletableFuture<Boolean> result;
+
+        try {
+            result = stage.task.run(symbol);
+        } catch (Exception e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+
+        return result.whenComplete((changed, e) -> {
+            if (e == null) {
+                run.count(run.ran, stage.name);
+                return;
+            }
+
+            run.count(run.failed, stage.name);
+            Status.updateCurrentTask("'" + stage.name + "' failed for " + symbol + ": " + (e.getCause() != null ? e.getCause() : e), true, false);
+        });
+    }
+
+    /**
+     * Synchronous work performed by a stage for a single stock
+     */
+    @FunctionalInterface
+    public interface Task {
+        boolean run(String symbol) throws Exception;
+    }
+
+    /**
+     * Asynchronous work started by a stage for a single stock
+     */
+    @FunctionalInterface
+    public interface AsyncTask {
+        CompletableFuture<Boolean> run(String symbol) throws Exception;
+    }
+
+    /**
+     * A processing stage and the stages it reads from
+     */
+    static private class Stage {
+        private final String name;
+        private final AsyncTask task;
+        private final String[] inputs;
+
+        Stage(String name, AsyncTask task, String[] inputs) {
+            this.name = name;
+            this.task = task;
+            this.inputs = inputs;
+        }
+    }
+
+    /**
+     * Marks a stage that did not run because one of its inputs failed
+     */
+    static private class UpstreamFailure extends Exception {
+        static private final long serialVersionUID = 1L;
+
+        UpstreamFailure() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * A single run of the graph over a list of stocks, counting how many stocks each stage ran, skipped or failed for
+     */
+    static public class Run {
+        private final String name;
+        private final Map<String, AtomicInteger> ran = new LinkedHashMap<>(), skipped = new HashMap<>(), failed = new HashMap<>();
+        private final long start = System.nanoTime();
+        private volatile CompletableFuture<Void> done;
+
+        private Run(String name, Collection<String> stages) {
+            this.name = name;
+
+            for (String stage : stages) {
+                ran.put(stage, new AtomicInteger());
+                skipped.put(stage, new AtomicInteger());
+                failed.put(stage, new AtomicInteger());
+            }
+        }
+
+        private void count(Map<String, AtomicInteger> counter, String stage) {
+            counter.get(stage).incrementAndGet();
+        }
+
+        /**
+         * Waits for every stage to finish for every stock (failures are reported as they happen, rather than thrown)
+         *
+         * @throws InterruptedException Throws InterruptedException if the wait is interrupted by another process
+         */
+        public void await() throws InterruptedException {
+            try {
+                done.get();
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+
+            Status.updateCurrentTask(toString(), false, false);
+        }
+
+        public int getRan(String stage) {
+            return ran.get(stage).get();
+        }
+
+        public int getSkipped(String stage) {
+            return skipped.get(stage).get();
+        }
+
+        public int getFailed(String stage) {
+            return failed.get(stage).get();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder summary = new StringBuilder(name + " finished in " + (System.nanoTime() - start) / 1000000 + "ms:");
+
+            for (String stage : ran.keySet())
+                summary.append(" ").append(stage).append(" (").append(getRan(stage)).append(" ran, ").append(getSkipped(stage)).append(" skipped, ").append(getFailed(stage)).append(" failed)");
+
+            return summary.toString();
+        }
+    }
+}
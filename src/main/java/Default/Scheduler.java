@@ -0,0 +1,325 @@
+package Default;
+
+import Utility.TradingCalendar;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class Scheduler {
+    static private final Duration CLOSING_BAR_GRACE = Duration.ofMinutes(1);
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "Scheduled Job");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ArrayList<Job> jobs = new ArrayList<>();
+    private volatile boolean running = false;
+
+    /**
+     * Registers a job to be run whenever its schedule fires (jobs registered after {@link #start()} are scheduled immediately)
+     *
+     * @param name     Name of the job, shown in status messages and metrics
+     * @param schedule {@link Schedule} determining when the job fires
+     * @param hours    {@link MarketHours} enum value determining whether the job only runs while the market is open
+     * @param task     The work to perform
+     * @return The registered job, which records its timing metrics
+     */
+    public synchronized Job schedule(String name, Schedule schedule, MarketHours hours, Task task) {
+        Job job = new Job(name, schedule, hours, task);
+        jobs.add(job);
+
+        if (running) scheduleNext(job);
+
+        return job;
+    }
+
+    /**
+     * Starts firing every registered job on its schedule
+     */
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+
+        for (Job job : jobs) scheduleNext(job);
+    }
+
+    /**
+     * Stops firing jobs and interrupts any that are running, printing the timing metrics of every job
+     */
+    public synchronized void shutdown() {
+        running = false;
+        timer.shutdownNow();
+        workers.shutdownNow();
+
+        for (Job job : jobs) System.out.println(job);
+    }
+
+    /**
+     * Access the registered jobs, e.g. to display their timing metrics
+     *
+     * @return List of registered jobs
+     */
+    public synchronized ArrayList<Job> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    /**
+     * Arms the timer for the next time a job's schedule fires, skipping straight to the next session for jobs that only run while the market is open
+     *
+     * @param job Job to schedule
+     */
+    private void scheduleNext(Job job) {
+        if (!running) return;
+
+        Instant now = Instant.now(), from = job.nextRun != null && job.nextRun.isAfter(now) ? job.nextRun : now; //Never fires twice for the same boundary if the timer wakes early
+        ZonedDateTime next = job.schedule.next(from.atZone(ZoneId.systemDefault()));
+
+        if (job.hours == MarketHours.WHILE_OPEN && !job.hours.allows(next.toInstant())) {
+            ZonedDateTime open = TradingCalendar.getNextOpen(next.toInstant()).withZoneSameInstant(ZoneId.systemDefault());
+            next = job.schedule.next(open.minusNanos(1));
+        }
+
+        job.nextRun = next.toInstant();
+        timer.schedule(() -> fire(job), Math.max(0, Duration.between(now, next).toMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a job on a worker thread unless the previous run has not finished, then arms the timer for the following run (so slow jobs never delay other jobs)
+     *
+     * @param job Job whose schedule has fired
+     */
+    private void fire(Job job) {
+        Instant firedAt = job.nextRun;
+        scheduleNext(job);
+
+        if (!job.hours.allows(firedAt)) return;
+
+        if (!job.running.compareAndSet(false, true)) {
+            job.skipped++;
+            Status.updateCurrentTask("Skipped '" + job.name + "' as the previous run is still in progress", true, false);
+            return;
+        }
+
+        workers.execute(() -> {
+            long start = System.nanoTime();
+            boolean failed = false;
+
+            try {
+                job.task.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed = true;
+            } catch (Exception e) {
+                e.printStackTrace();
+                failed = true;
+            } finally {
+                job.finished(System.nanoTime() - start, failed);
+                job.running.set(false);
+            }
+
+            if (job.lastDuration > job.schedule.getPeriod().toNanos())
+                Status.updateCurrentTask("'" + job.name + "' overran its schedule (took " + TimeUnit.NANOSECONDS.toMillis(job.lastDuration) + "ms)", true, false);
+        });
+    }
+
+    /**
+     * Work performed by a job
+     */
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * When a job is allowed to run
+     */
+    public enum MarketHours {
+        ALWAYS,
+        TRADING_DAYS,
+        WHILE_OPEN;
+
+        /**
+         * Determines whether a job may run at a given instant
+         *
+         * @param instant The time the job fired
+         * @return True if the job should run
+         */
+        boolean allows(Instant instant) {
+            switch (this) {
+                case TRADING_DAYS:
+                    return TradingCalendar.isTradingDay(instant.atZone(TradingCalendar.EXCHANGE_ZONE).toLocalDate());
+                case WHILE_OPEN:
+                    return TradingCalendar.isOpen(instant) || TradingCalendar.isOpen(instant.minus(CLOSING_BAR_GRACE)); //Includes the minute after the close, so the closing bar is downloaded
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * Cron-like schedule, aligned to wall-clock boundaries so that runs do not drift
+     */
+    public interface Schedule {
+        /**
+         * Finds the next time the schedule fires
+         *
+         * @param after Time to search from (exclusive)
+         * @return The next firing time
+         */
+        ZonedDateTime next(ZonedDateTime after);
+
+        /**
+         * Access the nominal time between firings, used to detect overruns
+         *
+         * @return Period of the schedule
+         */
+        Duration getPeriod();
+
+        /**
+         * Fires at the start of every minute
+         *
+         * @return Minutely schedule
+         */
+        static Schedule everyMinute() {
+            return new Schedule() {
+                public ZonedDateTime next(ZonedDateTime after) {
+                    return after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+                }
+
+                public Duration getPeriod() {
+                    return Duration.ofMinutes(1);
+                }
+            };
+        }
+
+        /**
+         * Fires at the start of every hour
+         *
+         * @return Hourly schedule
+         */
+        static Schedule hourly() {
+            return new Schedule() {
+                public ZonedDateTime next(ZonedDateTime after) {
+                    return after.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+                }
+
+                public Duration getPeriod() {
+                    return Duration.ofHours(1);
+                }
+            };
+        }
+
+        /**
+         * Fires once a day at a given time
+         *
+         * @param time Time of day to fire
+         * @param zone Time zone of the time of day (e.g. {@link TradingCalendar#EXCHANGE_ZONE} for times relative to the market)
+         * @return Daily schedule
+         */
+        static Schedule dailyAt(LocalTime time, ZoneId zone) {
+            return new Schedule() {
+                public ZonedDateTime next(ZonedDateTime after) {
+                    ZonedDateTime local = after.withZoneSameInstant(zone), next = local.with(time).truncatedTo(ChronoUnit.SECONDS);
+
+                    return next.isAfter(local) ? next : next.plusDays(1).with(time);
+                }
+
+                public Duration getPeriod() {
+                    return Duration.ofDays(1);
+                }
+            };
+        }
+    }
+
+    /**
+     * A registered job and its timing metrics
+     */
+    static public class Job {
+        private final String name;
+        private final Schedule schedule;
+        private final MarketHours hours;
+        private final Task task;
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private volatile Instant nextRun;
+        private volatile int runs = 0, failures = 0, skipped = 0;
+        private volatile long lastDuration = 0, maxDuration = 0, totalDuration = 0;
+
+        private Job(String name, Schedule schedule, MarketHours hours, Task task) {
+            this.name = name;
+            this.schedule = schedule;
+            this.hours = hours;
+            this.task = task;
+        }
+
+        private synchronized void finished(long duration, boolean failed) {
+            runs++;
+            if (failed) failures++;
+            lastDuration = duration;
+            maxDuration = Math.max(maxDuration, duration);
+            totalDuration += duration;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isRunning() {
+            return running.get();
+        }
+
+        public Instant getNextRun() {
+            return nextRun;
+        }
+
+        public int getRuns() {
+            return runs;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public long getLastDuration() {
+            return TimeUnit.NANOSECONDS.toMillis(lastDuration);
+        }
+
+        public long getMaxDuration() {
+            return TimeUnit.NANOSECONDS.toMillis(maxDuration);
+        }
+
+        public synchronized long getAverageDuration() {
+            return runs == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalDuration / runs);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return name + ": " + runs + " runs (" + failures + " failed, " + skipped + " skipped), last " + getLastDuration() + "ms, average " + getAverageDuration() + "ms, max " + getMaxDuration() + "ms";
+        }
+    }
+}
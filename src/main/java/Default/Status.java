@@ -0,0 +1,164 @@
+package Default;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class Status {
+    /**
+     * Progress value signalling that the amount of remaining work is unknown
+     */
+    static public final double INDETERMINATE = -1;
+
+    static private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Subscribes to the status of the engine (e.g. the JavaFX GUI or the local event stream)
+     *
+     * @param listener Listener to notify of every status update
+     */
+    static public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unsubscribes from the status of the engine
+     *
+     * @param listener Listener to stop notifying
+     */
+    static public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Publishes the task that the engine is currently performing, printing it to the console
+     *
+     * @param task      Description of the task
+     * @param error     True if the task describes an error
+     * @param important True if the task should be kept in the log shown to the user, rather than only replacing the current task
+     */
+    static public void updateCurrentTask(String task, boolean error, boolean important) {
+        if (error)
+            System.err.println(task);
+        else
+            System.out.println(task);
+
+        for (Listener listener : listeners) listener.taskUpdated(task, error, important);
+    }
+
+    /**
+     * Publishes the progress of a long-running process
+     *
+     * @param current Amount of work completed
+     * @param total   Total amount of work
+     * @param channel {@link Channel} enum value of the process
+     */
+    static public void updateProgress(double current, double total, Channel channel) {
+        updateProgress(current / total, channel);
+    }
+
+    /**
+     * Publishes the progress of a long-running process
+     *
+     * @param progress Fraction of the work completed (0 or 1 if idle, {@link #INDETERMINATE} if unknown)
+     * @param channel  {@link Channel} enum value of the process
+     */
+    static public void updateProgress(double progress, Channel channel) {
+        for (Listener listener : listeners) listener.progressUpdated(channel, progress);
+    }
+
+    /**
+     * Publishes that the prices of a stock have started or finished downloading
+     *
+     * @param symbol   Stock being downloaded
+     * @param updating True if the download has started, False if it has finished
+     */
+    static public void stockUpdating(String symbol, boolean updating) {
+        for (Listener listener : listeners) listener.stockUpdating(symbol, updating);
+    }
+
+    /**
+     * Publishes that new prices of a stock have been stored
+     *
+     * @param symbol Stock whose prices were stored
+     */
+    static public void pricesUpdated(String symbol) {
+        for (Listener listener : listeners) listener.pricesUpdated(symbol);
+    }
+
+    /**
+     * Publishes new price direction predictions
+     *
+     * @param predictions Predictions of each stock that was predicted, for each number of days ahead
+     */
+    static public void predictionsUpdated(Map<String, HashMap<Integer, Boolean>> predictions) {
+        for (Listener listener : listeners) listener.predictionsUpdated(predictions);
+    }
+
+    /**
+     * Publishes the worth at which the portfolio is rebalanced
+     *
+     * @param lossCutoff   Total worth below which the portfolio is rebalanced
+     * @param profitCutoff Total worth above which the portfolio is rebalanced
+     */
+    static public void cutoffsUpdated(double lossCutoff, double profitCutoff) {
+        for (Listener listener : listeners) listener.cutoffsUpdated(lossCutoff, profitCutoff);
+    }
+
+    /**
+     * Publishes that stocks have been bought or sold, or the portfolio has been rebalanced
+     */
+    static public void portfolioUpdated() {
+        for (Listener listener : listeners) listener.portfolioUpdated();
+    }
+
+    /**
+     * Publishes that the prediction models have been loaded or retrained
+     */
+    static public void modelsUpdated() {
+        for (Listener listener : listeners) listener.modelsUpdated();
+    }
+
+    /**
+     * Publishes that a scheduled job has finished
+     *
+     * @param name Name of the job
+     */
+    static public void cycleFinished(String name) {
+        for (Listener listener : listeners) listener.cycleFinished(name);
+    }
+
+    /**
+     * Long-running processes whose progress is published
+     */
+    public enum Channel {STOCK_FEED, NEWS_FEED, NLP, TECHNICAL_ANALYSIS, STOCK_FORECAST}
+
+    /**
+     * Receives status updates from the engine. Updates are delivered on the thread that published them, so listeners must return quickly
+     */
+    public interface Listener {
+        default void taskUpdated(String task, boolean error, boolean important) {}
+
+        default void progressUpdated(Channel channel, double progress) {}
+
+        default void stockUpdating(String symbol, boolean updating) {}
+
+        default void pricesUpdated(String symbol) {}
+
+        default void predictionsUpdated(Map<String, HashMap<Integer, Boolean>> predictions) {}
+
+        default void cutoffsUpdated(double lossCutoff, double profitCutoff) {}
+
+        default void portfolioUpdated() {}
+
+        default void modelsUpdated() {}
+
+        default void cycleFinished(String name) {}
+    }
+}
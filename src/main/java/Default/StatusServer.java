@@ -0,0 +1,212 @@
+package Default;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class StatusServer implements Status.Listener {
+    static private final int QUEUE_SIZE = 4096; //Events a client may fall behind by before it is disconnected
+
+    private final ServerSocket server;
+    private final CopyOnWriteArrayList<Client> clients = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+
+    /**
+     * Starts streaming the engine's status to clients on the local machine, as one JSON object per line
+     *
+     * @param port Loopback port to listen on
+     * @throws IOException Throws IOException if the port cannot be bound
+     */
+    public StatusServer(int port) throws IOException {
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+
+        Thread acceptor = new Thread(this::acceptLoop, "Status Server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        System.out.println("Streaming status on " + server.getInetAddress().getHostAddress() + ":" + server.getLocalPort());
+    }
+
+    /**
+     * Stops accepting clients and disconnects every connected client
+     */
+    public void close() {
+        running = false;
+
+        try {
+            server.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        for (Client client : clients) disconnect(client);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Client client = new Client(server.accept());
+                clients.add(client);
+                client.start();
+            } catch (IOException e) {
+                if (running) e.printStackTrace();
+            }
+        }
+    }
+
+    private void disconnect(Client client) {
+        if (clients.remove(client)) client.close();
+    }
+
+    /**
+     * Queues an event for every connected client, each of which is written to by its own thread so that a slow client cannot hold back the others.
+     * A client that falls so far behind that its queue is full is disconnected rather than blocking the engine
+     *
+     * @param type  Type of the event
+     * @param event Event data
+     */
+    private void publish(String type, JSONObject event) {
+        if (clients.isEmpty()) return;
+
+        event.put("event", type);
+        event.put("time", System.currentTimeMillis());
+        String line = event.toString();
+
+        for (Client client : clients)
+            if (!client.offer(line)) {
+                System.err.println("Disconnecting status client " + client + " as it has fallen " + QUEUE_SIZE + " events behind");
+                disconnect(client);
+            }
+    }
+
+    @Override
+    public void taskUpdated(String task, boolean error, boolean important) {
+        publish("task", new JSONObject().put("task", task).put("error", error).put("important", important));
+    }
+
+    @Override
+    public void progressUpdated(Status.Channel channel, double progress) {
+        publish("progress", new JSONObject().put("channel", channel.name()).put("progress", progress));
+    }
+
+    @Override
+    public void stockUpdating(String symbol, boolean updating) {
+        publish("stockUpdating", new JSONObject().put("symbol", symbol).put("updating", updating));
+    }
+
+    @Override
+    public void pricesUpdated(String symbol) {
+        publish("pricesUpdated", new JSONObject().put("symbol", symbol));
+    }
+
+    @Override
+    public void predictionsUpdated(Map<String, HashMap<Integer, Boolean>> predictions) {
+        JSONObject stocks = new JSONObject();
+
+        for (String stock : predictions.keySet()) {
+            JSONObject days = new JSONObject();
+            for (Map.Entry<Integer, Boolean> prediction : predictions.get(stock).entrySet())
+                days.put(String.valueOf(prediction.getKey()), prediction.getValue());
+            stocks.put(stock, days);
+        }
+
+        publish("predictionsUpdated", new JSONObject().put("predictions", stocks));
+    }
+
+    @Override
+    public void cutoffsUpdated(double lossCutoff, double profitCutoff) {
+        publish("cutoffsUpdated", new JSONObject().put("lossCutoff", lossCutoff).put("profitCutoff", profitCutoff));
+    }
+
+    @Override
+    public void portfolioUpdated() {
+        publish("portfolioUpdated", new JSONObject());
+    }
+
+    @Override
+    public void modelsUpdated() {
+        publish("modelsUpdated", new JSONObject());
+    }
+
+    @Override
+    public void cycleFinished(String name) {
+        publish("cycleFinished", new JSONObject().put("name", name));
+    }
+
+    /**
+     * A connected client of the event stream, with its own queue of events waiting to be written
+     */
+    private class Client {
+        private final Socket socket;
+        private final Writer out;
+        private final BlockingQueue<String> events = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final Thread writer;
+
+        Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+
+            writer = new Thread(this::writeLoop, "Status Client " + this);
+            writer.setDaemon(true);
+        }
+
+        void start() {
+            writer.start();
+        }
+
+        /**
+         * Queues an event to be written to the client
+         *
+         * @param event JSON event
+         * @return False if the client's queue is full
+         */
+        boolean offer(String event) {
+            return events.offer(event);
+        }
+
+        private void writeLoop() {
+            try {
+                while (true) {
+                    out.write(events.take());
+                    out.write('\n');
+                    if (events.isEmpty()) out.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                clients.remove(this);
+                close();
+            }
+        }
+
+        void close() {
+            writer.interrupt();
+
+            try {
+                socket.close(); //Also unblocks a write to a client that has stopped reading
+            } catch (IOException ignored) {
+            }
+        }
+
+        @Override
+        public String toString() {
+            return socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package Default;
+
+import javafx.application.Platform;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class UIUpdateBus {
+    static private final int FLUSHES_PER_SECOND = 10;
+    static private final int LOG_CAPACITY = 1000;
+    static private final long FLUSH_PERIOD = TimeUnit.SECONDS.toNanos(1) / FLUSHES_PER_SECOND;
+
+    static private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "UI Update Bus");
+        thread.setDaemon(true);
+        return thread;
+    });
+    static private final LinkedHashMap<Object, Runnable> pending = new LinkedHashMap<>();
+    static private final ArrayDeque<String> log = new ArrayDeque<>();
+    static private Consumer<String> logSink = System.out::print;
+    static private int droppedLines = 0;
+    static private boolean flushQueued = false;
+    static private long lastFlush = 0;
+
+    /**
+     * Queues an update of a GUI element, replacing any update of the same element that has not yet been applied (so only the latest value is ever drawn)
+     *
+     * @param key    The element being updated (e.g. a Label or ProgressBar)
+     * @param update Update to run on the JavaFX thread
+     */
+    static public void post(Object key, Runnable update) {
+        synchronized (pending) {
+            pending.remove(key); //Moves the element to the back, so updates are applied in the order they were last posted
+            pending.put(key, update);
+            queueFlush();
+        }
+    }
+
+    /**
+     * Queues a line to be appended to the log shown to the user, dropping the oldest queued lines if the GUI cannot keep up
+     *
+     * @param line Line to append
+     */
+    static public void log(String line) {
+        synchronized (pending) {
+            if (log.size() == LOG_CAPACITY) {
+                log.removeFirst();
+                droppedLines++;
+            }
+
+            log.addLast(line);
+            queueFlush();
+        }
+    }
+
+    /**
+     * Sets where log lines are appended once they reach the JavaFX thread
+     *
+     * @param sink Receives every batch of log lines as a single block of text
+     */
+    static public void setLogSink(Consumer<String> sink) {
+        synchronized (pending) {
+            logSink = sink;
+        }
+    }
+
+    /**
+     * Schedules a flush unless one is already waiting, delaying it so that the JavaFX thread is flushed at most {@link #FLUSHES_PER_SECOND} times per second
+     */
+    static private void queueFlush() {
+        if (flushQueued) return;
+        flushQueued = true;
+
+        long delay = Math.max(0, lastFlush + FLUSH_PERIOD - System.nanoTime());
+        timer.schedule(() -> Platform.runLater(UIUpdateBus::flush), delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Applies every queued update and appends every queued log line in a single pass on the JavaFX thread
+     */
+    static private void flush() {
+        ArrayList<Runnable> updates;
+        StringBuilder lines = new StringBuilder();
+        Consumer<String> sink;
+
+        synchronized (pending) {
+            updates = new ArrayList<>(pending.values());
+            pending.clear();
+
+            if (droppedLines > 0)
+                lines.append("(").append(droppedLines).append(" messages not shown)\r\n");
+            for (String line : log) lines.append(line).append("\r\n");
+
+            log.clear();
+            droppedLines = 0;
+            sink = logSink;
+            flushQueued = false;
+            lastFlush = System.nanoTime();
+        }
+
+        for (Runnable update : updates) {
+            try {
+                update.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (lines.length() > 0) sink.accept(lines.toString());
+    }
+}
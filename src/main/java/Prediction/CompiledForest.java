@@ -0,0 +1,318 @@
+package Prediction;
+
+import org.apache.spark.mllib.tree.configuration.Algo;
+import org.apache.spark.mllib.tree.configuration.FeatureType;
+import org.apache.spark.mllib.tree.model.DecisionTreeModel;
+import org.apache.spark.mllib.tree.model.Node;
+import org.apache.spark.mllib.tree.model.RandomForestModel;
+import org.apache.spark.mllib.tree.model.Split;
+import scala.collection.JavaConverters;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class CompiledForest implements Serializable {
+    static private final long serialVersionUID = 1L;
+    static private final int MAGIC = 0x52464331; //"RFC1"
+    static private final int FORMAT_VERSION = 1;
+    static private final int LEAF = -1;
+
+    private final boolean classification;
+    private final int numClasses;
+    private final int[] roots;
+    private final double[] treeWeights;
+    private final double totalWeight;
+
+    //Nodes of every tree, in depth-first order so that the left child of a split always immediately follows it
+    private final int[] feature; //Feature index of a split, or LEAF
+    private final double[] threshold; //Threshold of a continuous split, or the prediction of a leaf
+    private final int[] right; //Index of the right child of a split
+    private final int[] categoryStart, categoryEnd; //Range of the categories array that goes left, for categorical splits (empty if continuous)
+    private final double[] categories;
+
+    private CompiledForest(boolean classification, int numClasses, int[] roots, double[] treeWeights, int[] feature, double[] threshold, int[] right, int[] categoryStart, int[] categoryEnd, double[] categories) {
+        this.classification = classification;
+        this.numClasses = numClasses;
+        this.roots = roots;
+        this.treeWeights = treeWeights;
+        this.feature = feature;
+        this.threshold = threshold;
+        this.right = right;
+        this.categoryStart = categoryStart;
+        this.categoryEnd = categoryEnd;
+        this.categories = categories;
+
+        double total = 0;
+        for (double weight : treeWeights) total += weight;
+        this.totalWeight = total;
+    }
+
+    /**
+     * Flattens a trained Spark Random Forest into primitive arrays that can be evaluated without Spark
+     *
+     * @param model Trained Random Forest model
+     * @return The compiled forest, which produces the same predictions as the model
+     */
+    static public CompiledForest compile(RandomForestModel model) {
+        DecisionTreeModel[] trees = model.trees();
+        Builder builder = new Builder();
+        int[] roots = new int[trees.length];
+        double maxLabel = 0;
+
+        for (int i = 0; i < trees.length; i++) {
+            roots[i] = builder.size;
+            maxLabel = Math.max(maxLabel, builder.add(trees[i].topNode()));
+        }
+
+        boolean classification = model.algo() == Algo.Classification();
+
+        return new CompiledForest(classification, classification ? (int) maxLabel + 1 : 0, roots, model.treeWeights().clone(),
+                Arrays.copyOf(builder.feature, builder.size), Arrays.copyOf(builder.threshold, builder.size), Arrays.copyOf(builder.right, builder.size),
+                Arrays.copyOf(builder.categoryStart, builder.size), Arrays.copyOf(builder.categoryEnd, builder.size), Arrays.copyOf(builder.categories, builder.categoryCount));
+    }
+
+    /**
+     * Loads a forest saved with {@link #save(String)}
+     *
+     * @param path Filepath of the compiled forest
+     * @return The compiled forest
+     * @throws IOException Throws IOException if the file cannot be read or is not a compiled forest
+     */
+    static public CompiledForest load(String path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a compiled forest: " + path);
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) throw new IOException("Unsupported compiled forest version " + version + ": " + path);
+
+            boolean classification = in.readBoolean();
+            int numClasses = in.readInt();
+            int[] roots = readInts(in);
+            double[] treeWeights = readDoubles(in);
+            int[] feature = readInts(in);
+            double[] threshold = readDoubles(in);
+            int[] right = readInts(in);
+            int[] categoryStart = readInts(in);
+            int[] categoryEnd = readInts(in);
+            double[] categories = readDoubles(in);
+
+            return new CompiledForest(classification, numClasses, roots, treeWeights, feature, threshold, right, categoryStart, categoryEnd, categories);
+        }
+    }
+
+    /**
+     * Saves the forest in a compact binary format that can be loaded without Spark
+     *
+     * @param path Filepath to save the compiled forest to
+     * @throws IOException Throws IOException if the file cannot be written
+     */
+    public void save(String path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeBoolean(classification);
+            out.writeInt(numClasses);
+            writeInts(out, roots);
+            writeDoubles(out, treeWeights);
+            writeInts(out, feature);
+            writeDoubles(out, threshold);
+            writeInts(out, right);
+            writeInts(out, categoryStart);
+            writeInts(out, categoryEnd);
+            writeDoubles(out, categories);
+        }
+    }
+
+    /**
+     * Predicts the label of a feature vector. Classification forests take a weighted majority vote of their trees (ties go to the lowest label), regression forests take the weighted mean
+     *
+     * @param features Feature vector
+     * @return Predicted label
+     */
+    public double predict(double[] features) {
+        if (!classification) {
+            double sum = 0;
+            for (int t = 0; t < roots.length; t++) sum += treeWeights[t] * evaluate(roots[t], features);
+            return sum / totalWeight;
+        }
+
+        if (numClasses <= 2) { //Binary fast path, without a vote array
+            double ones = 0;
+            for (int t = 0; t < roots.length; t++)
+                if (evaluate(roots[t], features) == 1) ones += treeWeights[t];
+            return (ones > totalWeight - ones) ? 1 : 0;
+        }
+
+        double[] votes = new double[numClasses];
+        for (int t = 0; t < roots.length; t++) votes[(int) evaluate(roots[t], features)] += treeWeights[t];
+        return argMax(votes, 0, numClasses);
+    }
+
+    /**
+     * Predicts the labels of a batch of feature vectors, evaluating one tree at a time across the whole batch so that each tree's nodes stay in cache
+     *
+     * @param batch Feature vectors
+     * @param out   Array to write the predicted labels to (at least as long as the batch)
+     */
+    public void predict(double[][] batch, double[] out) {
+        int rows = batch.length;
+
+        if (!classification) {
+            Arrays.fill(out, 0, rows, 0);
+            for (int t = 0; t < roots.length; t++)
+                for (int r = 0; r < rows; r++) out[r] += treeWeights[t] * evaluate(roots[t], batch[r]);
+            for (int r = 0; r < rows; r++) out[r] /= totalWeight;
+            return;
+        }
+
+        int classes = Math.max(2, numClasses);
+        double[] votes = new double[rows * classes];
+
+        for (int t = 0; t < roots.length; t++)
+            for (int r = 0; r < rows; r++) votes[r * classes + (int) evaluate(roots[t], batch[r])] += treeWeights[t];
+
+        for (int r = 0; r < rows; r++) out[r] = argMax(votes, r * classes, classes);
+    }
+
+    /**
+     * Predicts the labels of a batch of feature vectors
+     *
+     * @param batch Feature vectors
+     * @return Predicted label of each feature vector
+     */
+    public double[] predict(double[][] batch) {
+        double[] out = new double[batch.length];
+        predict(batch, out);
+        return out;
+    }
+
+    public int getNumTrees() {
+        return roots.length;
+    }
+
+    public int getNumNodes() {
+        return feature.length;
+    }
+
+    /**
+     * Walks a single tree from its root to a leaf
+     *
+     * @param node     Index of the root node
+     * @param features Feature vector
+     * @return Prediction of the leaf reached
+     */
+    private double evaluate(int node, double[] features) {
+        int f;
+
+        while ((f = feature[node]) != LEAF) {
+            boolean left;
+
+            if (categoryStart[node] == categoryEnd[node])
+                left = features[f] <= threshold[node];
+            else {
+                left = false;
+                double value = features[f];
+                for (int c = categoryStart[node]; c < categoryEnd[node]; c++)
+                    if (categories[c] == value) {
+                        left = true;
+                        break;
+                    }
+            }
+
+            node = left ? node + 1 : right[node];
+        }
+
+        return threshold[node];
+    }
+
+    static private double argMax(double[] votes, int offset, int length) {
+        int best = 0;
+        for (int i = 1; i < length; i++)
+            if (votes[offset + i] > votes[offset + best]) best = i;
+        return best;
+    }
+
+    static private void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) out.writeInt(value);
+    }
+
+    static private void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) out.writeDouble(value);
+    }
+
+    static private int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readInt();
+        return values;
+    }
+
+    static private double[] readDoubles(DataInputStream in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readDouble();
+        return values;
+    }
+
+    /**
+     * Growable node arrays used while flattening a forest
+     */
+    static private class Builder {
+        int[] feature = new int[1024], right = new int[1024], categoryStart = new int[1024], categoryEnd = new int[1024];
+        double[] threshold = new double[1024], categories = new double[64];
+        int size = 0, categoryCount = 0;
+
+        /**
+         * Appends a tree (or subtree) in depth-first order
+         *
+         * @param node Root of the tree
+         * @return Largest leaf prediction within the tree
+         */
+        double add(Node node) {
+            int index = size++;
+            grow();
+
+            if (node.isLeaf()) {
+                feature[index] = LEAF;
+                threshold[index] = node.predict().predict();
+                categoryStart[index] = categoryEnd[index] = categoryCount;
+                return threshold[index];
+            }
+
+            Split split = node.split().get();
+            feature[index] = split.feature();
+            threshold[index] = split.threshold();
+            categoryStart[index] = categoryCount;
+
+            if (split.featureType() == FeatureType.Categorical()) {
+                List<Object> leftCategories = JavaConverters.seqAsJavaListConverter(split.categories()).asJava();
+                for (Object category : leftCategories) {
+                    if (categoryCount == categories.length) categories = Arrays.copyOf(categories, categoryCount * 2);
+                    categories[categoryCount++] = (Double) category;
+                }
+            }
+
+            categoryEnd[index] = categoryCount;
+
+            double maxLabel = add(node.leftNode().get());
+            right[index] = size;
+            return Math.max(maxLabel, add(node.rightNode().get()));
+        }
+
+        private void grow() {
+            if (size <= feature.length) return;
+            int capacity = feature.length * 2;
+            feature = Arrays.copyOf(feature, capacity);
+            right = Arrays.copyOf(right, capacity);
+            categoryStart = Arrays.copyOf(categoryStart, capacity);
+            categoryEnd = Arrays.copyOf(categoryEnd, capacity);
+            threshold = Arrays.copyOf(threshold, capacity);
+        }
+    }
+}
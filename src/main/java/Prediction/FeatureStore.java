@@ -0,0 +1,355 @@
+package Prediction;
+
+import Default.DatabaseHandler;
+import Processing.DirtyTracker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class FeatureStore {
+    /**
+     * Price and indicator features of each trading day, in the order the prediction models were trained with
+     */
+    static public final String[] COLUMNS = {"OpenPrice", "HighPrice", "LowPrice", "ClosePrice", "TradeVolume", "PercentChange", "SmoothedClosePrice", "SMA5", "SMA10", "SMA20", "SMA200", "EMA5", "EMA10", "EMA20", "EMA200", "MACD", "MACDSig", "MACDHist", "RSI", "ADX10", "CCI", "AD", "OBV", "StoOscSlowK", "StoOscSlowD", "WillR"};
+
+    static private final int MAGIC = 0x46535431; //"FST1"
+    static private final int FORMAT_VERSION = 1;
+    static private final int HEADER_SIZE = 24;
+    static private final int DEFINITION_HASH = (FORMAT_VERSION + ":" + String.join(",", COLUMNS)).hashCode();
+    static private final String EXTENSION = ".features";
+
+    static private final ConcurrentHashMap<String, Table> tables = new ConcurrentHashMap<>();
+    static private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+    static private final Set<String> verified = ConcurrentHashMap.newKeySet();
+    static private DatabaseHandler dh;
+    static private File directory;
+
+    /**
+     * Initialises the Feature Store with a Database Handler. Tables are kept in a directory named after the feature set definition, so changing {@link #COLUMNS} never reads tables built for a different definition
+     *
+     * @param fsdh Feature Store Database Handler
+     */
+    static public void initialise(DatabaseHandler fsdh) {
+        dh = fsdh;
+        directory = new File(System.getProperty("user.dir") + "/res/features/" + Integer.toHexString(DEFINITION_HASH));
+    }
+
+    /**
+     * Retrieves the feature table of a stock, materialising only the trading days that have changed since it was last built (missing values are stored as NaN)
+     *
+     * @param symbol Stock to retrieve the features of
+     * @return Feature table of every trading day of the stock, in ascending date order
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws IOException  Throws IOException if the table cannot be written to or mapped from disk
+     */
+    static public Table getTable(String symbol) throws SQLException, IOException {
+        synchronized (locks.computeIfAbsent(symbol, k -> new Object())) {
+            LocalDate from = DirtyTracker.take(DirtyTracker.Consumer.FEATURES, symbol);
+
+            try {
+                Table table = tables.get(symbol);
+                if (table == null) table = open(symbol);
+
+                if (table == null)
+                    from = DirtyTracker.WHOLE_HISTORY;
+                else if (!verified.contains(symbol) && !table.matches(getFingerprint(symbol))) //Catches changes made while the application was closed
+                    from = DirtyTracker.WHOLE_HISTORY;
+
+                if (from != null) table = materialise(symbol, table, from);
+
+                tables.put(symbol, table);
+                verified.add(symbol);
+
+                return table;
+            } catch (SQLException | IOException | RuntimeException e) {
+                if (from != null) DirtyTracker.markDirty(DirtyTracker.Consumer.FEATURES, symbol, from);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds a stock's feature table from a given date onwards, keeping the rows before it
+     *
+     * @param symbol Stock to rebuild the features of
+     * @param table  Current feature table, or null if there is none
+     * @param from   Earliest trade date to rebuild
+     * @return The rebuilt feature table
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws IOException  Throws IOException if the table cannot be written to or mapped from disk
+     */
+    static private Table materialise(String symbol, Table table, LocalDate from) throws SQLException, IOException {
+        int keep = (table == null || from.equals(DirtyTracker.WHOLE_HISTORY)) ? 0 : table.lowerBound(from);
+
+        ArrayList<String> records = dh.executeQuery("SELECT TradeDate," + String.join(",", COLUMNS) + " FROM dailystockprices WHERE Symbol='" + symbol + "'" + (keep > 0 ? " AND TradeDate >= '" + from + "'" : "") + " ORDER BY TradeDate ASC");
+
+        int rows = keep + records.size();
+        int[] dates = new int[rows];
+        double[][] values = new double[COLUMNS.length][rows];
+
+        for (int row = 0; row < keep; row++) {
+            dates[row] = table.getEpochDay(row);
+            for (int column = 0; column < COLUMNS.length; column++) values[column][row] = table.get(row, column);
+        }
+
+        for (int row = keep; row < rows; row++) {
+            String[] splitString = records.get(row - keep).split(",");
+            dates[row] = (int) LocalDate.parse(splitString[0]).toEpochDay();
+            for (int column = 0; column < COLUMNS.length; column++)
+                values[column][row] = splitString[column + 1].equals("null") ? Double.NaN : Double.parseDouble(splitString[column + 1]);
+        }
+
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Could not create directory: " + directory);
+
+        File file = new File(directory, symbol + "." + System.currentTimeMillis() + EXTENSION);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(DEFINITION_HASH);
+            out.writeInt(rows);
+            out.writeInt(COLUMNS.length);
+            out.writeInt(0); //Padding, so the columns start on an 8-byte boundary
+
+            for (int date : dates) out.writeInt(date);
+            if (rows % 2 != 0) out.writeInt(0);
+
+            for (double[] column : values)
+                for (double value : column) out.writeDouble(value);
+        }
+
+        Table materialised = map(file);
+        deleteOlderFiles(symbol, file);
+
+        System.out.println("Materialised " + (rows - keep) + " feature rows for " + symbol);
+
+        return materialised;
+    }
+
+    /**
+     * Opens the most recently built feature table of a stock from disk
+     *
+     * @param symbol Stock to open the feature table of
+     * @return The feature table, or null if there is no table built for the current feature set definition
+     */
+    static private Table open(String symbol) {
+        File[] files = listFiles(symbol);
+        if (files == null || files.length == 0) return null;
+
+        File latest = files[0];
+        for (File file : files)
+            if (file.getName().compareTo(latest.getName()) > 0) latest = file;
+
+        try {
+            Table table = map(latest);
+            deleteOlderFiles(symbol, latest);
+            return table;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable feature table '" + latest + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Lists every feature table built for a stock
+     *
+     * @param symbol Stock to list the feature tables of
+     * @return Feature table files, named by the time they were built, or null if the directory does not exist
+     */
+    static private File[] listFiles(String symbol) {
+        Pattern name = Pattern.compile(Pattern.quote(symbol) + "\\.\\d+" + Pattern.quote(EXTENSION));
+        return directory.listFiles((dir, fileName) -> name.matcher(fileName).matches());
+    }
+
+    static private Table map(File file) throws IOException {
+        MappedByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION || buffer.getInt(8) != DEFINITION_HASH)
+            throw new IOException("Not a feature table for the current feature set: " + file);
+
+        return new Table(buffer, buffer.getInt(12), buffer.getInt(16));
+    }
+
+    /**
+     * Deletes superseded feature tables of a stock (tables that are still mapped may not be deletable on some platforms, in which case they are removed the next time the table is opened)
+     */
+    static private void deleteOlderFiles(String symbol, File current) {
+        File[] files = listFiles(symbol);
+        if (files == null) return;
+
+        for (File file : files)
+            if (file.getName().compareTo(current.getName()) < 0 && !file.delete())
+                System.err.println("Could not delete superseded feature table: " + file);
+    }
+
+    /**
+     * Summarises the stored features of a stock without transferring them, to check that a table built by a previous run is still up to date
+     *
+     * @param symbol Stock to summarise
+     * @return Row count, latest trade date, and the number of non-null values and sum of each column
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    static private String[] getFingerprint(String symbol) throws SQLException {
+        StringBuilder command = new StringBuilder("SELECT COUNT(*), COALESCE(MAX(TradeDate), 'null')");
+        for (String column : COLUMNS)
+            command.append(", COUNT(").append(column).append("), COALESCE(SUM(").append(column).append("), 0)");
+
+        return dh.executeQuery(command + " FROM dailystockprices WHERE Symbol='" + symbol + "'").get(0).split(",");
+    }
+
+    /**
+     * A stock's features stored column by column in a memory-mapped file, so that a column of every trading day is read sequentially and rows are read without parsing or allocation
+     */
+    static public class Table {
+        private final ByteBuffer buffer;
+        private final int rows, columns, valuesOffset;
+
+        private Table(ByteBuffer buffer, int rows, int columns) {
+            this.buffer = buffer;
+            this.rows = rows;
+            this.columns = columns;
+            this.valuesOffset = HEADER_SIZE + (rows + rows % 2) * 4;
+        }
+
+        public int size() {
+            return rows;
+        }
+
+        public int getColumnCount() {
+            return columns;
+        }
+
+        public LocalDate getDate(int row) {
+            return LocalDate.ofEpochDay(getEpochDay(row));
+        }
+
+        private int getEpochDay(int row) {
+            return buffer.getInt(HEADER_SIZE + row * 4);
+        }
+
+        /**
+         * Retrieves a single feature
+         *
+         * @param row    Index of the trading day
+         * @param column Index of the feature within {@link #COLUMNS}
+         * @return Value of the feature, or NaN if it has not been calculated
+         */
+        public double get(int row, int column) {
+            return buffer.getDouble(valuesOffset + (column * rows + row) * 8);
+        }
+
+        /**
+         * Copies every feature of a trading day into an array
+         *
+         * @param row    Index of the trading day
+         * @param out    Array to copy the features into
+         * @param offset Index of the array to copy the first feature to
+         */
+        public void copyRow(int row, double[] out, int offset) {
+            for (int column = 0; column < columns; column++) out[offset + column] = get(row, column);
+        }
+
+        /**
+         * Finds the row of a trading day
+         *
+         * @param date Trade date
+         * @return Index of the trading day, or -1 if the stock has no record on that date
+         */
+        public int indexOf(LocalDate date) {
+            int row = lowerBound(date);
+            return (row < rows && getEpochDay(row) == date.toEpochDay()) ? row : -1;
+        }
+
+        /**
+         * Finds the first row on or after a date
+         *
+         * @param date Trade date
+         * @return Index of the first trading day on or after the date (the number of rows if there is none)
+         */
+        int lowerBound(LocalDate date) {
+            long target = date.toEpochDay();
+            int low = 0, high = rows;
+
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (getEpochDay(mid) < target) low = mid + 1;
+                else high = mid;
+            }
+
+            return low;
+        }
+
+        /**
+         * Determines whether every feature of a trading day has been calculated
+         *
+         * @param row Index of the trading day
+         * @return True if none of the features are missing
+         */
+        public boolean isComplete(int row) {
+            for (int column = 0; column < columns; column++)
+                if (Double.isNaN(get(row, column))) return false;
+            return true;
+        }
+
+        /**
+         * Finds the latest trading day that has every feature calculated
+         *
+         * @return Index of the trading day, or -1 if there is none
+         */
+        public int getLatestCompleteRow() {
+            for (int row = rows - 1; row >= 0; row--)
+                if (isComplete(row)) return row;
+            return -1;
+        }
+
+        /**
+         * Compares the table against a summary of the database records it was built from
+         *
+         * @param fingerprint Result of {@link #getFingerprint(String)}
+         * @return True if the table holds the same records
+         */
+        private boolean matches(String[] fingerprint) {
+            if (Integer.parseInt(fingerprint[0]) != rows) return false;
+            if (rows == 0) return true;
+            if (!fingerprint[1].equals(getDate(rows - 1).toString())) return false;
+
+            for (int column = 0; column < columns; column++) {
+                int count = 0;
+                double sum = 0;
+
+                for (int row = 0; row < rows; row++) {
+                    double value = get(row, column);
+                    if (Double.isNaN(value)) continue;
+                    count++;
+                    sum += value;
+                }
+
+                double storedSum = Double.parseDouble(fingerprint[3 + column * 2]);
+                if (Integer.parseInt(fingerprint[2 + column * 2]) != count || Math.abs(storedSum - sum) > 1e-6 * Math.max(1, Math.abs(storedSum)))
+                    return false;
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package Prediction;
+
+import Default.DatabaseHandler;
+import Default.Status;
+import org.apache.spark.api.java.JavaSparkContext;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class HyperparameterSearch {
+    static private final int[] MAX_DEPTHS = {5, 10, 15, 20};
+    static private final int[] MAX_BINS = {32, 64};
+    static private final String[] FEATURE_SUBSET_STRATEGIES = {"auto", "sqrt", "log2", "onethird"};
+    static private final double[] SMOOTHING_ALPHAS = {0.05, 0.1, 0.25, 1};
+    static private final String[] FEATURE_SETS = {"All Features", "No Sentiment", "No Indicators", "Prices Only"};
+
+    static private final int TRIALS = 27; //Configurations sampled from the grid
+    static private final int ETA = 3; //Only the best 1/ETA of the trials are given more trees after each rung
+    static private final int RUNGS = 3;
+    static private final int SEED = 12345;
+    static private final int PARALLEL_TRIALS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    static private final Status.Channel PROGRESS_CHANNEL = Status.Channel.STOCK_FORECAST;
+
+    static private DatabaseHandler dh;
+
+    /**
+     * Initialises the Hyperparameter Search with a Database Handler
+     *
+     * @param hsdh Hyperparameter Search Database Handler
+     */
+    static public void initialise(DatabaseHandler hsdh) {
+        dh = hsdh;
+    }
+
+    /**
+     * Searches for the best Random Forest configuration (number of trees, depth, bins, feature subset strategy, features and smoothing factor) by random search with successive halving.
+     * A sample of the configuration grid is grouped by smoothing factor, and each group is evaluated concurrently with few trees, then only the best third of the group's trials are re-evaluated with more trees, until the remaining trials are evaluated with as many trees as the live models use.
+     * Every evaluation is recorded in the predictors table under the MultiStock_TUNING or SingleStock_TUNING scope, sharing the search's model number
+     *
+     * @param stocks     List of stocks used in the application
+     * @param dayArray   List of days to calculate price rise/fall labels for
+     * @param multiStock True to tune a single Multi-Stock model, False to tune the Single-Stock models (each trial is scored by the mean accuracy of a model per stock)
+     * @return The best configuration found, along with its out-of-fold accuracy
+     * @throws SQLException         Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws IOException          Throws IOException if a stock's feature table cannot be read
+     * @throws InterruptedException Throws InterruptedException if the search is interrupted by another process
+     */
+    static public Trial search(ArrayList<String> stocks, int[] dayArray, boolean multiStock) throws SQLException, IOException, InterruptedException {
+        String scope = (multiStock ? "MultiStock" : "SingleStock") + "_TUNING";
+        int maxTrees = multiStock ? 500 : 100;
+        int searchNo = Integer.parseInt(dh.executeQuery("SELECT COALESCE(MAX(ModelNumber),0) FROM predictors WHERE Model = 'Random Forest' AND Type = 'CLASSIFICATION' AND Scope='" + scope + "'").get(0)) + 1;
+
+        List<Trial> trials = sample(TRIALS);
+
+        //Trials are grouped by smoothing factor, so each factor's training data is built once and only one factor's data is held at a time
+        LinkedHashMap<Double, List<Trial>> trialsByAlpha = new LinkedHashMap<>();
+        for (Trial trial : trials)
+            trialsByAlpha.computeIfAbsent(trial.smoothPriceAlpha, alpha -> new ArrayList<>()).add(trial);
+
+        ArrayList<Trial> finalists = new ArrayList<>();
+        int groupsSearched = 0;
+
+        JavaSparkContext jsc = SparkContextManager.acquire();
+        ExecutorService trialRunners = Executors.newFixedThreadPool(PARALLEL_TRIALS, r -> {
+            Thread thread = new Thread(r, "Hyperparameter Trial");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            for (Map.Entry<Double, List<Trial>> group : trialsByAlpha.entrySet()) {
+                Status.updateCurrentTask("Generating ML Training Data for Hyperparameter Search (Alpha " + group.getKey() + ")...", false, false);
+                ArrayList<TrainingData> trainingData = new ArrayList<>();
+
+                if (multiStock)
+                    trainingData.add(TrainingData.build(stocks, stocks, dayArray, true, group.getKey(), true, 0, PROGRESS_CHANNEL));
+                else
+                    for (String stock : stocks)
+                        trainingData.add(TrainingData.build(stocks, Collections.singletonList(stock), dayArray, false, group.getKey(), true, 0, PROGRESS_CHANNEL));
+
+                List<Trial> survivors = group.getValue();
+
+                for (int rung = 0; rung < RUNGS; rung++) {
+                    int trees = Math.max(3, maxTrees / (int) Math.pow(ETA, RUNGS - 1 - rung));
+                    Status.updateCurrentTask("Evaluating " + survivors.size() + " Random Forest configurations with " + trees + " trees (Alpha " + group.getKey() + ")...", false, false);
+
+                    ArrayList<Future<Double>> accuracies = new ArrayList<>();
+                    for (Trial trial : survivors) {
+                        trial.trees = trees;
+                        accuracies.add(trialRunners.submit(() -> evaluate(jsc, trainingData, trial, multiStock ? stocks.size() : 0)));
+                    }
+
+                    for (int i = 0; i < survivors.size(); i++) {
+                        Trial trial = survivors.get(i);
+
+                        try {
+                            trial.accuracy = accuracies.get(i).get();
+                        } catch (ExecutionException e) {
+                            trial.accuracy = 0;
+                            Status.updateCurrentTask("Could not evaluate " + trial + ": " + e.getCause().getMessage(), true, false);
+                            continue;
+                        }
+
+                        dh.executeCommand("INSERT INTO predictors(Model, Type, ModelNumber, Accuracy, Description, Filepath, Scope) VALUES ('Random Forest', 'CLASSIFICATION', " + searchNo + ", " + trial.accuracy * 100 + ", '" + trial + "', '', '" + scope + "')");
+                        System.out.println("Hyperparameter Trial (" + trial + "): " + trial.accuracy * 100 + "%");
+                    }
+
+                    survivors.sort((a, b) -> Double.compare(b.accuracy, a.accuracy));
+                    if (rung < RUNGS - 1) survivors = new ArrayList<>(survivors.subList(0, Math.max(1, survivors.size() / ETA)));
+                }
+
+                finalists.addAll(survivors);
+                Status.updateProgress(++groupsSearched, trialsByAlpha.size(), PROGRESS_CHANNEL);
+            }
+        } finally {
+            trialRunners.shutdownNow();
+            SparkContextManager.release();
+        }
+
+        finalists.sort((a, b) -> Double.compare(b.accuracy, a.accuracy));
+
+        Trial best = finalists.get(0);
+        Status.updateCurrentTask("Best Random Forest configuration: " + best + " (" + Math.floor(best.accuracy * 10000) / 100 + "%)", false, true);
+        Status.updateProgress(0, PROGRESS_CHANNEL);
+
+        return best;
+    }
+
+    /**
+     * Trains a trial's configuration on every data set and measures its out-of-fold accuracy
+     *
+     * @param jsc          Running Spark context
+     * @param trainingData Training data of each model (one per stock for Single-Stock models)
+     * @param trial        Configuration to evaluate, with the number of trees to train
+     * @param noOfStocks   Number of stocks covered by a Multi-Stock model, or 0 for Single-Stock models
+     * @return Mean out-of-fold accuracy of the models
+     * @throws InterruptedException Throws InterruptedException if training is interrupted by another process
+     */
+    static private double evaluate(JavaSparkContext jsc, ArrayList<TrainingData> trainingData, Trial trial, int noOfStocks) throws InterruptedException {
+        HashMap<Integer, Integer> categoryInfo = new HashMap<>();
+        if (noOfStocks > 0) categoryInfo.put(0, noOfStocks);
+
+        int maxBins = Math.max(trial.maxBins, noOfStocks);
+        double totalAccuracy = 0;
+        int models = 0;
+
+        for (TrainingData data : trainingData) {
+            if (data.size() == 0) continue;
+
+            boolean[] keep = getFeatureMask(data.getFeatures()[0].length, noOfStocks > 0, trial.featureSet);
+            totalAccuracy += StockPredictor.trainCrossValidated(jsc, data.toRDD(jsc, keep), categoryInfo, trial.trees, trial.featureSubsetStrategy, trial.maxDepth, maxBins, SEED, 0, false).accuracy;
+            models++;
+        }
+
+        return (models == 0) ? 0 : totalAccuracy / models;
+    }
+
+    /**
+     * Determines which features of a feature vector belong to a feature set
+     *
+     * @param width      Number of features in the feature vector
+     * @param multiStock True if the first feature is the stock index
+     * @param featureSet One of {@link #FEATURE_SETS}
+     * @return True for each feature that is part of the feature set, or null if the feature set is every feature
+     */
+    static private boolean[] getFeatureMask(int width, boolean multiStock, String featureSet) {
+        if (featureSet.equals("All Features")) return null;
+
+        boolean[] keep = new boolean[width];
+        Arrays.fill(keep, true);
+
+        int firstIndicator = (multiStock ? 2 : 1) + Arrays.asList(FeatureStore.COLUMNS).indexOf("SMA5");
+        boolean indicators = featureSet.equals("All Features") || featureSet.equals("No Sentiment");
+        boolean sentiment = featureSet.equals("All Features") || featureSet.equals("No Indicators");
+
+        if (!indicators) Arrays.fill(keep, firstIndicator, width - 1, false);
+        if (!sentiment) keep[width - 1] = false;
+
+        return keep;
+    }
+
+    /**
+     * Randomly samples distinct configurations from the grid of forest settings, feature sets and smoothing factors
+     *
+     * @param size Number of configurations to sample
+     * @return Sampled configurations
+     */
+    static private List<Trial> sample(int size) {
+        ArrayList<Trial> grid = new ArrayList<>();
+
+        for (int maxDepth : MAX_DEPTHS)
+            for (int maxBins : MAX_BINS)
+                for (String featureSubsetStrategy : FEATURE_SUBSET_STRATEGIES)
+                    for (double smoothPriceAlpha : SMOOTHING_ALPHAS)
+                        for (String featureSet : FEATURE_SETS)
+                            grid.add(new Trial(maxDepth, maxBins, featureSubsetStrategy, smoothPriceAlpha, featureSet));
+
+        Collections.shuffle(grid, new Random(SEED));
+
+        return new ArrayList<>(grid.subList(0, Math.min(size, grid.size())));
+    }
+
+    /**
+     * A configuration evaluated by the search, along with its accuracy at the most trees it was evaluated with
+     */
+    static public class Trial {
+        final int maxDepth, maxBins;
+        final String featureSubsetStrategy, featureSet;
+        final double smoothPriceAlpha;
+        volatile int trees;
+        volatile double accuracy;
+
+        Trial(int maxDepth, int maxBins, String featureSubsetStrategy, double smoothPriceAlpha, String featureSet) {
+            this.maxDepth = maxDepth;
+            this.maxBins = maxBins;
+            this.featureSubsetStrategy = featureSubsetStrategy;
+            this.smoothPriceAlpha = smoothPriceAlpha;
+            this.featureSet = featureSet;
+        }
+
+        public double getAccuracy() {
+            return accuracy;
+        }
+
+        @Override
+        public String toString() {
+            return "Trees " + trees + ", Depth " + maxDepth + ", Max Bins " + maxBins + ", Feature Subset Strategy " + featureSubsetStrategy + ", Alpha " + smoothPriceAlpha + ", " + featureSet;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package Prediction;
+
+import Default.DatabaseHandler;
+import Default.Status;
+import org.apache.spark.mllib.tree.model.RandomForestModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class ModelRegistry {
+    static private final int CAPACITY = 128;
+
+    static private final LinkedHashMap<String, Entry> models = new LinkedHashMap<>(16, 0.75f, true); //Access ordered, so the least recently used model is first
+    static private final ExecutorService loaders = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread thread = new Thread(r, "Model Loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    static private DatabaseHandler dh;
+
+    /**
+     * Initialises the Model Registry with a Database Handler
+     *
+     * @param mrdh Model Registry Database Handler
+     */
+    static public void initialise(DatabaseHandler mrdh) {
+        dh = mrdh;
+    }
+
+    /**
+     * Finds the latest Random Forest model of each scope with a single query
+     *
+     * @param scopes Scopes to find the models of (e.g. a stock ticker, AAPL_SIMULATION or MultiStock)
+     * @return Filepath of the latest model of each scope (scopes without a model are omitted)
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    static public HashMap<String, String> resolveLatest(Collection<String> scopes) throws SQLException {
+        HashMap<String, String> latest = new HashMap<>();
+        if (scopes.isEmpty()) return latest;
+
+        String scopeList = "'" + String.join("','", scopes) + "'";
+
+        for (String result : dh.executeQuery("SELECT p.Scope, p.Filepath FROM predictors p INNER JOIN (SELECT Scope, MAX(ModelNumber) AS ModelNumber FROM predictors WHERE Model = 'Random Forest' AND Type = 'CLASSIFICATION' AND Scope IN (" + scopeList + ") GROUP BY Scope) l ON p.Scope = l.Scope AND p.ModelNumber = l.ModelNumber WHERE p.Model = 'Random Forest' AND p.Type = 'CLASSIFICATION'")) {
+            String[] splitString = result.split(",");
+            latest.put(splitString[0], splitString[1]);
+        }
+
+        return latest;
+    }
+
+    /**
+     * Loads the latest model of each scope, in parallel, and takes a reference to each so that they cannot be evicted until they are released. Models that are already loaded from the same file are not reloaded
+     *
+     * @param scopes Scopes to load the models of
+     * @return Scopes that a model was loaded for, each of which must be passed to {@link #release(String)} once it is no longer needed
+     * @throws SQLException         Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws InterruptedException Throws InterruptedException if loading is interrupted by another process
+     */
+    static public ArrayList<String> acquireLatest(Collection<String> scopes) throws SQLException, InterruptedException {
+        HashMap<String, String> latest = resolveLatest(scopes);
+        HashMap<String, Future<CompiledForest>> loading = new HashMap<>();
+        ArrayList<String> acquired = new ArrayList<>();
+
+        synchronized (models) {
+            for (Map.Entry<String, String> scope : latest.entrySet()) {
+                Entry entry = models.get(scope.getKey());
+
+                if (entry != null && entry.modelFile.equals(scope.getValue())) {
+                    entry.references++;
+                    acquired.add(scope.getKey());
+                } else
+                    loading.put(scope.getKey(), loaders.submit(() -> load(scope.getValue())));
+            }
+        }
+
+        for (Map.Entry<String, Future<CompiledForest>> scope : loading.entrySet()) {
+            try {
+                CompiledForest forest = scope.getValue().get();
+
+                synchronized (models) {
+                    put(scope.getKey(), latest.get(scope.getKey()), forest).references++;
+                }
+
+                acquired.add(scope.getKey());
+            } catch (ExecutionException e) {
+                Status.updateCurrentTask("Couldn't load ML Model for " + scope.getKey() + ": " + e.getCause().getMessage(), true, true);
+            }
+        }
+
+        synchronized (models) {
+            evict();
+        }
+
+        return acquired;
+    }
+
+    /**
+     * Takes a reference to a model that is already loaded
+     *
+     * @param scope Scope of the model
+     * @return True if the model is loaded (and must be released), False if it is not
+     */
+    static public boolean acquire(String scope) {
+        synchronized (models) {
+            Entry entry = models.get(scope);
+            if (entry == null) return false;
+
+            entry.references++;
+            return true;
+        }
+    }
+
+    /**
+     * Releases a reference to a model, allowing it to be evicted once nothing references it
+     *
+     * @param scope Scope of the model
+     */
+    static public void release(String scope) {
+        synchronized (models) {
+            Entry entry = models.get(scope);
+            if (entry != null && entry.references > 0) entry.references--;
+            evict();
+        }
+    }
+
+    /**
+     * Adds a newly trained model, replacing any earlier model of the same scope (references to the scope are kept)
+     *
+     * @param scope     Scope of the model
+     * @param modelFile Filepath of the model, as stored in the predictors table
+     * @param forest    Compiled model
+     */
+    static public void register(String scope, String modelFile, CompiledForest forest) {
+        synchronized (models) {
+            put(scope, modelFile, forest);
+            evict();
+        }
+    }
+
+    /**
+     * Retrieves a loaded model
+     *
+     * @param scope Scope of the model
+     * @return The model, or null if it is not loaded
+     */
+    static public CompiledForest get(String scope) {
+        synchronized (models) {
+            Entry entry = models.get(scope);
+            return (entry == null) ? null : entry.forest;
+        }
+    }
+
+    /**
+     * Determines whether a model is loaded, without retrieving it
+     *
+     * @param scope Scope of the model
+     * @return True if the model is loaded, False otherwise
+     */
+    static public boolean isLoaded(String scope) {
+        synchronized (models) {
+            return models.containsKey(scope);
+        }
+    }
+
+    static private Entry put(String scope, String modelFile, CompiledForest forest) {
+        Entry entry = models.get(scope);
+
+        if (entry == null)
+            models.put(scope, entry = new Entry(modelFile, forest));
+        else {
+            entry.modelFile = modelFile;
+            entry.forest = forest;
+        }
+
+        PredictionCache.modelChanged();
+        System.out.println("Loaded Machine Learning Model for " + scope + ": Compiled Random Forest with " + forest.getNumTrees() + " trees (" + forest.getNumNodes() + " nodes)");
+
+        return entry;
+    }
+
+    /**
+     * Evicts the least recently used models that are not referenced until the registry is back within its capacity
+     */
+    static private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = models.entrySet().iterator();
+
+        while (models.size() > CAPACITY && iterator.hasNext())
+            if (iterator.next().getValue().references == 0)
+                iterator.remove();
+    }
+
+    /**
+     * Loads the compiled form of a Random Forest, compiling (and saving) it from the Spark model the first time it is loaded
+     *
+     * @param modelFile Filepath location of the Spark model
+     * @return The compiled Random Forest
+     * @throws IOException Throws IOException if the compiled model cannot be read
+     */
+    static private CompiledForest load(String modelFile) throws IOException {
+        System.out.println("Loading Machine Learning Model '" + modelFile + "'...");
+
+        File compiledFile = new File(modelFile + ".forest");
+        if (compiledFile.exists()) return CompiledForest.load(compiledFile.getPath());
+
+        try {
+            return compile(RandomForestModel.load(SparkContextManager.acquire().sc(), modelFile), modelFile);
+        } finally {
+            SparkContextManager.release();
+        }
+    }
+
+    /**
+     * Compiles a Spark Random Forest for in-process inference and saves it alongside the Spark model
+     *
+     * @param sparkModel Trained Spark model
+     * @param modelFile  Filepath location of the Spark model
+     * @return The compiled Random Forest
+     */
+    static CompiledForest compile(RandomForestModel sparkModel, String modelFile) {
+        CompiledForest compiledForest = CompiledForest.compile(sparkModel);
+
+        try {
+            compiledForest.save(modelFile + ".forest");
+        } catch (IOException e) {
+            Status.updateCurrentTask("Couldn't save compiled ML Model: " + e.getMessage(), true, true);
+        }
+
+        return compiledForest;
+    }
+
+    /**
+     * A loaded model, along with the number of references preventing its eviction
+     */
+    static private class Entry {
+        String modelFile;
+        CompiledForest forest;
+        int references = 0;
+
+        Entry(String modelFile, CompiledForest forest) {
+            this.modelFile = modelFile;
+            this.forest = forest;
+        }
+    }
+}
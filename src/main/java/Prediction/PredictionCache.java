@@ -0,0 +1,119 @@
+package Prediction;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class PredictionCache {
+    static private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    static private final AtomicLong modelVersion = new AtomicLong();
+    static private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+    /**
+     * Retrieves the version of the loaded prediction models, which changes whenever a model is loaded or trained
+     *
+     * @return Current model version
+     */
+    static public long getModelVersion() {
+        return modelVersion.get();
+    }
+
+    /**
+     * Invalidates every cached prediction, as they were made by a model that is no longer loaded
+     */
+    static public void modelChanged() {
+        modelVersion.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Retrieves a cached prediction
+     *
+     * @param symbol       Stock that was predicted
+     * @param numberOfDays Number of days that were predicted
+     * @param fingerprint  {@link #fingerprint(double[])} of the feature vector the prediction is needed for
+     * @return The cached prediction, or null if the stock has not been predicted from the same features by the current model
+     */
+    static public Boolean get(String symbol, int numberOfDays, long fingerprint) {
+        Entry entry = entries.get(symbol + ":" + numberOfDays);
+
+        if (entry == null || entry.modelVersion != modelVersion.get() || entry.fingerprint != fingerprint) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry.prediction;
+    }
+
+    /**
+     * Caches a prediction, replacing any earlier prediction of the same stock and number of days
+     *
+     * @param symbol       Stock that was predicted
+     * @param numberOfDays Number of days that were predicted
+     * @param fingerprint  {@link #fingerprint(double[])} of the feature vector that was predicted
+     * @param version      Model version that made the prediction (read before predicting, so a prediction made while a new model was loading is never served by it)
+     * @param prediction   True if the stock was predicted to rise or stay the same, False if it was predicted to fall
+     */
+    static public void put(String symbol, int numberOfDays, long fingerprint, long version, boolean prediction) {
+        if (version != modelVersion.get()) return;
+        entries.put(symbol + ":" + numberOfDays, new Entry(version, fingerprint, prediction));
+    }
+
+    /**
+     * Hashes every value of a feature vector, so that any change to the features (e.g. a recalculated indicator or a new news sentiment) gives a different fingerprint
+     *
+     * @param features Feature vector
+     * @return 64-bit FNV-1a hash of the feature vector
+     */
+    static public long fingerprint(double[] features) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (double feature : features) {
+            long bits = Double.doubleToLongBits(feature);
+            for (int i = 0; i < 8; i++) {
+                hash ^= (bits >>> (i * 8)) & 0xff;
+                hash *= 0x100000001b3L;
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * Retrieves how many predictions have been served from the cache since the application started
+     *
+     * @return Number of cache hits
+     */
+    static public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Retrieves how many predictions could not be served from the cache since the application started
+     *
+     * @return Number of cache misses
+     */
+    static public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * A prediction, along with the model and features it was made from
+     */
+    static private class Entry {
+        final long modelVersion, fingerprint;
+        final boolean prediction;
+
+        Entry(long modelVersion, long fingerprint, boolean prediction) {
+            this.modelVersion = modelVersion;
+            this.fingerprint = fingerprint;
+            this.prediction = prediction;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package Prediction;
+
+import org.apache.log4j.Level;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class SparkContextManager {
+    static private final long IDLE_TIMEOUT_MINUTES = 5;
+
+    static private final ScheduledExecutorService idleTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Spark Idle Timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    static private JavaSparkContext jsc;
+    static private ScheduledFuture<?> idleStop;
+    static private int users = 0;
+
+    /**
+     * Starts a local Spark context if one is not already running and registers the caller as a user of it. Every call must be paired with a call to {@link #release()}
+     *
+     * @return The running Spark context
+     */
+    static public synchronized JavaSparkContext acquire() {
+        if (idleStop != null) {
+            idleStop.cancel(false);
+            idleStop = null;
+        }
+
+        if (jsc == null) {
+            jsc = new JavaSparkContext(createConf());
+            jsc.setLogLevel(Level.FATAL.toString());
+            System.out.println(jsc.getConf().toDebugString());
+        }
+
+        users++;
+        return jsc;
+    }
+
+    /**
+     * Releases the caller's use of the Spark context, stopping it once it has been idle for {@link #IDLE_TIMEOUT_MINUTES} minutes
+     */
+    static public synchronized void release() {
+        if (users == 0) return;
+        if (--users > 0 || jsc == null) return;
+
+        idleStop = idleTimer.schedule(SparkContextManager::stopIfIdle, IDLE_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops the Spark context immediately, regardless of whether it is in use (e.g. when the application closes)
+     */
+    static public synchronized void shutdown() {
+        if (idleStop != null) idleStop.cancel(false);
+        idleStop = null;
+        users = 0;
+        stop();
+    }
+
+    static private synchronized void stopIfIdle() {
+        idleStop = null;
+        if (users == 0) stop();
+    }
+
+    static private void stop() {
+        if (jsc == null) return;
+
+        System.out.println("Stopping idle Spark context...");
+        jsc.stop();
+        jsc = null;
+    }
+
+    /**
+     * Sizes the local Spark context from the machine it is running on, rather than assuming a fixed number of cores
+     *
+     * @return Spark configuration for a local context
+     */
+    static private SparkConf createConf() {
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        //Local mode runs inside this JVM, so its memory is bounded by the application's heap (-Xmx) rather than spark.driver.memory/spark.executor.memory
+        return new SparkConf()
+                .setMaster("local[" + cores + "]")
+                .setAppName("StockMarketPredictor")
+                .set("spark.default.parallelism", String.valueOf(cores))
+                .set("spark.scheduler.mode", "FAIR") //Concurrent trainings share the cores through their own scheduler pools, rather than queueing behind each other
+                .setSparkHome(System.getProperty("user.dir") + "/res/sparkhome");
+    }
+}
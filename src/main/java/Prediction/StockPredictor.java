@@ -1,33 +1,43 @@
 package Prediction;
 
-import Default.Controller;
 import Default.DatabaseHandler;
-import Default.Main;
+import Default.Status;
+import Processing.DirtyTracker;
 import Processing.NaturalLanguageProcessor;
 import Utility.SmoothingUtils;
-import javafx.scene.control.ProgressBar;
-import org.apache.log4j.Level;
-import org.apache.spark.SparkConf;
-import org.apache.spark.SparkStatusTracker;
-import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.JobExecutionStatus;
+import org.apache.spark.SparkJobInfo;
+import org.apache.spark.SparkStageInfo;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
-import org.apache.spark.api.java.function.Function;
-import org.apache.spark.api.java.function.PairFunction;
-import org.apache.spark.mllib.linalg.DenseVector;
-import org.apache.spark.mllib.linalg.Vector;
+import org.apache.spark.api.java.JavaSparkStatusTracker;
+import org.apache.spark.broadcast.Broadcast;
 import org.apache.spark.mllib.regression.LabeledPoint;
 import org.apache.spark.mllib.tree.RandomForest;
+import org.apache.spark.mllib.tree.configuration.Algo;
+import org.apache.spark.mllib.tree.model.DecisionTreeModel;
 import org.apache.spark.mllib.tree.model.RandomForestModel;
 import org.apache.spark.mllib.util.MLUtils;
-import org.apache.spark.status.AppStatusStore;
 import org.apache.spark.storage.StorageLevel;
+import org.apache.spark.util.StatCounter;
 import scala.Tuple2;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -37,26 +47,34 @@ import java.util.concurrent.TimeUnit;
  */
 
 public class StockPredictor {
-    private static final SparkConf sparkConf = new SparkConf().setMaster("local[*]").setAppName("StockMarketPredictor").set("spark.executor.cores", "6").set("spark.driver.memory", "2g").set("spark.executor.memory", "2g").setSparkHome(System.getProperty("user.dir") + "\\res\\sparkhome");
-    private static final JavaSparkContext jsc = new JavaSparkContext(sparkConf);
-    private static final AppStatusStore ass = AppStatusStore.createLiveStore(sparkConf);
-    private static final SparkStatusTracker tracker = new SparkStatusTracker(jsc.sc(), ass);
-    private static RandomForestModel model;
-    private static ProgressBar pb;
+    private static final String MULTI_STOCK = "MultiStock";
+    private static final int FOLDS = 3;
+    private static final int CORES_PER_TRAINING = 2; //Partitions given to each Single-Stock training when several are trained at once
+    private static final String[] JOB_PROPERTIES = {"spark.jobGroup.id", "spark.job.description", "spark.job.interruptOnCancel", "spark.scheduler.pool"};
+    private static final Status.Channel PROGRESS_CHANNEL = Status.Channel.STOCK_FORECAST;
+    private static final Set<String> liveScopes = ConcurrentHashMap.newKeySet(); //Scopes of the models used for live predictions, each holding a reference in the ModelRegistry
     private static DatabaseHandler dh;
-    private static HashMap<String, RandomForestModel> singleModels = new HashMap<>();
+    private static volatile String predictionMode;
 
     /**
-     * Initialises the Stock Predictor with a Database Handler and Progress Bar
+     * Initialises the Stock Predictor with a Database Handler
      *
      * @param spdh Stock Predictor Database Handler
-     * @param sppb Stock Predictor Progress Bar
      */
-    static public void initialise(DatabaseHandler spdh, ProgressBar sppb) {
-        System.out.println(jsc.getConf().toDebugString());
-        jsc.setLogLevel(Level.FATAL.toString());
+    static public void initialise(DatabaseHandler spdh) {
         dh = spdh;
-        pb=sppb;
+        ModelRegistry.initialise(spdh);
+        HyperparameterSearch.initialise(spdh);
+    }
+
+    /**
+     * Re-reads the PREDICTION_MODE setting, which is otherwise cached after it is first read
+     *
+     * @return SINGLE or MULTI
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    static public String refreshPredictionMode() throws SQLException {
+        return predictionMode = dh.executeQuery("SELECT value FROM settings WHERE ID = 'PREDICTION_MODE'").get(0);
     }
 
     /**
@@ -68,7 +86,7 @@ public class StockPredictor {
      */
     static public String getModelInformation(ArrayList<String> stocks) throws SQLException {
         if (!isModelLoaded()) return "No model loaded";
-        if (dh.executeQuery("SELECT value FROM settings WHERE ID='PREDICTION_MODE';").get(0).equals("MULTI"))
+        if (isMultiStockMode())
             try {
                 ArrayList<String> results = dh.executeQuery("SELECT Description, Accuracy FROM predictors WHERE Model = 'Random Forest' AND Type = 'CLASSIFICATION' AND Scope='MultiStock' ORDER BY ModelNumber DESC LIMIT 1;");
                 if (!results.isEmpty()) {
@@ -114,40 +132,25 @@ public class StockPredictor {
     }
 
     /**
-     * Predict RISE/MAINTAIN or FALL, given a feature vector
-     *
-     * @param data Feature vector containing information such as prediction period, stock price data and sentiment information
-     * @return True if the stock is predicted to rise or stay the same, False if the stock is predicted to fall
-     */
-    static boolean predictDirection(Vector data) {
-        return model.predict(data) == 1;
-    }
-
-    /**
-     * Predict RISE/MAINTAIN or FALL, given a feature vector and a stock
+     * Predict RISE/MAINTAIN or FALL for a batch of feature vectors
      *
-     * @param data  Feature vector containing information such as prediction period, stock price data and sentiment information
-     * @param stock Stock to predict the price direction of
-     * @return True if the stock is predicted to rise or stay the same, False if the stock is predicted to fall
+     * @param batch Feature vectors containing information such as prediction period, stock price data and sentiment information
+     * @param scope Scope of the model to predict with (e.g. AAPL_SIMULATION or MultiStock_SIMULATION), which must have been acquired from the {@link ModelRegistry}
+     * @return 1 for each feature vector that is predicted to rise or stay the same, 0 for each that is predicted to fall
      */
-    static boolean predictDirection(Vector data, String stock) {
-        double value;
-        if (stock.contains("_"))
-            value = singleModels.get(stock.split("_")[0]).predict(data);
-        else
-            value = singleModels.get(stock).predict(data);
-
-        return value == 1;
+    static double[] predictDirections(double[][] batch, String scope) {
+        return ModelRegistry.get(scope).predict(batch);
     }
 
     /**
-     * Loads the latest Random Forest model for a given list of stocks
+     * Loads the latest Random Forest model for a given list of stocks, loading the models in parallel
      *
      * @param stocks Stocks to load prediction models of
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws InterruptedException Throws InterruptedException if loading is interrupted by another process
      */
-    static public void loadLatestRandomForest(ArrayList<String> stocks) throws SQLException {
-        for (String stock : stocks) loadLatestRandomForest(stock);
+    static public void loadLatestRandomForest(ArrayList<String> stocks) throws SQLException, InterruptedException {
+        useLiveModels(stocks);
     }
 
     /**
@@ -155,51 +158,52 @@ public class StockPredictor {
      *
      * @param stock Stock to load prediction model of
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws InterruptedException Throws InterruptedException if loading is interrupted by another process
      */
-    static public void loadLatestRandomForest(String stock) throws SQLException {
-        ArrayList<String> results = dh.executeQuery("SELECT Filepath FROM predictors WHERE Model = 'Random Forest' AND Type = 'CLASSIFICATION' AND Scope = '" + stock + "' ORDER BY ModelNumber DESC LIMIT 1;");
-        if(results.isEmpty()) return;
-        loadRandomForest(results.get(0), stock);
+    static public void loadLatestRandomForest(String stock) throws SQLException, InterruptedException {
+        useLiveModels(Collections.singletonList(stock));
     }
 
     /**
      * Loads the latest MultiStock Random Forest Model
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws InterruptedException Throws InterruptedException if loading is interrupted by another process
      */
-    static public void loadLatestRandomForest() throws SQLException {
-        ArrayList<String> results = dh.executeQuery("SELECT Filepath FROM predictors WHERE Model = 'Random Forest' AND Type = 'CLASSIFICATION' AND Scope = 'MultiStock' ORDER BY ModelNumber DESC LIMIT 1;");
-        if(results.isEmpty()) return;
-        loadRandomForest(results.get(0));
+    static public void loadLatestRandomForest() throws SQLException, InterruptedException {
+        useLiveModels(Collections.singletonList(MULTI_STOCK));
     }
 
     /**
-     * Loads a Random Forest from a given filepath, for a given stock
-     * @param modelFile Filepath location of the model
-     * @param stock Stock to associate with this model upon loading
+     * Loads the latest models of a set of scopes and keeps them loaded for live predictions
+     * @param scopes Scopes of the models to load
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws InterruptedException Throws InterruptedException if loading is interrupted by another process
      */
-    private static void loadRandomForest(String modelFile, String stock) {
-        System.out.println("Loading Machine Learning Model '" + modelFile + "'...");
-        try {
-            if (!singleModels.containsKey(stock.split("_")[0]))
-                singleModels.put(stock.split("_")[0], RandomForestModel.load(jsc.sc(), modelFile));
-        } catch (Exception e) {
-            Main.getController().updateCurrentTask("Couldn't load ML Model: " + e.getMessage(), true, true);
-        }
-        System.out.println("Loaded Machine Learning Model: " + singleModels.get(stock.split("_")[0]).toString());
+    private static void useLiveModels(Collection<String> scopes) throws SQLException, InterruptedException {
+        for (String scope : ModelRegistry.acquireLatest(scopes))
+            if (!liveScopes.add(scope)) ModelRegistry.release(scope); //Already referenced
     }
 
     /**
-     * Loads a MultiStock Random Forest from a given filepath
-     * @param modelFile Filepath location of the model
+     * Stops keeping the live prediction models loaded (e.g. before switching prediction mode), leaving them in the registry until they are evicted
      */
-    private static void loadRandomForest(String modelFile) {
-        System.out.println("Loading Machine Learning Model '" + modelFile + "'...");
-        try {
-            model = RandomForestModel.load(jsc.sc(), modelFile);
-        } catch (Exception e) {
-            Main.getController().updateCurrentTask("Couldn't load ML Model: " + e.getMessage(), true, true);
+    static public void releaseLiveModels() {
+        for (String scope : liveScopes) {
+            liveScopes.remove(scope);
+            ModelRegistry.release(scope);
         }
-        System.out.println("Loaded Machine Learning Model: " + model.toString());
+    }
+
+    /**
+     * Adds a newly trained model to the registry, keeping it loaded if it is used for live predictions
+     * @param scope Scope of the model
+     * @param modelFile Filepath of the model, as stored in the predictors table
+     * @param forest Compiled model
+     */
+    private static void registerModel(String scope, String modelFile, CompiledForest forest) {
+        ModelRegistry.register(scope, modelFile, forest);
+        if (!scope.endsWith("_SIMULATION") && !liveScopes.contains(scope) && ModelRegistry.acquire(scope))
+            liveScopes.add(scope);
     }
 
     /**
@@ -208,14 +212,13 @@ public class StockPredictor {
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
     static public boolean isModelLoaded() throws SQLException {
-        if (dh.executeQuery("SELECT value FROM settings WHERE ID = 'PREDICTION_MODE'").get(0).equals("MULTI"))
-            return model != null;
+        if (isMultiStockMode())
+            return liveScopes.contains(MULTI_STOCK) && ModelRegistry.isLoaded(MULTI_STOCK);
         else {
-            if (singleModels.isEmpty()) return false;
-            for (String model : singleModels.keySet())
-                if (singleModels.get(model) == null)
-                    return false;
-            return true;
+            for (String scope : liveScopes)
+                if (!scope.equals(MULTI_STOCK) && ModelRegistry.isLoaded(scope))
+                    return true;
+            return false;
         }
     }
 
@@ -225,36 +228,142 @@ public class StockPredictor {
      * @param stock Stock to associate with the new model
      * @param isSimulation True if the model should only be used for simulations, False if the model can be used for real-time stock information
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws InterruptedException Throws InterruptedException if training is interrupted by another process
      */
-    static public void trainRandomForest(String libSVMFilePath, String stock, boolean isSimulation) throws SQLException {
-        System.out.println("Training Single-Stock Random Forest for " + stock + "...");
-        JavaRDD<LabeledPoint> data = MLUtils.loadLibSVMFile(jsc.sc(), libSVMFilePath).toJavaRDD().persist(StorageLevel.MEMORY_AND_DISK());
+    static public void trainRandomForest(String libSVMFilePath, String stock, boolean isSimulation) throws SQLException, InterruptedException {
+        JavaSparkContext jsc = SparkContextManager.acquire();
 
-        final JavaRDD<LabeledPoint>[] trainingTestSplits = data.randomSplit(new double[]{0.7, 0.3});
-        HashMap<Integer, Integer> categoryInfo = new HashMap<>();
-        int classes = 2, trees = 100, maxDepth = 15, seed = 12345;
-        String featureSubsetStrategy = "auto", impurity = "gini";
+        try {
+            trainSingleStock(jsc, MLUtils.loadLibSVMFile(jsc.sc(), libSVMFilePath).toJavaRDD(), stock, 0, isSimulation);
+        } finally {
+            SparkContextManager.release();
+        }
+    }
+
+    /**
+     * Trains a new Single-Stock Random Forest model from training data held in memory
+     * @param trainingData Labelled training/testing data (see {@link TrainingData#build})
+     * @param stock Stock to associate with the new model
+     * @param isSimulation True if the model should only be used for simulations, False if the model can be used for real-time stock information
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws InterruptedException Throws InterruptedException if training is interrupted by another process
+     */
+    static public void trainRandomForest(TrainingData trainingData, String stock, boolean isSimulation) throws SQLException, InterruptedException {
+        if (trainingData.size() == 0) {
+            Status.updateCurrentTask("No training data for " + stock, true, true);
+            return;
+        }
+
+        JavaSparkContext jsc = SparkContextManager.acquire();
+
+        try {
+            trainSingleStock(jsc, trainingData.toRDD(jsc), stock, 0, isSimulation);
+        } finally {
+            SparkContextManager.release();
+        }
+    }
+
+    /**
+     * Trains a new Single-Stock Random Forest model for each stock, running several of the small trainings at once. Each training is given its own job group and fair scheduler pool with a budget of {@link #CORES_PER_TRAINING} partitions, so that no training can take every core, and each model is saved as soon as it finishes
+     * @param stocks Stocks to train prediction models for
+     * @param dayArray List of days to calculate price rise/fall labels for
+     * @param smoothPriceAlpha Smoothing factor that was applied to the price data
+     * @param testingTimeFrame Number of each stock's most recent trading days to leave out of the training data, or 0 to use the whole history
+     * @param isSimulation True if the models should only be used for simulations, False if the models can be used for real-time stock information
+     * @throws InterruptedException Throws InterruptedException if training is interrupted by another process
+     */
+    static public void trainRandomForests(ArrayList<String> stocks, int[] dayArray, double smoothPriceAlpha, int testingTimeFrame, boolean isSimulation) throws InterruptedException {
+        int slots = Math.max(1, Math.min(stocks.size(), Runtime.getRuntime().availableProcessors() / CORES_PER_TRAINING));
+        Set<String> running = ConcurrentHashMap.newKeySet();
+        LinkedHashMap<String, Future<?>> trainings = new LinkedHashMap<>();
+
+        JavaSparkContext jsc = SparkContextManager.acquire();
+        ExecutorService trainers = Executors.newFixedThreadPool(slots, r -> {
+            Thread thread = new Thread(r, "Model Trainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Status.updateCurrentTask("Training " + stocks.size() + " Single-Stock Random Forests, " + slots + " at a time...", false, false);
+        Status.updateProgress(0, stocks.size(), PROGRESS_CHANNEL);
+
+        try {
+            for (String stock : stocks) {
+                String jobGroup = isSimulation ? stock + "_SIMULATION" : stock;
+
+                trainings.put(stock, trainers.submit(() -> {
+                    jsc.setJobGroup(jobGroup, "Single-Stock Random Forest for " + stock, true);
+                    jsc.setLocalProperty("spark.scheduler.pool", jobGroup);
+                    running.add(jobGroup);
+
+                    try {
+                        TrainingData trainingData = TrainingData.build(stocks, Collections.singletonList(stock), dayArray, false, smoothPriceAlpha, testingTimeFrame, PROGRESS_CHANNEL);
+
+                        if (trainingData.size() == 0)
+                            Status.updateCurrentTask("No training data for " + stock, true, true);
+                        else
+                            trainSingleStock(jsc, trainingData.toRDD(jsc, CORES_PER_TRAINING), stock, CORES_PER_TRAINING, isSimulation);
+                    } finally {
+                        running.remove(jobGroup);
+                        jsc.clearJobGroup();
+                        jsc.setLocalProperty("spark.scheduler.pool", null);
+                    }
+
+                    return null;
+                }));
+            }
+
+            int finished;
+            while ((finished = (int) trainings.values().stream().filter(Future::isDone).count()) < trainings.size()) {
+                reportTrainingProgress(jsc, running, finished, trainings.size());
+                TimeUnit.SECONDS.sleep(1);
+            }
 
-        RandomForestModel tempModel = RandomForest.trainClassifier(trainingTestSplits[0], classes, categoryInfo, trees, featureSubsetStrategy, impurity, maxDepth, 32, seed);
-        final RandomForestModel finalTempModel = tempModel;
-        JavaPairRDD<Double, Double> predictionAndLabel = trainingTestSplits[1].mapToPair((PairFunction<LabeledPoint, Double, Double>) point -> new Tuple2<>(finalTempModel.predict(point.features()), point.label()));
+            for (Map.Entry<String, Future<?>> training : trainings.entrySet())
+                try {
+                    training.getValue().get();
+                } catch (ExecutionException e) {
+                    Status.updateCurrentTask("Could not train ML Model for " + training.getKey() + ": " + e.getCause().getMessage(), true, true);
+                }
+        } finally {
+            for (String jobGroup : running) jsc.cancelJobGroup(jobGroup);
+            trainers.shutdownNow();
+            SparkContextManager.release();
+        }
 
-        double testErr = 1.0 * predictionAndLabel.filter((Function<Tuple2<Double, Double>, Boolean>) predictionLabel -> !predictionLabel._1().equals(predictionLabel._2())).count() / trainingTestSplits[1].count();
-        System.out.println(tempModel.toDebugString() + " Accuracy: " + (1 - testErr) * 100 + "%");
-        tracker.getExecutorInfos();
-        tempModel = RandomForest.trainClassifier(data,classes,categoryInfo,trees,featureSubsetStrategy,impurity,maxDepth,32,seed);
+        Status.updateProgress(stocks.size(), stocks.size(), PROGRESS_CHANNEL);
+        Status.updateCurrentTask("Trained " + stocks.size() + " Single-Stock Random Forests!", false, false);
+    }
+
+    /**
+     * Trains, evaluates and saves a new Single-Stock Random Forest model
+     * @param jsc Running Spark context
+     * @param data Labelled training/testing data
+     * @param stock Stock to associate with the new model
+     * @param coreBudget Maximum number of partitions the training may run on at once, or 0 to use as many as are available
+     * @param isSimulation True if the model should only be used for simulations, False if the model can be used for real-time stock information
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws InterruptedException Throws InterruptedException if training is interrupted by another process
+     */
+    static private void trainSingleStock(JavaSparkContext jsc, JavaRDD<LabeledPoint> data, String stock, int coreBudget, boolean isSimulation) throws SQLException, InterruptedException {
+        System.out.println("Training Single-Stock Random Forest for " + stock + "...");
+        int trees = 100, maxDepth = 15, maxBins = 32, seed = 12345;
+
+        CrossValidatedForest forest = trainCrossValidated(jsc, data, new HashMap<>(), trees, "auto", maxDepth, maxBins, seed, coreBudget, false);
+        System.out.println(forest.model.toDebugString() + " Out-of-Fold Accuracy: " + forest.accuracy * 100 + "%");
 
         if (isSimulation) stock += "_SIMULATION";
 
         int modelNo = Integer.parseInt((dh.executeQuery("SELECT COALESCE(MAX(ModelNumber),0) FROM predictors WHERE Model = 'Random Forest' AND Type = 'CLASSIFICATION' AND Scope='" + stock + "'")).get(0)) + 1;
-        dh.executeCommand("INSERT INTO predictors(Model, Type, ModelNumber, Accuracy, Description, Filepath, Scope) VALUES ('Random Forest', 'CLASSIFICATION', " + modelNo + ", " + (1 - testErr) * 100 + ", 'Exponentially Smoothed Prices (Alpha 0.1), Single Stock" + tempModel.toString() + ", Depth " + maxDepth + "', 'res/model/" + stock + "/RF" + modelNo + ".model', '" + stock + "')");
+        dh.executeCommand("INSERT INTO predictors(Model, Type, ModelNumber, Accuracy, Description, Filepath, Scope) VALUES ('Random Forest', 'CLASSIFICATION', " + modelNo + ", " + forest.accuracy * 100 + ", 'Exponentially Smoothed Prices (Alpha 0.1), Single Stock" + forest.model.toString() + ", Depth " + maxDepth + "', 'res/model/" + stock + "/RF" + modelNo + ".model', '" + stock + "')");
         File stockDir = new File(System.getProperty("user.dir") + "/res/model/" + stock);
         if (!stockDir.exists())
             if (!stockDir.mkdirs())
-                Main.getController().updateCurrentTask("Could not create director/file: " + stockDir, true,true);
+                Status.updateCurrentTask("Could not create director/file: " + stockDir, true,true);
 
-        tempModel.save(jsc.sc(), System.getProperty("user.dir") + "/res/model/" + stock + "/RF" + modelNo + ".model");
-        singleModels.put(stock,tempModel);
+        String modelFile = "res/model/" + stock + "/RF" + modelNo + ".model";
+        forest.model.save(jsc.sc(), System.getProperty("user.dir") + "/" + modelFile);
+        registerModel(stock, modelFile, ModelRegistry.compile(forest.model, System.getProperty("user.dir") + "/" + modelFile));
         System.out.println("Saved Model Successfully!");
     }
 
@@ -264,101 +373,325 @@ public class StockPredictor {
      * @param noOfStocks Number of stocks that will be covered by this MultiStock model
      * @param isSimulation True if the model should only be used for simulations, False if the model can be used for real-time stock information
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
-     * @throws InterruptedException Throws InterruptedException if the sleep function is interrupted by another process
+     * @throws InterruptedException Throws InterruptedException if training is interrupted by another process
      */
     static public void trainRandomForest(String libSVMFilePath, int noOfStocks, boolean isSimulation) throws SQLException, InterruptedException {
-        System.out.println("Loading training data for Multi-Stock Random Forest...");
-        model = null;
-        JavaRDD<LabeledPoint> data = MLUtils.loadLibSVMFile(jsc.sc(), libSVMFilePath).toJavaRDD();
+        JavaSparkContext jsc = SparkContextManager.acquire();
 
-        final JavaRDD<LabeledPoint>[] trainingTestSplits = data.randomSplit(new double[]{0.7, 0.3});
+        try {
+            System.out.println("Loading training data for Multi-Stock Random Forest...");
+            trainMultiStock(jsc, MLUtils.loadLibSVMFile(jsc.sc(), libSVMFilePath).toJavaRDD(), noOfStocks, isSimulation);
+        } finally {
+            SparkContextManager.release();
+        }
+    }
 
-        Integer classes = 2;
-        HashMap<Integer, Integer> categoryInfo = new HashMap<>();
+    /**
+     * Trains a new MultiStock Random Forest model from training data held in memory
+     * @param trainingData Labelled training/testing data, with the stock index as the first feature (see {@link TrainingData#build})
+     * @param noOfStocks Number of stocks that will be covered by this MultiStock model
+     * @param isSimulation True if the model should only be used for simulations, False if the model can be used for real-time stock information
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws InterruptedException Throws InterruptedException if training is interrupted by another process
+     */
+    static public void trainRandomForest(TrainingData trainingData, int noOfStocks, boolean isSimulation) throws SQLException, InterruptedException {
+        if (trainingData.size() == 0) {
+            Status.updateCurrentTask("No training data for the Multi-Stock Random Forest", true, true);
+            return;
+        }
+
+        JavaSparkContext jsc = SparkContextManager.acquire();
 
+        try {
+            trainMultiStock(jsc, trainingData.toRDD(jsc), noOfStocks, isSimulation);
+        } finally {
+            SparkContextManager.release();
+        }
+    }
+
+    /**
+     * Trains, evaluates and saves a new MultiStock Random Forest model, publishing the training progress
+     * @param jsc Running Spark context
+     * @param data Labelled training/testing data
+     * @param noOfStocks Number of stocks that will be covered by this MultiStock model
+     * @param isSimulation True if the model should only be used for simulations, False if the model can be used for real-time stock information
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws InterruptedException Throws InterruptedException if training is interrupted by another process
+     */
+    static private void trainMultiStock(JavaSparkContext jsc, JavaRDD<LabeledPoint> data, int noOfStocks, boolean isSimulation) throws SQLException, InterruptedException {
+        HashMap<Integer, Integer> categoryInfo = new HashMap<>();
         categoryInfo.put(0, noOfStocks);
 
-        Integer trees = 500;
-        String featureSubsetStrategy = "auto";
-        String impurity = "gini";
-        Integer maxDepth = 10;
-        Integer maxBins = noOfStocks;
-        Integer seed = 12345;
+        int trees = 500, maxDepth = 10, maxBins = noOfStocks, seed = 12345;
 
         System.out.println("Training Multi-Stock Random Forest...");
-        Thread trainThread = new Thread(() ->
-                model = RandomForest.trainClassifier(trainingTestSplits[0], classes, categoryInfo, trees, featureSubsetStrategy, impurity, maxDepth, maxBins, seed)
-        );
+        CrossValidatedForest forest = trainCrossValidated(jsc, data, categoryInfo, trees, "auto", maxDepth, maxBins, seed, 0, true);
+        System.out.println(forest.model.toDebugString() + " Out-of-Fold Accuracy: " + forest.accuracy * 100 + "%");
+
+        String scope = "MultiStock";
+        if (isSimulation) scope += "_SIMULATION";
+
+        int modelNo = Integer.parseInt((dh.executeQuery("SELECT COALESCE(MAX(ModelNumber),0) FROM predictors WHERE Model = 'Random Forest' AND Type = 'CLASSIFICATION'")).get(0)) + 1;
+        dh.executeCommand("INSERT INTO predictors(Model, Type, ModelNumber, Accuracy, Description, Filepath, Scope) VALUES ('Random Forest', 'CLASSIFICATION', " + modelNo + ", " + forest.accuracy * 100 + ", 'Exponentially Smoothed Prices (Alpha " + SmoothingUtils.getAlpha() + "), Categorical Features, " + forest.model.toString() + ", Depth " + maxDepth + "', 'res/model/RF" + modelNo + ".model', '" + scope + "')");
+        String modelFile = "res/model/RF" + modelNo + ".model";
+        forest.model.save(jsc.sc(), System.getProperty("user.dir") + "/" + modelFile);
+        registerModel(scope, modelFile, ModelRegistry.compile(forest.model, System.getProperty("user.dir") + "/" + modelFile));
+        System.out.println("Saved Model Successfully!");
+    }
+
+    /**
+     * Trains a Random Forest in a single pass as {@link #FOLDS} sub-forests, each trained on every fold of the data but one and scored on the fold it did not see. The sub-forests are trained and scored concurrently (or one at a time when a core budget is given, as each fold's jobs would otherwise run at once), then merged into one forest, so the accuracy is measured without training a separate evaluation forest
+     * @param jsc Running Spark context
+     * @param data Labelled training data
+     * @param categoryInfo Number of categories of each categorical feature, by feature index
+     * @param trees Total number of trees, divided between the sub-forests
+     * @param featureSubsetStrategy Number of features considered at each split ("auto", "all", "sqrt", "log2" or "onethird")
+     * @param maxDepth Maximum depth of each tree
+     * @param maxBins Maximum number of bins used when splitting features
+     * @param seed Random seed of the fold split (each sub-forest is seeded from it)
+     * @param coreBudget Maximum number of partitions the training may run on at once, or 0 to train the folds concurrently on as many partitions as the data has
+     * @param reportProgress True if the training progress should be published
+     * @return The merged forest, along with its out-of-fold accuracy
+     * @throws InterruptedException Throws InterruptedException if training is interrupted by another process
+     */
+    static CrossValidatedForest trainCrossValidated(JavaSparkContext jsc, JavaRDD<LabeledPoint> data, HashMap<Integer, Integer> categoryInfo, int trees, String featureSubsetStrategy, int maxDepth, int maxBins, int seed, int coreBudget, boolean reportProgress) throws InterruptedException {
+        data.persist(StorageLevel.MEMORY_AND_DISK());
+        ExecutorService foldTrainers = Executors.newFixedThreadPool(coreBudget > 0 ? 1 : FOLDS);
+
+        //The fold jobs belong to the same job group and scheduler pool as the caller's
+        HashMap<String, String> jobProperties = new HashMap<>();
+        for (String property : JOB_PROPERTIES) jobProperties.put(property, jsc.getLocalProperty(property));
+
+        try {
+            double[] weights = new double[FOLDS];
+            Arrays.fill(weights, 1.0 / FOLDS);
+            JavaRDD<LabeledPoint>[] folds = data.randomSplit(weights, seed);
+            int foldTrees = (trees + FOLDS - 1) / FOLDS;
+
+            ArrayList<Future<Tuple2<RandomForestModel, StatCounter>>> results = new ArrayList<>();
+
+            for (int i = 0; i < FOLDS; i++) {
+                JavaRDD<LabeledPoint> training = null;
+                for (int j = 0; j < FOLDS; j++)
+                    if (j != i) training = (training == null) ? folds[j] : training.union(folds[j]);
+
+                //A union has the partitions of both folds, so it is coalesced back down to the budget
+                if (coreBudget > 0) training = training.coalesce(coreBudget);
 
-        trainThread.start();
+                final JavaRDD<LabeledPoint> foldTraining = training, foldTesting = folds[i];
+                final int foldSeed = seed + i;
 
-        while (trainThread.isAlive()) {
-            int total = 0;
-            int completed = 0;
+                results.add(foldTrainers.submit(() -> {
+                    for (Map.Entry<String, String> property : jobProperties.entrySet()) jsc.setLocalProperty(property.getKey(), property.getValue());
 
-            TimeUnit.SECONDS.sleep(1);
-            int[] jIDs = tracker.getActiveJobIds();
+                    RandomForestModel subForest = RandomForest.trainClassifier(foldTraining, 2, categoryInfo, foldTrees, featureSubsetStrategy, "gini", maxDepth, maxBins, foldSeed);
+                    Broadcast<CompiledForest> compiled = jsc.broadcast(CompiledForest.compile(subForest));
 
-            for (Integer job : jIDs)
-                for (Integer stage : tracker.getJobInfo(job).get().stageIds()) {
-                    total += tracker.getStageInfo(stage).get().numTasks();
-                    completed += tracker.getStageInfo(stage).get().numCompletedTasks();
+                    try {
+                        StatCounter errors = foldTesting.mapToDouble(point -> (compiled.value().predict(point.features().toArray()) != point.label()) ? 1 : 0).stats();
+                        return new Tuple2<>(subForest, errors);
+                    } finally {
+                        compiled.destroy();
+                    }
+                }));
+            }
+
+            while (reportProgress && !results.stream().allMatch(Future::isDone)) {
+                TimeUnit.SECONDS.sleep(1);
+                reportTrainingProgress(jsc);
+            }
+
+            ArrayList<DecisionTreeModel> mergedTrees = new ArrayList<>();
+            double errors = 0;
+            long tested = 0;
+
+            for (Future<Tuple2<RandomForestModel, StatCounter>> result : results) {
+                Tuple2<RandomForestModel, StatCounter> fold;
+
+                try {
+                    fold = result.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Could not train Random Forest: " + e.getCause().getMessage(), e.getCause());
                 }
 
-            double progress = ((double) completed / (double) total * 100.0);
+                mergedTrees.addAll(Arrays.asList(fold._1().trees()));
+                errors += fold._2().sum();
+                tested += fold._2().count();
+            }
 
-            Controller.updateProgress(completed, total, pb);
-            System.out.println("Progress: " + progress + "%");
+            return new CrossValidatedForest(new RandomForestModel(Algo.Classification(), mergedTrees.toArray(new DecisionTreeModel[0])), (tested == 0) ? 0 : 1 - errors / tested);
+        } finally {
+            foldTrainers.shutdownNow();
+            data.unpersist();
         }
+    }
 
-        JavaPairRDD<Double, Double> predictionAndLabel = trainingTestSplits[1].mapToPair((PairFunction<LabeledPoint, Double, Double>) point -> new Tuple2<>(model.predict(point.features()), point.label()));
+    /**
+     * Publishes the progress of the Spark jobs that are currently running
+     * @param jsc Running Spark context
+     */
+    static private void reportTrainingProgress(JavaSparkContext jsc) {
+        JavaSparkStatusTracker tracker = jsc.statusTracker();
+        int[] tasks = countTasks(tracker, tracker.getActiveJobIds());
 
-        Double testErr = 1.0 * predictionAndLabel.filter((Function<Tuple2<Double, Double>, Boolean>) predictionLabel -> !predictionLabel._1().equals(predictionLabel._2())).count() / trainingTestSplits[1].count();
-        System.out.println(model.toDebugString() + " Accuracy: " + (1 - testErr) * 100 + "%");
+        if (tasks[1] == 0) return;
 
-        model = RandomForest.trainClassifier(data, classes, categoryInfo, trees, featureSubsetStrategy, impurity, maxDepth, maxBins, seed);
+        Status.updateProgress(tasks[0], tasks[1], PROGRESS_CHANNEL);
+        System.out.println("Progress: " + ((double) tasks[0] / (double) tasks[1] * 100.0) + "%");
+    }
 
-        String scope = "MultiStock";
-        if (isSimulation) scope += "_SIMULATION";
+    /**
+     * Publishes the number of trainings that have finished, along with the progress of the Spark jobs of each training that is still running
+     * @param jsc Running Spark context
+     * @param jobGroups Job groups of the trainings that are running
+     * @param finished Number of trainings that have finished
+     * @param total Total number of trainings
+     */
+    static private void reportTrainingProgress(JavaSparkContext jsc, Collection<String> jobGroups, int finished, int total) {
+        JavaSparkStatusTracker tracker = jsc.statusTracker();
+        StringBuilder progress = new StringBuilder("Training Single-Stock Random Forests (" + finished + "/" + total + ")");
 
-        int modelNo = Integer.parseInt((dh.executeQuery("SELECT COALESCE(MAX(ModelNumber),0) FROM predictors WHERE Model = 'Random Forest' AND Type = 'CLASSIFICATION'")).get(0)) + 1;
-        dh.executeCommand("INSERT INTO predictors(Model, Type, ModelNumber, Accuracy, Description, Filepath, Scope) VALUES ('Random Forest', 'CLASSIFICATION', " + modelNo + ", " + (1 - testErr) * 100 + ", 'Exponentially Smoothed Prices (Alpha " + SmoothingUtils.getAlpha() + "), Categorical Features, " + model.toString() + ", Depth " + maxDepth + "', 'res/model/RF" + modelNo + ".model', '" + scope + "')");
-        model.save(jsc.sc(), System.getProperty("user.dir") + "/res/model/RF" + modelNo + ".model");
-        System.out.println("Saved Model Successfully!");
+        for (String jobGroup : jobGroups) {
+            int[] tasks = countTasks(tracker, tracker.getJobIdsForGroup(jobGroup));
+            progress.append(", ").append(jobGroup).append(": ").append((tasks[1] == 0) ? 0 : tasks[0] * 100 / tasks[1]).append("%");
+        }
+
+        Status.updateProgress(finished, total, PROGRESS_CHANNEL);
+        Status.updateCurrentTask(progress.toString(), false, false);
+    }
+
+    /**
+     * Counts the tasks of the Spark jobs that are running
+     * @param tracker Status tracker of the Spark context
+     * @param jobs IDs of the jobs to count the tasks of (jobs that are not running are ignored)
+     * @return Number of completed tasks and total number of tasks
+     */
+    static private int[] countTasks(JavaSparkStatusTracker tracker, int[] jobs) {
+        int total = 0;
+        int completed = 0;
+
+        for (int job : jobs) {
+            SparkJobInfo jobInfo = tracker.getJobInfo(job);
+            if (jobInfo == null || jobInfo.status() != JobExecutionStatus.RUNNING) continue;
+
+            for (int stage : jobInfo.stageIds()) {
+                SparkStageInfo stageInfo = tracker.getStageInfo(stage);
+                if (stageInfo == null) continue;
+                total += stageInfo.numTasks();
+                completed += stageInfo.numCompletedTasks();
+            }
+        }
+
+        return new int[]{completed, total};
     }
 
     /**
      * Produces a collection of predictions for multiple days and multple stocks
      * @param stocks Stocks to predict the direction of
      * @param dayArray List of days to predict
-     * @param stockForecastProgress ProgressBar used to update the current prediction process
-     * @return Collection of multi-stock, multi-day price direction predictions
+     * @return Collection of multi-stock, multi-day price direction predictions (stocks without a complete feature record or model are omitted)
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws IOException Throws IOException if a stock's feature table cannot be read
      */
-    static public HashMap<String, HashMap<Integer, Boolean>> predictStocks(ArrayList<String> stocks, int[] dayArray, ProgressBar stockForecastProgress) throws SQLException {
+    static public HashMap<String, HashMap<Integer, Boolean>> predictStocks(ArrayList<String> stocks, int[] dayArray) throws SQLException, IOException {
         HashMap<String, HashMap<Integer, Boolean>> predictions = new HashMap<>();
 
-        for (String stock : stocks)
-            predictions.put(stock, new HashMap<>());
-        int i = 0;
+        Status.updateCurrentTask("Predicting Stock Performance...", false, false);
+        Status.updateProgress(Status.INDETERMINATE, PROGRESS_CHANNEL);
 
-        Main.getController().updateCurrentTask("Predicting Stock Performance...", false, false);
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, stockForecastProgress);
+        if (isModelLoaded()) {
+            for (String stock : stocks) DirtyTracker.take(DirtyTracker.Consumer.PREDICTION, stock);
+
+            predictions = predictBatch(stocks, stocks, dayArray);
 
-        if (isModelLoaded())
             for (int numberOfDays : dayArray)
                 for (String stock : stocks) {
-                    predictions.get(stock).put(numberOfDays, predictStock(stocks, stock, numberOfDays));
+                    if (!predictions.containsKey(stock)) continue;
                     if (predictions.get(stock).get(numberOfDays))
-                        Main.getController().updateCurrentTask(numberOfDays + " Day Prediction for " + stock + ": RISE/MAINTAIN", false, false);
+                        Status.updateCurrentTask(numberOfDays + " Day Prediction for " + stock + ": RISE/MAINTAIN", false, false);
                     else
-                        Main.getController().updateCurrentTask(numberOfDays + " Day Prediction for " + stock + ": FALL", false, false);
-                    i++;
-                    Controller.updateProgress(i, dayArray.length * stocks.size(), stockForecastProgress);
+                        Status.updateCurrentTask(numberOfDays + " Day Prediction for " + stock + ": FALL", false, false);
+                }
+        }
+
+        Status.updateProgress(0, PROGRESS_CHANNEL);
+        Status.updateCurrentTask("Predicted Stock Performance! (Prediction Cache: " + PredictionCache.getHits() + " hits, " + PredictionCache.getMisses() + " misses)", false, false);
+
+        return predictions;
+    }
+
+    /**
+     * Predicts the direction of a set of stocks over a set of days in a single pass, fetching each stock's latest feature record and news sentiment once and scoring every (stock, days) pair that is not already in the {@link PredictionCache} as one batch
+     * @param stocks List of stocks used in the application (to determine the index required for multi-stock models)
+     * @param symbols Stocks to predict
+     * @param dayArray List of days to predict
+     * @return Collection of price direction predictions for each stock and number of days (stocks without a complete feature record or model are omitted)
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws IOException Throws IOException if a stock's feature table cannot be read
+     */
+    static public HashMap<String, HashMap<Integer, Boolean>> predictBatch(ArrayList<String> stocks, Collection<String> symbols, int[] dayArray) throws SQLException, IOException {
+        HashMap<String, HashMap<Integer, Boolean>> predictions = new HashMap<>();
+        if (symbols.isEmpty() || dayArray.length == 0) return predictions;
+
+        long modelVersion = PredictionCache.getModelVersion();
+        boolean multiStock = isMultiStockMode();
+        CompiledForest multiStockModel = multiStock ? ModelRegistry.get(MULTI_STOCK) : null;
+        if (multiStock && multiStockModel == null) return predictions;
+
+        //Feature vectors that have not already been predicted by the current model, grouped by stock
+        ArrayList<String> rowSymbols = new ArrayList<>();
+        ArrayList<Integer> rowDays = new ArrayList<>();
+        ArrayList<Long> rowFingerprints = new ArrayList<>();
+        ArrayList<double[]> rows = new ArrayList<>();
+
+        for (String symbol : symbols) {
+            if (!multiStock && !liveScopes.contains(symbol)) continue;
+
+            FeatureStore.Table features = FeatureStore.getTable(symbol);
+            int row = features.getLatestCompleteRow();
+            if (row < 0) continue;
+
+            double newsSentiment = NaturalLanguageProcessor.getTodaysAverageSentiment(symbol, 2);
+            HashMap<Integer, Boolean> stockPredictions = new HashMap<>();
+            predictions.put(symbol, stockPredictions);
+
+            for (int numberOfDays : dayArray) {
+                double[] vector = createFeatures(features, row, newsSentiment, multiStock ? stocks.indexOf(symbol) : -1, numberOfDays);
+                long fingerprint = PredictionCache.fingerprint(vector);
+                Boolean cached = PredictionCache.get(symbol, numberOfDays, fingerprint);
+
+                if (cached != null)
+                    stockPredictions.put(numberOfDays, cached);
+                else {
+                    rowSymbols.add(symbol);
+                    rowDays.add(numberOfDays);
+                    rowFingerprints.add(fingerprint);
+                    rows.add(vector);
                 }
+            }
+        }
 
-        Controller.updateProgress(0, stockForecastProgress);
-        Main.getController().updateCurrentTask("Predicted Stock Performance!", false, false);
+        double[][] batch = rows.toArray(new double[rows.size()][]);
+        double[] labels = new double[batch.length];
+
+        if (multiStock)
+            multiStockModel.predict(batch, labels);
+        else
+            for (int from = 0; from < batch.length; ) {
+                String symbol = rowSymbols.get(from);
+                int to = from + 1;
+                while (to < batch.length && rowSymbols.get(to).equals(symbol)) to++;
+
+                double[] stockLabels = ModelRegistry.get(symbol).predict(Arrays.copyOfRange(batch, from, to));
+                System.arraycopy(stockLabels, 0, labels, from, to - from);
+                from = to;
+            }
+
+        for (int i = 0; i < batch.length; i++) {
+            boolean prediction = labels[i] == 1;
+            predictions.get(rowSymbols.get(i)).put(rowDays.get(i), prediction);
+            PredictionCache.put(rowSymbols.get(i), rowDays.get(i), rowFingerprints.get(i), modelVersion, prediction);
+        }
 
         return predictions;
     }
@@ -369,36 +702,57 @@ public class StockPredictor {
      * @param stock Stock to predict
      * @param numberOfDays Number of days to predict
      * @return True if the stock is expected to rise or stay the same after the number of days given, False if it is expected to fall
-     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database, or if the stock has no complete feature record or model
+     * @throws IOException Throws IOException if the stock's feature table cannot be read
      */
-    static public boolean predictStock(ArrayList<String> stocks, String stock, int numberOfDays) throws SQLException {
-        String results = dh.executeQuery("SELECT * FROM dailystockprices WHERE Symbol='" + stock + "' AND PercentChange IS NOT NULL AND SmoothedClosePrice IS NOT NULL AND SMA10 is not null AND EMA10 is not null AND MACD is not null AND MACDSig is not null AND MACDHist is not null AND RSI is not null AND ADX10 is not null AND CCI is not null AND AD is not null AND OBV is not null AND StoOscSlowK is not null AND StoOscSlowD is not null AND SMA20 is not null AND SMA200 is not null AND EMA5 IS NOT NULL AND EMA20 IS NOT NULL AND EMA200 IS NOT NULL AND SMA5 is not null AND WillR is not null ORDER BY TradeDate DESC LIMIT 1").get(0);
-        String[] splitString = results.split(",");
-        double newsSentiment = NaturalLanguageProcessor.getTodaysAverageSentiment(stock, 2);
+    static public boolean predictStock(ArrayList<String> stocks, String stock, int numberOfDays) throws SQLException, IOException {
+        HashMap<Integer, Boolean> stockPredictions = predictBatch(stocks, Collections.singletonList(stock), new int[]{numberOfDays}).get(stock);
+        if (stockPredictions == null) throw new SQLException("No complete feature record or model for " + stock);
 
-        if (dh.executeQuery("SELECT value FROM settings WHERE ID = 'PREDICTION_MODE'").get(0).equals("MULTI")) {
-            double features[] = new double[splitString.length + 1];
+        return stockPredictions.get(numberOfDays);
+    }
 
-            features[0] = stocks.indexOf(stock);
-            features[1] = numberOfDays;
+    /**
+     * Builds the feature vector of a trading day, in the layout the models were trained with (missing features are 0, as in the training files)
+     * @param features Feature table of the stock
+     * @param row Index of the trading day within the feature table
+     * @param newsSentiment Average news sentiment of the stock on the trading day
+     * @param stockIndex Index of the stock from the total list of stocks, or -1 for Single-Stock models
+     * @param numberOfDays Number of days to predict
+     * @return Feature vector
+     */
+    static double[] createFeatures(FeatureStore.Table features, int row, double newsSentiment, int stockIndex, int numberOfDays) {
+        int offset = (stockIndex >= 0) ? 2 : 1;
+        double[] vector = new double[offset + features.getColumnCount() + 1];
 
-            for (int i = 2; i < splitString.length; i++)
-                features[i] = Double.parseDouble(splitString[i]);
+        if (stockIndex >= 0) vector[0] = stockIndex;
+        vector[offset - 1] = numberOfDays;
 
-            features[features.length - 1] = newsSentiment;
+        features.copyRow(row, vector, offset);
+        for (int i = offset; i < vector.length - 1; i++)
+            if (Double.isNaN(vector[i])) vector[i] = 0;
 
-            return StockPredictor.predictDirection(new DenseVector(features));
-        } else {
-            double features[] = new double[splitString.length];
+        vector[vector.length - 1] = newsSentiment;
 
-            features[0] = numberOfDays;
+        return vector;
+    }
 
-            for (int i = 2; i < splitString.length; i++)
-                features[i - 1] = Double.parseDouble(splitString[i]);
+    static private boolean isMultiStockMode() throws SQLException {
+        String mode = predictionMode;
+        if (mode == null) mode = refreshPredictionMode();
+        return mode.equals("MULTI");
+    }
 
-            features[features.length - 1] = newsSentiment;
+    /**
+     * A Random Forest merged from its cross-validated sub-forests, along with their accuracy on the data they did not see
+     */
+    static class CrossValidatedForest {
+        final RandomForestModel model;
+        final double accuracy;
 
-            return StockPredictor.predictDirection(new DenseVector(features), stock);
+        CrossValidatedForest(RandomForestModel model, double accuracy) {
+            this.model = model;
+            this.accuracy = accuracy;
         }
     }
-}
\ No newline at end of file
+}
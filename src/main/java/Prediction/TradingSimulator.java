@@ -3,10 +3,11 @@ package Prediction;
 import APIHandler.StockQuoteDownloader;
 import Default.DatabaseHandler;
 import Default.Main;
+import Default.Status;
 import Portfolio.PortfolioManager;
 import Processing.NaturalLanguageProcessor;
-import Utility.TrainingFileUtils;
-import org.apache.spark.mllib.linalg.DenseVector;
+import Processing.PriceBar;
+import Utility.TradingCalendar;
 
 import java.io.*;
 import java.sql.Date;
@@ -20,6 +21,8 @@ import java.util.*;
  */
 
 public class TradingSimulator {
+    static private final int[] SIMULATION_DAYS = {1, 30, 200};
+    static private final double SIMULATION_SMOOTH_RATE = 0.1;
     static private DatabaseHandler dh;
 
     /**
@@ -36,11 +39,10 @@ public class TradingSimulator {
      *
      * @param stock            Stock to create data sets for
      * @param testingTimeFrame Time Frame to simulate trading for (test set period)
-     * @param index            Index of stock (for use with Multi-Stock models)
-     * @return Collection of all data collected from the database and formatted for use with models
+     * @return Collection of all data collected from the database, split into training and testing records
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    static private HashMap<String, ArrayList<String>> getSplit(String stock, int testingTimeFrame, int index) throws SQLException {
+    static private HashMap<String, ArrayList<String>> getSplit(String stock, int testingTimeFrame) throws SQLException {
         HashMap<String, ArrayList<String>> values = new HashMap<>();
 
         ArrayList<String> dbSchema = dh.executeQuery("SELECT COLUMN_NAME FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'dailystockprices';");
@@ -61,122 +63,102 @@ public class TradingSimulator {
         commandStart.append(" FROM dailystockprices WHERE Symbol='").append(stock).append("' AND TradeDate < '").append(cutoffDate).append("'");
         commandEnd = " ORDER BY TradeDate ASC";
         values.put("TrainingRecords", dh.executeQuery(commandStart + commandEnd));
-        values.put("TrainingSet", TrainingFileUtils.convertToClassificationTrainingArray(stock, commandStart.toString(), commandEnd, index, new int[]{1, 30, 200}, 0.1, true, true, false, false));
 
         return values;
     }
 
     /**
-     * Trains Single Stock models, given a set of training file locations
+     * Trains Single Stock models on every trading day before the testing time frame, several stocks at a time
      *
-     * @param stocks List of stocks to train prediction models for
-     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @param stocks    List of stocks to train prediction models for
+     * @param timeFrame Time frame for which testing should be done (e.g. 200 days), which is left out of the training data
+     * @throws InterruptedException Throws InterruptedException if training is interrupted by another process
      */
-    static public void trainSingleStocks(ArrayList<String> stocks) throws SQLException {
-        for (String stock : stocks)
-            StockPredictor.trainRandomForest(System.getProperty("user.dir") + "/res/Simulator/" + stock + "/TrainingFile.libsvm", stock, true);
+    static public void trainSingleStocks(ArrayList<String> stocks, int timeFrame) throws InterruptedException {
+        StockPredictor.trainRandomForests(stocks, SIMULATION_DAYS, SIMULATION_SMOOTH_RATE, timeFrame, true);
     }
 
     /**
-     * Trains a Multi Stock model, given a training file location
+     * Trains a Multi Stock model on every trading day before the testing time frame
      *
-     * @param stocks List of stocks to train prediction model on
+     * @param stocks    List of stocks to train prediction model on
+     * @param timeFrame Time frame for which testing should be done (e.g. 200 days), which is left out of the training data
      * @throws SQLException         Throws SQLException if there is an error with accessing the MySQL/MariaDB database
-     * @throws InterruptedException Throws InterruptedException if the sleep function is interrupted by another process
+     * @throws IOException          Throws IOException if a stock's feature table cannot be read
+     * @throws InterruptedException Throws InterruptedException if training is interrupted by another process
      */
-    static public void trainMultiStock(ArrayList<String> stocks) throws SQLException, InterruptedException {
-        StockPredictor.trainRandomForest(System.getProperty("user.dir") + "/res/Simulator/MultiStock/TrainingFile.libsvm", stocks.size(), true);
+    static public void trainMultiStock(ArrayList<String> stocks, int timeFrame) throws SQLException, IOException, InterruptedException {
+        StockPredictor.trainRandomForest(TrainingData.build(stocks, stocks, SIMULATION_DAYS, true, SIMULATION_SMOOTH_RATE, timeFrame, Status.Channel.STOCK_FORECAST), stocks.size(), true);
     }
 
     /**
-     * Creates individual stock-based training files required for training Single Stock models
+     * Creates the individual stock-based record files required for simulating Single Stock models
      *
-     * @param stocks        List of stocks to create training files for
-     * @param timeFrame     Time frame for which testing should be done (e.g. 200 days)
-     * @param includeHeader True if the title of each column should be included, False if otherwise
+     * @param stocks    List of stocks to create record files for
+     * @param timeFrame Time frame for which testing should be done (e.g. 200 days)
      * @throws IOException  Throws IOException if the request fails due to server unavailability or connection refusal
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    static public void generateSingleStockTrainingFiles(ArrayList<String> stocks, int timeFrame, boolean includeHeader) throws IOException, SQLException {
+    static public void generateSingleStockTrainingFiles(ArrayList<String> stocks, int timeFrame) throws IOException, SQLException {
         for(String stock : stocks) {
             File dir = new File(System.getProperty("user.dir") + "/res/Simulator/" + stock);
             if(!dir.exists())
                 if (!dir.mkdirs())
-                    Main.getController().updateCurrentTask("Could not create file/directory: " + dir, true, true);
+                    Status.updateCurrentTask("Could not create file/directory: " + dir, true, true);
 
             File trainRecs = new File(System.getProperty("user.dir") + "/res/Simulator/" + stock + "/TrainingRecords.csv");
             File testRecs = new File(System.getProperty("user.dir") + "/res/Simulator/" + stock + "/TestingRecords.csv");
-            File trainFile = new File(System.getProperty("user.dir") + "/res/Simulator/" + stock + "/TrainingFile.csv");
 
             PrintWriter pwTrainRec = new PrintWriter(trainRecs);
             PrintWriter pwTestRec = new PrintWriter(testRecs);
-            PrintWriter pwTrain = new PrintWriter(trainFile);
-
-            if (includeHeader)
-                pwTrain.println("Days,OpenPrice,HighPrice,LowPrice,ClosePrice,TradeVolume,PercentChange,SmoothedClosePrice,SMA5,SMA10,SMA20,SMA200,EMA5,EMA10,EMA20,EMA200,MACD,MACDSig,MACDHist,RSI,ADX10,CCI,AD,OBV,StoOscSlowK,StoOscSlowD,WillR,Sentiment,Prediction");
 
-            HashMap<String, ArrayList<String>> values = getSplit(stock, timeFrame, -1);
-            for (String record : values.get("TrainingSet"))
-                pwTrain.println(record);
+            HashMap<String, ArrayList<String>> values = getSplit(stock, timeFrame);
             for (String record : values.get("TrainingRecords"))
                 pwTrainRec.println(record);
             for (String record : values.get("TestingRecords"))
                 pwTestRec.println(record);
 
-            pwTrain.close();
             pwTestRec.close();
             pwTrainRec.close();
-
-            TrainingFileUtils.exportLibSVMFile(System.getProperty("user.dir") + "/res/Simulator/" + stock + "/TrainingFile.csv", System.getProperty("user.dir") + "/res/Simulator/" + stock + "/TrainingFile.libsvm");
         }
     }
 
     /**
-     * Creates a large multi-stock training file required for training a Multi-Stock model
+     * Creates the multi-stock record files required for simulating a Multi-Stock model
      *
-     * @param stocks        Stocks to include in the training file
-     * @param timeFrame     Time frame for which testing should be done (e.g. 200 days)
-     * @param includeHeader True if the title of each column should be included, False if otherwise
+     * @param stocks    Stocks to include in the record files
+     * @param timeFrame Time frame for which testing should be done (e.g. 200 days)
      * @throws IOException  Throws IOException if the request fails due to server unavailability or connection refusal
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    static public void generateMultistockTrainingFiles(ArrayList<String> stocks, int timeFrame, boolean includeHeader) throws IOException, SQLException {
+    static public void generateMultistockTrainingFiles(ArrayList<String> stocks, int timeFrame) throws IOException, SQLException {
         File dir = new File(System.getProperty("user.dir") + "/res/Simulator/MultiStock");
         if(!dir.exists())
             if (!dir.mkdirs())
-                Main.getController().updateCurrentTask("Could not create file/directory: " + dir, true, true);
+                Status.updateCurrentTask("Could not create file/directory: " + dir, true, true);
 
-        File trainFile = new File(System.getProperty("user.dir") + "/res/Simulator/MultiStock/TrainingFile.csv");
         File trainRecs = new File(System.getProperty("user.dir") + "/res/Simulator/MultiStock/TrainingRecords.csv");
         File testRecs = new File(System.getProperty("user.dir") + "/res/Simulator/MultiStock/TestingRecords.csv");
         PrintWriter pwTestRec = new PrintWriter(testRecs);
-        PrintWriter pwTrain = new PrintWriter(trainFile);
         PrintWriter pwTrainRec = new PrintWriter(trainRecs);
 
-        if (includeHeader)
-            pwTrain.println("Index,Days,OpenPrice,HighPrice,LowPrice,ClosePrice,TradeVolume,PercentChange,SmoothedClosePrice,SMA5,SMA10,SMA20,SMA200,EMA5,EMA10,EMA20,EMA200,MACD,MACDSig,MACDHist,RSI,ADX10,CCI,AD,OBV,StoOscSlowK,StoOscSlowD,WillR,Sentiment,Prediction");
         HashMap<String, HashMap<String, ArrayList<String>>> allValues = new HashMap<>();
 
         for(String stock : stocks) {
-            HashMap<String, ArrayList<String>> values = getSplit(stock,timeFrame,stocks.indexOf(stock));
+            HashMap<String, ArrayList<String>> values = getSplit(stock, timeFrame);
             allValues.put(stock,values);
 
-            for (String record : values.get("TrainingSet"))
-                pwTrain.println(record);
             for (String record : values.get("TrainingRecords"))
                 pwTrainRec.println(record);
             for (String record : values.get("TestingRecords"))
                 pwTestRec.println(record);
         }
 
-        pwTrain.close();
         pwTrainRec.close();
         pwTestRec.close();
 
         String date = allValues.get(stocks.get(0)).get("TestingRecords").get(0).split(",")[1];
 
-        TrainingFileUtils.exportLibSVMFile(System.getProperty("user.dir") + "/res/Simulator/MultiStock/TrainingFile.csv", System.getProperty("user.dir") + "/res/Simulator/MultiStock/TrainingFile.libsvm");
-
         for(String stock : stocks){
             if(!allValues.get(stock).get("TestingRecords").get(0).split(",")[1].equals(date))
                 System.err.println(stock + " MISMATCH - Check Stock History (Potentially Due to De-listing or Trade-Day Halting)");
@@ -243,40 +225,47 @@ public class TradingSimulator {
      * @throws Exception Including SQLException, IOException and InterruptedException
      */
     static public void simulate(ArrayList<String> stocksToSimulate, boolean singleStock, int portfolioCalibrationPeriod, int holdPeriod, Integer[] dayArray) throws Exception {
-        Main.getController().updateCurrentTask("Starting Simulation", false, false);
+        Status.updateCurrentTask("Starting Simulation", false, false);
         TreeMap<Date, Double> indexPerformance = new TreeMap<>();
 
         Main.getController().clearSimulation();
 
-        ArrayList<String> indexRecords = StockQuoteDownloader.downloadIndexHistory("^NDX");
-        indexRecords.remove(0);
+        for (PriceBar indexBar : StockQuoteDownloader.downloadIndexHistory("^NDX"))
+            indexPerformance.put(indexBar.getDate(), indexBar.getClose());
 
-        for(String indexRecord : indexRecords){
-            String[] splitRecord = indexRecord.split(",");
-            indexPerformance.put(Date.valueOf(splitRecord[0]),Double.parseDouble(splitRecord[4]));
-        }
+        ArrayList<String> scopes = new ArrayList<>();
 
-        if (singleStock) {
-            ArrayList<Thread> threads = new ArrayList<>();
+        if (singleStock)
+            for (String stock : stocksToSimulate) scopes.add(stock + "_SIMULATION");
+        else
+            scopes.add("MultiStock_SIMULATION");
 
-            for (String stock : stocksToSimulate) {
-                Thread modelThread = new Thread(() -> {
-                    try {
-                        StockPredictor.loadLatestRandomForest(stock + "_SIMULATION");
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                });
-                threads.add(modelThread);
-                modelThread.start();
-            }
+        ArrayList<String> loadedScopes = ModelRegistry.acquireLatest(scopes);
 
-            for (Thread thread : threads)
-                thread.join();
+        try {
+            if (loadedScopes.size() < scopes.size()) {
+                Status.updateCurrentTask("Simulation models have not been trained for every stock", true, true);
+                return;
+            }
 
-        } else
-            StockPredictor.loadLatestRandomForest("MultiStock_SIMULATION");
+            simulate(stocksToSimulate, singleStock, portfolioCalibrationPeriod, holdPeriod, dayArray, indexPerformance);
+        } finally {
+            for (String scope : loadedScopes) ModelRegistry.release(scope);
+        }
+    }
 
+    /**
+     * Simulates trading once the simulation prediction models have been loaded
+     *
+     * @param stocksToSimulate           Stocks that are considered for buying and selling during simulation
+     * @param singleStock                True if the simulator should use Single-Stock models, False if it should use Multi-Stock
+     * @param portfolioCalibrationPeriod Number of days of historic data that the portfolio should consider
+     * @param holdPeriod                 Number of days that a stock is expected to be held
+     * @param dayArray                   Set of days that are to be used during long-term investments
+     * @param indexPerformance           Closing value of the NASDAQ-100 index on each trade date
+     * @throws Exception Including SQLException, IOException and InterruptedException
+     */
+    static private void simulate(ArrayList<String> stocksToSimulate, boolean singleStock, int portfolioCalibrationPeriod, int holdPeriod, Integer[] dayArray, TreeMap<Date, Double> indexPerformance) throws Exception {
         TreeMap<String, TreeMap<Date, Double>> prices = new TreeMap<>();
         TreeMap<String, TreeMap<Date, Double>> reducedPrices = new TreeMap<>();
 
@@ -371,11 +360,8 @@ public class TradingSimulator {
             }
 
             if (equal){
-                for (String stock : stocksToSimulate) {
-                    String rec = testingRecords.get(stock).get(date);
-                    for (int day : dayArray)
-                        predictions.get(stock).put(day, predictStock(stock, day, stocksToSimulate.indexOf(stock), date, rec, singleStock));
-                }
+                for (String stock : stocksToSimulate)
+                    predictions.get(stock).putAll(predictStock(stock, dayArray, stocksToSimulate.indexOf(stock), date, singleStock));
 
                 if(initialBalance == -1) {
                     initialBalance = indexPerformance.get(date);
@@ -437,61 +423,54 @@ public class TradingSimulator {
      * @param dates   Original (dirty) dates
      * @param stocks  Stocks to extract record dates from
      * @param records Records to search for dates
-     * @return A set of dates that are present in all stock records
+     * @return A set of trading days that are present in all stock records
      */
     static private TreeSet<Date> cleanDates(TreeSet<Date> dates, ArrayList<String> stocks, HashMap<String, TreeMap<Date, String>> records) {
-        TreeSet<Date> cleanDates = new TreeSet<>(dates);
+        TreeSet<Date> cleanDates = new TreeSet<>();
 
         for (Date date : dates)
-            for (String s : stocks) {
-                String rec = records.get(s).get(date);
-                if (rec == null || rec.isEmpty())
-                    cleanDates.remove(date);
-            }
+            if (TradingCalendar.isTradingDay(date.toLocalDate())) //Drops records stored on weekends/holidays (e.g. quotes imported while the market was shut)
+                cleanDates.add(date);
+
+        for (String s : stocks) {
+            TreeMap<Date, String> stockRecords = records.get(s);
+            cleanDates.removeIf(date -> {
+                String rec = stockRecords.get(date);
+                return rec == null || rec.isEmpty();
+            });
+        }
+
         return cleanDates;
     }
 
     /**
-     * Utilises simulation prediction models to predict the price direction at n days
+     * Utilises simulation prediction models to predict the price direction over each period in a day array, scoring every period as one batch
      *
-     * @param stock        Stock to predict the price direction of
-     * @param numberOfDays Number of days in advance to predict the price direction
-     * @param stockIndex   Index of the stock from the total list of stocks (for use with Multi-Stock models)
-     * @param date         Date to calculate the News Sentiment of
-     * @param record       Record associated with this date (for price and indicator extraction)
-     * @param singleStock  True if the simulator should use a Single-Stock model or the Multi-Stock model
-     * @return True if the stock price is expected to rise or stay the same, False if it is expected to fall
-     * @throws Exception Including IOException, SQLException and InterruptedException
+     * @param stock       Stock to predict the price direction of
+     * @param dayArray    Numbers of days in advance to predict the price direction
+     * @param stockIndex  Index of the stock from the total list of stocks (for use with Multi-Stock models)
+     * @param date        Date to predict from (its features are read from the {@link FeatureStore} and its News Sentiment is calculated)
+     * @param singleStock True if the simulator should use a Single-Stock model or the Multi-Stock model
+     * @return True for each number of days the stock price is expected to rise or stay the same, False for each it is expected to fall
+     * @throws Exception Including IOException and SQLException
      */
-    static private boolean predictStock(String stock, int numberOfDays, int stockIndex, Date date, String record, boolean singleStock) throws Exception {
-        String[] splitString = record.split(",");
-        double newsSentiment = NaturalLanguageProcessor.getAverageSentimentOnDate(stock, date.toString());
-
-        double features[];
-
-        if(singleStock) {
-            features = new double[splitString.length];
-
-            features[0] = numberOfDays;
+    static private HashMap<Integer, Boolean> predictStock(String stock, Integer[] dayArray, int stockIndex, Date date, boolean singleStock) throws Exception {
+        FeatureStore.Table features = FeatureStore.getTable(stock);
+        int row = features.indexOf(date.toLocalDate());
+        if (row < 0) throw new SQLException("No features stored for " + stock + " on " + date);
 
-            for (int i = 2; i < splitString.length; i++)
-                features[i-1] = Double.parseDouble(splitString[i]);
-
-
-            features[features.length - 1] = newsSentiment;
-            return StockPredictor.predictDirection(new DenseVector(features), stock);
-        }else {
-            features = new double[splitString.length+1];
+        double newsSentiment = NaturalLanguageProcessor.getAverageSentimentOnDate(stock, date.toString());
+        double[][] batch = new double[dayArray.length][];
 
-            features[0] = stockIndex;
-            features[1] = numberOfDays;
+        for (int i = 0; i < dayArray.length; i++)
+            batch[i] = StockPredictor.createFeatures(features, row, newsSentiment, singleStock ? -1 : stockIndex, dayArray[i]);
 
-            for (int i = 2; i < splitString.length; i++)
-                features[i] = Double.parseDouble(splitString[i]);
+        double[] directions = StockPredictor.predictDirections(batch, singleStock ? stock + "_SIMULATION" : "MultiStock_SIMULATION");
+        HashMap<Integer, Boolean> predictions = new HashMap<>();
 
-            features[features.length - 1] = newsSentiment;
+        for (int i = 0; i < dayArray.length; i++)
+            predictions.put(dayArray[i], directions[i] == 1);
 
-            return StockPredictor.predictDirection(new DenseVector(features));
-        }
+        return predictions;
     }
-}
\ No newline at end of file
+}
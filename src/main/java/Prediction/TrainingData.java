@@ -0,0 +1,191 @@
+package Prediction;
+
+import Default.Status;
+import Processing.NaturalLanguageProcessor;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.mllib.linalg.Vectors;
+import org.apache.spark.mllib.regression.LabeledPoint;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class TrainingData {
+    static private final int CLOSE_PRICE = Arrays.asList(FeatureStore.COLUMNS).indexOf("ClosePrice");
+    static private final int SMOOTHED_CLOSE_PRICE = Arrays.asList(FeatureStore.COLUMNS).indexOf("SmoothedClosePrice");
+
+    private final double[][] features;
+    private final double[] labels;
+
+    private TrainingData(double[][] features, double[] labels) {
+        this.features = features;
+        this.labels = labels;
+    }
+
+    /**
+     * Builds labelled feature vectors straight from the {@link FeatureStore}, in the same layout as the classification training files (and the feature vectors that are predicted)
+     *
+     * @param stocks           List of stocks used in the application (to determine the index required for multi-stock models)
+     * @param symbols          Stocks to include in the training data
+     * @param dayArray         List of days to calculate price rise/fall labels for
+     * @param multiStock       True if the stock index should be included as the first feature, False for Single-Stock models
+     * @param smoothPriceAlpha Smoothing factor that was applied to the price data (1 if the labels should be calculated from the unsmoothed close price)
+     * @param testingTimeFrame Number of each stock's most recent trading days to leave out of the training data (e.g. 200 days kept back for simulation), or 0 to use the whole history
+     * @param channel          {@link Status.Channel} enum value of the progress to publish while the data is built
+     * @return Labelled training data
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws IOException  Throws IOException if a stock's feature table cannot be read
+     */
+    static public TrainingData build(ArrayList<String> stocks, Collection<String> symbols, int[] dayArray, boolean multiStock, double smoothPriceAlpha, int testingTimeFrame, Status.Channel channel) throws SQLException, IOException {
+        return build(stocks, symbols, dayArray, multiStock, smoothPriceAlpha, false, testingTimeFrame, channel);
+    }
+
+    /**
+     * Builds labelled feature vectors straight from the {@link FeatureStore}, optionally re-smoothing the close prices in memory so that other smoothing factors can be evaluated without rewriting the database (technical indicators are left as they were calculated)
+     *
+     * @param stocks           List of stocks used in the application (to determine the index required for multi-stock models)
+     * @param symbols          Stocks to include in the training data
+     * @param dayArray         List of days to calculate price rise/fall labels for
+     * @param multiStock       True if the stock index should be included as the first feature, False for Single-Stock models
+     * @param smoothPriceAlpha Smoothing factor of the price data (1 if the labels should be calculated from the unsmoothed close price)
+     * @param resmooth         True if the smoothed close prices should be recalculated from the close prices with the given smoothing factor, False to use the stored smoothed close prices
+     * @param testingTimeFrame Number of each stock's most recent trading days to leave out of the training data, or 0 to use the whole history
+     * @param channel          {@link Status.Channel} enum value of the progress to publish while the data is built
+     * @return Labelled training data
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     * @throws IOException  Throws IOException if a stock's feature table cannot be read
+     */
+    static TrainingData build(ArrayList<String> stocks, Collection<String> symbols, int[] dayArray, boolean multiStock, double smoothPriceAlpha, boolean resmooth, int testingTimeFrame, Status.Channel channel) throws SQLException, IOException {
+        int columnToPredict = (smoothPriceAlpha != 1) ? SMOOTHED_CLOSE_PRICE : CLOSE_PRICE;
+        int smoothedFeature = (multiStock ? 2 : 1) + SMOOTHED_CLOSE_PRICE;
+        ArrayList<double[]> features = new ArrayList<>();
+        ArrayList<Double> labels = new ArrayList<>();
+        int c = 0;
+
+        for (String symbol : symbols) {
+            FeatureStore.Table table = FeatureStore.getTable(symbol);
+            double[] sentiments = NaturalLanguageProcessor.getAverageSentiments(symbol, table.size());
+            double[] smoothed = resmooth ? smooth(table, smoothPriceAlpha) : null;
+            double[] labelPrices = (smoothed != null && columnToPredict == SMOOTHED_CLOSE_PRICE) ? smoothed : null;
+            int rows = table.size() - testingTimeFrame;
+
+            for (int amountOfDays : dayArray) {
+                if (rows - amountOfDays < 0) {
+                    Status.updateCurrentTask("Not enough records for " + symbol, true, false);
+                    break;
+                }
+
+                for (int row = 0; row < rows - amountOfDays; row++) {
+                    double currentPrice = (labelPrices != null) ? labelPrices[row] : table.get(row, columnToPredict);
+                    double futurePrice = (labelPrices != null) ? labelPrices[row + amountOfDays] : table.get(row + amountOfDays, columnToPredict);
+                    if (Double.isNaN(currentPrice) || Double.isNaN(futurePrice)) continue;
+
+                    double[] vector = StockPredictor.createFeatures(table, row, sentiments[row], multiStock ? stocks.indexOf(symbol) : -1, amountOfDays);
+                    if (smoothed != null && !Double.isNaN(smoothed[row])) vector[smoothedFeature] = smoothed[row];
+
+                    features.add(vector);
+                    labels.add((futurePrice - currentPrice >= 0) ? 1.0 : 0.0);
+                }
+            }
+
+            if (symbols.size() > 1) Status.updateProgress(++c, symbols.size(), channel);
+        }
+
+        double[] labelArray = new double[labels.size()];
+        for (int i = 0; i < labelArray.length; i++) labelArray[i] = labels.get(i);
+
+        return new TrainingData(features.toArray(new double[features.size()][]), labelArray);
+    }
+
+    /**
+     * Exponentially smooths the close prices of a stock, in the same way as {@link Utility.SmoothingUtils}
+     *
+     * @param table Feature table of the stock
+     * @param alpha The smoothing factor to apply (lower is more intense smoothing)
+     * @return Smoothed close price of each trading day (NaN until the first known close price)
+     */
+    static private double[] smooth(FeatureStore.Table table, double alpha) {
+        double[] smoothed = new double[table.size()];
+        double forecast = Double.NaN;
+
+        for (int row = 0; row < smoothed.length; row++) {
+            double closePrice = table.get(row, CLOSE_PRICE);
+            if (!Double.isNaN(closePrice))
+                forecast = Double.isNaN(forecast) ? closePrice : alpha * closePrice + (1 - alpha) * forecast;
+            smoothed[row] = forecast;
+        }
+
+        return smoothed;
+    }
+
+    public int size() {
+        return labels.length;
+    }
+
+    public double[][] getFeatures() {
+        return features;
+    }
+
+    /**
+     * Distributes the training data across the local Spark context without writing it to disk
+     *
+     * @param jsc Running Spark context
+     * @return Labelled points of the training data
+     */
+    JavaRDD<LabeledPoint> toRDD(JavaSparkContext jsc) {
+        return jsc.parallelize(toLabeledPoints(null));
+    }
+
+    /**
+     * Distributes a subset of the features across the local Spark context, e.g. to evaluate a model without the technical indicators
+     *
+     * @param jsc  Running Spark context
+     * @param keep True for each feature (by index within the feature vector) that should be kept, or null to keep every feature
+     * @return Labelled points of the training data, with only the kept features
+     */
+    JavaRDD<LabeledPoint> toRDD(JavaSparkContext jsc, boolean[] keep) {
+        return jsc.parallelize(toLabeledPoints(keep));
+    }
+
+    /**
+     * Distributes the training data across a fixed number of partitions of the local Spark context, limiting how many cores a job over the data can use at once
+     *
+     * @param jsc        Running Spark context
+     * @param partitions Number of partitions to split the data into
+     * @return Labelled points of the training data
+     */
+    JavaRDD<LabeledPoint> toRDD(JavaSparkContext jsc, int partitions) {
+        return jsc.parallelize(toLabeledPoints(null), partitions);
+    }
+
+    private List<LabeledPoint> toLabeledPoints(boolean[] keep) {
+        int width = 0;
+        if (keep != null) for (boolean k : keep) if (k) width++;
+
+        List<LabeledPoint> points = new ArrayList<>(labels.length);
+
+        for (int i = 0; i < labels.length; i++) {
+            double[] vector = features[i];
+
+            if (keep != null) {
+                vector = new double[width];
+                for (int j = 0, k = 0; j < keep.length; j++)
+                    if (keep[j]) vector[k++] = features[i][j];
+            }
+
+            points.add(new LabeledPoint(labels[i], Vectors.dense(vector)));
+        }
+
+        return points;
+    }
+}
@@ -0,0 +1,250 @@
+package Processing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class CSVBarParser {
+    static private final int MAX_FIELDS = 16;
+    static private final int MAX_REJECTED_LINES = 5;
+    static private final double[] POWERS_OF_TEN = {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+    private final Format format;
+    private final ArrayList<PriceBar> bars = new ArrayList<>();
+    private final ArrayList<String> rejectedLines = new ArrayList<>();
+    private final int[] fieldStart = new int[MAX_FIELDS], fieldEnd = new int[MAX_FIELDS];
+    private byte[] line = new byte[256];
+    private int rejected = 0;
+
+    /**
+     * Creates a parser for price bars in the CSV layout of a given data source
+     *
+     * @param format {@link Format} enum value describing which columns hold the timestamp, prices and volume
+     */
+    public CSVBarParser(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Reads price bars directly from a byte stream (e.g. a HTTP response body), without converting lines or fields to Strings
+     *
+     * @param in Stream of CSV data
+     * @return This parser, holding the parsed bars and any rejected lines
+     * @throws IOException Throws IOException if the stream cannot be read
+     */
+    public CSVBarParser parse(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        int length = 0, read;
+
+        while ((read = in.read(buffer)) > 0)
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+
+                if (b == '\n' || b == '\r') {
+                    if (length > 0) parseLine(length);
+                    length = 0;
+                } else {
+                    if (length == line.length) {
+                        byte[] larger = new byte[line.length * 2];
+                        System.arraycopy(line, 0, larger, 0, length);
+                        line = larger;
+                    }
+                    line[length++] = b;
+                }
+            }
+
+        if (length > 0) parseLine(length);
+
+        return this;
+    }
+
+    /**
+     * Access the price bars parsed from the stream, in the order they appeared
+     *
+     * @return List of parsed price bars
+     */
+    public ArrayList<PriceBar> getBars() {
+        return bars;
+    }
+
+    /**
+     * Access the first few lines that could not be parsed as price bars (headers, or error messages returned by an API instead of data)
+     *
+     * @return List of up to {@link #MAX_REJECTED_LINES} rejected lines
+     */
+    public ArrayList<String> getRejectedLines() {
+        return rejectedLines;
+    }
+
+    /**
+     * Access the number of lines that could not be parsed as price bars
+     *
+     * @return The number of rejected lines
+     */
+    public int getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * Splits the current line into fields and converts them to a price bar
+     *
+     * @param length Length of the current line in bytes
+     */
+    private void parseLine(int length) {
+        int fields = 0, start = 0;
+
+        for (int i = 0; i <= length && fields < MAX_FIELDS; i++)
+            if (i == length || line[i] == ',') {
+                int s = start, e = i;
+                while (s < e && (line[s] == '"' || line[s] == ' ')) s++; //Strip quotes and padding
+                while (e > s && (line[e - 1] == '"' || line[e - 1] == ' ')) e--;
+                fieldStart[fields] = s;
+                fieldEnd[fields++] = e;
+                start = i + 1;
+            }
+
+        if (fields < format.getFieldCount()) {
+            reject(length);
+            return;
+        }
+
+        long epoch = parseTimestamp(fieldStart[format.timestamp], fieldEnd[format.timestamp]);
+        double open = parseDouble(fieldStart[format.open], fieldEnd[format.open]),
+                high = parseDouble(fieldStart[format.high], fieldEnd[format.high]),
+                low = parseDouble(fieldStart[format.low], fieldEnd[format.low]),
+                close = parseDouble(fieldStart[format.close], fieldEnd[format.close]),
+                volume = parseDouble(fieldStart[format.volume], fieldEnd[format.volume]);
+
+        if (epoch == Long.MIN_VALUE || Double.isNaN(open) || Double.isNaN(high) || Double.isNaN(low) || Double.isNaN(close) || Double.isNaN(volume))
+            reject(length);
+        else
+            bars.add(new PriceBar(epoch, open, high, low, close, (long) volume));
+    }
+
+    /**
+     * Records a line that could not be parsed, keeping the text of the first few for error reporting
+     *
+     * @param length Length of the current line in bytes
+     */
+    private void reject(int length) {
+        if (rejected++ < MAX_REJECTED_LINES) rejectedLines.add(new String(line, 0, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a plain decimal number (e.g. -123.4500) from the current line
+     *
+     * @param start Index of the first byte of the number
+     * @param end   Index after the last byte of the number
+     * @return The parsed value, or NaN if the field is not a plain decimal number
+     */
+    private double parseDouble(int start, int end) {
+        if (start >= end) return Double.NaN;
+
+        boolean negative = line[start] == '-';
+        if (negative || line[start] == '+') start++;
+
+        long mantissa = 0;
+        int decimals = -1, digits = 0;
+
+        for (int i = start; i < end; i++) {
+            byte b = line[i];
+
+            if (b >= '0' && b <= '9') {
+                if (digits++ >= 18) return Double.parseDouble(new String(line, start, end - start, StandardCharsets.US_ASCII)); //Too long to hold in a long
+                mantissa = mantissa * 10 + (b - '0');
+                if (decimals >= 0) decimals++;
+            } else if (b == '.' && decimals < 0)
+                decimals = 0;
+            else
+                return Double.NaN;
+        }
+
+        if (digits == 0) return Double.NaN;
+
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a timestamp in the format yyyy-MM-dd, yyyy-MM-dd HH:mm:ss or yyyy-MM-ddTHH:mm:ss±HH:mm (the offset is ignored, as timestamps are stored in exchange-local time)
+     *
+     * @param start Index of the first byte of the timestamp
+     * @param end   Index after the last byte of the timestamp
+     * @return Seconds since 1970-01-01 00:00:00 of the timestamp treated as UTC, or {@link Long#MIN_VALUE} if the field is not a timestamp
+     */
+    private long parseTimestamp(int start, int end) {
+        if (end - start < 10 || line[start + 4] != '-' || line[start + 7] != '-') return Long.MIN_VALUE;
+
+        int year = parseDigits(start, 4), month = parseDigits(start + 5, 2), day = parseDigits(start + 8, 2);
+        int hour = 0, minute = 0, second = 0;
+
+        if (end - start >= 19 && (line[start + 10] == ' ' || line[start + 10] == 'T')) {
+            hour = parseDigits(start + 11, 2);
+            minute = parseDigits(start + 14, 2);
+            second = parseDigits(start + 17, 2);
+        }
+
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || minute < 0 || second < 0)
+            return Long.MIN_VALUE;
+
+        //Converts a civil date to days since the epoch without creating any date objects (see http://howardhinnant.github.io/date_algorithms.html)
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        long days = era * 146097 + doe - 719468;
+
+        return days * 86400 + hour * 3600 + minute * 60 + second;
+    }
+
+    /**
+     * Parses a fixed-width run of digits from the current line
+     *
+     * @param start Index of the first digit
+     * @param count Number of digits
+     * @return The parsed value, or -1 if any of the bytes is not a digit
+     */
+    private int parseDigits(int start, int count) {
+        int value = 0;
+
+        for (int i = start; i < start + count; i++) {
+            if (line[i] < '0' || line[i] > '9') return -1;
+            value = value * 10 + (line[i] - '0');
+        }
+
+        return value;
+    }
+
+    /**
+     * Column layouts of the price history CSV files provided by each data source
+     */
+    public enum Format {
+        ALPHAVANTAGE(0, 1, 2, 3, 4, 5),
+        BARCHART(1, 3, 4, 5, 6, 7),
+        YAHOO(0, 1, 2, 3, 4, 6);
+
+        private final int timestamp, open, high, low, close, volume;
+
+        Format(int timestamp, int open, int high, int low, int close, int volume) {
+            this.timestamp = timestamp;
+            this.open = open;
+            this.high = high;
+            this.low = low;
+            this.close = close;
+            this.volume = volume;
+        }
+
+        int getFieldCount() {
+            return Math.max(timestamp, Math.max(volume, Math.max(close, Math.max(low, Math.max(high, open))))) + 1;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package Processing;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class DirtyTracker {
+    /**
+     * Marks the whole history of a stock as dirty, so consumers fall back to their full calculation
+     */
+    static public final LocalDate WHOLE_HISTORY = LocalDate.MIN;
+
+    static private final EnumMap<Consumer, ConcurrentHashMap<String, LocalDate>> dirty = new EnumMap<>(Consumer.class);
+
+    static {
+        for (Consumer consumer : Consumer.values()) dirty.put(consumer, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Records that the daily prices of a stock have changed, for every consumer of those prices
+     *
+     * @param symbol Stock whose prices changed
+     * @param from   Earliest trade date that changed (earlier dirty dates that have not yet been consumed are kept)
+     */
+    static public void markDirty(String symbol, LocalDate from) {
+        for (Consumer consumer : Consumer.values()) markDirty(consumer, symbol, from);
+    }
+
+    /**
+     * Records that a single consumer needs to recompute a stock (e.g. to put back a dirty range after its recompute failed)
+     *
+     * @param consumer {@link Consumer} enum value of the consumer that needs to recompute
+     * @param symbol   Stock to recompute
+     * @param from     Earliest trade date to recompute
+     */
+    static public void markDirty(Consumer consumer, String symbol, LocalDate from) {
+        dirty.get(consumer).merge(symbol, from, (a, b) -> a.isBefore(b) ? a : b);
+    }
+
+    /**
+     * Removes a stock's dirty range for a consumer, which should recompute it from the returned date
+     *
+     * @param consumer {@link Consumer} enum value of the consumer that is about to recompute
+     * @param symbol   Stock to recompute
+     * @return Earliest trade date that needs recomputing, {@link #WHOLE_HISTORY} if the whole history does, or null if nothing changed since the last recompute
+     */
+    static public LocalDate take(Consumer consumer, String symbol) {
+        return dirty.get(consumer).remove(symbol);
+    }
+
+    /**
+     * Determines whether a consumer has anything to recompute for a stock, without removing it
+     *
+     * @param consumer {@link Consumer} enum value of the consumer
+     * @param symbol   Stock to check
+     * @return True if the stock's prices changed since the consumer last recomputed it
+     */
+    static public boolean isDirty(Consumer consumer, String symbol) {
+        return dirty.get(consumer).containsKey(symbol);
+    }
+
+    /**
+     * Lists the stocks a consumer has to recompute
+     *
+     * @param consumer {@link Consumer} enum value of the consumer
+     * @return Set of dirty stock tickers
+     */
+    static public Set<String> getDirtySymbols(Consumer consumer) {
+        return new HashSet<>(dirty.get(consumer).keySet());
+    }
+
+    /**
+     * Processes that derive data from the daily price history
+     */
+    public enum Consumer {SMOOTHING, PERCENT_CHANGES, TECHNICAL_INDICATORS, FEATURES, PREDICTION}
+}
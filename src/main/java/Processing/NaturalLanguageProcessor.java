@@ -1,9 +1,7 @@
 package Processing;
 
-import Default.Controller;
 import Default.DatabaseHandler;
-import Default.Main;
-import javafx.scene.control.ProgressBar;
+import Default.Status;
 
 import java.sql.SQLException;
 import java.text.BreakIterator;
@@ -18,19 +16,17 @@ import java.util.*;
 public class NaturalLanguageProcessor {
 
     private static DatabaseHandler dh;
-    private static ProgressBar pb;
+    private static final Status.Channel PROGRESS_CHANNEL = Status.Channel.NLP;
 
     /**
-     * Initialises the Natural Language Processor with a database handler to prevent deadlocks when accessing the database and a progress bar to visualise any progress made during method calls
+     * Initialises the Natural Language Processor with a database handler to prevent deadlocks when accessing the database
      *
-     * @param dbh         Database handler
-     * @param nlpProgress Natural Language Processor Progress bar
+     * @param dbh Database handler
      */
-    static public void initialise(DatabaseHandler dbh, ProgressBar nlpProgress) {
+    static public void initialise(DatabaseHandler dbh) {
         dh = dbh;
-        pb = nlpProgress;
 
-        Main.getController().updateCurrentTask("Initialised Natural Language Processor", false, false);
+        Status.updateCurrentTask("Initialised Natural Language Processor", false, false);
     }
 
     /**
@@ -102,11 +98,11 @@ public class NaturalLanguageProcessor {
      */
     static public void enumerateSentencesFromArticles() throws SQLException {
         ArrayList<String> unprocessedIDs = dh.executeQuery("SELECT ID FROM newsarticles WHERE Content IS NOT NULL AND Blacklisted = 0 AND Duplicate = 0 AND Redirected = 0 AND Enumerated = 0");
-        Main.getController().updateCurrentTask("Enumerating sentences for " + unprocessedIDs.size() + " documents...", false, false);
+        Status.updateCurrentTask("Enumerating sentences for " + unprocessedIDs.size() + " documents...", false, false);
 
         double i = 0, t = unprocessedIDs.size() - 1;
 
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, pb);
+        Status.updateProgress(Status.INDETERMINATE, PROGRESS_CHANNEL);
 
         dh.setAutoCommit(false);
 
@@ -147,18 +143,18 @@ public class NaturalLanguageProcessor {
             }
 
 
-            Controller.updateProgress(++i, t, pb);
+            Status.updateProgress(++i, t, PROGRESS_CHANNEL);
 
             dh.addBatchCommand("UPDATE newsarticles SET Enumerated = 1 WHERE ID = '" + unprocessedID + "';");
-            Main.getController().updateCurrentTask("Enumerated " + temporaryDatabase.size() + " sentences", false, false);
+            Status.updateCurrentTask("Enumerated " + temporaryDatabase.size() + " sentences", false, false);
 
             temporaryDatabase.clear();
         }
 
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, pb);
+        Status.updateProgress(Status.INDETERMINATE, PROGRESS_CHANNEL);
         dh.executeBatch();
         dh.setAutoCommit(true);
-        Controller.updateProgress(0, pb);
+        Status.updateProgress(0, PROGRESS_CHANNEL);
     }
 
     /**
@@ -209,9 +205,9 @@ public class NaturalLanguageProcessor {
      */
     static public void enumerateNGramsFromArticles(int n) throws SQLException {
         ArrayList<String> unprocessedIDs = dh.executeQuery("SELECT ID FROM newsarticles WHERE Content IS NOT NULL AND Blacklisted = 0 AND Duplicate = 0 AND Redirected = 0 AND Enumerated = 1 AND Tokenised = 0 AND PublishedDate < CURDATE()"); //TODO: (Use join) Price difference can't be calculated for the weekend or after hours before the next day
-        Main.getController().updateCurrentTask("Enumerating n-grams for " + unprocessedIDs.size() + " documents...", false, false);
+        Status.updateCurrentTask("Enumerating n-grams for " + unprocessedIDs.size() + " documents...", false, false);
 
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, pb);
+        Status.updateProgress(Status.INDETERMINATE, PROGRESS_CHANNEL);
         int k = 0, t = unprocessedIDs.size() - 1;
 
         Map<String, Double[]> temporaryDatabase = new HashMap<>();
@@ -268,12 +264,12 @@ public class NaturalLanguageProcessor {
                 noDuplicateNGrams.clear();
             }
 
-            Controller.updateProgress(++k, t, pb);
+            Status.updateProgress(++k, t, PROGRESS_CHANNEL);
         }
 
         sendNGramsToDatabase(temporaryDatabase);
-        Controller.updateProgress(0, pb);
-        Main.getController().updateCurrentTask("Finished processing n-grams", false, false);
+        Status.updateProgress(0, PROGRESS_CHANNEL);
+        Status.updateCurrentTask("Finished processing n-grams", false, false);
     }
 
     /**
@@ -290,7 +286,7 @@ public class NaturalLanguageProcessor {
 
         dh.setAutoCommit(false);
 
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, pb);
+        Status.updateProgress(Status.INDETERMINATE, PROGRESS_CHANNEL);
 
         StringBuilder command = new StringBuilder("INSERT INTO ngrams(Hash, Gram, n, Documents, Occurrences, Increase, Decrease) VALUES ");
         for (String key : temporaryDatabase.keySet()) {
@@ -382,9 +378,9 @@ public class NaturalLanguageProcessor {
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
     static public void processArticlesForSentiment(int ngramSize) throws SQLException {
-        Main.getController().updateCurrentTask("Processing Sentiment of Articles", false, false);
+        Status.updateCurrentTask("Processing Sentiment of Articles", false, false);
 
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, pb);
+        Status.updateProgress(Status.INDETERMINATE, PROGRESS_CHANNEL);
         dh.setAutoCommit(false);
         ArrayList<String> unprocessedIDs = dh.executeQuery("SELECT ID FROM newsarticles WHERE Content IS NOT NULL AND Enumerated = 1 AND Tokenised = 1 AND Processed = 0 AND Blacklisted = 0");
 
@@ -398,12 +394,12 @@ public class NaturalLanguageProcessor {
                 sentiment = 0.5;
 
             dh.addBatchCommand("UPDATE newsarticles SET processed = 1, mood = " + sentiment + " WHERE ID = " + id);
-            Main.getController().updateCurrentTask("Sentiment for Article ID " + id + ": " + sentiment,false,false);
+            Status.updateCurrentTask("Sentiment for Article ID " + id + ": " + sentiment,false,false);
 
-            Controller.updateProgress(++curr, t, pb);
+            Status.updateProgress(++curr, t, PROGRESS_CHANNEL);
         }
 
-        Controller.updateProgress(0, pb);
+        Status.updateProgress(0, PROGRESS_CHANNEL);
 
         dh.executeBatch();
         dh.setAutoCommit(true);
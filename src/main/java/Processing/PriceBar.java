@@ -0,0 +1,153 @@
+package Processing;
+
+import java.sql.Date;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class PriceBar {
+    private final long epoch;
+    private final double open, high, low, close;
+    private final long volume;
+
+    /**
+     * Creates a single Open-High-Low-Close price bar
+     *
+     * @param epoch  Seconds since 1970-01-01 00:00:00 of the exchange-local timestamp of the bar (i.e. the timestamp as printed by the API, treated as UTC)
+     * @param open   Opening price of the bar
+     * @param high   Highest price of the bar
+     * @param low    Lowest price of the bar
+     * @param close  Closing price of the bar
+     * @param volume Amount of shares traded during the bar
+     */
+    public PriceBar(long epoch, double open, double high, double low, double close, long volume) {
+        this.epoch = epoch;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+    }
+
+    /**
+     * Access the timestamp of the bar
+     *
+     * @return Seconds since 1970-01-01 00:00:00 of the exchange-local timestamp
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Access the opening price of the bar
+     *
+     * @return Opening price
+     */
+    public double getOpen() {
+        return open;
+    }
+
+    /**
+     * Access the highest price of the bar
+     *
+     * @return Highest price
+     */
+    public double getHigh() {
+        return high;
+    }
+
+    /**
+     * Access the lowest price of the bar
+     *
+     * @return Lowest price
+     */
+    public double getLow() {
+        return low;
+    }
+
+    /**
+     * Access the closing price of the bar
+     *
+     * @return Closing price
+     */
+    public double getClose() {
+        return close;
+    }
+
+    /**
+     * Access the amount of shares traded during the bar
+     *
+     * @return Trade volume
+     */
+    public long getVolume() {
+        return volume;
+    }
+
+    /**
+     * Access the exchange-local date and time of the bar
+     *
+     * @return Date and time of the bar
+     */
+    public LocalDateTime getDateTime() {
+        return LocalDateTime.ofEpochSecond(epoch, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Access the trading day of the bar
+     *
+     * @return Date of the bar
+     */
+    public Date getDate() {
+        return Date.valueOf(getDateTime().toLocalDate());
+    }
+
+    /**
+     * Appends the timestamp of the bar to a SQL statement in the format accepted by MySQL/MariaDB DATE and DATETIME columns
+     *
+     * @param sb       StringBuilder to append the timestamp to
+     * @param withTime True to append the date and time (yyyy-MM-dd HH:mm:ss), false to only append the date (yyyy-MM-dd)
+     */
+    void appendTimestamp(StringBuilder sb, boolean withTime) {
+        long days = Math.floorDiv(epoch, 86400);
+        int seconds = Math.toIntExact(Math.floorMod(epoch, 86400L)); //Always within a day, so it fits in an int
+
+        //Converts days since the epoch to a civil date without creating any date objects (see http://howardhinnant.github.io/date_algorithms.html)
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        sb.append(year).append('-');
+        appendTwoDigits(sb, month).append('-');
+        appendTwoDigits(sb, day);
+
+        if (withTime) {
+            sb.append(' ');
+            appendTwoDigits(sb, seconds / 3600).append(':');
+            appendTwoDigits(sb, seconds / 60 % 60).append(':');
+            appendTwoDigits(sb, seconds % 60);
+        }
+    }
+
+    static private StringBuilder appendTwoDigits(StringBuilder sb, int value) {
+        if (value < 10) sb.append('0');
+        return sb.append(value);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendTimestamp(sb, epoch % 86400 != 0);
+        return sb.append(',').append(open).append(',').append(high).append(',').append(low).append(',').append(close).append(',').append(volume).toString();
+    }
+}
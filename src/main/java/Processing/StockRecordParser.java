@@ -1,19 +1,19 @@
 package Processing;
 
-import Default.Controller;
 import Default.DatabaseHandler;
-import Default.Main;
-import javafx.scene.control.ProgressBar;
+import Default.Status;
+import Utility.TradingCalendar;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Date;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
-import java.util.TreeMap;
 
 /**
  * @author Luke K. Rose <psylr5@nottingham.ac.uk>
@@ -22,7 +22,6 @@ import java.util.TreeMap;
  */
 
 public class StockRecordParser {
-    private static final String IS_NUMERIC = "[-+]?\\d*\\.?\\d+";
     private static DatabaseHandler dh;
 
     /**
@@ -33,20 +32,21 @@ public class StockRecordParser {
     static public void initialise(DatabaseHandler sqdh) {
         dh = sqdh;
 
-        Main.getController().updateCurrentTask("Initialised Stock Record Parser", false, false);
+        Status.updateCurrentTask("Initialised Stock Record Parser", false, false);
     }
 
     /**
-     * Imports a list of CSV values into the daily price database
+     * Imports a list of price bars into the daily price database
      *
-     * @param csv    List of stock history Comma Separated Values
+     * @param bars   List of daily stock price bars
      * @param symbol Stock ticker to associate the data with
+     * @return True if a new bar was stored or the latest stored bar was revised, False if the stored history is unchanged
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    static public void importDailyMarketData(ArrayList<String> csv, String symbol) throws SQLException {
-        if (csv == null || csv.isEmpty()) return;
+    static public boolean importDailyMarketData(ArrayList<PriceBar> bars, String symbol) throws SQLException {
+        if (bars == null || bars.isEmpty()) return false;
 
-        importData(csv, symbol, false);
+        return importData(bars, symbol, false);
     }
 
     /**
@@ -58,110 +58,40 @@ public class StockRecordParser {
      * @throws IOException  Throws IOException if the CSV file cannot be found or cannot be read
      */
     private static void importDailyYahooMarketData(File csvFile, String symbol) throws SQLException, IOException {
-        FileReader fr = new FileReader(csvFile);
-        BufferedReader br = new BufferedReader(fr);
-
-        String curr;
-        ArrayList<String> csvArray = new ArrayList<>();
-
-        while ((curr = br.readLine()) != null)
-            csvArray.add(curr);
-
-        importDailyYahooMarketData(csvArray, symbol);
+        try (InputStream in = new FileInputStream(csvFile)) {
+            importData(new CSVBarParser(CSVBarParser.Format.YAHOO).parse(in).getBars(), symbol, false);
+        }
     }
 
     /**
-     * Imports Yahoo! CSV values (useful for getting ALL available data since the IPO of the stock)
-     * @param csv Yahoo! stock history CSV list
+     * Imports a list of price bars into the intraday price database
+     * @param bars List of intraday stock price bars
      * @param symbol Stock to associate the data with
+     * @return True if a new bar was stored or the latest stored bar was revised, False if the stored history is unchanged
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    private static void importDailyYahooMarketData(ArrayList<String> csv, String symbol) throws SQLException {
-        if (csv == null || csv.isEmpty()) return;
-
-        ArrayList<String> newCsv = new ArrayList<>();
+    static public boolean importIntradayMarketData(ArrayList<PriceBar> bars, String symbol) throws SQLException {
+        if (bars == null || bars.isEmpty()) return false;
 
-        for (String curr : csv) {
-            String[] splitString = curr.split(",");
-            StringBuilder newString = new StringBuilder();
-
-            for (int i = 0; i < 7; i++)
-                if (i != 5) {
-                    newString.append(splitString[i]);
-                    if (i != 6)
-                        newString.append(",");
-                }
-
-            newCsv.add(newString.toString());
-        }
-
-        importData(newCsv, symbol, false);
+        return importData(bars, symbol, true);
     }
 
     /**
-     * Imports a list of CSV values into the intraday price database
-     * @param csv List of stock history Comma Separated Values
+     * Imports a list of price bars that fill gaps in the stored history, without skipping bars older than the latest stored record
+     * @param bars List of price bars, already filtered to the missing dates/minutes
      * @param symbol Stock to associate the data with
+     * @param isIntraday True if the bars are intraday bars, false if they are daily bars
+     * @return True if any bars were stored
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    static public void importIntradayMarketData(ArrayList<String> csv, String symbol) throws SQLException {
-        if (csv == null || csv.isEmpty()) return;
+    static public boolean importMissingData(ArrayList<PriceBar> bars, String symbol, boolean isIntraday) throws SQLException {
+        if (bars == null || bars.isEmpty()) return false;
 
-        importData(csv, symbol, true);
-    }
+        if (!insertBars(bars, symbol, isIntraday, Long.MIN_VALUE)) return false;
 
-    /**
-     * Converts a pure CSV file into a Map of records that can be accessed via a timestamp linked to the record
-     *
-     * @param csv      List of CSV records
-     * @param timeFrom Only consider records that are equal to or after this value
-     * @return A Map of CSV records, accessible by timestamp
-     */
-    static private TreeMap<Timestamp, String> cleanCSVWithTimestamp(ArrayList<String> csv, Timestamp timeFrom) {
-        TreeMap<Timestamp, String> newCSV = new TreeMap<>();
-
-        for (String curr : csv)
-            if (!(curr == null || curr.isEmpty())) {
-                String split[] = curr.split(",");
-                if (split.length == 6 && split[1].matches(IS_NUMERIC)) {
-                    try {
-                        Timestamp currTime = Timestamp.valueOf(split[0]);
-                        if (timeFrom == null || currTime.equals(timeFrom) || currTime.after(timeFrom))
-                            newCSV.put(currTime, curr);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
+        if (!isIntraday) markDirty(symbol, bars.stream().mapToLong(PriceBar::getEpoch).min().getAsLong());
 
-        return newCSV;
-    }
-
-    /**
-     * Converts a pure CSV file into a Map of records that can be accessed via a date linked to the record
-     *
-     * @param csv      List of CSV records
-     * @param dateFrom Only consider records that are equal to or after this value
-     * @return A Map of CSV records, accessible by date
-     */
-    static private TreeMap<Date, String> cleanCSVWithDate(ArrayList<String> csv, Date dateFrom) {
-        TreeMap<Date, String> newCSV = new TreeMap<>();
-
-        for (String curr : csv)
-            if (!(curr == null || curr.isEmpty())) {
-                String split[] = curr.split(",");
-                if (split.length == 6 && split[1].matches(IS_NUMERIC)) {
-                    try {
-                        Date currDate = Date.valueOf(split[0].split(" ")[0]);
-                        if (dateFrom == null || currDate.equals(dateFrom) || currDate.after(dateFrom))
-                            newCSV.put(currDate, curr);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-
-        return newCSV;
+        return true;
     }
 
     /**
@@ -173,78 +103,117 @@ public class StockRecordParser {
     static public void importCurrentQuote(String csv, String stock) throws SQLException {
         dh.executeCommand("INSERT INTO intradaystockprices VALUES('" + stock + "'," + csv + ", 1) ON DUPLICATE KEY UPDATE OpenPrice=VALUES(OpenPrice), HighPrice=VALUES(HighPrice), LowPrice=VALUES(LowPrice), ClosePrice=VALUES(ClosePrice), TradeVolume=VALUES(TradeVolume), Temporary=1;");
         dh.executeCommand("INSERT INTO dailystockprices(Symbol, TradeDate, OpenPrice, HighPrice, LowPrice, ClosePrice, TradeVolume) VALUES('" + stock + "'," + csv + ") ON DUPLICATE KEY UPDATE OpenPrice=VALUES(OpenPrice), HighPrice=VALUES(HighPrice), LowPrice=VALUES(LowPrice), ClosePrice=VALUES(ClosePrice), TradeVolume=VALUES(TradeVolume);");
+        DirtyTracker.markDirty(stock, TradingCalendar.getLastSessionDate());
     }
 
     /**
-     * Imports a list of CSV values into the price database
-     * @param csv List of CSV price values
+     * Imports a list of price bars into the price database, skipping any bars older than the latest stored record
+     * @param bars List of price bars
      * @param symbol Stock to associate the price values with
+     * @param isIntraday True if the bars are intraday bars, false if they are daily bars
+     * @return True if a new bar was stored or the latest stored bar was revised, False if the stored history is unchanged
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    private static void importData(ArrayList<String> csv, String symbol, boolean isIntraday) throws SQLException {
-        if (csv == null || csv.isEmpty()) return;
+    private static boolean importData(ArrayList<PriceBar> bars, String symbol, boolean isIntraday) throws SQLException {
+        if (bars == null || bars.isEmpty()) return false;
+
+        String dateColumn = isIntraday ? "TradeDateTime" : "TradeDate";
+        ArrayList<String> result = dh.executeQuery("SELECT " + dateColumn + ", ClosePrice, TradeVolume FROM " + (isIntraday ? "intradaystockprices" : "dailystockprices") + " WHERE Symbol='" + symbol + "' ORDER BY " + dateColumn + " DESC LIMIT 1;");
+
+        if (result.isEmpty()) {
+            if (!insertBars(bars, symbol, isIntraday, Long.MIN_VALUE)) return false;
+            if (!isIntraday) DirtyTracker.markDirty(symbol, DirtyTracker.WHOLE_HISTORY);
+            return true;
+        }
+
+        String[] latest = result.get(0).split(",");
+        long from = (isIntraday ? Timestamp.valueOf(latest[0]).toLocalDateTime() : Date.valueOf(latest[0]).toLocalDate().atStartOfDay()).toEpochSecond(ZoneOffset.UTC);
+        long earliestChange = Long.MAX_VALUE;
 
-        ArrayList<String> result = dh.executeQuery("SELECT MAX(TradeDate" + (isIntraday ? "Time" : "") + ") FROM " + (isIntraday ? "intradaystockprices" : "dailystockprices") + " WHERE symbol='" + symbol + "' ORDER BY TradeDate" + (isIntraday ? "Time" : "") + ";");
-        Object from = null;
+        for (PriceBar bar : bars)
+            if (bar.getEpoch() > from || (bar.getEpoch() == from && (bar.getClose() != Double.parseDouble(latest[1]) || bar.getVolume() != Long.parseLong(latest[2])))) //The latest stored bar is revised until its period closes
+                earliestChange = Math.min(earliestChange, bar.getEpoch());
 
-        if (!result.isEmpty()) from = (isIntraday) ? Timestamp.valueOf(result.get(0)) : Date.valueOf(result.get(0));
+        if (!insertBars(bars, symbol, isIntraday, from) || earliestChange == Long.MAX_VALUE) return false;
 
+        if (!isIntraday) markDirty(symbol, earliestChange);
+
+        return true;
+    }
+
+    /**
+     * Records the earliest changed trade date of a stock, so that only the changed range of its derived data is recalculated
+     * @param symbol Stock whose daily prices changed
+     * @param epoch Seconds since 1970-01-01 00:00:00 of the earliest changed daily bar
+     */
+    private static void markDirty(String symbol, long epoch) {
+        DirtyTracker.markDirty(symbol, LocalDateTime.ofEpochSecond(epoch, 0, ZoneOffset.UTC).toLocalDate());
+    }
+
+    /**
+     * Inserts (or updates) a list of price bars in a single statement
+     * @param bars List of price bars
+     * @param symbol Stock to associate the price values with
+     * @param isIntraday True if the bars are intraday bars, false if they are daily bars
+     * @param from Seconds since 1970-01-01 00:00:00 of the earliest bar to insert (earlier bars are skipped)
+     * @return True if any bars were sent to the database
+     */
+    private static boolean insertBars(ArrayList<PriceBar> bars, String symbol, boolean isIntraday, long from) {
         int newValues = 0;
-        int count = 0;
 
         StringBuilder statement = new StringBuilder("INSERT INTO " + (isIntraday ? "intradaystockprices" : "dailystockprices") + "(Symbol, TradeDate" + ((isIntraday) ? "Time" : "") + ", OpenPrice, HighPrice, LowPrice, ClosePrice, TradeVolume)" + " VALUES ");
 
-        TreeMap<Object, String> newCSV = new TreeMap<>((isIntraday) ? cleanCSVWithTimestamp(csv, (Timestamp) from) : cleanCSVWithDate(csv, (Date) from));
+        for (PriceBar bar : bars) {
+            if (bar.getEpoch() < from) continue;
 
-        for (Object curr : newCSV.keySet()) {
-            count++;
-            String data = newCSV.get(curr);
-            String split[] = data.split(",");
+            if (newValues++ > 0) statement.append(",\r\n");
 
-            statement.append("('").append(symbol).append("','").append(split[0]).append("'").append(data.replaceAll(split[0], "")).append(")");
-            if (count < newCSV.size() && curr != from)
-                statement.append(",\r\n");
-            newValues++;
+            statement.append("('").append(symbol).append("','");
+            bar.appendTimestamp(statement, isIntraday);
+            statement.append("',").append(bar.getOpen()).append(',').append(bar.getHigh()).append(',').append(bar.getLow()).append(',').append(bar.getClose()).append(',').append(bar.getVolume()).append(')');
         }
 
         statement.append(" ON DUPLICATE KEY UPDATE " + "OpenPrice = VALUES(OpenPrice)" + ", HighPrice = VALUES(HighPrice)" + ", LowPrice = VALUES(LowPrice)" + ", ClosePrice = VALUES(ClosePrice)" + ", TradeVolume = VALUES(TradeVolume);");
 
-        if (newValues > 0)
-            try {
-                dh.executeCommand(statement.toString());
-            } catch (Exception e) {
-                System.err.println(e.getMessage() + " " + statement);
-            }
+        if (newValues == 0) return false;
+
+        try {
+            dh.executeCommand(statement.toString());
+        } catch (Exception e) {
+            System.err.println(e.getMessage() + " " + statement);
+            return false;
+        }
+
+        return true;
     }
 
     /**
      * Imports all Yahoo! stock history files for all given stocks and updates the given progress bar appropriately
      * @param stocks List of stocks to import the Yahoo! files of
-     * @param stockFeedProgress ProgressBar to visalise progress of import
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      * @throws IOException Throws IOException if the CSV file cannot be found or cannot be read
      */
-    static public void processYahooHistories(ArrayList<String> stocks, ProgressBar stockFeedProgress) throws SQLException, IOException {
+    static public void processYahooHistories(ArrayList<String> stocks) throws SQLException, IOException {
         double curr = 0;
         final double t = stocks.size();
 
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, stockFeedProgress);
+        Status.updateProgress(Status.INDETERMINATE, Status.Channel.STOCK_FEED);
 
         for (String symbol : stocks) {
             ArrayList<String> results = dh.executeQuery("SELECT COUNT(*) FROM dailystockprices WHERE Symbol='" + symbol + "';");
             if (results.isEmpty() || Integer.parseInt(results.get(0)) == 0) {
-                Main.getController().updateCurrentTask("Importing Yahoo! records for: " + symbol, false, false);
+                Status.updateCurrentTask("Importing Yahoo! records for: " + symbol, false, false);
 
                 File file = new File(System.getProperty("user.dir") + "/res/historicstocks/" + symbol + ".csv");
 
                 if (file.exists()) {
                     StockRecordParser.importDailyYahooMarketData(file, symbol);
-                    Main.getController().updateCurrentTask("Successfully committed complete Yahoo! records of " + symbol + " to the database!", false, false);
+                    Status.updateCurrentTask("Successfully committed complete Yahoo! records of " + symbol + " to the database!", false, false);
                 } else
-                    Main.getController().updateCurrentTask("No Yahoo history available for " + symbol, true, true);
+                    Status.updateCurrentTask("No Yahoo history available for " + symbol, true, true);
             }
 
-            Controller.updateProgress(++curr, t, stockFeedProgress);
+            Status.updateProgress(++curr, t, Status.Channel.STOCK_FEED);
         }
     }
 }
\ No newline at end of file
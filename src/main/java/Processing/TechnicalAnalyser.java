@@ -1,17 +1,16 @@
 package Processing;
 
-import Default.Controller;
 import Default.DatabaseHandler;
-import Default.Main;
+import Default.Status;
 import com.tictactec.ta.lib.Core;
 import com.tictactec.ta.lib.MAType;
 import com.tictactec.ta.lib.MInteger;
 import com.tictactec.ta.lib.RetCode;
-import javafx.scene.control.ProgressBar;
 import org.apache.commons.lang.ArrayUtils;
 
 import java.sql.Date;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.*;
 
 /**
@@ -23,17 +22,15 @@ import java.util.*;
 public class TechnicalAnalyser {
     static private final Core ta = new Core();
     static private DatabaseHandler dh;
-    static private ProgressBar pb;
+    static private final Status.Channel PROGRESS_CHANNEL = Status.Channel.TECHNICAL_ANALYSIS;
 
     /**
-     * Initialises the technical analyser with a Database Handler to prevent deadlocks when accessing the database and a progress bar to visualise the progress of various methods
+     * Initialises the technical analyser with a Database Handler to prevent deadlocks when accessing the database
      *
      * @param tadh Technical Analyser Database Handler
-     * @param pb   Technical Analyser Progress Bar
      */
-    static public void initialise(DatabaseHandler tadh, ProgressBar pb) {
+    static public void initialise(DatabaseHandler tadh) {
         dh = tadh;
-        TechnicalAnalyser.pb = pb;
 
         System.out.println("Initialised Technical Analyser");
     }
@@ -110,7 +107,7 @@ public class TechnicalAnalyser {
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
     private static void calculatePercentChanges(String stock) throws SQLException {
-        Main.getController().updateCurrentTask("Calculating Close Price Percent Changes for " + stock, false, false);
+        Status.updateCurrentTask("Calculating Close Price Percent Changes for " + stock, false, false);
         calculatePercentChanges(stock, getFromDatabase(stock, "ClosePrice"));
     }
 
@@ -121,19 +118,80 @@ public class TechnicalAnalyser {
      */
     static public void calculatePercentChanges(ArrayList<String> stocks) throws SQLException {
         double c = 0, t = stocks.size() - 1;
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, pb);
+        Status.updateProgress(Status.INDETERMINATE, PROGRESS_CHANNEL);
 
-        dh.setAutoCommit(false);
+        synchronized (dh) { //Holds the shared batch and transaction until every stock is sent, so per-stock refreshes on the same handler wait rather than join it
+            dh.setAutoCommit(false);
 
-        for(String stock : stocks) {
-            calculatePercentChanges(stock);
-            Controller.updateProgress(++c, t, pb);
+            for(String stock : stocks) {
+                DirtyTracker.take(DirtyTracker.Consumer.PERCENT_CHANGES, stock); //Recalculates the whole history, covering any dirty range
+                calculatePercentChanges(stock);
+                Status.updateProgress(++c, t, PROGRESS_CHANNEL);
+            }
+
+            Status.updateProgress(Status.INDETERMINATE, t, PROGRESS_CHANNEL);
+            try {
+                dh.executeBatch();
+            } finally {
+                dh.setAutoCommit(true);
+            }
         }
+        for (String stock : stocks) DirtyTracker.markDirty(DirtyTracker.Consumer.FEATURES, stock, DirtyTracker.WHOLE_HISTORY);
+        Status.updateProgress(0, t, PROGRESS_CHANNEL);
+    }
+
+    /**
+     * Calculates the percentage changes in the dirty range of a single stock and commits them straight away, so that processing which depends on them can start on that stock while other stocks are still being calculated
+     * @param stock Stock to calculate the price percentage changes for
+     * @return True if the percentage changes were calculated, False if the stock's prices have not changed since they were last calculated
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    static public boolean calculatePercentChangesNow(String stock) throws SQLException {
+        LocalDate from = DirtyTracker.take(DirtyTracker.Consumer.PERCENT_CHANGES, stock);
+        if (from == null) return false;
+
+        try {
+            synchronized (dh) { //The batch is shared with the other stocks' refreshes, so this stock's commands are added and sent without them
+                if (from.equals(DirtyTracker.WHOLE_HISTORY))
+                    calculatePercentChanges(stock);
+                else
+                    calculatePercentChanges(stock, Date.valueOf(from));
+                dh.executeBatch();
+            }
+        } catch (SQLException | RuntimeException e) {
+            DirtyTracker.markDirty(DirtyTracker.Consumer.PERCENT_CHANGES, stock, from);
+            throw e;
+        }
+
+        DirtyTracker.markDirty(DirtyTracker.Consumer.FEATURES, stock, from);
+        return true;
+    }
+
+    /**
+     * Calculates the percentage changes of a stock from a given date onwards, only reading the prices from the previous trade date
+     * @param stock Stock to calculate the price percentage changes for
+     * @param from Earliest trade date to calculate
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    private static void calculatePercentChanges(String stock, Date from) throws SQLException {
+        Status.updateCurrentTask("Calculating Close Price Percent Changes for " + stock + " from " + from, false, false);
+
+        ArrayList<String> results = dh.executeQuery("SELECT TradeDate, ClosePrice FROM dailystockprices WHERE Symbol='" + stock + "' AND TradeDate >= COALESCE((SELECT MAX(TradeDate) FROM dailystockprices WHERE Symbol='" + stock + "' AND TradeDate < '" + from + "'), '" + from + "') ORDER BY TradeDate ASC");
+        if (results.isEmpty()) return;
 
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, t, pb);
-        dh.executeBatch();
-        dh.setAutoCommit(true);
-        Controller.updateProgress(0, t, pb);
+        String[] first = results.get(0).split(",");
+        double prevPrice = Double.parseDouble(first[1]);
+
+        if (!Date.valueOf(first[0]).before(from)) //The range starts at the first stored trade date, which has no previous price
+            dh.addBatchCommand("UPDATE dailystockprices SET PercentChange='0.0' WHERE Symbol = '" + stock + "' AND TradeDate = '" + first[0] + "';");
+
+        for (int i = 1; i < results.size(); i++) {
+            String[] splitString = results.get(i).split(",");
+            double currPrice = Double.parseDouble(splitString[1]);
+
+            dh.addBatchCommand("UPDATE dailystockprices SET PercentChange='" + (currPrice - prevPrice) / prevPrice + "' WHERE Symbol = '" + stock + "' AND TradeDate = '" + splitString[0] + "';");
+            prevPrice = currPrice;
+        }
     }
 
     /**
@@ -175,6 +233,24 @@ public class TechnicalAnalyser {
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
     private static void calculateTechnicalIndicators(String stock, boolean useSmoothedData, boolean fullUpdate) throws SQLException {
+        HashMap<String, TreeMap<Date, Double>> indicators = calculateTechnicalIndicators(stock, useSmoothedData);
+
+        if(fullUpdate)
+            sendToDatabase(stock, reshapeIndicators(indicators));
+        else
+            for(String ind : indicators.keySet())
+                sendToDatabase(stock, ind, indicators.get(ind));
+    }
+
+    /**
+     * Calculates all Technical Indicators for a given stock, without sending them to the database
+     *
+     * @param stock           Stock to calculate Technical Indicators for
+     * @param useSmoothedData True if the Technical Analysis should used Exponentially Smoothed data, False if it should use raw price data
+     * @return Map of indicator names to their Date-accessible values
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    private static HashMap<String, TreeMap<Date, Double>> calculateTechnicalIndicators(String stock, boolean useSmoothedData) throws SQLException {
         TreeMap<Date, Double> closePrices;
         if(useSmoothedData)
             closePrices = getFromDatabase(stock, "SmoothedClosePrice");
@@ -184,11 +260,21 @@ public class TechnicalAnalyser {
         TreeMap<Date, Double> lowPrices = getFromDatabase(stock, "LowPrice");
         TreeMap<Date, Double> highPrices = getFromDatabase(stock, "HighPrice");
 
-        TreeMap<Date, HashMap<String, Double>> reshapedIndicators = new TreeMap<>();
         HashMap<String, TreeMap<Date, Double>> indicators = new HashMap<>();
         for (TechnicalIndicator ti : TechnicalIndicator.values())
             indicators.putAll(Objects.requireNonNull(calculateTechnicalIndicator(ti, stock, highPrices, lowPrices, closePrices, volumes, technicalIndicatorToDays(ti))));
 
+        return indicators;
+    }
+
+    /**
+     * Reshapes a map of indicators into a map of dates, so that every indicator of a date can be sent in a single command
+     * @param indicators Map of indicator names to their Date-accessible values
+     * @return Map of dates to the indicator values of that date
+     */
+    static private TreeMap<Date, HashMap<String, Double>> reshapeIndicators(HashMap<String, TreeMap<Date, Double>> indicators) {
+        TreeMap<Date, HashMap<String, Double>> reshapedIndicators = new TreeMap<>();
+
         for(String ind : indicators.keySet()){
             TreeMap<Date,Double> temp = indicators.get(ind);
             for (Date date : temp.keySet()) {
@@ -197,11 +283,7 @@ public class TechnicalAnalyser {
             }
         }
 
-        if(fullUpdate)
-            sendToDatabase(stock, reshapedIndicators);
-        else
-            for(String ind : indicators.keySet())
-                sendToDatabase(stock, ind, indicators.get(ind));
+        return reshapedIndicators;
     }
 
     /**
@@ -213,19 +295,63 @@ public class TechnicalAnalyser {
      */
     static public void calculateTechnicalIndicators(ArrayList<String> stocks, boolean useSmoothedData, boolean fullUpdate) throws SQLException {
         double c = 0, t = stocks.size()- 1;
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, pb);
+        Status.updateProgress(Status.INDETERMINATE, PROGRESS_CHANNEL);
 
-        dh.setAutoCommit(false);
+        synchronized (dh) { //Holds the shared batch and transaction until every stock is sent, so per-stock refreshes on the same handler wait rather than join it
+            dh.setAutoCommit(false);
 
-        for (String stock : stocks) {
-            calculateTechnicalIndicators(stock, useSmoothedData, fullUpdate);
-            Controller.updateProgress(++c, t, pb);
+            for (String stock : stocks) {
+                DirtyTracker.take(DirtyTracker.Consumer.TECHNICAL_INDICATORS, stock); //Recalculates every missing value, covering any dirty range
+                calculateTechnicalIndicators(stock, useSmoothedData, fullUpdate);
+                Status.updateProgress(++c, t, PROGRESS_CHANNEL);
+            }
+
+            try {
+                dh.executeBatch();
+            } finally {
+                dh.setAutoCommit(true);
+            }
         }
+        for (String stock : stocks) DirtyTracker.markDirty(DirtyTracker.Consumer.FEATURES, stock, DirtyTracker.WHOLE_HISTORY);
+
+        Status.updateProgress(0, PROGRESS_CHANNEL);
+    }
 
-        dh.executeBatch();
-        dh.setAutoCommit(true);
+    /**
+     * Calculates the Technical Indicators in the dirty range of a single stock and commits them straight away, so that processing which depends on them can start on that stock while other stocks are still being calculated
+     * @param stock Stock to calculate Technical Indicators for
+     * @param useSmoothedData True if the Technical Analysis should used Exponentially Smoothed data, False if it should use raw price data
+     * @param fullUpdate True if the Technical Analysis database should be overwritten by new values, False if only the dirty range should be saved to the database
+     * @return True if the Technical Indicators were calculated, False if the stock's prices have not changed since they were last calculated
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    static public boolean calculateTechnicalIndicatorsNow(String stock, boolean useSmoothedData, boolean fullUpdate) throws SQLException {
+        LocalDate from = DirtyTracker.take(DirtyTracker.Consumer.TECHNICAL_INDICATORS, stock);
+        if (from == null) return false;
+
+        Status.updateCurrentTask("Calculating Technical Indicators for " + stock, false, false);
+
+        try {
+            if (fullUpdate || from.equals(DirtyTracker.WHOLE_HISTORY))
+                synchronized (dh) { //The batch is shared with the other stocks' refreshes, so this stock's commands are added and sent without them
+                    calculateTechnicalIndicators(stock, useSmoothedData, fullUpdate);
+                    dh.executeBatch();
+                }
+            else { //Indicators look back over earlier prices, so the whole history is read, but only the dirty range is sent
+                TreeMap<Date, HashMap<String, Double>> dirtyRange = new TreeMap<>(reshapeIndicators(calculateTechnicalIndicators(stock, useSmoothedData)).tailMap(Date.valueOf(from), true));
+
+                synchronized (dh) {
+                    sendToDatabase(stock, dirtyRange);
+                    dh.executeBatch();
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            DirtyTracker.markDirty(DirtyTracker.Consumer.TECHNICAL_INDICATORS, stock, from);
+            throw e;
+        }
 
-        Controller.updateProgress(0, pb);
+        DirtyTracker.markDirty(DirtyTracker.Consumer.FEATURES, stock, (fullUpdate || from.equals(DirtyTracker.WHOLE_HISTORY)) ? DirtyTracker.WHOLE_HISTORY : from);
+        return true;
     }
 
     /**
@@ -293,7 +419,7 @@ public class TechnicalAnalyser {
      * @return A Map of Indicator-Name-Accessible values, which are ordered by TradeDate
      */
     private static HashMap<String, TreeMap<Date, Double>> calculateTechnicalIndicator(TechnicalIndicator indicator, String stock, TreeMap<Date, Double> highPrices, TreeMap<Date, Double> lowPrices, TreeMap<Date, Double> closePrices, TreeMap<Date, Double> volumes, int days) {
-        Main.getController().updateCurrentTask("Calculating " + indicator.name() + " for " + stock + "...", false, false);
+        Status.updateCurrentTask("Calculating " + indicator.name() + " for " + stock + "...", false, false);
 
         MInteger begin = new MInteger(), length = new MInteger();
 
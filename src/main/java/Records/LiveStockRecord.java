@@ -1,7 +1,9 @@
 package Records;
 
 import Default.DatabaseHandler;
-import javafx.application.Platform;
+import Default.UIUpdateBus;
+import Utility.TradingCalendar;
+import javafx.collections.ObservableList;
 import javafx.geometry.Orientation;
 import javafx.scene.Node;
 import javafx.scene.chart.LineChart;
@@ -13,13 +15,12 @@ import javafx.scene.control.Separator;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Calendar;
 
 /**
  * @author Luke K. Rose <psylr5@nottingham.ac.uk>
@@ -28,6 +29,8 @@ import java.util.Calendar;
  */
 
 public class LiveStockRecord {
+    static private final int MAX_POINTS = 300; //Width of the chart in pixels, beyond which extra points cannot be seen
+
     private final String symbol;
 
     private final HBox hStock = new HBox();
@@ -35,10 +38,14 @@ public class LiveStockRecord {
     private final Label stockChange = new Label();
     private final Label prevClosePrice = new Label();
     private final XYChart.Series<Number, Number> stockData = new XYChart.Series<>();
-    private final NumberAxis xAxis = new NumberAxis(0,0,1);
+    private final NumberAxis xAxis = new NumberAxis(0,0,60);
     private final NumberAxis yAxis = new NumberAxis();
     private final LineChart<Number, Number> stockChart = new LineChart<>(xAxis, yAxis);
     private final ProgressIndicator progress = new ProgressIndicator();
+    private final ArrayList<Float> prices = new ArrayList<>();
+    private LocalDate chartDate;
+    private String lastTradeDateTime;
+    private float minPrice, maxPrice;
 
     /**
      * Initialises a new Live Stock Record by setting a stock ticker, name and database handler to prevent deadlocks when accessing the database
@@ -57,6 +64,8 @@ public class LiveStockRecord {
         stockChart.setVisible(false);
 
         xAxis.setTickLabelsVisible(false);
+        xAxis.setTickMarkVisible(false);
+        xAxis.setMinorTickVisible(false);
         xAxis.setOpacity(0);
         xAxis.setAutoRanging(false);
         yAxis.setAutoRanging(false);
@@ -69,6 +78,7 @@ public class LiveStockRecord {
         stockChart.setMaxSize(300,100);
         stockChart.getData().add(stockData);
         stockChart.setAnimated(false);
+        stockChart.setCreateSymbols(false);
 
         progress.setMaxSize(75,75);
         progress.setVisible(false);
@@ -122,7 +132,7 @@ public class LiveStockRecord {
                 change = currPrice - prevPrice,
                 percentChange = (change / prevPrice * 100.0f);
 
-        Platform.runLater(() -> {
+        UIUpdateBus.post(stockPrice, () -> {
             stockPrice.setText(String.valueOf(currPrice));
             prevClosePrice.setText(String.valueOf("Prev. close: " + prevPrice));
 
@@ -141,21 +151,6 @@ public class LiveStockRecord {
         });
     }
 
-    /**
-     * Determines which was the last trading day before Today
-     * @return An integer value of how many days ago trading last occurred
-     */
-    private int getLastTradeDay() {
-        switch (Calendar.getInstance().get(Calendar.DAY_OF_WEEK)) {
-            case Calendar.MONDAY:
-                return 3;
-            case Calendar.SUNDAY:
-                return 2;
-            default:
-                return 1;
-        }
-    }
-
     /**
      * Retrieves the price of a stock on the last trading day prior to Today
      * @param dh Database handler
@@ -164,7 +159,7 @@ public class LiveStockRecord {
     private float getPreviousPrice(DatabaseHandler dh){
         ArrayList<String> pPrice = null;
         try {
-            pPrice = (dh.executeQuery("SELECT ClosePrice FROM dailystockprices WHERE Symbol='" + symbol + "' AND TradeDate < CURDATE() ORDER BY TradeDate DESC LIMIT 1;"));
+            pPrice = (dh.executeQuery("SELECT ClosePrice FROM dailystockprices WHERE Symbol='" + symbol + "' AND TradeDate < '" + TradingCalendar.today() + "' ORDER BY TradeDate DESC LIMIT 1;"));
         } catch (SQLException e) { e.printStackTrace(); }
 
         if(pPrice == null || pPrice.isEmpty())
@@ -191,72 +186,152 @@ public class LiveStockRecord {
     }
 
     /**
-     * Updates the price graph with the latest price information
+     * Updates the price graph with the bars stored since the last update, only redrawing the points that changed
      * @param dh Database handler to use for accessing the database
-     * @param forceClear True if the graph should be cleared before adding more data, False if it should be added to existing data
+     * @param forceClear True if the graph should be reloaded from the database, False if only new bars should be added to the existing data
      */
-    public void updateChart(DatabaseHandler dh, boolean forceClear) {
+    public synchronized void updateChart(DatabaseHandler dh, boolean forceClear) {
         try {
             float prevPrice = getPreviousPrice(dh),
                     currPrice = getCurrentPrice(dh);
 
             if(prevPrice < 0 || currPrice < 0) return;
 
-            ArrayList<String> statistics = dh.executeQuery("SELECT ClosePrice FROM intradaystockprices WHERE DATE(TradeDateTime) = CURDATE() AND Symbol='" + symbol + "' ORDER BY TradeDateTime ASC;");
-
-            if (statistics.isEmpty())
-                statistics = dh.executeQuery("SELECT ClosePrice FROM intradaystockprices WHERE DATE(TradeDateTime) = SUBDATE(CURDATE(), " + getLastTradeDay() + ") AND Symbol='" + symbol + "' ORDER BY TradeDateTime ASC;");
-
-            ArrayList<String> finalStatistics = statistics;
-            Platform.runLater(()->xAxis.setLowerBound(-finalStatistics.size() + 1));
+            LocalDate date = TradingCalendar.today();
+            if (!date.equals(chartDate) && !hasIntradayData(dh, date))
+                date = TradingCalendar.previousTradingDay(date);
 
-            if (statistics.size() < stockData.getData().size() || forceClear) {
-                Platform.runLater(()-> {
-                            stockData.getData().clear();
-                            yAxis.setLowerBound(Integer.MAX_VALUE);
-                            yAxis.setUpperBound(Integer.MIN_VALUE);
-                        }
-                );
-            }
+            if (forceClear || !date.equals(chartDate)) clearChart(date);
 
-            for(int time = 0; time < statistics.size(); time++){
-                float price = Float.parseFloat(statistics.get(time));
-                XYChart.Data<Number, Number> point = new XYChart.Data<>(time-statistics.size()+1, price);
-                Rectangle rect = new Rectangle(0,0);
-                rect.setVisible(false);
-                point.setNode(rect);
-                Platform.runLater(()-> {
-                    yAxis.setLowerBound(Math.min(yAxis.getLowerBound(), price));
-                    yAxis.setUpperBound(Math.max(yAxis.getUpperBound(), price));
-                });
-
-                final int t = time, size = statistics.size();
-
-                Platform.runLater(() -> {
-                    if (stockData.getData().size() < size && t + 1 > stockData.getData().size())
-                        stockData.getData().add(t, point);
-                    else
-                        stockData.getData().set(t, point);
-                });
+            if (!addLatestBars(dh)) { //The last bar was a temporary bar that has since been removed
+                clearChart(date);
+                addLatestBars(dh);
             }
 
-            if (prevPrice > currPrice)
-                Platform.runLater(()-> stockData.nodeProperty().get().setStyle("-fx-stroke: red;   -fx-stroke-width: 1px;"));
-            else if (prevPrice < currPrice)
-                Platform.runLater(()-> stockData.nodeProperty().get().setStyle("-fx-stroke: green; -fx-stroke-width: 1px;"));
-            else Platform.runLater(()-> stockData.nodeProperty().get().setStyle("-fx-stroke: black; -fx-stroke-width: 1px;"));
-            if (!stockChart.isVisible()) Platform.runLater(()-> stockChart.setVisible(true));
+            if (prices.isEmpty()) return;
+
+            int[] times = decimate();
+            float[] values = new float[times.length];
+            for (int i = 0; i < times.length; i++) values[i] = prices.get(times[i]);
+
+            final int lastTime = prices.size() - 1;
+            final float lowerBound = minPrice, upperBound = maxPrice;
+            final String style = (prevPrice > currPrice) ? "-fx-stroke: red;   -fx-stroke-width: 1px;"
+                    : (prevPrice < currPrice) ? "-fx-stroke: green; -fx-stroke-width: 1px;"
+                    : "-fx-stroke: black; -fx-stroke-width: 1px;";
+
+            //Brings the drawn series in line with the latest points, which is usually a single appended or changed point
+            UIUpdateBus.post(stockData, () -> {
+                ObservableList<XYChart.Data<Number, Number>> data = stockData.getData();
+                ArrayList<XYChart.Data<Number, Number>> added = new ArrayList<>();
+
+                if (data.size() > times.length) data.remove(times.length, data.size());
+
+                for (int i = 0; i < times.length; i++) {
+                    if (i < data.size()) {
+                        XYChart.Data<Number, Number> point = data.get(i);
+                        if (point.getXValue().intValue() != times[i]) point.setXValue(times[i]);
+                        if (point.getYValue().floatValue() != values[i]) point.setYValue(values[i]);
+                    } else
+                        added.add(new XYChart.Data<>(times[i], values[i]));
+                }
+
+                data.addAll(added);
+
+                xAxis.setUpperBound(Math.max(1, lastTime));
+                yAxis.setLowerBound(lowerBound);
+                yAxis.setUpperBound(upperBound);
+                stockData.nodeProperty().get().setStyle(style);
+                stockChart.setVisible(true);
+            });
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Determines whether any intraday bars have been stored for this stock on a given day
+     * @param dh Database handler
+     * @param date Trade date to check
+     * @return True if at least one bar exists
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    private boolean hasIntradayData(DatabaseHandler dh, LocalDate date) throws SQLException {
+        return !dh.executeQuery("SELECT 1 FROM intradaystockprices WHERE Symbol='" + symbol + "' AND TradeDateTime >= '" + date + "' AND TradeDateTime < '" + date.plusDays(1) + "' LIMIT 1;").isEmpty();
+    }
+
+    /**
+     * Discards the loaded bars so that the chart is reloaded for a given day
+     * @param date Trade date to display
+     */
+    private void clearChart(LocalDate date) {
+        chartDate = date;
+        lastTradeDateTime = null;
+        prices.clear();
+        minPrice = Float.MAX_VALUE;
+        maxPrice = -Float.MAX_VALUE;
+    }
+
+    /**
+     * Loads the bars stored since the last loaded bar (including the last bar itself, as it may have been a temporary bar that has since been revised)
+     * @param dh Database handler
+     * @return False if the last loaded bar no longer exists, True otherwise
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    private boolean addLatestBars(DatabaseHandler dh) throws SQLException {
+        String from = (lastTradeDateTime != null) ? lastTradeDateTime : chartDate.toString();
+        ArrayList<String> bars = dh.executeQuery("SELECT ClosePrice, TradeDateTime FROM intradaystockprices WHERE Symbol='" + symbol + "' AND TradeDateTime >= '" + from + "' AND TradeDateTime < '" + chartDate.plusDays(1) + "' ORDER BY TradeDateTime ASC;");
+
+        if (lastTradeDateTime != null && (bars.isEmpty() || !bars.get(0).split(",")[1].equals(lastTradeDateTime)))
+            return false;
+
+        for (String bar : bars) {
+            String[] splitBar = bar.split(",");
+            float price = Float.parseFloat(splitBar[0]);
+
+            if (splitBar[1].equals(lastTradeDateTime)) {
+                float previous = prices.set(prices.size() - 1, price);
+
+                if (previous <= minPrice || previous >= maxPrice) { //The revised bar may have been the extreme, so the bounds are recalculated
+                    minPrice = Float.MAX_VALUE;
+                    maxPrice = -Float.MAX_VALUE;
+                    for (float p : prices) {
+                        minPrice = Math.min(minPrice, p);
+                        maxPrice = Math.max(maxPrice, p);
+                    }
+                }
+            } else
+                prices.add(price);
+
+            minPrice = Math.min(minPrice, price);
+            maxPrice = Math.max(maxPrice, price);
+            lastTradeDateTime = splitBar[1];
+        }
+
+        return true;
+    }
+
+    /**
+     * Chooses which of the loaded bars to draw, so that no more points are drawn than the chart has pixels
+     * @return Indices of the bars to draw, in ascending order
+     */
+    private int[] decimate() {
+        int size = prices.size(),
+                bucket = (size + MAX_POINTS - 1) / MAX_POINTS;
+
+        int[] times = new int[(size + bucket - 1) / bucket];
+        for (int i = 0; i < times.length; i++)
+            times[i] = Math.min((i + 1) * bucket, size) - 1; //Keeps the last bar of each bucket, so the latest price is always drawn
+
+        return times;
+    }
+
     /**
      * Sets the update flag to prevent the same record from being updated multiple times in parallel
      * @param isUpdating True if the record is currently being updated, False otherwise
      */
     public void setUpdating(boolean isUpdating) {
-        Platform.runLater(() -> progress.setVisible(isUpdating));
+        UIUpdateBus.post(progress, () -> progress.setVisible(isUpdating));
     }
 
     /**
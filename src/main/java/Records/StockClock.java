@@ -1,5 +1,6 @@
 package Records;
 
+import Utility.TradingCalendar;
 import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
@@ -10,10 +11,11 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.TextAlignment;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.Calendar;
 import java.util.Map;
 
 /**
@@ -31,6 +33,7 @@ public class StockClock {
     private final LocalTime tradeEnd;
     private LocalTime currTime;
     private final ZoneId zone;
+    private final boolean useCalendar;
 
     /**
      * Initialises a new stock clock object, given a market's name, its open/close time and time zone
@@ -41,6 +44,20 @@ public class StockClock {
      * @param zone        Time zone of the market
      */
     public StockClock(String name, LocalTime marketStart, Map<LocalTime, LocalTime> marketBreaks, LocalTime marketEnd, ZoneId zone) {
+        this(name, marketStart, marketBreaks, marketEnd, zone, false);
+    }
+
+    /**
+     * Initialises a new stock clock object for the market described by the {@link TradingCalendar}, accounting for its holidays and early closes
+     *
+     * @param name Name of the market (e.g. NASDAQ)
+     */
+    public StockClock(String name) {
+        this(name, TradingCalendar.MARKET_OPEN, null, TradingCalendar.MARKET_CLOSE, TradingCalendar.EXCHANGE_ZONE, true);
+    }
+
+    private StockClock(String name, LocalTime marketStart, Map<LocalTime, LocalTime> marketBreaks, LocalTime marketEnd, ZoneId zone, boolean useCalendar) {
+        this.useCalendar = useCalendar;
         node.setAlignment(Pos.CENTER);
         node.setMinWidth(140);
         node.setMinHeight(100);
@@ -74,13 +91,21 @@ public class StockClock {
      */
     public void updateTime(){
         Platform.runLater(()-> {
+            LocalDate currDate = LocalDate.now(zone);
             currTime = LocalTime.now(zone);
             clockTime.setText(currTime.format(DateTimeFormatter.ofPattern("HH:mm:ss")));
 
-            if (currTime.isAfter(tradeEnd)
-                    || currTime.isBefore(tradeStart)
-                    || Calendar.getInstance().get(Calendar.DAY_OF_WEEK) == Calendar.SATURDAY
-                    || Calendar.getInstance().get(Calendar.DAY_OF_WEEK) == Calendar.SUNDAY) {
+            boolean open;
+
+            if (useCalendar)
+                open = TradingCalendar.isOpen();
+            else
+                open = !currTime.isAfter(tradeEnd)
+                        && !currTime.isBefore(tradeStart)
+                        && currDate.getDayOfWeek() != DayOfWeek.SATURDAY
+                        && currDate.getDayOfWeek() != DayOfWeek.SUNDAY;
+
+            if (!open) {
                 status.setText("CLOSED");
                 status.setTextFill(Color.RED);
             } else {
@@ -89,7 +114,7 @@ public class StockClock {
 
                 if (tradeBreaks != null)
                     for (LocalTime date : tradeBreaks.keySet()) {
-                        if (currTime.isAfter(date) && currTime.isAfter(tradeBreaks.get(date))) {
+                        if (currTime.isAfter(date) && currTime.isBefore(tradeBreaks.get(date))) {
                             status.setText("BREAK");
                             status.setTextFill(Color.ORANGE);
                         }
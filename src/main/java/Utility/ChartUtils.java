@@ -31,6 +31,21 @@ public class ChartUtils {
         return point;
     }
 
+    /**
+     * Creates and formats a new point on a Line Chart
+     *
+     * @param x     Value of data point on the X-Axis
+     * @param value Values of this data point
+     * @return A Line Chart data point that can be added to a graph
+     */
+    static public XYChart.Data<Number, Number> createChartPoint(double x, double value) {
+        XYChart.Data<Number, Number> point = new XYChart.Data<>(x, value);
+        Rectangle rect = new Rectangle(0, 0);
+        rect.setVisible(false);
+        point.setNode(rect);
+        return point;
+    }
+
     /**
      * Reformats a line chart set of series to have thin lines
      * @param seriesCollection Line Chart Set of Series to reformat
@@ -0,0 +1,172 @@
+package Utility;
+
+import Default.UIUpdateBus;
+import javafx.beans.InvalidationListener;
+import javafx.scene.chart.Axis;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static Utility.ChartUtils.createChartPoint;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class DecimatedSeries {
+    static private final int DEFAULT_WIDTH = 1000; //Used until the chart has been laid out
+
+    private final XYChart.Series<Number, Number> series = new XYChart.Series<>();
+    private final DownsamplingUtils.Method method;
+    private final InvalidationListener axisListener = observable -> redraw();
+    private double[] x = new double[64], y = new double[64];
+    private int size = 0;
+    private double minY = Double.NaN, maxY = Double.NaN;
+    private NumberAxis axis;
+
+    /**
+     * Creates a chart series that holds every point off the JavaFX thread and only draws as many points as the chart has pixels, redrawing whenever the visible range of its X-Axis changes (e.g. on zoom)
+     *
+     * @param name   Name of the series, shown in the chart legend
+     * @param method {@link DownsamplingUtils.Method} enum value of the downsampling algorithm
+     */
+    public DecimatedSeries(String name, DownsamplingUtils.Method method) {
+        this.method = method;
+        series.setName(name);
+
+        series.chartProperty().addListener((observable, oldChart, newChart) -> {
+            if (axis != null) {
+                axis.lowerBoundProperty().removeListener(axisListener);
+                axis.upperBoundProperty().removeListener(axisListener);
+                axis.widthProperty().removeListener(axisListener);
+                axis = null;
+            }
+
+            if (newChart != null) {
+                Axis<Number> xAxis = newChart.getXAxis();
+
+                if (xAxis instanceof NumberAxis) {
+                    axis = (NumberAxis) xAxis;
+                    axis.lowerBoundProperty().addListener(axisListener);
+                    axis.upperBoundProperty().addListener(axisListener);
+                    axis.widthProperty().addListener(axisListener);
+                }
+
+                redraw();
+            }
+        });
+    }
+
+    /**
+     * Appends a point to the series (X values must be added in ascending order)
+     *
+     * @param x X value of the point
+     * @param y Y value of the point
+     */
+    public void add(double x, double y) {
+        synchronized (this) {
+            if (size == this.x.length) {
+                this.x = Arrays.copyOf(this.x, size * 2);
+                this.y = Arrays.copyOf(this.y, size * 2);
+            }
+
+            this.x[size] = x;
+            this.y[size++] = y;
+
+            minY = (size == 1) ? y : Math.min(minY, y);
+            maxY = (size == 1) ? y : Math.max(maxY, y);
+        }
+
+        redraw();
+    }
+
+    /**
+     * Replaces every point of the series
+     *
+     * @param x X values of the points, in ascending order
+     * @param y Y values of the points
+     */
+    public void setAll(double[] x, double[] y) {
+        synchronized (this) {
+            this.x = Arrays.copyOf(x, Math.max(x.length, 64));
+            this.y = Arrays.copyOf(y, Math.max(y.length, 64));
+            size = x.length;
+
+            minY = maxY = Double.NaN;
+            for (int i = 0; i < size; i++) {
+                minY = (i == 0) ? y[i] : Math.min(minY, y[i]);
+                maxY = (i == 0) ? y[i] : Math.max(maxY, y[i]);
+            }
+        }
+
+        redraw();
+    }
+
+    /**
+     * Removes every point of the series
+     */
+    public void clear() {
+        synchronized (this) {
+            size = 0;
+            minY = maxY = Double.NaN;
+        }
+
+        redraw();
+    }
+
+    /**
+     * Queues the series to be redrawn, coalescing with any redraw that has not yet been applied
+     */
+    private void redraw() {
+        UIUpdateBus.post(this, this::draw);
+    }
+
+    /**
+     * Downsamples the visible range of the series to the width of its chart and draws it (must be called on the JavaFX thread)
+     */
+    private void draw() {
+        int width = (axis != null && axis.getWidth() > 0) ? (int) axis.getWidth() : DEFAULT_WIDTH;
+        ArrayList<XYChart.Data<Number, Number>> points;
+
+        synchronized (this) {
+            int[] range = (axis != null && !axis.isAutoRanging())
+                    ? DownsamplingUtils.visibleRange(x, size, axis.getLowerBound(), axis.getUpperBound())
+                    : new int[]{0, size};
+            int[] indices = DownsamplingUtils.downsample(method, x, y, range[0], range[1], width);
+
+            points = new ArrayList<>(indices.length);
+            for (int i : indices) points.add(createChartPoint(x[i], y[i]));
+        }
+
+        series.getData().setAll(points);
+    }
+
+    /**
+     * Access the series to add to a chart
+     *
+     * @return The JavaFX series that is drawn
+     */
+    public XYChart.Series<Number, Number> getSeries() {
+        return series;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized double getMinY() {
+        return minY;
+    }
+
+    public synchronized double getMaxY() {
+        return maxY;
+    }
+
+    public synchronized double getLastY() {
+        return (size == 0) ? Double.NaN : y[size - 1];
+    }
+}
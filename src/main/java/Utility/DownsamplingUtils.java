@@ -0,0 +1,156 @@
+package Utility;
+
+import java.util.Arrays;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class DownsamplingUtils {
+    /**
+     * Chooses which points of a series to draw so that no more points are drawn than a chart has pixels
+     *
+     * @param method {@link Method} enum value of the downsampling algorithm
+     * @param x      X values of the series, in ascending order
+     * @param y      Y values of the series
+     * @param from   Index of the first point to consider (inclusive)
+     * @param to     Index of the last point to consider (exclusive)
+     * @param pixels Width of the chart in pixels
+     * @return Indices of the points to draw, in ascending order
+     */
+    static public int[] downsample(Method method, double[] x, double[] y, int from, int to, int pixels) {
+        switch (method) {
+            case MIN_MAX:
+                return minMax(y, from, to, Math.max(1, pixels / 2));
+            default:
+                return largestTriangleThreeBuckets(x, y, from, to, Math.max(3, pixels));
+        }
+    }
+
+    /**
+     * Downsamples a series with the Largest-Triangle-Three-Buckets algorithm (Steinarsson, 2013), which keeps the points that contribute most to the visible shape of a line
+     *
+     * @param x         X values of the series, in ascending order
+     * @param y         Y values of the series
+     * @param from      Index of the first point to consider (inclusive)
+     * @param to        Index of the last point to consider (exclusive)
+     * @param threshold Number of points to keep (at least 3)
+     * @return Indices of the points to keep, in ascending order (always including the first and last point)
+     */
+    static public int[] largestTriangleThreeBuckets(double[] x, double[] y, int from, int to, int threshold) {
+        int size = to - from;
+        if (threshold >= size || threshold < 3) return range(from, to);
+
+        int[] sampled = new int[threshold];
+        double every = (double) (size - 2) / (threshold - 2);
+        int a = from;
+
+        sampled[0] = from;
+
+        for (int i = 0; i < threshold - 2; i++) {
+            //Average of the next bucket, used as the third point of the triangle
+            int avgStart = from + (int) Math.floor((i + 1) * every) + 1,
+                    avgEnd = Math.min(from + (int) Math.floor((i + 2) * every) + 1, to);
+            double avgX = 0, avgY = 0;
+
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgX += x[j];
+                avgY += y[j];
+            }
+
+            avgX /= (avgEnd - avgStart);
+            avgY /= (avgEnd - avgStart);
+
+            int rangeStart = from + (int) Math.floor(i * every) + 1,
+                    rangeEnd = from + (int) Math.floor((i + 1) * every) + 1,
+                    next = rangeStart;
+            double maxArea = -1;
+
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((x[a] - avgX) * (y[j] - y[a]) - (x[a] - x[j]) * (avgY - y[a]));
+
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+
+            sampled[i + 1] = a = next;
+        }
+
+        sampled[threshold - 1] = to - 1;
+
+        return sampled;
+    }
+
+    /**
+     * Downsamples a series by keeping the lowest and highest point of each bucket, which preserves every spike (e.g. for trade volumes)
+     *
+     * @param y       Y values of the series
+     * @param from    Index of the first point to consider (inclusive)
+     * @param to      Index of the last point to consider (exclusive)
+     * @param buckets Number of buckets (up to two points are kept per bucket)
+     * @return Indices of the points to keep, in ascending order (always including the first and last point)
+     */
+    static public int[] minMax(double[] y, int from, int to, int buckets) {
+        int size = to - from;
+        if (buckets * 2 + 2 >= size) return range(from, to);
+
+        int[] sampled = new int[buckets * 2 + 2];
+        int count = 0;
+
+        sampled[count++] = from;
+
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = from + (int) ((long) bucket * size / buckets),
+                    end = from + (int) ((long) (bucket + 1) * size / buckets),
+                    min = start, max = start;
+
+            for (int i = start + 1; i < end; i++) {
+                if (y[i] < y[min]) min = i;
+                if (y[i] > y[max]) max = i;
+            }
+
+            int first = Math.min(min, max), second = Math.max(min, max);
+
+            if (first > sampled[count - 1]) sampled[count++] = first;
+            if (second > sampled[count - 1]) sampled[count++] = second;
+        }
+
+        if (to - 1 > sampled[count - 1]) sampled[count++] = to - 1;
+
+        return Arrays.copyOf(sampled, count);
+    }
+
+    /**
+     * Finds the range of points that fall within the visible bounds of an axis, including one point either side so that lines are drawn to the edges
+     *
+     * @param x     X values of the series, in ascending order
+     * @param size  Number of points in the series
+     * @param lower Lower bound of the axis
+     * @param upper Upper bound of the axis
+     * @return Indices of the first (inclusive) and last (exclusive) visible points
+     */
+    static public int[] visibleRange(double[] x, int size, double lower, double upper) {
+        int from = Arrays.binarySearch(x, 0, size, lower),
+                to = Arrays.binarySearch(x, 0, size, upper);
+
+        from = (from < 0) ? -from - 2 : from - 1; //Point before the lower bound
+        to = (to < 0) ? -to : to + 2; //Point after the upper bound (exclusive)
+
+        return new int[]{Math.max(0, from), Math.min(size, to)};
+    }
+
+    static private int[] range(int from, int to) {
+        int[] indices = new int[Math.max(0, to - from)];
+        for (int i = 0; i < indices.length; i++) indices[i] = from + i;
+        return indices;
+    }
+
+    /**
+     * Downsampling algorithms
+     */
+    public enum Method {LTTB, MIN_MAX}
+}
@@ -1,12 +1,12 @@
 package Utility;
 
-import Default.Controller;
 import Default.DatabaseHandler;
-import Default.Main;
-import javafx.scene.control.ProgressBar;
+import Default.Status;
+import Processing.DirtyTracker;
 
 import java.sql.Date;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Objects;
 import java.util.TreeMap;
@@ -19,18 +19,16 @@ import java.util.TreeMap;
 
 public class SmoothingUtils {
     private static DatabaseHandler dh;
-    private static ProgressBar pb;
+    private static final Status.Channel PROGRESS_CHANNEL = Status.Channel.TECHNICAL_ANALYSIS;
     private static double ALPHA;
 
     /**
-     * Initialises the Smoothing Utils class, given a Database Handler to prevent deadlocks when accessing the database and a progress bar to visualise the progress of various methods
+     * Initialises the Smoothing Utils class, given a Database Handler to prevent deadlocks when accessing the database
      *
      * @param sudh Smoothing Utils Database handler
-     * @param supb Smoothing Utils Progress Bar
      */
-    static public void initialise(DatabaseHandler sudh, ProgressBar supb){
+    static public void initialise(DatabaseHandler sudh){
         dh = sudh;
-        pb = supb;
     }
 
     /**
@@ -67,7 +65,7 @@ public class SmoothingUtils {
     private static void smoothStock(String stock, double alpha) throws SQLException {
         ALPHA = alpha;
 
-        Main.getController().updateCurrentTask("Smoothing Stock Close Prices for " + stock + "...", false, false);
+        Status.updateCurrentTask("Smoothing Stock Close Prices for " + stock + "...", false, false);
 
         TreeMap<Date, Double> priceHistory = new TreeMap<>();
         ArrayList<String> results = dh.executeQuery("SELECT TradeDate, ClosePrice FROM dailystockprices WHERE Symbol = '" + stock + "' ORDER BY TradeDate ASC");
@@ -94,16 +92,78 @@ public class SmoothingUtils {
     static public void smoothStocks(ArrayList<String> stocks, double alpha) throws SQLException {
         double t = stocks.size()-1, c = 0;
 
-        Controller.updateProgress(ProgressBar.INDETERMINATE_PROGRESS, pb);
+        Status.updateProgress(Status.INDETERMINATE, PROGRESS_CHANNEL);
+
+        synchronized (dh) { //Holds the shared batch and transaction until every stock is sent, so per-stock refreshes on the same handler wait rather than join it
+            dh.setAutoCommit(false);
+            for(String stock : stocks){
+                DirtyTracker.take(DirtyTracker.Consumer.SMOOTHING, stock); //Smooths the whole history, covering any dirty range
+                smoothStock(stock,alpha);
+                Status.updateProgress(++c, t, PROGRESS_CHANNEL);
+            }
+            try {
+                dh.executeBatch();
+            } finally {
+                dh.setAutoCommit(true);
+            }
+        }
+        for (String stock : stocks) DirtyTracker.markDirty(DirtyTracker.Consumer.FEATURES, stock, DirtyTracker.WHOLE_HISTORY);
+        Status.updateProgress(0, t, PROGRESS_CHANNEL);
+    }
 
-        dh.setAutoCommit(false);
-        for(String stock : stocks){
-            smoothStock(stock,alpha);
-            Controller.updateProgress(++c, t, pb);
+    /**
+     * Smooths the dirty range of a single stock and commits the smoothed prices straight away, so that processing which depends on them can start on that stock while other stocks are still being smoothed
+     * @param stock Stock ticker to smooth the price data of (e.g. AAPL for Apple Inc.)
+     * @param alpha The smoothing factor to apply to the smoothing process (lower is more intense smoothing)
+     * @return True if the stock was smoothed, False if its prices have not changed since it was last smoothed
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    static public boolean smoothStockNow(String stock, double alpha) throws SQLException {
+        LocalDate from = DirtyTracker.take(DirtyTracker.Consumer.SMOOTHING, stock);
+        if (from == null) return false;
+
+        try {
+            synchronized (dh) { //The batch is shared with the other stocks' refreshes, so this stock's commands are added and sent without them
+                if (from.equals(DirtyTracker.WHOLE_HISTORY) || !smoothStock(stock, alpha, Date.valueOf(from)))
+                    smoothStock(stock, alpha);
+                dh.executeBatch();
+            }
+        } catch (SQLException | RuntimeException e) {
+            DirtyTracker.markDirty(DirtyTracker.Consumer.SMOOTHING, stock, from);
+            throw e;
         }
-        dh.executeBatch();
-        dh.setAutoCommit(true);
-        Controller.updateProgress(0, t, pb);
+
+        DirtyTracker.markDirty(DirtyTracker.Consumer.FEATURES, stock, from);
+        return true;
+    }
+
+    /**
+     * Smooths a stock from a given date onwards, continuing from the smoothed price stored for the previous trade date (exponential smoothing only depends on the previous forecast, so earlier prices do not need to be read)
+     * @param stock Stock ticker to smooth the price data of
+     * @param alpha The smoothing factor to apply to the smoothing process (lower is more intense smoothing)
+     * @param from Earliest trade date to smooth
+     * @return True if the stock was smoothed, False if there is no smoothed price to continue from (so the whole history must be smoothed)
+     * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
+     */
+    private static boolean smoothStock(String stock, double alpha, Date from) throws SQLException {
+        ALPHA = alpha;
+
+        ArrayList<String> results = dh.executeQuery("SELECT TradeDate, ClosePrice, SmoothedClosePrice FROM dailystockprices WHERE Symbol = '" + stock + "' AND TradeDate >= (SELECT MAX(TradeDate) FROM dailystockprices WHERE Symbol = '" + stock + "' AND TradeDate < '" + from + "') ORDER BY TradeDate ASC");
+
+        if (results.isEmpty() || results.get(0).split(",")[2].equals("null")) return false;
+
+        Status.updateCurrentTask("Smoothing Stock Close Prices for " + stock + " from " + from + "...", false, false);
+
+        double forecast = Double.parseDouble(results.get(0).split(",")[2]);
+
+        for (int i = 1; i < results.size(); i++) {
+            String[] splitString = results.get(i).split(",");
+            forecast = alpha * Double.parseDouble(splitString[1]) + (1 - alpha) * forecast;
+
+            dh.addBatchCommand("UPDATE dailystockprices SET SmoothedClosePrice ='" + forecast + "' WHERE Symbol = '" + stock + "' AND TradeDate = '" + splitString[0] + "';");
+        }
+
+        return true;
     }
 
     /**
@@ -0,0 +1,333 @@
+package Utility;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * @author Luke K. Rose <psylr5@nottingham.ac.uk>
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class TradingCalendar {
+    static public final ZoneId EXCHANGE_ZONE = ZoneId.of("America/New_York");
+    static public final LocalTime MARKET_OPEN = LocalTime.of(9, 30), MARKET_CLOSE = LocalTime.of(16, 0), EARLY_CLOSE = LocalTime.of(13, 0);
+
+    static private final int FIRST_YEAR = 1970, YEARS_AHEAD = 5;
+    static private final int FIRST_DAY = (int) LocalDate.of(FIRST_YEAR, 1, 1).toEpochDay();
+
+    /**
+     * Unscheduled closures (e.g. national days of mourning and weather events)
+     */
+    static private final Set<LocalDate> SPECIAL_CLOSURES = new HashSet<>(Arrays.asList(
+            LocalDate.of(1985, 9, 27), LocalDate.of(1994, 4, 27), LocalDate.of(2001, 9, 11), LocalDate.of(2001, 9, 12),
+            LocalDate.of(2001, 9, 13), LocalDate.of(2001, 9, 14), LocalDate.of(2004, 6, 11), LocalDate.of(2007, 1, 2),
+            LocalDate.of(2012, 10, 29), LocalDate.of(2012, 10, 30), LocalDate.of(2018, 12, 5), LocalDate.of(2025, 1, 9)));
+
+    static private final int[] tradingDays; //Epoch days of every trading day in the precomputed range, in ascending order
+    static private final int[] dayIndex; //Index into tradingDays of the latest trading day on or before each calendar day
+    static private final boolean[] earlyClose; //Whether each trading day closes early, indexed like tradingDays
+
+    static {
+        int lastDay = (int) LocalDate.of(LocalDate.now(EXCHANGE_ZONE).getYear() + YEARS_AHEAD, 12, 31).toEpochDay();
+        int[] days = new int[lastDay - FIRST_DAY + 1];
+        boolean[] early = new boolean[days.length];
+        dayIndex = new int[days.length];
+
+        int count = 0;
+        for (int day = FIRST_DAY; day <= lastDay; day++) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+
+            if (isScheduledTradingDay(date)) {
+                early[count] = isScheduledEarlyClose(date);
+                days[count++] = day;
+            }
+
+            dayIndex[day - FIRST_DAY] = count - 1;
+        }
+
+        tradingDays = Arrays.copyOf(days, count);
+        earlyClose = Arrays.copyOf(early, count);
+    }
+
+    /**
+     * Determines whether the exchange holds a session on a given date
+     *
+     * @param date Exchange-local date
+     * @return True if the date is a trading day, false if it is a weekend, holiday or special closure
+     */
+    static public boolean isTradingDay(LocalDate date) {
+        int offset = offset(date);
+
+        if (offset < 0) return isScheduledTradingDay(date);
+
+        int index = dayIndex[offset];
+        return index >= 0 && tradingDays[index] == date.toEpochDay();
+    }
+
+    /**
+     * Finds the first trading day after a given date
+     *
+     * @param date Exchange-local date
+     * @return The next trading day
+     */
+    static public LocalDate nextTradingDay(LocalDate date) {
+        int offset = offset(date);
+
+        if (offset < 0 || dayIndex[offset] + 1 >= tradingDays.length) {
+            do date = date.plusDays(1); while (!isScheduledTradingDay(date));
+            return date;
+        }
+
+        return LocalDate.ofEpochDay(tradingDays[dayIndex[offset] + 1]);
+    }
+
+    /**
+     * Finds the last trading day before a given date
+     *
+     * @param date Exchange-local date
+     * @return The previous trading day
+     */
+    static public LocalDate previousTradingDay(LocalDate date) {
+        int offset = offset(date);
+
+        if (offset < 0) {
+            do date = date.minusDays(1); while (!isScheduledTradingDay(date));
+            return date;
+        }
+
+        int index = dayIndex[offset];
+        if (index >= 0 && tradingDays[index] == date.toEpochDay()) index--;
+
+        if (index < 0) {
+            do date = date.minusDays(1); while (!isScheduledTradingDay(date));
+            return date;
+        }
+
+        return LocalDate.ofEpochDay(tradingDays[index]);
+    }
+
+    /**
+     * Access the position of a date in the sequence of trading days, so the number of sessions between two dates is a subtraction
+     *
+     * @param date Exchange-local date within the precomputed range
+     * @return Index of the date if it is a trading day, otherwise the index of the previous trading day
+     */
+    static public int getTradingDayIndex(LocalDate date) {
+        int offset = offset(date);
+
+        if (offset < 0) throw new IllegalArgumentException(date + " is outside of the trading calendar");
+
+        return dayIndex[offset];
+    }
+
+    /**
+     * Counts the trading days after one date up to and including another
+     *
+     * @param from Exchange-local start date (exclusive)
+     * @param to   Exchange-local end date (inclusive)
+     * @return The number of trading days in the range (negative if to is before from)
+     */
+    static public int tradingDaysBetween(LocalDate from, LocalDate to) {
+        return getTradingDayIndex(to) - getTradingDayIndex(from);
+    }
+
+    /**
+     * Access the closing time of a session, accounting for early closes
+     *
+     * @param date Exchange-local date
+     * @return The closing time, or null if the date is not a trading day
+     */
+    static public LocalTime getClose(LocalDate date) {
+        if (!isTradingDay(date)) return null;
+
+        int offset = offset(date);
+        boolean early = offset < 0 ? isScheduledEarlyClose(date) : earlyClose[dayIndex[offset]];
+
+        return early ? EARLY_CLOSE : MARKET_CLOSE;
+    }
+
+    /**
+     * Determines whether the exchange is open at a given instant
+     *
+     * @param instant Instant to check
+     * @return True if the instant is within a regular trading session
+     */
+    static public boolean isOpen(Instant instant) {
+        LocalDateTime time = LocalDateTime.ofInstant(instant, EXCHANGE_ZONE);
+        LocalTime close = getClose(time.toLocalDate());
+
+        return close != null && !time.toLocalTime().isBefore(MARKET_OPEN) && time.toLocalTime().isBefore(close);
+    }
+
+    /**
+     * Determines whether the exchange is currently open
+     *
+     * @return True if a trading session is in progress
+     */
+    static public boolean isOpen() {
+        return isOpen(Instant.now());
+    }
+
+    /**
+     * Finds the start of the next trading session
+     *
+     * @param instant Instant to search from
+     * @return The opening time of the first session starting after the instant
+     */
+    static public ZonedDateTime getNextOpen(Instant instant) {
+        LocalDateTime time = LocalDateTime.ofInstant(instant, EXCHANGE_ZONE);
+        LocalDate date = isTradingDay(time.toLocalDate()) && time.toLocalTime().isBefore(MARKET_OPEN) ? time.toLocalDate() : nextTradingDay(time.toLocalDate());
+
+        return date.atTime(MARKET_OPEN).atZone(EXCHANGE_ZONE);
+    }
+
+    /**
+     * Finds the end of the latest session that has finished
+     *
+     * @param instant Instant to search from
+     * @return The closing time of the last session ending at or before the instant
+     */
+    static public ZonedDateTime getLastClose(Instant instant) {
+        LocalDateTime time = LocalDateTime.ofInstant(instant, EXCHANGE_ZONE);
+        LocalDate date = time.toLocalDate();
+        LocalTime close = getClose(date);
+
+        if (close == null || time.toLocalTime().isBefore(close)) {
+            date = previousTradingDay(date);
+            close = getClose(date);
+        }
+
+        return date.atTime(close).atZone(EXCHANGE_ZONE);
+    }
+
+    /**
+     * Access the current exchange-local date
+     *
+     * @return Today's date at the exchange
+     */
+    static public LocalDate today() {
+        return LocalDate.now(EXCHANGE_ZONE);
+    }
+
+    /**
+     * Access the current exchange-local date and time
+     *
+     * @return The current time at the exchange
+     */
+    static public LocalDateTime now() {
+        return LocalDateTime.now(EXCHANGE_ZONE);
+    }
+
+    /**
+     * Finds the latest session that has started (Today during and after trading hours, otherwise the previous trading day)
+     *
+     * @return Date of the current or most recent session
+     */
+    static public LocalDate getLastSessionDate() {
+        LocalDateTime now = now();
+
+        if (isTradingDay(now.toLocalDate()) && !now.toLocalTime().isBefore(MARKET_OPEN)) return now.toLocalDate();
+
+        return previousTradingDay(now.toLocalDate());
+    }
+
+    /**
+     * Finds the latest session that has finished
+     *
+     * @return Date of the most recently completed session
+     */
+    static public LocalDate getLastCompletedSessionDate() {
+        return getLastClose(Instant.now()).toLocalDate();
+    }
+
+    static private int offset(LocalDate date) {
+        long offset = date.toEpochDay() - FIRST_DAY;
+
+        return offset < 0 || offset >= dayIndex.length ? -1 : (int) offset;
+    }
+
+    /**
+     * Applies the exchange holiday rules to a date, used to build the precomputed tables and for dates outside of them
+     *
+     * @param date Exchange-local date
+     * @return True if the date is a weekday that is not a holiday or special closure
+     */
+    static private boolean isScheduledTradingDay(LocalDate date) {
+        DayOfWeek day = date.getDayOfWeek();
+
+        if (day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY) return false;
+        if (SPECIAL_CLOSURES.contains(date)) return false;
+
+        int year = date.getYear();
+
+        return !(date.equals(observedNewYear(year))
+                || (year >= 1998 && date.equals(nthDayOfMonth(year, Month.JANUARY, DayOfWeek.MONDAY, 3))) //Martin Luther King Jr. Day
+                || date.equals(nthDayOfMonth(year, Month.FEBRUARY, DayOfWeek.MONDAY, 3)) //Washington's Birthday
+                || date.equals(easterSunday(year).minusDays(2)) //Good Friday
+                || date.equals(LocalDate.of(year, Month.MAY, 31).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))) //Memorial Day
+                || (year >= 2022 && date.equals(observed(LocalDate.of(year, Month.JUNE, 19)))) //Juneteenth
+                || date.equals(observed(LocalDate.of(year, Month.JULY, 4))) //Independence Day
+                || date.equals(nthDayOfMonth(year, Month.SEPTEMBER, DayOfWeek.MONDAY, 1)) //Labor Day
+                || date.equals(nthDayOfMonth(year, Month.NOVEMBER, DayOfWeek.THURSDAY, 4)) //Thanksgiving Day
+                || date.equals(observed(LocalDate.of(year, Month.DECEMBER, 25)))); //Christmas Day
+    }
+
+    /**
+     * Applies the exchange early close rules (13:00) to a trading day
+     *
+     * @param date Exchange-local trading day
+     * @return True if the session closes early
+     */
+    static private boolean isScheduledEarlyClose(LocalDate date) {
+        int year = date.getYear();
+
+        return date.equals(LocalDate.of(year, Month.JULY, 3)) && date.getDayOfWeek() != DayOfWeek.FRIDAY //Independence Day eve (a Friday 3rd is the observed holiday)
+                || date.equals(nthDayOfMonth(year, Month.NOVEMBER, DayOfWeek.THURSDAY, 4).plusDays(1)) //Day after Thanksgiving
+                || date.equals(LocalDate.of(year, Month.DECEMBER, 24)); //Christmas Eve
+    }
+
+    /**
+     * Moves a fixed-date holiday that falls on a weekend to the nearest weekday
+     */
+    static private LocalDate observed(LocalDate holiday) {
+        if (holiday.getDayOfWeek() == DayOfWeek.SATURDAY) return holiday.minusDays(1);
+        if (holiday.getDayOfWeek() == DayOfWeek.SUNDAY) return holiday.plusDays(1);
+        return holiday;
+    }
+
+    /**
+     * New Year's Day is moved to Monday if it falls on a Sunday, but is not moved back into the previous year if it falls on a Saturday
+     */
+    static private LocalDate observedNewYear(int year) {
+        LocalDate newYear = LocalDate.of(year, Month.JANUARY, 1);
+
+        return newYear.getDayOfWeek() == DayOfWeek.SUNDAY ? newYear.plusDays(1) : newYear;
+    }
+
+    static private LocalDate nthDayOfMonth(int year, Month month, DayOfWeek day, int n) {
+        return LocalDate.of(year, month, 1).with(TemporalAdjusters.dayOfWeekInMonth(n, day));
+    }
+
+    /**
+     * Calculates the date of Easter Sunday using the anonymous Gregorian algorithm
+     */
+    static private LocalDate easterSunday(int year) {
+        int a = year % 19, b = year / 100, c = year % 100, d = b / 4, e = b % 4;
+        int f = (b + 8) / 25, g = (b - f + 1) / 3, h = (19 * a + b - d - g + 15) % 30;
+        int i = c / 4, k = c % 4, l = (32 + 2 * e + 2 * i - h - k) % 7, m = (a + 11 * h + 22 * l) / 451;
+        int month = (h + l - 7 * m + 114) / 31, day = (h + l - 7 * m + 114) % 31 + 1;
+
+        return LocalDate.of(year, month, day);
+    }
+}
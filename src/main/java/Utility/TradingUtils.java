@@ -1,12 +1,13 @@
 package Utility;
 
 import Default.DatabaseHandler;
-import Default.Main;
+import Default.Status;
 import Prediction.StockPredictor;
 
 import java.sql.SQLException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * @author Luke K. Rose <psylr5@nottingham.ac.uk>
@@ -180,9 +181,13 @@ public class TradingUtils {
      * @throws Exception Including SQLException
      */
     public static void autoTrade(ArrayList<String> stocks, int[] dayArray) throws Exception {
-        Main.getController().updateCurrentTask("Auto-Trading...", false, false);
+        Status.updateCurrentTask("Auto-Trading...", false, false);
         ArrayList<String> portfolio = databaseHandler.executeQuery("SELECT * FROM portfolio ORDER BY Allocation DESC;");
 
+        ArrayList<String> portfolioSymbols = new ArrayList<>();
+        for (String record : portfolio) portfolioSymbols.add(record.split(",")[0]);
+        HashMap<String, HashMap<Integer, Boolean>> predictions = StockPredictor.predictBatch(stocks, portfolioSymbols, dayArray);
+
         ArrayList<String> expiredInvestments = databaseHandler.executeQuery("SELECT ID, Symbol, Period, Amount FROM investments WHERE EndDate <= CURRENT_DATE;");
 
         for (String investment : expiredInvestments) {
@@ -192,7 +197,7 @@ public class TradingUtils {
                 databaseHandler.executeCommand("UPDATE investments SET EndDate = DATE_ADD(CURRENT_DATE, INTERVAL " + splitInvestment[2] + " DAY) WHERE ID = " + splitInvestment[0] + ";");
             else {
                 databaseHandler.executeCommand("DELETE FROM investments WHERE ID = " + splitInvestment[0]);
-                Main.getController().updateCurrentTask("> AUTOMATED TRADER: SELLING " + splitInvestment[3] + " " + splitInvestment[1], false, true);
+                Status.updateCurrentTask("> AUTOMATED TRADER: SELLING " + splitInvestment[3] + " " + splitInvestment[1], false, true);
                 TradingUtils.sellStock(splitInvestment[1], Integer.parseInt(splitInvestment[3]), true);
             }
         }
@@ -208,8 +213,11 @@ public class TradingUtils {
                     balance = Double.parseDouble(databaseHandler.executeQuery("SELECT COALESCE(SUM(Amount),0) FROM banktransactions").get(0));
             int splitAmount = 0;
 
+            HashMap<Integer, Boolean> stockPredictions = predictions.get(symbol);
+            if (stockPredictions == null) continue;
+
             for (int currDay : dayArray)
-                if (StockPredictor.predictStock(stocks, symbol, currDay)) splitAmount++;
+                if (stockPredictions.get(currDay)) splitAmount++;
 
             if (splitAmount == 0) return;
             int buyAmount = (int) Math.floor(allocationRemaining / currentPrice / splitAmount);
@@ -217,8 +225,8 @@ public class TradingUtils {
             if (buyAmount == 0) return;
             for (int day : dayArray) {
                 if ((value = buyAmount * currentPrice) <= balance || value <= allocationRemaining) return;
-                if (StockPredictor.predictStock(stocks, symbol, day)) {
-                        Main.getController().updateCurrentTask("> AUTOMATED TRADER: BUYING " + buyAmount + " " + symbol + " (" + day + " day investment)", false, true);
+                if (stockPredictions.get(day)) {
+                        Status.updateCurrentTask("> AUTOMATED TRADER: BUYING " + buyAmount + " " + symbol + " (" + day + " day investment)", false, true);
                     balance -= value;
                     allocationRemaining -= value;
                         TradingUtils.buyStock(symbol, buyAmount, day, true);
@@ -226,7 +234,7 @@ public class TradingUtils {
             }
         }
 
-        Main.getController().updateGUI();
+        Status.portfolioUpdated();
     }
 
     /**
@@ -244,7 +252,7 @@ public class TradingUtils {
         }
 
         databaseHandler.executeCommand("DELETE FROM portfolio;");
-        Main.getController().updateGUI();
+        Status.portfolioUpdated();
     }
 
     /**
@@ -1,11 +1,10 @@
 package Utility;
 
-import Default.Controller;
 import Default.DatabaseHandler;
-import Default.Main;
+import Default.Status;
+import Processing.DirtyTracker;
 import Processing.NaturalLanguageProcessor;
 import Processing.TechnicalAnalyser;
-import javafx.scene.control.ProgressBar;
 
 import java.io.*;
 import java.sql.SQLException;
@@ -64,7 +63,7 @@ public class TrainingFileUtils {
      * @param stocks            List of stock tickers to gather data for (e.g. AAL, AAPL, BIIB etc.)
      * @param path              File path to save the file to
      * @param days              List of days to calculate price rise/fall values for
-     * @param pb                Progress Bar to visualise the progress of the export process
+     * @param channel           {@link Status.Channel} enum value of the progress to publish during the export process
      * @param smoothPriceAlpha  Smoothing factor to apply to the price daa
      * @param includeIndicators True if indicator values should be included, False otherwise
      * @param includeSentiment  True if news sentiment values should be included, False otherwise
@@ -73,7 +72,7 @@ public class TrainingFileUtils {
      * @throws FileNotFoundException Throws FileNotFoundException if the file does not exist
      * @throws SQLException          Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    static public void exportClassificationCSV(ArrayList<String> stocks, String path, int[] days, ProgressBar pb, double smoothPriceAlpha, boolean includeIndicators, boolean includeSentiment, boolean includeHeader, boolean ignoreNull) throws FileNotFoundException, SQLException {
+    static public void exportClassificationCSV(ArrayList<String> stocks, String path, int[] days, Status.Channel channel, double smoothPriceAlpha, boolean includeIndicators, boolean includeSentiment, boolean includeHeader, boolean ignoreNull) throws FileNotFoundException, SQLException {
         final int t = stocks.size() - 1;
         int c = 0;
         File file = new File(path);
@@ -88,7 +87,7 @@ public class TrainingFileUtils {
             for (String value : convertToClassificationTrainingArray(stock, commandStart + " FROM dailystockprices WHERE Symbol='" + stock + "'", " ORDER BY TradeDate ASC;", c, days, smoothPriceAlpha, includeIndicators, includeSentiment, ignoreNull, includeHeader && stocks.indexOf(stock) == 0))
                 pw.println(value);
 
-            Controller.updateProgress(++c, t, pb);
+            Status.updateProgress(++c, t, channel);
         }
 
         pw.close();
@@ -101,7 +100,7 @@ public class TrainingFileUtils {
      * @throws IOException Throws IOException if either file cannot be found
      */
     static public void exportLibSVMFile(String csvPath, String libSVMPath) throws IOException {
-        Main.getController().updateCurrentTask("Converting CSV to LIBSVM file", false, false);
+        Status.updateCurrentTask("Converting CSV to LIBSVM file", false, false);
         FileReader fr = new FileReader(csvPath);
         BufferedReader br = new BufferedReader(fr);
 
@@ -137,53 +136,53 @@ public class TrainingFileUtils {
     /**
      * Enumerates all possible variations of the data for use in WEKA experiments to determine well-performing models
      * @param stocks List of stocks to export files for
-     * @param pb Progress Bar to visualise the progress of the export process
+     * @param channel {@link Status.Channel} enum value of the progress to publish during the export process
      * @param dayArray List of days to calculate price rise/fall values for
      * @throws FileNotFoundException Throws FileNotFoundException if the file does not exist
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
-    static public void exportAllFiles(ArrayList<String> stocks, ProgressBar pb, int[] dayArray) throws FileNotFoundException, SQLException {
+    static public void exportAllFiles(ArrayList<String> stocks, Status.Channel channel, int[] dayArray) throws FileNotFoundException, SQLException {
         //No technical indicators, no sentiment, no smoothing
         for(Integer day : dayArray)
-            exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_Standard_NASDAQ.csv", new int[]{day}, pb, 1, false, false, true, false);
+            exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_Standard_NASDAQ.csv", new int[]{day}, channel, 1, false, false, true, false);
 
         resetPriceValues();
         TechnicalAnalyser.calculateTechnicalIndicators(stocks,false,true);
 
         //Technical indicators, no sentiment, no smoothing
         for(Integer day : dayArray)
-            exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_Standard_TA_NASDAQ.csv", new int[]{day}, pb, 1, true, false, true, false);
+            exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_Standard_TA_NASDAQ.csv", new int[]{day}, channel, 1, true, false, true, false);
 
         //Technical indicators, sentiment, no smoothing
         for(Integer day : dayArray)
-            exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_Standard_TA_Sentiment_NASDAQ.csv", new int[]{day}, pb, 1, true, true, true, false);
+            exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_Standard_TA_Sentiment_NASDAQ.csv", new int[]{day}, channel, 1, true, true, true, false);
 
         //No technical indicators, sentiment, no smoothing
         for(Integer day : dayArray)
-            exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "DayStandard_Sentiment_NASDAQ.csv", new int[]{day}, pb, 1, false, true, true, false);
+            exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "DayStandard_Sentiment_NASDAQ.csv", new int[]{day}, channel, 1, false, true, true, false);
 
         for(double i = 0.1; i <= 0.9; i+=0.1) {
             resetPriceValues();
             SmoothingUtils.smoothStocks(stocks,i);
             //No technical indicators, no sentiment, smoothing
             for(Integer day : dayArray)
-                exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_" + i + "Smoothed_NASDAQ.csv", new int[]{day}, pb, i, false, false, true, false);
+                exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_" + i + "Smoothed_NASDAQ.csv", new int[]{day}, channel, i, false, false, true, false);
             //No Technical indicators, smoothing, sentiment
             for(Integer day : dayArray)
-                exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_" + i + "Smoothed_Sentiment_NASDAQ.csv", new int[]{day}, pb, i, false, true, true, false);
+                exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_" + i + "Smoothed_Sentiment_NASDAQ.csv", new int[]{day}, channel, i, false, true, true, false);
 
             TechnicalAnalyser.calculateTechnicalIndicators(stocks,true, true);
             //Technical indicators, smoothing, no sentiment
             for(Integer day : dayArray)
-                exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_" + i + "Smoothed_TA_NASDAQ.csv", new int[]{day}, pb, i, true, false, true, false);
+                exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_" + i + "Smoothed_TA_NASDAQ.csv", new int[]{day}, channel, i, true, false, true, false);
             //Technical indicators, smoothing, sentiment
             for(Integer day : dayArray)
-                exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_" + i + "Smoothed_TA_Sentiment_NASDAQ.csv", new int[]{day}, pb, i, true, true, true, false);
+                exportClassificationCSV(stocks, System.getProperty("user.dir") + "/res/TrainingFiles/" + day + "Day_" + i + "Smoothed_TA_Sentiment_NASDAQ.csv", new int[]{day}, channel, i, true, true, true, false);
         }
     }
 
     /**
-     * Resets all indicator values and smoothed prices to null
+     * Resets all indicator values and smoothed prices to null, and marks the feature table of every stock as needing a full rebuild
      * @throws SQLException Throws SQLException if there is an error with accessing the MySQL/MariaDB database
      */
     static public void resetPriceValues() throws SQLException {
@@ -199,6 +198,9 @@ public class TrainingFileUtils {
             command.append(",").append(dbSchema.get(i)).append("=null");
 
         databaseHandler.executeCommand(command + ";");
+
+        for (String stock : databaseHandler.executeQuery("SELECT DISTINCT Symbol FROM dailystockprices;"))
+            DirtyTracker.markDirty(DirtyTracker.Consumer.FEATURES, stock, DirtyTracker.WHOLE_HISTORY);
     }
 
     /**
@@ -276,7 +278,7 @@ public class TrainingFileUtils {
 
         for (int amountOfDays : amountOfDaysArray) {
             if((priceValues.size() - amountOfDays) < 0){
-                Main.getController().updateCurrentTask("Not enough records", true, false);
+                Status.updateCurrentTask("Not enough records", true, false);
                 break;
             }
 
@@ -317,7 +319,7 @@ public class TrainingFileUtils {
                 dataPoint.append(",").append(String.valueOf((futurePrices[i] - currentPrices[i]) >= 0 ? 1 : 0));
 
                 if (includeHeader && dataPoints.size() == 1 && header.toString().split(",").length != dataPoint.toString().split(",").length)
-                    Main.getController().updateCurrentTask("Header/Datapoint Size Mismatch!", true, false);
+                    Status.updateCurrentTask("Header/Datapoint Size Mismatch!", true, false);
 
                 dataPoints.add(dataPoint.toString());
             }